@@ -49,6 +49,11 @@ public interface GradleInternal extends Gradle {
      */
     ProjectEvaluationListener getProjectEvaluationBroadcaster();
 
+    /**
+     * Returns true when a {@link ProjectEvaluationListener} has been added to this build using this object, for example by a build script.
+     */
+    boolean isProjectEvaluationListenerAdded();
+
     /**
      * Called by the BuildLoader after the default project is determined.  Until the BuildLoader
      * is executed, {@link #getDefaultProject()} will return null.
@@ -0,0 +1,60 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.changedetection.state;
+
+import org.gradle.cache.PersistentIndexedCache;
+import org.gradle.internal.Factory;
+import org.gradle.internal.serialize.BaseSerializerFactory;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+public class CacheBackedTaskDurationRepository implements TaskDurationRepository {
+    private final TaskArtifactStateCacheAccess cacheAccess;
+    private final PersistentIndexedCache<String, Long> durationsCache;
+
+    public CacheBackedTaskDurationRepository(TaskArtifactStateCacheAccess cacheAccess) {
+        this.cacheAccess = cacheAccess;
+        this.durationsCache = cacheAccess.createCache("taskDurations", String.class, BaseSerializerFactory.LONG_SERIALIZER);
+    }
+
+    public Map<String, Long> getPreviousDurations(final Collection<String> taskPaths) {
+        return cacheAccess.useCacheShared("Load task durations", new Factory<Map<String, Long>>() {
+            public Map<String, Long> create() {
+                Map<String, Long> durations = new HashMap<String, Long>();
+                for (String taskPath : taskPaths) {
+                    Long duration = durationsCache.get(taskPath);
+                    if (duration != null) {
+                        durations.put(taskPath, duration);
+                    }
+                }
+                return durations;
+            }
+        });
+    }
+
+    public void recordDurations(final Map<String, Long> durations) {
+        cacheAccess.useCache("Store task durations", new Runnable() {
+            public void run() {
+                for (Map.Entry<String, Long> entry : durations.entrySet()) {
+                    durationsCache.put(entry.getKey(), entry.getValue());
+                }
+            }
+        });
+    }
+}
@@ -211,7 +211,7 @@ public class CacheBackedTaskHistoryRepository implements TaskHistoryRepository {
         @Override
         public FileCollectionSnapshot getInputFilesSnapshot() {
             if (inputFilesSnapshot == null) {
-                inputFilesSnapshot = cacheAccess.useCache("fetch input files", new Factory<FileCollectionSnapshot>() {
+                inputFilesSnapshot = cacheAccess.useCacheShared("fetch input files", new Factory<FileCollectionSnapshot>() {
                     public FileCollectionSnapshot create() {
                         return snapshotRepository.get(inputFilesSnapshotId);
                     }
@@ -229,7 +229,7 @@ public class CacheBackedTaskHistoryRepository implements TaskHistoryRepository {
         @Override
         public FileCollectionSnapshot getDiscoveredInputFilesSnapshot() {
             if (discoveredFilesSnapshot == null) {
-                discoveredFilesSnapshot = cacheAccess.useCache("fetch discovered input files", new Factory<FileCollectionSnapshot>() {
+                discoveredFilesSnapshot = cacheAccess.useCacheShared("fetch discovered input files", new Factory<FileCollectionSnapshot>() {
                     public FileCollectionSnapshot create() {
                         return snapshotRepository.get(discoveredFilesSnapshotId);
                     }
@@ -247,7 +247,7 @@ public class CacheBackedTaskHistoryRepository implements TaskHistoryRepository {
         @Override
         public FileCollectionSnapshot getOutputFilesSnapshot() {
             if (outputFilesSnapshot == null) {
-                outputFilesSnapshot = cacheAccess.useCache("fetch output files", new Factory<FileCollectionSnapshot>() {
+                outputFilesSnapshot = cacheAccess.useCacheShared("fetch output files", new Factory<FileCollectionSnapshot>() {
                     public FileCollectionSnapshot create() {
                         return snapshotRepository.get(outputFilesSnapshotId);
                     }
@@ -0,0 +1,212 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.changedetection.state;
+
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import org.gradle.api.GradleException;
+import org.gradle.api.file.FileTreeElement;
+import org.gradle.api.file.FileVisitDetails;
+import org.gradle.api.file.FileVisitor;
+import org.gradle.api.file.RelativePath;
+import org.gradle.api.internal.cache.StringInterner;
+import org.gradle.api.internal.file.DefaultFileVisitDetails;
+import org.gradle.api.internal.file.collections.DirectoryWalker;
+import org.gradle.api.logging.Logger;
+import org.gradle.api.logging.Logging;
+import org.gradle.api.specs.Spec;
+import org.gradle.cache.PersistentIndexedCache;
+import org.gradle.cache.PersistentStore;
+import org.gradle.internal.nativeintegration.filesystem.FileSystem;
+import org.gradle.internal.serialize.Decoder;
+import org.gradle.internal.serialize.Encoder;
+import org.gradle.internal.serialize.Serializer;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A {@link DirectoryWalker} that records the listing of each directory it visits, along with the modification time of the directory and a hash of
+ * the listing, so that the listing can be reused in later builds without listing the directory and checking the type of each child.
+ *
+ * <p>Adding, removing or renaming a child of a directory updates the modification time of the directory, so a recorded listing is reused only while
+ * the modification time of the directory is unchanged. A listing is only recorded once the modification time is older than the granularity of
+ * file system timestamps, as a change made within the same tick would not change the modification time. The contents and timestamps of the files
+ * are not covered by the listing, and are still checked for each file by the file snapshotter.</p>
+ *
+ * <p>Some file systems do not update the modification time of a directory reliably. To detect this, every so often a recorded listing that would
+ * be reused is checked against the actual listing of the directory, and directories are walked in full for the rest of the build if they differ.</p>
+ *
+ * <p>Must be used while the cache is locked.</p>
+ */
+public class CachingDirectoryWalker implements DirectoryWalker {
+    public static final String INCREMENTAL_DIRECTORY_SNAPSHOT_TOGGLE = "org.gradle.snapshot.incrementalDirectories";
+
+    private static final Logger LOGGER = Logging.getLogger(CachingDirectoryWalker.class);
+    private static final long TIMESTAMP_GRANULARITY = 2000;
+    private static final int DEFAULT_VERIFY_INTERVAL = 64;
+
+    private final PersistentIndexedCache<String, DirectoryListing> cache;
+    private final FileSystem fileSystem;
+    private final StringInterner stringInterner;
+    private final int verifyInterval;
+    private final AtomicInteger reusedListings = new AtomicInteger();
+    private volatile boolean unreliable;
+
+    public CachingDirectoryWalker(PersistentStore store, FileSystem fileSystem, StringInterner stringInterner) {
+        this(store, fileSystem, stringInterner, DEFAULT_VERIFY_INTERVAL);
+    }
+
+    CachingDirectoryWalker(PersistentStore store, FileSystem fileSystem, StringInterner stringInterner, int verifyInterval) {
+        this.cache = store.createCache("directoryListings", String.class, new DirectoryListingSerializer(stringInterner));
+        this.fileSystem = fileSystem;
+        this.stringInterner = stringInterner;
+        this.verifyInterval = verifyInterval;
+    }
+
+    @Override
+    public void walkDir(File file, RelativePath path, FileVisitor visitor, Spec<FileTreeElement> spec, AtomicBoolean stopFlag, boolean postfix) {
+        DirectoryListing listing = getListing(file);
+        List<FileVisitDetails> dirs = new ArrayList<FileVisitDetails>();
+        for (int i = 0; !stopFlag.get() && i < listing.names.length; i++) {
+            String name = listing.names[i];
+            boolean isFile = listing.files[i];
+            RelativePath childPath = path.append(isFile, name);
+            FileVisitDetails details = new DefaultFileVisitDetails(new File(file, name), childPath, stopFlag, fileSystem, fileSystem, !isFile);
+            if (spec.isSatisfiedBy(details)) {
+                if (isFile) {
+                    visitor.visitFile(details);
+                } else {
+                    dirs.add(details);
+                }
+            }
+        }
+
+        for (int i = 0; !stopFlag.get() && i < dirs.size(); i++) {
+            FileVisitDetails dir = dirs.get(i);
+            if (postfix) {
+                walkDir(dir.getFile(), dir.getRelativePath(), visitor, spec, stopFlag, postfix);
+                visitor.visitDir(dir);
+            } else {
+                visitor.visitDir(dir);
+                walkDir(dir.getFile(), dir.getRelativePath(), visitor, spec, stopFlag, postfix);
+            }
+        }
+    }
+
+    boolean isUnreliable() {
+        return unreliable;
+    }
+
+    private DirectoryListing getListing(File dir) {
+        String path = stringInterner.intern(dir.getAbsolutePath());
+        long lastModified = dir.lastModified();
+        DirectoryListing recorded = unreliable || lastModified == 0 ? null : cache.get(path);
+        if (recorded != null && recorded.lastModified == lastModified) {
+            if (reusedListings.incrementAndGet() % verifyInterval != 0) {
+                return recorded;
+            }
+            DirectoryListing actual = list(dir, lastModified);
+            if (!Arrays.equals(actual.hash, recorded.hash)) {
+                LOGGER.info("Listing of {} changed without a change to its modification time. Walking directories in full for the rest of the build.", dir);
+                unreliable = true;
+                cache.remove(path);
+                return actual;
+            }
+            return recorded;
+        }
+
+        DirectoryListing actual = list(dir, lastModified);
+        if (!unreliable && lastModified != 0 && System.currentTimeMillis() - lastModified >= TIMESTAMP_GRANULARITY) {
+            cache.put(path, actual);
+        } else if (recorded != null) {
+            cache.remove(path);
+        }
+        return actual;
+    }
+
+    private DirectoryListing list(File dir, long lastModified) {
+        File[] children = dir.listFiles();
+        if (children == null) {
+            if (dir.isDirectory() && !dir.canRead()) {
+                throw new GradleException(String.format("Could not list contents of directory '%s' as it is not readable.", dir));
+            }
+            // else, might be a link which points to nothing, or has been removed while we're visiting, or ...
+            throw new GradleException(String.format("Could not list contents of '%s'.", dir));
+        }
+        Arrays.sort(children);
+        String[] names = new String[children.length];
+        boolean[] files = new boolean[children.length];
+        Hasher hasher = Hashing.md5().newHasher();
+        for (int i = 0; i < children.length; i++) {
+            names[i] = children[i].getName();
+            files[i] = children[i].isFile();
+            hasher.putUnencodedChars(names[i]);
+            hasher.putByte((byte) (files[i] ? 1 : 0));
+        }
+        return new DirectoryListing(lastModified, hasher.hash().asBytes(), names, files);
+    }
+
+    static class DirectoryListing {
+        final long lastModified;
+        final byte[] hash;
+        final String[] names;
+        final boolean[] files;
+
+        DirectoryListing(long lastModified, byte[] hash, String[] names, boolean[] files) {
+            this.lastModified = lastModified;
+            this.hash = hash;
+            this.names = names;
+            this.files = files;
+        }
+    }
+
+    private static class DirectoryListingSerializer implements Serializer<DirectoryListing> {
+        private final StringInterner stringInterner;
+
+        DirectoryListingSerializer(StringInterner stringInterner) {
+            this.stringInterner = stringInterner;
+        }
+
+        public DirectoryListing read(Decoder decoder) throws Exception {
+            long lastModified = decoder.readLong();
+            byte[] hash = decoder.readBinary();
+            int count = decoder.readSmallInt();
+            String[] names = new String[count];
+            boolean[] files = new boolean[count];
+            for (int i = 0; i < count; i++) {
+                names[i] = stringInterner.intern(decoder.readString());
+                files[i] = decoder.readBoolean();
+            }
+            return new DirectoryListing(lastModified, hash, names, files);
+        }
+
+        public void write(Encoder encoder, DirectoryListing value) throws Exception {
+            encoder.writeLong(value.lastModified);
+            encoder.writeBinary(value.hash);
+            encoder.writeSmallInt(value.names.length);
+            for (int i = 0; i < value.names.length; i++) {
+                encoder.writeString(value.names[i]);
+                encoder.writeBoolean(value.files[i]);
+            }
+        }
+    }
+}
@@ -15,6 +15,7 @@
  */
 package org.gradle.api.internal.changedetection.state;
 
+import org.gradle.api.Nullable;
 import org.gradle.api.file.FileTreeElement;
 import org.gradle.api.internal.cache.StringInterner;
 import org.gradle.api.internal.hash.Hasher;
@@ -29,12 +30,13 @@ import java.io.File;
 public class CachingFileSnapshotter implements FileSnapshotter {
     private final PersistentIndexedCache<String, FileInfo> cache;
     private final Hasher hasher;
-    private final FileInfoSerializer serializer = new FileInfoSerializer();
+    private final String algorithm;
     private final StringInterner stringInterner;
 
     public CachingFileSnapshotter(Hasher hasher, PersistentStore store, StringInterner stringInterner) {
         this.hasher = hasher;
-        this.cache = store.createCache("fileHashes", String.class, serializer);
+        this.algorithm = hasher.getAlgorithm();
+        this.cache = store.createCache("fileHashes", String.class, new FileInfoSerializer(algorithm));
         this.stringInterner = stringInterner;
     }
 
@@ -47,47 +49,94 @@ public class CachingFileSnapshotter implements FileSnapshotter {
     }
 
     private FileInfo snapshot(File file, long length, long timestamp) {
-        String absolutePath = file.getAbsolutePath();
-        FileInfo info = cache.get(absolutePath);
-
-        if (info != null && length == info.length && timestamp == info.timestamp) {
+        FileInfo info = lookup(file, length, timestamp);
+        if (info != null) {
             return info;
         }
 
-        byte[] hash = hasher.hash(file);
-        info = new FileInfo(hash, length, timestamp);
-        cache.put(stringInterner.intern(absolutePath), info);
+        info = hash(file, length, timestamp);
+        store(file, info);
         return info;
     }
 
+    /**
+     * Returns the cached snapshot of the given file, if it is still valid for the given length and timestamp and was created using the current hash algorithm.
+     * Must be called while the cache is locked.
+     */
+    @Nullable
+    FileInfo lookup(File file, long length, long timestamp) {
+        FileInfo info = cache.get(file.getAbsolutePath());
+        if (info != null && length == info.length && timestamp == info.timestamp && algorithm.equals(info.algorithm)) {
+            return info;
+        }
+        return null;
+    }
+
+    /**
+     * Calculates a fresh snapshot of the given file. Does not touch the cache, so can be called from any thread without holding the cache lock.
+     */
+    FileInfo hash(File file, long length, long timestamp) {
+        return new FileInfo(hasher.hash(file), length, timestamp, algorithm);
+    }
+
+    /**
+     * Records the snapshot of the given file. Must be called while the cache is locked.
+     */
+    void store(File file, FileInfo info) {
+        cache.put(stringInterner.intern(file.getAbsolutePath()), info);
+    }
+
     public static class FileInfo implements FileSnapshot {
         private final byte[] hash;
         private final long timestamp;
         private final long length;
+        private final String algorithm;
 
-        public FileInfo(byte[] hash, long length, long timestamp) {
+        public FileInfo(byte[] hash, long length, long timestamp, String algorithm) {
             this.hash = hash;
             this.length = length;
             this.timestamp = timestamp;
+            this.algorithm = algorithm;
         }
 
         public byte[] getHash() {
             return hash;
         }
+
+        long getLength() {
+            return length;
+        }
+
+        long getTimestamp() {
+            return timestamp;
+        }
+
+        String getAlgorithm() {
+            return algorithm;
+        }
     }
 
     private static class FileInfoSerializer implements Serializer<FileInfo> {
+        private final String currentAlgorithm;
+
+        FileInfoSerializer(String currentAlgorithm) {
+            this.currentAlgorithm = currentAlgorithm;
+        }
+
         public FileInfo read(Decoder decoder) throws Exception {
             byte[] hash = decoder.readBinary();
             long timestamp = decoder.readLong();
             long length = decoder.readLong();
-            return new FileInfo(hash, length, timestamp);
+            String algorithm = decoder.readString();
+            // Share the algorithm name between entries
+            return new FileInfo(hash, length, timestamp, currentAlgorithm.equals(algorithm) ? currentAlgorithm : algorithm);
         }
 
         public void write(Encoder encoder, FileInfo value) throws Exception {
             encoder.writeBinary(value.hash);
             encoder.writeLong(value.timestamp);
             encoder.writeLong(value.length);
+            encoder.writeString(value.algorithm);
         }
     }
 }
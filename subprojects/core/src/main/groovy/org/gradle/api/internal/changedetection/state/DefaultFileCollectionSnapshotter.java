@@ -17,6 +17,7 @@
 package org.gradle.api.internal.changedetection.state;
 
 import com.google.common.collect.Lists;
+import org.gradle.api.Nullable;
 import org.gradle.api.file.FileCollection;
 import org.gradle.api.file.FileVisitDetails;
 import org.gradle.api.file.FileVisitor;
@@ -24,6 +25,10 @@ import org.gradle.api.internal.cache.StringInterner;
 import org.gradle.api.internal.file.FileResolver;
 import org.gradle.api.internal.file.FileTreeInternal;
 import org.gradle.api.internal.file.collections.DefaultFileCollectionResolveContext;
+import org.gradle.api.internal.file.collections.DirectoryFileTree;
+import org.gradle.api.internal.file.collections.DirectoryWalker;
+import org.gradle.api.internal.file.collections.FileTreeAdapter;
+import org.gradle.api.internal.file.collections.MinimalFileTree;
 import org.gradle.internal.serialize.SerializerRegistry;
 import org.gradle.util.ChangeListener;
 import org.gradle.util.NoOpChangeListener;
@@ -37,12 +42,22 @@ public class DefaultFileCollectionSnapshotter implements FileCollectionSnapshott
     private TaskArtifactStateCacheAccess cacheAccess;
     private final StringInterner stringInterner;
     private final FileResolver fileResolver;
+    private final DirectoryWalker directoryWalker;
 
     public DefaultFileCollectionSnapshotter(FileSnapshotter snapshotter, TaskArtifactStateCacheAccess cacheAccess, StringInterner stringInterner, FileResolver fileResolver) {
+        this(snapshotter, cacheAccess, stringInterner, fileResolver, null);
+    }
+
+    /**
+     * @param directoryWalker The walker to use for directory trees, or null to use the walker of each tree. The walker is used while the cache is locked.
+     */
+    public DefaultFileCollectionSnapshotter(FileSnapshotter snapshotter, TaskArtifactStateCacheAccess cacheAccess, StringInterner stringInterner, FileResolver fileResolver,
+                                            @Nullable DirectoryWalker directoryWalker) {
         this.snapshotter = snapshotter;
         this.cacheAccess = cacheAccess;
         this.stringInterner = stringInterner;
         this.fileResolver = fileResolver;
+        this.directoryWalker = directoryWalker;
     }
 
     public void registerSerializers(SerializerRegistry<FileCollectionSnapshot> registry) {
@@ -65,7 +80,7 @@ public class DefaultFileCollectionSnapshotter implements FileCollectionSnapshott
 
         final Map<String, IncrementalFileSnapshot> snapshots = new HashMap<String, IncrementalFileSnapshot>();
 
-        cacheAccess.useCache("Create file snapshot", new Runnable() {
+        cacheAccess.useCacheShared("Create file snapshot", new Runnable() {
             public void run() {
                 for (FileVisitDetails fileDetails : allFileVisitDetails) {
                     final String absolutePath = stringInterner.intern(fileDetails.getFile().getAbsolutePath());
@@ -90,12 +105,8 @@ public class DefaultFileCollectionSnapshotter implements FileCollectionSnapshott
     }
 
     protected void visitFiles(FileCollection input, final List<FileVisitDetails> allFileVisitDetails, final List<File> missingFiles) {
-        DefaultFileCollectionResolveContext context = new DefaultFileCollectionResolveContext(fileResolver);
-        context.add(input);
-        List<FileTreeInternal> fileTrees = context.resolveAsFileTrees();
-
-        for (FileTreeInternal fileTree : fileTrees) {
-            fileTree.visitTreeOrBackingFile(new FileVisitor() {
+        for (FileTreeInternal fileTree : resolveFileTrees(input)) {
+            visitTree(fileTree, new FileVisitor() {
                 @Override
                 public void visitDir(FileVisitDetails dirDetails) {
                     allFileVisitDetails.add(dirDetails);
@@ -109,6 +120,26 @@ public class DefaultFileCollectionSnapshotter implements FileCollectionSnapshott
         }
     }
 
+    protected void visitTree(FileTreeInternal fileTree, final FileVisitor visitor) {
+        MinimalFileTree tree = fileTree instanceof FileTreeAdapter ? ((FileTreeAdapter) fileTree).getTree() : null;
+        if (directoryWalker == null || !(tree instanceof DirectoryFileTree)) {
+            fileTree.visitTreeOrBackingFile(visitor);
+            return;
+        }
+        final DirectoryFileTree directoryTree = (DirectoryFileTree) tree;
+        cacheAccess.useCacheShared("Visit directory", new Runnable() {
+            public void run() {
+                directoryTree.visit(visitor, directoryWalker);
+            }
+        });
+    }
+
+    protected List<FileTreeInternal> resolveFileTrees(FileCollection input) {
+        DefaultFileCollectionResolveContext context = new DefaultFileCollectionResolveContext(fileResolver);
+        context.add(input);
+        return context.resolveAsFileTrees();
+    }
+
     interface IncrementalFileSnapshot {
         boolean isUpToDate(IncrementalFileSnapshot snapshot);
     }
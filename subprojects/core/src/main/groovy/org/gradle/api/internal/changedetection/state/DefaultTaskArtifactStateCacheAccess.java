@@ -23,6 +23,7 @@ import org.gradle.cache.PersistentIndexedCacheParameters;
 import org.gradle.cache.internal.CacheDecorator;
 import org.gradle.cache.internal.FileLockManager;
 import org.gradle.internal.Factory;
+import org.gradle.internal.os.OperatingSystem;
 import org.gradle.internal.serialize.Serializer;
 
 import java.io.Closeable;
@@ -30,8 +31,12 @@ import java.io.Closeable;
 import static org.gradle.cache.internal.filelock.LockOptionsBuilder.mode;
 
 public class DefaultTaskArtifactStateCacheAccess implements TaskArtifactStateCacheAccess, Closeable {
+    public static final String MAPPED_FILE_HASHES_TOGGLE = "org.gradle.cache.mapped.fileHashes";
+    public static final String SHARED_ACCESS_TOGGLE = "org.gradle.cache.taskArtifacts.sharedAccess";
+
     private final CacheDecorator inMemoryDecorator;
     private final PersistentCache cache;
+    private final boolean sharedAccess = Boolean.getBoolean(SHARED_ACCESS_TOGGLE);
 
     public DefaultTaskArtifactStateCacheAccess(Gradle gradle, CacheRepository cacheRepository, CacheDecorator decorator) {
         this.inMemoryDecorator = decorator;
@@ -48,10 +53,16 @@ public class DefaultTaskArtifactStateCacheAccess implements TaskArtifactStateCac
 
     public <K, V> PersistentIndexedCache<K, V> createCache(final String cacheName, final Class<K> keyType, final Serializer<V> valueSerializer) {
         PersistentIndexedCacheParameters<K, V> parameters = new PersistentIndexedCacheParameters<K, V>(cacheName, keyType, valueSerializer)
-                .cacheDecorator(inMemoryDecorator);
+                .cacheDecorator(inMemoryDecorator)
+                .memoryMapped(isMemoryMapped(cacheName));
         return cache.createCache(parameters);
     }
 
+    private static boolean isMemoryMapped(String cacheName) {
+        // Windows does not allow a file to be replaced while it is mapped, and mappings are only released on garbage collection
+        return cacheName.equals("fileHashes") && Boolean.getBoolean(MAPPED_FILE_HASHES_TOGGLE) && !OperatingSystem.current().isWindows();
+    }
+
     public <T> T useCache(String operationDisplayName, Factory<? extends T> action) {
         return cache.useCache(operationDisplayName, action);
     }
@@ -60,6 +71,21 @@ public class DefaultTaskArtifactStateCacheAccess implements TaskArtifactStateCac
         cache.useCache(operationDisplayName, action);
     }
 
+    public <T> T useCacheShared(String operationDisplayName, Factory<? extends T> action) {
+        if (sharedAccess) {
+            return cache.useCacheShared(operationDisplayName, action);
+        }
+        return cache.useCache(operationDisplayName, action);
+    }
+
+    public void useCacheShared(String operationDisplayName, Runnable action) {
+        if (sharedAccess) {
+            cache.useCacheShared(operationDisplayName, action);
+        } else {
+            cache.useCache(operationDisplayName, action);
+        }
+    }
+
     public <T> T longRunningOperation(String operationDisplayName, Factory<? extends T> action) {
         return cache.longRunningOperation(operationDisplayName, action);
     }
@@ -40,9 +40,11 @@ public class InMemoryTaskArtifactCache implements CacheDecorator {
         static {
             DEFAULT_CAP_SIZES.put("fileSnapshots", 10000);
             DEFAULT_CAP_SIZES.put("taskArtifacts", 2000);
+            DEFAULT_CAP_SIZES.put("taskDurations", 2000);
             DEFAULT_CAP_SIZES.put("outputFileStates", 3000);
             DEFAULT_CAP_SIZES.put("fileHashes", 400000);
             DEFAULT_CAP_SIZES.put("compilationState", 1000);
+            DEFAULT_CAP_SIZES.put("directoryListings", 20000);
         }
 
         final HeapProportionalCacheSizer sizer;
@@ -131,6 +133,12 @@ public class InMemoryTaskArtifactCache implements CacheDecorator {
             theData = this.cache.getIfPresent(cacheId);
             if (theData != null) {
                 LOG.info("In-memory cache of {}: Size{{}}, {}", cacheId, theData.size() , theData.stats());
+            } else if (cacheName.equals("fileHashes") && Boolean.getBoolean(OffHeapFileHashCache.OFF_HEAP_TOGGLE)) {
+                long maxBytes = Long.getLong(OffHeapFileHashCache.MAX_SIZE_PROPERTY, OffHeapFileHashCache.DEFAULT_MAX_SIZE);
+                OffHeapFileHashCache offHeapCache = new OffHeapFileHashCache(maxBytes, NULL);
+                LOG.info("Creating off-heap in-memory cache of {}: MaxBytes{{}} MaxSize{{}}", cacheId, maxBytes, offHeapCache.getMaxEntries());
+                theData = offHeapCache;
+                this.cache.put(cacheId, theData);
             } else {
                 Integer maxSize = CACHE_CAPS.get(cacheName);
                 assert maxSize != null : "Unknown cache.";
@@ -0,0 +1,256 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.changedetection.state;
+
+import com.google.common.cache.AbstractCache;
+import com.google.common.cache.CacheStats;
+import com.google.common.collect.Lists;
+
+import java.nio.ByteBuffer;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * An in-memory cache of file hashes, keyed by absolute path, that keeps the hash, length and timestamp of each file in a fixed width record in a
+ * slab of off-heap memory. The slab is sized in bytes up front, so the cache holds no per-entry objects other than the path, which is usually
+ * interned and shared with the file snapshots. Entries are evicted using the CLOCK algorithm once the cache is full.
+ *
+ * <p>Values that are not {@link CachingFileSnapshotter.FileInfo} instances with a hash of the supported width are treated as the marker for a
+ * missing entry, so that the result of looking up a missing entry can be cached too.</p>
+ */
+class OffHeapFileHashCache extends AbstractCache<Object, Object> {
+    public static final String OFF_HEAP_TOGGLE = "org.gradle.cache.offheap.fileHashes";
+    public static final String MAX_SIZE_PROPERTY = "org.gradle.cache.offheap.fileHashes.maxBytes";
+    public static final long DEFAULT_MAX_SIZE = 32L * 1024 * 1024;
+
+    static final int HASH_WIDTH = 16;
+    // Record layout: flags (1 byte), algorithm index (1 byte), padding (6 bytes), length (8 bytes), timestamp (8 bytes), hash (16 bytes)
+    static final int RECORD_SIZE = 40;
+    private static final int FLAGS_OFFSET = 0;
+    private static final int ALGORITHM_OFFSET = 1;
+    private static final int LENGTH_OFFSET = 8;
+    private static final int TIMESTAMP_OFFSET = 16;
+    private static final int HASH_OFFSET = 24;
+    private static final byte PRESENT = 0;
+    private static final byte MISSING = 1;
+    private static final int MAX_ALGORITHMS = 128;
+
+    private final Object missingValue;
+    private final ByteBuffer slab;
+    // The keys of the open addressing hash table. The record of the key in slot i is stored at offset i * RECORD_SIZE of the slab.
+    private final String[] keys;
+    private final BitSet referenced;
+    private final int mask;
+    private final int maxEntries;
+    private final List<String> algorithms = Lists.newArrayList();
+    private int entries;
+    private int clockHand;
+    private long hitCount;
+    private long missCount;
+    private long evictionCount;
+
+    /**
+     * @param maxBytes The maximum size of the off-heap slab.
+     * @param missingValue The value that marks a missing entry.
+     */
+    OffHeapFileHashCache(long maxBytes, Object missingValue) {
+        int capacity = Integer.highestOneBit((int) Math.min(Integer.MAX_VALUE / RECORD_SIZE, Math.max(2, maxBytes / RECORD_SIZE)));
+        this.missingValue = missingValue;
+        this.slab = ByteBuffer.allocateDirect(capacity * RECORD_SIZE);
+        this.keys = new String[capacity];
+        this.referenced = new BitSet(capacity);
+        this.mask = capacity - 1;
+        this.maxEntries = Math.max(1, capacity / 4 * 3);
+    }
+
+    public synchronized Object getIfPresent(Object key) {
+        int slot = find((String) key);
+        if (slot < 0) {
+            missCount++;
+            return null;
+        }
+        hitCount++;
+        referenced.set(slot);
+        return read(slot);
+    }
+
+    @Override
+    public synchronized void put(Object key, Object value) {
+        String path = (String) key;
+        int algorithmIndex = value instanceof CachingFileSnapshotter.FileInfo ? algorithmIndex(((CachingFileSnapshotter.FileInfo) value).getAlgorithm()) : -1;
+        if (value != missingValue && (algorithmIndex < 0 || ((CachingFileSnapshotter.FileInfo) value).getHash().length != HASH_WIDTH)) {
+            // Cannot store the value, so make sure that a stale value is not returned later
+            int slot = find(path);
+            if (slot >= 0) {
+                delete(slot);
+            }
+            return;
+        }
+
+        int slot = find(path);
+        if (slot < 0) {
+            if (entries >= maxEntries) {
+                evict();
+            }
+            slot = insertionSlot(path);
+            keys[slot] = path;
+            entries++;
+        }
+        referenced.set(slot);
+        write(slot, value, algorithmIndex);
+    }
+
+    @Override
+    public synchronized void invalidateAll() {
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = null;
+        }
+        referenced.clear();
+        entries = 0;
+    }
+
+    @Override
+    public synchronized long size() {
+        return entries;
+    }
+
+    @Override
+    public synchronized CacheStats stats() {
+        return new CacheStats(hitCount, missCount, 0, 0, 0, evictionCount);
+    }
+
+    public int getMaxEntries() {
+        return maxEntries;
+    }
+
+    private Object read(int slot) {
+        int offset = slot * RECORD_SIZE;
+        if (slab.get(offset + FLAGS_OFFSET) == MISSING) {
+            return missingValue;
+        }
+        byte[] hash = new byte[HASH_WIDTH];
+        for (int i = 0; i < HASH_WIDTH; i++) {
+            hash[i] = slab.get(offset + HASH_OFFSET + i);
+        }
+        return new CachingFileSnapshotter.FileInfo(hash, slab.getLong(offset + LENGTH_OFFSET), slab.getLong(offset + TIMESTAMP_OFFSET), algorithms.get(slab.get(offset + ALGORITHM_OFFSET)));
+    }
+
+    private void write(int slot, Object value, int algorithmIndex) {
+        int offset = slot * RECORD_SIZE;
+        if (value == missingValue) {
+            slab.put(offset + FLAGS_OFFSET, MISSING);
+            return;
+        }
+        CachingFileSnapshotter.FileInfo fileInfo = (CachingFileSnapshotter.FileInfo) value;
+        slab.put(offset + FLAGS_OFFSET, PRESENT);
+        slab.put(offset + ALGORITHM_OFFSET, (byte) algorithmIndex);
+        slab.putLong(offset + LENGTH_OFFSET, fileInfo.getLength());
+        slab.putLong(offset + TIMESTAMP_OFFSET, fileInfo.getTimestamp());
+        byte[] hash = fileInfo.getHash();
+        for (int i = 0; i < HASH_WIDTH; i++) {
+            slab.put(offset + HASH_OFFSET + i, hash[i]);
+        }
+    }
+
+    private int algorithmIndex(String algorithm) {
+        int index = algorithms.indexOf(algorithm);
+        if (index < 0 && algorithms.size() < MAX_ALGORITHMS) {
+            algorithms.add(algorithm);
+            index = algorithms.size() - 1;
+        }
+        return index;
+    }
+
+    private int find(String key) {
+        int slot = home(key);
+        while (keys[slot] != null) {
+            if (keys[slot].equals(key)) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    private int insertionSlot(String key) {
+        int slot = home(key);
+        while (keys[slot] != null) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private int home(String key) {
+        int hash = key.hashCode();
+        // Spread the bits of the hash, as the table size is a power of two
+        hash ^= (hash >>> 20) ^ (hash >>> 12);
+        hash ^= (hash >>> 7) ^ (hash >>> 4);
+        return hash & mask;
+    }
+
+    /**
+     * Evicts the first entry from the clock hand onwards that has not been used since the hand last passed it.
+     */
+    private void evict() {
+        while (true) {
+            int slot = clockHand;
+            clockHand = (clockHand + 1) & mask;
+            if (keys[slot] == null) {
+                continue;
+            }
+            if (referenced.get(slot)) {
+                referenced.clear(slot);
+                continue;
+            }
+            delete(slot);
+            evictionCount++;
+            return;
+        }
+    }
+
+    /**
+     * Removes the entry in the given slot, moving later entries of the same probe sequence back so that lookups do not need tombstones.
+     */
+    private void delete(int slot) {
+        int gap = slot;
+        keys[gap] = null;
+        referenced.clear(gap);
+        entries--;
+        int next = gap;
+        while (true) {
+            next = (next + 1) & mask;
+            String key = keys[next];
+            if (key == null) {
+                return;
+            }
+            int home = home(key);
+            boolean canMove = gap <= next ? home <= gap || home > next : home <= gap && home > next;
+            if (canMove) {
+                keys[gap] = key;
+                keys[next] = null;
+                referenced.set(gap, referenced.get(next));
+                referenced.clear(next);
+                int from = next * RECORD_SIZE;
+                int to = gap * RECORD_SIZE;
+                for (int i = 0; i < RECORD_SIZE; i += 8) {
+                    slab.putLong(to + i, slab.getLong(from + i));
+                }
+                gap = next;
+            }
+        }
+    }
+}
@@ -0,0 +1,235 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.changedetection.state;
+
+import com.google.common.collect.Lists;
+import org.gradle.api.Nullable;
+import org.gradle.api.file.FileCollection;
+import org.gradle.api.file.FileVisitDetails;
+import org.gradle.api.file.FileVisitor;
+import org.gradle.api.internal.cache.StringInterner;
+import org.gradle.api.internal.file.FileResolver;
+import org.gradle.api.internal.file.FileTreeInternal;
+import org.gradle.api.internal.file.collections.DirectoryWalker;
+import org.gradle.internal.UncheckedException;
+import org.gradle.internal.operations.BuildOperation;
+import org.gradle.internal.operations.BuildOperationProcessor;
+import org.gradle.internal.operations.BuildOperationQueue;
+import org.gradle.internal.operations.BuildOperationWorker;
+import org.gradle.internal.operations.MultipleBuildOperationFailures;
+
+import java.io.File;
+import java.util.*;
+
+/**
+ * A file collection snapshotter that walks the file trees of the input concurrently, and hashes the files whose hash is not already cached on the
+ * build operation worker pool. The file hash cache is only ever accessed from the calling thread while it holds the cache lock, so the worker
+ * threads never contend for it. When a directory walker is given, the worker threads use it with shared access to the cache. Without the
+ * {@link DefaultTaskArtifactStateCacheAccess#SHARED_ACCESS_TOGGLE shared access toggle} this access is exclusive, and the walks would run one
+ * at a time, so no directory walker is given in that case.
+ *
+ * <p>The snapshots produced are identical to those produced by {@link DefaultFileCollectionSnapshotter}.</p>
+ */
+public class ParallelFileCollectionSnapshotter extends DefaultFileCollectionSnapshotter {
+    public static final String PARALLEL_SNAPSHOT_TOGGLE = "org.gradle.parallel.snapshots";
+
+    private final CachingFileSnapshotter snapshotter;
+    private final TaskArtifactStateCacheAccess cacheAccess;
+    private final StringInterner stringInterner;
+    private final BuildOperationProcessor buildOperationProcessor;
+
+    public ParallelFileCollectionSnapshotter(CachingFileSnapshotter snapshotter, TaskArtifactStateCacheAccess cacheAccess, StringInterner stringInterner, FileResolver fileResolver,
+                                             BuildOperationProcessor buildOperationProcessor) {
+        this(snapshotter, cacheAccess, stringInterner, fileResolver, buildOperationProcessor, null);
+    }
+
+    public ParallelFileCollectionSnapshotter(CachingFileSnapshotter snapshotter, TaskArtifactStateCacheAccess cacheAccess, StringInterner stringInterner, FileResolver fileResolver,
+                                             BuildOperationProcessor buildOperationProcessor, @Nullable DirectoryWalker directoryWalker) {
+        super(snapshotter, cacheAccess, stringInterner, fileResolver, directoryWalker);
+        this.snapshotter = snapshotter;
+        this.cacheAccess = cacheAccess;
+        this.stringInterner = stringInterner;
+        this.buildOperationProcessor = buildOperationProcessor;
+    }
+
+    @Override
+    public FileCollectionSnapshot snapshot(FileCollection input) {
+        final List<VisitedElement> visitedElements = visitTrees(resolveFileTrees(input));
+
+        if (visitedElements.isEmpty()) {
+            return new FileCollectionSnapshotImpl(Collections.<String, IncrementalFileSnapshot>emptyMap());
+        }
+
+        // Use the cached hashes where they are still valid, and collect the files that need to be hashed
+        final List<VisitedElement> uniqueElements = Lists.newArrayList();
+        final List<VisitedElement> filesToHash = Lists.newArrayList();
+        cacheAccess.useCacheShared("Create file snapshot", new Runnable() {
+            public void run() {
+                Set<String> seen = new HashSet<String>();
+                for (VisitedElement element : visitedElements) {
+                    element.absolutePath = stringInterner.intern(element.file.getAbsolutePath());
+                    if (!seen.add(element.absolutePath)) {
+                        continue;
+                    }
+                    uniqueElements.add(element);
+                    if (!element.directory) {
+                        element.fileInfo = snapshotter.lookup(element.file, element.length, element.timestamp);
+                        if (element.fileInfo == null) {
+                            filesToHash.add(element);
+                        }
+                    }
+                }
+            }
+        });
+
+        hashFiles(filesToHash);
+
+        final Map<String, IncrementalFileSnapshot> snapshots = new HashMap<String, IncrementalFileSnapshot>();
+        cacheAccess.useCacheShared("Create file snapshot", new Runnable() {
+            public void run() {
+                for (VisitedElement element : filesToHash) {
+                    snapshotter.store(element.file, element.fileInfo);
+                }
+                for (VisitedElement element : uniqueElements) {
+                    if (element.directory) {
+                        snapshots.put(element.absolutePath, DirSnapshot.getInstance());
+                    } else {
+                        snapshots.put(element.absolutePath, new FileHashSnapshot(element.fileInfo.getHash()));
+                    }
+                }
+            }
+        });
+
+        return new FileCollectionSnapshotImpl(snapshots);
+    }
+
+    private List<VisitedElement> visitTrees(List<FileTreeInternal> fileTrees) {
+        List<VisitTreeOperation> operations = Lists.newArrayListWithCapacity(fileTrees.size());
+        for (FileTreeInternal fileTree : fileTrees) {
+            operations.add(new VisitTreeOperation(fileTree));
+        }
+        execute(operations, new BuildOperationWorker<VisitTreeOperation>() {
+            public String getDisplayName() {
+                return "file tree visitor";
+            }
+
+            public void execute(VisitTreeOperation operation) {
+                operation.visit();
+            }
+        });
+
+        // Merge in the order of the trees, so that the result does not depend on scheduling
+        List<VisitedElement> visitedElements = Lists.newArrayList();
+        for (VisitTreeOperation operation : operations) {
+            visitedElements.addAll(operation.visitedElements);
+        }
+        return visitedElements;
+    }
+
+    private void hashFiles(List<VisitedElement> filesToHash) {
+        List<HashFileOperation> operations = Lists.newArrayListWithCapacity(filesToHash.size());
+        for (VisitedElement element : filesToHash) {
+            operations.add(new HashFileOperation(element));
+        }
+        execute(operations, new BuildOperationWorker<HashFileOperation>() {
+            public String getDisplayName() {
+                return "file hasher";
+            }
+
+            public void execute(HashFileOperation operation) {
+                VisitedElement element = operation.element;
+                element.fileInfo = snapshotter.hash(element.file, element.length, element.timestamp);
+            }
+        });
+    }
+
+    private <T extends BuildOperation> void execute(List<T> operations, BuildOperationWorker<T> worker) {
+        if (operations.isEmpty()) {
+            return;
+        }
+        if (operations.size() == 1) {
+            worker.execute(operations.get(0));
+            return;
+        }
+        BuildOperationQueue<T> queue = buildOperationProcessor.newQueue(worker, null);
+        for (T operation : operations) {
+            queue.add(operation);
+        }
+        try {
+            queue.waitForCompletion();
+        } catch (MultipleBuildOperationFailures e) {
+            // Rethrow a single failure as is, to match the failure reported by the serial snapshotter
+            if (e.getCauses().size() == 1) {
+                throw UncheckedException.throwAsUncheckedException(e.getCauses().get(0));
+            }
+            throw e;
+        }
+    }
+
+    private static class VisitedElement {
+        final File file;
+        final boolean directory;
+        final long length;
+        final long timestamp;
+        String absolutePath;
+        CachingFileSnapshotter.FileInfo fileInfo;
+
+        VisitedElement(FileVisitDetails details) {
+            this.file = details.getFile();
+            this.directory = details.isDirectory();
+            this.length = directory ? 0 : details.getSize();
+            this.timestamp = directory ? 0 : details.getLastModified();
+        }
+    }
+
+    private class VisitTreeOperation implements BuildOperation {
+        final FileTreeInternal fileTree;
+        final List<VisitedElement> visitedElements = Lists.newArrayList();
+
+        VisitTreeOperation(FileTreeInternal fileTree) {
+            this.fileTree = fileTree;
+        }
+
+        void visit() {
+            visitTree(fileTree, new FileVisitor() {
+                public void visitDir(FileVisitDetails dirDetails) {
+                    visitedElements.add(new VisitedElement(dirDetails));
+                }
+
+                public void visitFile(FileVisitDetails fileDetails) {
+                    visitedElements.add(new VisitedElement(fileDetails));
+                }
+            });
+        }
+
+        public String getDescription() {
+            return "visit " + fileTree;
+        }
+    }
+
+    private static class HashFileOperation implements BuildOperation {
+        final VisitedElement element;
+
+        HashFileOperation(VisitedElement element) {
+            this.element = element;
+        }
+
+        public String getDescription() {
+            return "hash " + element.file;
+        }
+    }
+}
@@ -115,19 +115,30 @@ public class DirectoryFileTree implements MinimalFileTree, PatternFilterableFile
         visitFrom(visitor, dir, new RelativePath(false));
     }
 
+    /**
+     * Visits the contents of this tree, using the given walker to walk the directories of the tree.
+     */
+    public void visit(FileVisitor visitor, DirectoryWalker directoryWalker) {
+        visitFrom(visitor, dir, new RelativePath(false), directoryWalker);
+    }
+
     /**
      * Process the specified file or directory.  If it is a directory, then its contents
      * (but not the directory itself) will be checked with {@link #isAllowed(FileTreeElement, Spec)} and notified to
      * the listener.  If it is a file, the file will be checked and notified.
      */
     public void visitFrom(FileVisitor visitor, File fileOrDirectory, RelativePath path) {
+        visitFrom(visitor, fileOrDirectory, path, directoryWalkerFactory.create());
+    }
+
+    private void visitFrom(FileVisitor visitor, File fileOrDirectory, RelativePath path, DirectoryWalker directoryWalker) {
         AtomicBoolean stopFlag = new AtomicBoolean();
         Spec<FileTreeElement> spec = patternSet.getAsSpec();
         if (fileOrDirectory.exists()) {
             if (fileOrDirectory.isFile()) {
                 processSingleFile(fileOrDirectory, visitor, spec, stopFlag);
             } else {
-                walkDir(fileOrDirectory, path, visitor, spec, stopFlag);
+                directoryWalker.walkDir(fileOrDirectory, path, visitor, spec, stopFlag, postfix);
             }
         } else {
             LOGGER.info("file or directory '{}', not found", fileOrDirectory);
@@ -142,10 +153,6 @@ public class DirectoryFileTree implements MinimalFileTree, PatternFilterableFile
         }
     }
 
-    private void walkDir(File file, RelativePath path, FileVisitor visitor, Spec<FileTreeElement> spec, AtomicBoolean stopFlag) {
-        directoryWalkerFactory.create().walkDir(file, path, visitor, spec, stopFlag, postfix);
-    }
-
     static boolean isAllowed(FileTreeElement element, Spec<FileTreeElement> spec) {
         return spec.isSatisfiedBy(element);
     }
@@ -17,6 +17,14 @@ package org.gradle.api.internal.hash;
 
 import java.io.File;
 
+/**
+ * Calculates a hash of the content of a file.
+ */
 public interface Hasher {
     byte[] hash(File file);
+
+    /**
+     * Returns the name of the algorithm used by this hasher. Hashes created by different algorithms must not be compared.
+     */
+    String getAlgorithm();
 }
@@ -0,0 +1,60 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.api.internal.hash;
+
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+import org.gradle.api.UncheckedIOException;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * A {@link Hasher} that uses the non-cryptographic 128 bit Murmur3 hash function, which is considerably cheaper to calculate than MD5.
+ */
+public class Murmur3Hasher implements Hasher {
+    public static final String FAST_HASHER_TOGGLE = "org.gradle.hashing.murmur3";
+    private static final String ALGORITHM = "MURMUR3_128";
+    private static final HashFunction HASH_FUNCTION = Hashing.murmur3_128();
+
+    public byte[] hash(File file) {
+        try {
+            InputStream instr = new FileInputStream(file);
+            try {
+                com.google.common.hash.Hasher hasher = HASH_FUNCTION.newHasher();
+                byte[] buffer = new byte[8192];
+                while (true) {
+                    int nread = instr.read(buffer);
+                    if (nread < 0) {
+                        break;
+                    }
+                    hasher.putBytes(buffer, 0, nread);
+                }
+                return hasher.hash().asBytes();
+            } finally {
+                instr.close();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(String.format("Failed to create %s hash for file %s.", ALGORITHM, file.getAbsolutePath()), e);
+        }
+    }
+
+    public String getAlgorithm() {
+        return ALGORITHM;
+    }
+}
@@ -19,34 +19,100 @@ package org.gradle.api.internal.initialization.loadercache;
 import com.google.common.base.Joiner;
 import com.google.common.base.Objects;
 import com.google.common.collect.HashMultiset;
+import com.google.common.collect.Iterables;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Multiset;
+import com.google.common.collect.Sets;
 import org.gradle.api.Nullable;
+import org.gradle.api.logging.Logger;
+import org.gradle.api.logging.Logging;
+import org.gradle.initialization.BuildCompletionListener;
+import org.gradle.internal.classloader.ClassLoaderVisitor;
 import org.gradle.internal.classloader.FilteringClassLoader;
 import org.gradle.internal.classloader.MutableURLClassLoader;
 import org.gradle.internal.classpath.ClassPath;
+import org.gradle.internal.classpath.DefaultClassPath;
+import org.gradle.util.Clock;
 
+import java.io.File;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
-public class DefaultClassLoaderCache implements ClassLoaderCache {
+/**
+ * Caches class loaders by class loader id and by the parent, classpath and filter of the class loader.
+ *
+ * <p>When prefix sharing is enabled, a class loader is not discarded once it is no longer used. It is kept idle, so that a later build can use
+ * it again, until the class loaders kept in memory by the idle class loaders have loaded more than {@link #MAX_IDLE_CLASSES} classes between
+ * them. In addition, a class loader for a classpath that starts with the whole classpath of another class loader uses that class loader as its
+ * parent, and only loads the remaining entries itself. This way, the classes loaded from the unchanged start of a classpath, such as the same
+ * plugin jars, are reused after the classpath has been extended. Classes loaded from the shared start of the classpath cannot see the
+ * remaining entries of the classpath.</p>
+ */
+public class DefaultClassLoaderCache implements ClassLoaderCache, BuildCompletionListener {
+    public static final String SHARE_PREFIXES_TOGGLE = "org.gradle.classloaders.sharePrefixes";
+    static final int MAX_IDLE_CLASSES = 20000;
+
+    private static final Logger LOGGER = Logging.getLogger(DefaultClassLoaderCache.class);
+    private static final ThreadLocal<Boolean> DEFINING = new ThreadLocal<Boolean>();
 
     private final Object lock = new Object();
     private final Map<ClassLoaderId, CachedClassLoader> byId = Maps.newHashMap();
     private final Map<ClassLoaderSpec, CachedClassLoader> bySpec = Maps.newHashMap();
+    private final Map<ClassLoaderSpec, CachedClassLoader> idle = Maps.newLinkedHashMap();
     private final ClassPathSnapshotter snapshotter;
+    private final boolean sharePrefixes;
+    private final int maxIdleClasses;
+    private final AtomicLong snapshotTime = new AtomicLong();
+    private final AtomicInteger classesLoaded = new AtomicInteger();
+    private final AtomicLong classLoadTime = new AtomicLong();
+    private int created;
+    private int hits;
+    private int misses;
+    private int shared;
+    private int evicted;
+    private long creationTime;
+    private long savedTime;
 
     public DefaultClassLoaderCache(ClassPathSnapshotter snapshotter) {
+        this(snapshotter, false);
+    }
+
+    public DefaultClassLoaderCache(ClassPathSnapshotter snapshotter, boolean sharePrefixes) {
+        this(snapshotter, sharePrefixes, MAX_IDLE_CLASSES);
+    }
+
+    DefaultClassLoaderCache(ClassPathSnapshotter snapshotter, boolean sharePrefixes, int maxIdleClasses) {
         this.snapshotter = snapshotter;
+        this.sharePrefixes = sharePrefixes;
+        this.maxIdleClasses = maxIdleClasses;
     }
 
     public ClassLoader get(ClassLoaderId id, ClassPath classPath, ClassLoader parent, @Nullable FilteringClassLoader.Spec filterSpec) {
+        long start = System.nanoTime();
         ClassPathSnapshot classPathSnapshot = snapshotter.snapshot(classPath);
+        snapshotTime.addAndGet(System.nanoTime() - start);
         ClassLoaderSpec spec = new ClassLoaderSpec(parent, classPathSnapshot, filterSpec);
 
         synchronized (lock) {
             CachedClassLoader cachedLoader = byId.get(id);
             if (cachedLoader == null || !cachedLoader.is(spec)) {
+                int createdBefore = created;
+                long creationStart = System.nanoTime();
                 CachedClassLoader newLoader = getAndRetainLoader(classPath, spec, id);
+                if (created > createdBefore) {
+                    misses++;
+                    creationTime += System.nanoTime() - creationStart;
+                } else {
+                    hits++;
+                    savedTime += newLoader.cost();
+                }
                 byId.put(id, newLoader);
 
                 if (cachedLoader != null) {
@@ -55,11 +121,39 @@ public class DefaultClassLoaderCache implements ClassLoaderCache {
 
                 return newLoader.classLoader;
             } else {
+                hits++;
+                savedTime += cachedLoader.cost();
                 return cachedLoader.classLoader;
             }
         }
     }
 
+    /**
+     * Logs how much time was spent snapshotting classpaths, compared to the time saved by reusing class loaders, since the previous build completed.
+     * The time saved by reusing a class loader is the time it took to create the class loader and to load classes from it.
+     */
+    @Override
+    public void completed() {
+        synchronized (lock) {
+            if (hits > 0 || misses > 0) {
+                LOGGER.info("Class loader cache: {} hits and {} misses, of which {} shared a parent class loader. Spent {} snapshotting classpaths and {} creating class loaders, and saved {} by reusing class loaders.",
+                    hits, misses, shared, prettyTime(snapshotTime.getAndSet(0)), prettyTime(creationTime), prettyTime(savedTime));
+                LOGGER.info("Class loader cache: loaded {} classes in {}. {} class loaders are idle, {} were evicted.",
+                    classesLoaded.getAndSet(0), prettyTime(classLoadTime.getAndSet(0)), idle.size(), evicted);
+            }
+            hits = 0;
+            misses = 0;
+            shared = 0;
+            evicted = 0;
+            creationTime = 0;
+            savedTime = 0;
+        }
+    }
+
+    private static String prettyTime(long nanos) {
+        return Clock.prettyTime(TimeUnit.NANOSECONDS.toMillis(nanos));
+    }
+
     @Override
     public void remove(ClassLoaderId id) {
         synchronized (lock) {
@@ -72,22 +166,170 @@ public class DefaultClassLoaderCache implements ClassLoaderCache {
 
     private CachedClassLoader getAndRetainLoader(ClassPath classPath, ClassLoaderSpec spec, ClassLoaderId id) {
         CachedClassLoader cachedLoader = bySpec.get(spec);
+        if (cachedLoader == null) {
+            cachedLoader = idle.remove(spec);
+            if (cachedLoader != null) {
+                if (revive(cachedLoader)) {
+                    bySpec.put(spec, cachedLoader);
+                } else {
+                    evicted++;
+                    cachedLoader = null;
+                }
+            }
+        }
         if (cachedLoader == null) {
             ClassLoader classLoader;
             CachedClassLoader parentCachedLoader = null;
+            ClassLoaderId childId = new ChildClassLoaderId();
+            if (spec.isFiltered()) {
+                parentCachedLoader = getAndRetainLoader(classPath, spec.unfiltered(), childId);
+            } else if (sharePrefixes) {
+                parentCachedLoader = getAndRetainPrefixLoader(classPath, spec, childId);
+            }
+            long start = System.nanoTime();
             if (spec.isFiltered()) {
-                parentCachedLoader = getAndRetainLoader(classPath, spec.unfiltered(), id);
                 classLoader = new FilteringClassLoader(parentCachedLoader.classLoader, spec.filterSpec);
+            } else if (parentCachedLoader != null) {
+                List<File> files = classPath.getAsFiles();
+                classLoader = new TimingClassLoader(parentCachedLoader.classLoader, new DefaultClassPath(files.subList(parentCachedLoader.classPath.getAsFiles().size(), files.size())));
+                shared++;
+                savedTime += parentCachedLoader.cost();
             } else {
-                classLoader = new MutableURLClassLoader(spec.parent, classPath);
+                classLoader = new TimingClassLoader(spec.parent, classPath);
             }
-            cachedLoader = new CachedClassLoader(classLoader, spec, parentCachedLoader);
+            cachedLoader = new CachedClassLoader(classLoader, spec, classPath, parentCachedLoader, childId, System.nanoTime() - start);
             bySpec.put(spec, cachedLoader);
+            created++;
         }
 
         return cachedLoader.retain(id);
     }
 
+    /**
+     * Returns the class loader to use as the parent for the given classpath, which loads the start of the classpath. This is an existing class
+     * loader whose whole classpath is the start of the given classpath, if any.
+     */
+    @Nullable
+    private CachedClassLoader getAndRetainPrefixLoader(ClassPath classPath, ClassLoaderSpec spec, ClassLoaderId childId) {
+        List<File> files = classPath.getAsFiles();
+        int longestPrefix = 0;
+        for (CachedClassLoader candidate : Iterables.concat(bySpec.values(), idle.values())) {
+            if (candidate.spec.isFiltered() || !Objects.equal(candidate.spec.parent, spec.parent)) {
+                continue;
+            }
+            List<File> candidateFiles = candidate.classPath.getAsFiles();
+            int common = commonPrefixLength(files, candidateFiles);
+            if (common == candidateFiles.size() && common < files.size()) {
+                longestPrefix = Math.max(longestPrefix, common);
+            }
+        }
+
+        if (longestPrefix > 0) {
+            ClassPath prefix = new DefaultClassPath(files.subList(0, longestPrefix));
+            ClassLoaderSpec prefixSpec = new ClassLoaderSpec(spec.parent, snapshotter.snapshot(prefix), null);
+            if (bySpec.containsKey(prefixSpec) || idle.containsKey(prefixSpec)) {
+                return getAndRetainLoader(prefix, prefixSpec, childId);
+            }
+            // The start of the classpath has changed on the file system, so cannot share the existing class loader
+        }
+        return null;
+    }
+
+    private static int commonPrefixLength(List<File> files, List<File> otherFiles) {
+        int length = 0;
+        while (length < files.size() && length < otherFiles.size() && files.get(length).equals(otherFiles.get(length))) {
+            length++;
+        }
+        return length;
+    }
+
+    /**
+     * Makes an idle class loader usable again, by retaining its parent. Returns false when the parent has been replaced by another class loader.
+     */
+    private boolean revive(CachedClassLoader cachedLoader) {
+        CachedClassLoader parent = cachedLoader.parent;
+        if (parent == null) {
+            return true;
+        }
+        CachedClassLoader current = bySpec.get(parent.spec);
+        if (current == null) {
+            CachedClassLoader idleParent = idle.get(parent.spec);
+            if ((idleParent != null && idleParent != parent) || !revive(parent)) {
+                return false;
+            }
+            idle.remove(parent.spec);
+            bySpec.put(parent.spec, parent);
+        } else if (current != parent) {
+            return false;
+        }
+        parent.retain(cachedLoader.childId);
+        return true;
+    }
+
+    /**
+     * Keeps the given class loader idle, then evicts the least recently released idle class loaders until the class loaders that the idle class
+     * loaders keep in memory have loaded no more than the maximum number of classes.
+     */
+    private void makeIdle(CachedClassLoader cachedLoader) {
+        idle.put(cachedLoader.spec, cachedLoader);
+        while (!idle.isEmpty() && retainedClassCount(retainedLoaders(idle.values())) > maxIdleClasses) {
+            evict(idle.values().iterator().next());
+        }
+    }
+
+    /**
+     * Evicts the given idle class loader, along with the idle class loaders that use it as an ancestor. These cannot be revived without the
+     * evicted class loader, and would keep it in memory.
+     */
+    private void evict(CachedClassLoader evictedLoader) {
+        Iterator<CachedClassLoader> iterator = idle.values().iterator();
+        while (iterator.hasNext()) {
+            CachedClassLoader idleLoader = iterator.next();
+            if (idleLoader == evictedLoader || retainedLoaders(Collections.singleton(idleLoader)).contains(evictedLoader.classLoader)) {
+                iterator.remove();
+                evicted++;
+            }
+        }
+    }
+
+    /**
+     * Returns the class loaders of this cache that are kept in memory by the given class loaders and not by a class loader in use. These are
+     * the class loaders themselves and their ancestors, including those reached through the parent of their spec, which may belong to
+     * class loaders that were used by a previous build.
+     */
+    private Set<ClassLoader> retainedLoaders(Collection<CachedClassLoader> cachedLoaders) {
+        final Set<ClassLoader> inUse = Sets.newIdentityHashSet();
+        for (CachedClassLoader cachedLoader : bySpec.values()) {
+            inUse.add(cachedLoader.classLoader);
+        }
+        final Set<ClassLoader> visited = Sets.newIdentityHashSet();
+        final Set<ClassLoader> retained = Sets.newIdentityHashSet();
+        ClassLoaderVisitor visitor = new ClassLoaderVisitor() {
+            @Override
+            public void visit(ClassLoader classLoader) {
+                if (classLoader == null || inUse.contains(classLoader) || !visited.add(classLoader)) {
+                    return;
+                }
+                if (classLoader instanceof TimingClassLoader) {
+                    retained.add(classLoader);
+                }
+                super.visit(classLoader);
+            }
+        };
+        for (CachedClassLoader cachedLoader : cachedLoaders) {
+            visitor.visit(cachedLoader.classLoader);
+        }
+        return retained;
+    }
+
+    private static int retainedClassCount(Set<ClassLoader> classLoaders) {
+        int classCount = 0;
+        for (ClassLoader classLoader : classLoaders) {
+            classCount += ((TimingClassLoader) classLoader).classCount.get();
+        }
+        return classCount;
+    }
+
     @Override
     public int size() {
         synchronized (lock) {
@@ -135,13 +377,33 @@ public class DefaultClassLoaderCache implements ClassLoaderCache {
     private class CachedClassLoader {
         private final ClassLoader classLoader;
         private final ClassLoaderSpec spec;
+        private final ClassPath classPath;
         private final CachedClassLoader parent;
+        private final ClassLoaderId childId;
+        private final long creationTime;
         private final Multiset<ClassLoaderId> usedBy = HashMultiset.create();
 
-        private CachedClassLoader(ClassLoader classLoader, ClassLoaderSpec spec, @Nullable CachedClassLoader parent) {
+        private CachedClassLoader(ClassLoader classLoader, ClassLoaderSpec spec, ClassPath classPath, @Nullable CachedClassLoader parent, ClassLoaderId childId, long creationTime) {
             this.classLoader = classLoader;
             this.spec = spec;
+            this.classPath = classPath;
             this.parent = parent;
+            this.childId = childId;
+            this.creationTime = creationTime;
+        }
+
+        /**
+         * Returns the time spent creating this class loader and loading classes from it.
+         */
+        public long cost() {
+            long cost = creationTime;
+            if (classLoader instanceof TimingClassLoader) {
+                cost += ((TimingClassLoader) classLoader).loadTime.get();
+            }
+            if (parent != null) {
+                cost += parent.cost();
+            }
+            return cost;
         }
 
         public boolean is(ClassLoaderSpec spec) {
@@ -161,9 +423,12 @@ public class DefaultClassLoaderCache implements ClassLoaderCache {
             if (usedBy.remove(loaderId)) {
                 if (usedBy.isEmpty()) {
                     if (parent != null) {
-                        parent.release(loaderId);
+                        parent.release(childId);
                     }
                     bySpec.remove(spec);
+                    if (sharePrefixes && !spec.isFiltered()) {
+                        makeIdle(this);
+                    }
                 }
             } else {
                 throw new IllegalStateException("Classloader '" + this + "' not used by '" + loaderId + "'");
@@ -171,6 +436,47 @@ public class DefaultClassLoaderCache implements ClassLoaderCache {
         }
     }
 
+    /**
+     * Identifies a class loader that uses another cached class loader as its parent.
+     */
+    private static class ChildClassLoaderId implements ClassLoaderId {
+    }
+
+    /**
+     * Records the number of classes defined and the time spent defining them. Time spent defining classes from within another class definition,
+     * for example a super class, is only counted once.
+     */
+    private class TimingClassLoader extends MutableURLClassLoader {
+        private final AtomicLong loadTime = new AtomicLong();
+        private final AtomicInteger classCount = new AtomicInteger();
+
+        TimingClassLoader(ClassLoader parent, ClassPath classPath) {
+            super(parent, classPath);
+        }
+
+        @Override
+        protected Class<?> findClass(String name) throws ClassNotFoundException {
+            boolean outermost = DEFINING.get() == null;
+            if (outermost) {
+                DEFINING.set(Boolean.TRUE);
+            }
+            long start = System.nanoTime();
+            try {
+                Class<?> type = super.findClass(name);
+                classCount.incrementAndGet();
+                classesLoaded.incrementAndGet();
+                return type;
+            } finally {
+                if (outermost) {
+                    long time = System.nanoTime() - start;
+                    loadTime.addAndGet(time);
+                    classLoadTime.addAndGet(time);
+                    DEFINING.remove();
+                }
+            }
+        }
+    }
+
     // Used in org.gradle.api.internal.initialization.loadercache.ClassLoadersCachingIntegrationTest
     @SuppressWarnings("UnusedDeclaration")
     public void assertInternalIntegrity() {
@@ -20,20 +20,42 @@ import com.google.common.collect.Iterators;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Sets;
 import org.gradle.api.internal.changedetection.state.FileSnapshotter;
+import org.gradle.api.logging.Logger;
+import org.gradle.api.logging.Logging;
 import org.gradle.cache.CacheAccess;
+import org.gradle.initialization.BuildCompletionListener;
 import org.gradle.internal.classpath.ClassPath;
+import org.gradle.util.Clock;
 import org.gradle.util.GFileUtils;
 
 import java.io.File;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.zip.Adler32;
 
-public class HashClassPathSnapshotter implements ClassPathSnapshotter {
+/**
+ * Creates snapshots based on the hashes of the files of a classpath.
+ *
+ * <p>The snapshot of each classpath entry is kept until the end of the build, so that an entry shared by several classpaths is only hashed
+ * once per build. The snapshot of a file entry, such as a jar, is used while the length and timestamp of the file are unchanged. The snapshot
+ * of a directory entry is used until the end of the build.</p>
+ */
+public class HashClassPathSnapshotter implements ClassPathSnapshotter, BuildCompletionListener {
+    private static final Logger LOGGER = Logging.getLogger(HashClassPathSnapshotter.class);
 
     private final FileSnapshotter fileSnapshotter;
     private final CacheAccess cacheAccess;
+    private final ConcurrentMap<File, EntrySnapshot> entries = new ConcurrentHashMap<File, EntrySnapshot>();
+    private final AtomicInteger entriesHashed = new AtomicInteger();
+    private final AtomicInteger entriesReused = new AtomicInteger();
+    private final AtomicLong hashTime = new AtomicLong();
+    private final AtomicLong savedTime = new AtomicLong();
 
     public HashClassPathSnapshotter(FileSnapshotter fileSnapshotter, CacheAccess cacheAccess) {
         this.fileSnapshotter = fileSnapshotter;
@@ -41,20 +63,67 @@ public class HashClassPathSnapshotter implements ClassPathSnapshotter {
     }
 
     public ClassPathSnapshot snapshot(ClassPath classPath) {
-        final List<String> visitedFilePaths = Lists.newLinkedList();
-        final Set<File> visitedDirs = Sets.newLinkedHashSet();
         final List<File> cpFiles = classPath.getAsFiles();
-
-        final Adler32 checksum = new Adler32();
-        cacheAccess.useCache("Snapshot classpath", new Runnable() {
-            @Override
-            public void run() {
-                hash(checksum, visitedFilePaths, visitedDirs, cpFiles.iterator());
+        final EntrySnapshot[] snapshots = new EntrySnapshot[cpFiles.size()];
+        boolean complete = true;
+        for (int i = 0; i < snapshots.length; i++) {
+            EntrySnapshot snapshot = entries.get(cpFiles.get(i));
+            if (snapshot != null && snapshot.isUpToDate(cpFiles.get(i))) {
+                snapshots[i] = snapshot;
+                entriesReused.incrementAndGet();
+                savedTime.addAndGet(snapshot.hashTime);
+            } else {
+                complete = false;
             }
-        });
+        }
+
+        if (!complete) {
+            cacheAccess.useCache("Snapshot classpath", new Runnable() {
+                @Override
+                public void run() {
+                    for (int i = 0; i < snapshots.length; i++) {
+                        if (snapshots[i] == null) {
+                            snapshots[i] = snapshotEntry(cpFiles.get(i));
+                        }
+                    }
+                }
+            });
+        }
+
+        List<String> visitedFilePaths = Lists.newArrayList();
+        Adler32 checksum = new Adler32();
+        for (EntrySnapshot snapshot : snapshots) {
+            visitedFilePaths.addAll(snapshot.files);
+            updateChecksum(checksum, snapshot.hash);
+        }
         return new ClassPathSnapshotImpl(visitedFilePaths, checksum.getValue());
     }
 
+    @Override
+    public void completed() {
+        if (entriesHashed.get() > 0 || entriesReused.get() > 0) {
+            LOGGER.info("Hashed {} classpath entries in {} and reused {} classpath entry snapshots, saving {}.",
+                entriesHashed.getAndSet(0), Clock.prettyTime(TimeUnit.NANOSECONDS.toMillis(hashTime.getAndSet(0))),
+                entriesReused.getAndSet(0), Clock.prettyTime(TimeUnit.NANOSECONDS.toMillis(savedTime.getAndSet(0))));
+        }
+        entries.clear();
+    }
+
+    private EntrySnapshot snapshotEntry(File entry) {
+        long start = System.nanoTime();
+        List<String> visitedFilePaths = Lists.newArrayList();
+        Set<File> visitedDirs = Sets.newHashSet();
+        Adler32 checksum = new Adler32();
+        hash(checksum, visitedFilePaths, visitedDirs, Iterators.singletonIterator(entry));
+        long time = System.nanoTime() - start;
+
+        EntrySnapshot snapshot = new EntrySnapshot(visitedFilePaths, checksum.getValue(), entry, time);
+        entries.put(entry, snapshot);
+        entriesHashed.incrementAndGet();
+        hashTime.addAndGet(time);
+        return snapshot;
+    }
+
     private void hash(Adler32 combinedHash, List<String> visitedFilePaths, Set<File> visitedDirs, Iterator<File> toHash) {
         while (toHash.hasNext()) {
             File file = GFileUtils.canonicalise(toHash.next());
@@ -72,6 +141,34 @@ public class HashClassPathSnapshotter implements ClassPathSnapshotter {
         }
     }
 
+    private static void updateChecksum(Adler32 checksum, long value) {
+        for (int i = 0; i < 8; i++) {
+            checksum.update((int) (value >>> (i * 8)));
+        }
+    }
+
+    private static class EntrySnapshot {
+        private final List<String> files;
+        private final long hash;
+        private final boolean directory;
+        private final long length;
+        private final long lastModified;
+        private final long hashTime;
+
+        EntrySnapshot(List<String> files, long hash, File entry, long hashTime) {
+            this.files = files;
+            this.hash = hash;
+            this.directory = entry.isDirectory();
+            this.length = directory ? 0 : entry.length();
+            this.lastModified = directory ? 0 : entry.lastModified();
+            this.hashTime = hashTime;
+        }
+
+        boolean isUpToDate(File entry) {
+            return directory || (entry.length() == length && entry.lastModified() == lastModified);
+        }
+    }
+
     private static class ClassPathSnapshotImpl implements ClassPathSnapshot {
         private final List<String> files;
         private final long hash;
@@ -52,6 +52,7 @@ import org.gradle.api.tasks.WorkResult;
 import org.gradle.configuration.ScriptPluginFactory;
 import org.gradle.configuration.project.ProjectConfigurationActionContainer;
 import org.gradle.configuration.project.ProjectEvaluator;
+import org.gradle.execution.ParallelProjectConfigurer;
 import org.gradle.groovy.scripts.ScriptSource;
 import org.gradle.internal.Actions;
 import org.gradle.internal.Factories;
@@ -93,6 +94,8 @@ import static org.gradle.util.GUtil.isTrue;
 public abstract class AbstractProject extends AbstractPluginAware implements ProjectInternal, DynamicObjectAware {
 
     private static Logger buildLogger = Logging.getLogger(Project.class);
+    private static final ThreadLocal<AbstractProject> CONFIGURING = new ThreadLocal<AbstractProject>();
+    private static final ThreadLocal<AbstractProject> EXECUTING = new ThreadLocal<AbstractProject>();
     private final ClassLoaderScope classLoaderScope;
     private final ClassLoaderScope baseClassLoaderScope;
     private ServiceRegistry services;
@@ -149,6 +152,9 @@ public abstract class AbstractProject extends AbstractPluginAware implements Pro
 
     private final Path path;
 
+    private volatile boolean accessedOtherProjects;
+    private volatile boolean tasksAccessedOtherProjects;
+
     public AbstractProject(String name,
                            ProjectInternal parent,
                            File projectDir,
@@ -276,6 +282,7 @@ public abstract class AbstractProject extends AbstractPluginAware implements Pro
     }
 
     public ProjectInternal getRootProject() {
+        onAccess(rootProject != this);
         return rootProject;
     }
 
@@ -318,6 +325,7 @@ public abstract class AbstractProject extends AbstractPluginAware implements Pro
     }
 
     public ProjectInternal getParent() {
+        onAccess(parent != null);
         return parent;
     }
 
@@ -375,6 +383,7 @@ public abstract class AbstractProject extends AbstractPluginAware implements Pro
     }
 
     public Map<String, Project> getChildProjects() {
+        onAccess(!childProjects.isEmpty());
         return childProjects;
     }
 
@@ -484,15 +493,72 @@ public abstract class AbstractProject extends AbstractPluginAware implements Pro
         if (!isTrue(path)) {
             throw new InvalidUserDataException("A path must be specified!");
         }
-        return getProjectRegistry().getProject(absoluteProjectPath(path));
+        ProjectInternal project = getProjectRegistry().getProject(absoluteProjectPath(path));
+        onAccess(project != null && project != this);
+        return project;
     }
 
     public Set<Project> getAllprojects() {
-        return new TreeSet<Project>(getProjectRegistry().getAllProjects(getPath()));
+        Set<Project> projects = new TreeSet<Project>(getProjectRegistry().getAllProjects(getPath()));
+        onAccess(projects.size() > 1);
+        return projects;
     }
 
     public Set<Project> getSubprojects() {
-        return new TreeSet<Project>(getProjectRegistry().getSubProjects(getPath()));
+        Set<Project> projects = new TreeSet<Project>(getProjectRegistry().getSubProjects(getPath()));
+        onAccess(!projects.isEmpty());
+        return projects;
+    }
+
+    /**
+     * Records that this project has accessed other projects, when it happens while this project is being configured or while one of its tasks
+     * is being executed.
+     */
+    private void onAccess(boolean otherProjects) {
+        if (!otherProjects) {
+            return;
+        }
+        if (CONFIGURING.get() == this) {
+            accessedOtherProjects = true;
+        } else if (EXECUTING.get() == this) {
+            tasksAccessedOtherProjects = true;
+        }
+    }
+
+    /**
+     * Records that the project being configured by the current thread, or whose task is being executed by the current thread, if any, has
+     * accessed other projects.
+     */
+    public static void onOtherProjectsAccessed() {
+        AbstractProject project = CONFIGURING.get();
+        if (project != null) {
+            project.accessedOtherProjects = true;
+            return;
+        }
+        project = EXECUTING.get();
+        if (project != null) {
+            project.tasksAccessedOtherProjects = true;
+        }
+    }
+
+    /**
+     * Records the access to other projects made by the current thread against the tasks of the given project, until {@link #afterTaskExecution()}
+     * is called.
+     */
+    public static void beforeTaskExecution(Project project) {
+        EXECUTING.set(project instanceof AbstractProject ? (AbstractProject) project : null);
+    }
+
+    public static void afterTaskExecution() {
+        EXECUTING.remove();
+    }
+
+    public boolean hasAccessedOtherProjects() {
+        return accessedOtherProjects;
+    }
+
+    public boolean hasTasksAccessedOtherProjects() {
+        return tasksAccessedOtherProjects;
     }
 
     public void subprojects(Action<? super Project> action) {
@@ -505,6 +571,9 @@ public abstract class AbstractProject extends AbstractPluginAware implements Pro
 
     public <T> Iterable<T> configure(Iterable<T> objects, Action<? super T> configureAction) {
         for (T object : objects) {
+            if (object instanceof ProjectInternal) {
+                ParallelProjectConfigurer.assertCanConfigure((ProjectInternal) object);
+            }
             configureAction.execute(object);
         }
         return objects;
@@ -529,7 +598,14 @@ public abstract class AbstractProject extends AbstractPluginAware implements Pro
     }
 
     public AbstractProject evaluate() {
-        getProjectEvaluator().evaluate(this, state);
+        ParallelProjectConfigurer.assertCanEvaluate(this);
+        AbstractProject previous = CONFIGURING.get();
+        CONFIGURING.set(this);
+        try {
+            getProjectEvaluator().evaluate(this, state);
+        } finally {
+            CONFIGURING.set(previous);
+        }
         state.rethrowFailure();
         return this;
     }
@@ -578,6 +654,7 @@ public abstract class AbstractProject extends AbstractPluginAware implements Pro
     }
 
     public void evaluationDependsOnChildren() {
+        onAccess(!childProjects.isEmpty());
         for (Project project : childProjects.values()) {
             DefaultProject defaultProjectToEvaluate = (DefaultProject) project;
             evaluationDependsOn(defaultProjectToEvaluate);
@@ -861,10 +938,15 @@ public abstract class AbstractProject extends AbstractPluginAware implements Pro
     }
 
     public Project project(String path, Closure configureClosure) {
-        return ConfigureUtil.configure(configureClosure, project(path));
+        ProjectInternal project = project(path);
+        ParallelProjectConfigurer.assertCanConfigure(project);
+        return ConfigureUtil.configure(configureClosure, project);
     }
 
     public Object configure(Object object, Closure configureClosure) {
+        if (object instanceof ProjectInternal) {
+            ParallelProjectConfigurer.assertCanConfigure((ProjectInternal) object);
+        }
         return ConfigureUtil.configure(configureClosure, object);
     }
 
@@ -1006,7 +1088,7 @@ public abstract class AbstractProject extends AbstractPluginAware implements Pro
     public void model(Closure<?> modelRules) {
         ModelRegistry modelRegistry = getModelRegistry();
         if (TransformedModelDslBacking.isTransformedBlock(modelRules)) {
-            ClosureBackedAction.execute(new TransformedModelDslBacking(modelRegistry, this.getRootProject().getFileResolver()), modelRules);
+            ClosureBackedAction.execute(new TransformedModelDslBacking(modelRegistry, rootProject.getFileResolver()), modelRules);
         } else {
             new NonTransformedModelDslBacking(modelRegistry).configure(modelRules);
         }
@@ -72,6 +72,17 @@ public interface ProjectInternal extends Project, ProjectIdentifier, FileOperati
 
     ProjectEvaluationListener getProjectEvaluationBroadcaster();
 
+    /**
+     * Returns true when this project has accessed other projects while it was being configured, for example by configuring another project or by
+     * adding a project evaluation listener.
+     */
+    boolean hasAccessedOtherProjects();
+
+    /**
+     * Returns true when a task of this project has accessed other projects while it was being executed.
+     */
+    boolean hasTasksAccessedOtherProjects();
+
     FileResolver getFileResolver();
 
     ServiceRegistry getServices();
@@ -37,6 +37,23 @@ public interface CacheAccess {
      */
     void useCache(String operationDisplayName, Runnable action);
 
+    /**
+     * Performs some work against the cache, allowing other actions invoked by this method to run at the same time. Acquires exclusive locks on
+     * the appropriate resources, so that no action invoked by {@link #useCache(String, org.gradle.internal.Factory)} runs at the same time in
+     * this process, and no action runs at the same time in other processes. Reads from indexed caches contained in this cache may run
+     * concurrently, while updates are serialised. Releases the locks and all resources at the end of the last action.
+     *
+     * <p>This method is re-entrant, so that an action can call back into this method or {@link #useCache(String, org.gradle.internal.Factory)},
+     * in which case the nested action runs in the mode of the outer action.</p>
+     */
+    <T> T useCacheShared(String operationDisplayName, Factory<? extends T> action);
+
+    /**
+     * Performs some work against the cache, allowing other actions invoked by this method to run at the same time. See {@link
+     * #useCacheShared(String, org.gradle.internal.Factory)}.
+     */
+    void useCacheShared(String operationDisplayName, Runnable action);
+
     /**
      * Performs some long running operation within an action invoked by {@link #useCache(String, org.gradle.internal.Factory)}. Releases all
      * locks while the operation is running, and reacquires the locks at the end of the long running operation.
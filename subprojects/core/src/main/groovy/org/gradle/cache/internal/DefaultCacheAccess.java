@@ -23,6 +23,7 @@ import org.gradle.cache.PersistentIndexedCacheParameters;
 import org.gradle.cache.internal.btree.BTreePersistentIndexedCache;
 import org.gradle.cache.internal.cacheops.CacheAccessOperationsStack;
 import org.gradle.cache.internal.filelock.LockOptions;
+import org.gradle.cache.internal.mapped.MappedPersistentIndexedCache;
 import org.gradle.internal.Factories;
 import org.gradle.internal.Factory;
 import org.gradle.internal.UncheckedException;
@@ -31,10 +32,14 @@ import org.gradle.internal.serialize.Serializer;
 
 import java.io.File;
 import java.util.HashSet;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 import static org.gradle.cache.internal.FileLockManager.LockMode.Exclusive;
 import static org.gradle.cache.internal.FileLockManager.LockMode.Shared;
@@ -53,7 +58,15 @@ public class DefaultCacheAccess implements CacheCoordinator {
     private final Set<MultiProcessSafePersistentIndexedCache> caches = new HashSet<MultiProcessSafePersistentIndexedCache>();
     private final Lock lock = new ReentrantLock();
     private final Condition condition = lock.newCondition();
-    private Thread owner;
+    // Serialises updates to the files of this cache with each other and with reads, while allowing reads to run concurrently
+    private final ReadWriteLock fileAccessLock = new ReentrantReadWriteLock();
+    private final LockWaitStatistics ownershipWaits = new LockWaitStatistics();
+    private final LockWaitStatistics fileAccessWaits = new LockWaitStatistics();
+    private final Map<String, LockWaitStatistics> indexedCacheWaits = new ConcurrentHashMap<String, LockWaitStatistics>();
+    private volatile Thread owner;
+    // The threads running shared actions, mapped to the depth of nested shared actions of each thread
+    private final Map<Thread, Integer> sharedOwners = new ConcurrentHashMap<Thread, Integer>();
+    private int exclusiveWaiters;
     private LockOptions lockOptions;
     private FileLock fileLock;
     private FileLock.State stateAtOpen;
@@ -151,6 +164,9 @@ public class DefaultCacheAccess implements CacheCoordinator {
     public void close() {
         lock.lock();
         try {
+            if (!sharedOwners.isEmpty()) {
+                throw new IllegalStateException(String.format("Cannot close %s as it is currently being used by another thread.", cacheDisplayName));
+            }
             // Take ownership
             if (owner == null) {
                 owner = Thread.currentThread();
@@ -164,6 +180,7 @@ public class DefaultCacheAccess implements CacheCoordinator {
             if (cacheClosedCount != 1) {
                 LOG.debug("Cache {} was closed {} times.", cacheDisplayName, cacheClosedCount);
             }
+            logLockWaitStatistics();
         } finally {
             lockOptions = null;
             owner = null;
@@ -179,6 +196,10 @@ public class DefaultCacheAccess implements CacheCoordinator {
         if (lockOptions != null && lockOptions.getMode() == FileLockManager.LockMode.Shared) {
             throw new UnsupportedOperationException("Not implemented yet.");
         }
+        if (sharedOwners.containsKey(Thread.currentThread())) {
+            // Join the shared action of this thread, rather than wait for it to complete
+            return useCacheShared(operationDisplayName, factory);
+        }
 
         boolean wasStarted = false;
         lock.lock();
@@ -206,20 +227,121 @@ public class DefaultCacheAccess implements CacheCoordinator {
         }
     }
 
+    public void useCacheShared(String operationDisplayName, Runnable action) {
+        useCacheShared(operationDisplayName, Factories.toFactory(action));
+    }
+
+    public <T> T useCacheShared(String operationDisplayName, Factory<? extends T> factory) {
+        if (lockOptions != null && lockOptions.getMode() == FileLockManager.LockMode.Shared) {
+            throw new UnsupportedOperationException("Not implemented yet.");
+        }
+        if (owner == Thread.currentThread()) {
+            // Join the exclusive action of this thread
+            return useCache(operationDisplayName, factory);
+        }
+
+        lock.lock();
+        try {
+            takeSharedOwnership(operationDisplayName);
+            try {
+                onStartWork();
+            } catch (RuntimeException e) {
+                releaseSharedOwnership();
+                throw e;
+            }
+        } finally {
+            lock.unlock();
+        }
+        try {
+            return factory.create();
+        } finally {
+            lock.lock();
+            try {
+                releaseSharedOwnership();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
     private void takeOwnership(String operationDisplayName) {
         lock.lock();
         try {
-            while (owner != null && owner != Thread.currentThread()) {
+            Thread currentThread = Thread.currentThread();
+            if (owner != currentThread) {
+                long waitStart = 0;
+                while (owner != null || !sharedOwners.isEmpty()) {
+                    if (waitStart == 0) {
+                        waitStart = System.nanoTime();
+                    }
+                    awaitExclusive();
+                }
+                if (waitStart != 0) {
+                    ownershipWaits.recordWait(System.nanoTime() - waitStart);
+                }
+            }
+            owner = currentThread;
+            operations.pushCacheAction(operationDisplayName);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void awaitExclusive() {
+        // Keep new shared actions from starting while waiting, so that a stream of shared actions cannot starve this thread
+        exclusiveWaiters++;
+        try {
+            condition.await();
+        } catch (InterruptedException e) {
+            throw UncheckedException.throwAsUncheckedException(e);
+        } finally {
+            exclusiveWaiters--;
+        }
+    }
+
+    private void takeSharedOwnership(String operationDisplayName) {
+        Thread currentThread = Thread.currentThread();
+        Integer depth = sharedOwners.get(currentThread);
+        if (depth == null) {
+            long waitStart = 0;
+            while (owner != null || exclusiveWaiters > 0) {
+                if (waitStart == 0) {
+                    waitStart = System.nanoTime();
+                }
                 try {
                     condition.await();
                 } catch (InterruptedException e) {
                     throw UncheckedException.throwAsUncheckedException(e);
                 }
             }
-            owner = Thread.currentThread();
-            operations.pushCacheAction(operationDisplayName);
+            if (waitStart != 0) {
+                ownershipWaits.recordWait(System.nanoTime() - waitStart);
+            }
+            depth = 0;
+        }
+        sharedOwners.put(currentThread, depth + 1);
+        operations.pushCacheAction(operationDisplayName);
+    }
+
+    private void releaseSharedOwnership() {
+        operations.popCacheAction();
+        Thread currentThread = Thread.currentThread();
+        int depth = sharedOwners.get(currentThread);
+        if (depth > 1) {
+            sharedOwners.put(currentThread, depth - 1);
+            return;
+        }
+        try {
+            if (sharedOwners.size() == 1) {
+                // The last shared action, so release the file lock if another process wants it. Do this before giving up ownership, as the
+                // indexed caches are closed using this thread
+                onEndWork();
+            }
         } finally {
-            lock.unlock();
+            sharedOwners.remove(currentThread);
+            if (sharedOwners.isEmpty()) {
+                condition.signalAll();
+            }
         }
     }
 
@@ -252,6 +374,9 @@ public class DefaultCacheAccess implements CacheCoordinator {
             if (lockOptions == null || lockOptions.getMode() == Shared) {
                 throw new UnsupportedOperationException("Not supported for this lock mode.");
             }
+            if (sharedOwners.containsKey(Thread.currentThread())) {
+                throw new UnsupportedOperationException(String.format("Cannot start long running operation from a shared action on the %s.", cacheDisplayName));
+            }
             if (operations.isInCacheAction()) {
                 checkThreadIsOwner();
                 wasEnded = onEndWork();
@@ -296,12 +421,15 @@ public class DefaultCacheAccess implements CacheCoordinator {
     private void restoreOwner() {
         lock.lock();
         try {
-            while (owner != null) {
-                try {
-                    condition.await();
-                } catch (InterruptedException e) {
-                    throw UncheckedException.throwAsUncheckedException(e);
+            long waitStart = 0;
+            while (owner != null || !sharedOwners.isEmpty()) {
+                if (waitStart == 0) {
+                    waitStart = System.nanoTime();
                 }
+                awaitExclusive();
+            }
+            if (waitStart != 0) {
+                ownershipWaits.recordWait(System.nanoTime() - waitStart);
             }
             owner = Thread.currentThread();
         } finally {
@@ -314,14 +442,19 @@ public class DefaultCacheAccess implements CacheCoordinator {
     }
 
     public <K, V> MultiProcessSafePersistentIndexedCache<K, V> newCache(final PersistentIndexedCacheParameters<K, V> parameters) {
-        final File cacheFile = new File(baseDir, parameters.getCacheName() + ".bin");
-        Factory<BTreePersistentIndexedCache<K, V>> indexedCacheFactory = new Factory<BTreePersistentIndexedCache<K, V>>() {
-            public BTreePersistentIndexedCache<K, V> create() {
+        final File cacheFile = new File(baseDir, parameters.getCacheName() + (parameters.isMemoryMapped() ? ".mapped.bin" : ".bin"));
+        Factory<FileBackedPersistentIndexedCache<K, V>> indexedCacheFactory = new Factory<FileBackedPersistentIndexedCache<K, V>>() {
+            public FileBackedPersistentIndexedCache<K, V> create() {
+                if (parameters.isMemoryMapped()) {
+                    return new MappedPersistentIndexedCache<K, V>(cacheFile, parameters.getKeySerializer(), parameters.getValueSerializer());
+                }
                 return doCreateCache(cacheFile, parameters.getKeySerializer(), parameters.getValueSerializer());
             }
         };
 
-        MultiProcessSafePersistentIndexedCache<K, V> indexedCache = new DefaultMultiProcessSafePersistentIndexedCache<K, V>(indexedCacheFactory, fileAccess);
+        LockWaitStatistics indexedCacheWaitStatistics = new LockWaitStatistics();
+        indexedCacheWaits.put(parameters.getCacheName(), indexedCacheWaitStatistics);
+        MultiProcessSafePersistentIndexedCache<K, V> indexedCache = new DefaultMultiProcessSafePersistentIndexedCache<K, V>(indexedCacheFactory, fileAccess, indexedCacheWaitStatistics);
         CacheDecorator decorator = parameters.getCacheDecorator();
         indexedCache = decorator == null ? indexedCache : decorator.decorate(cacheFile.getAbsolutePath(), parameters.getCacheName(), indexedCache);
 
@@ -375,9 +508,14 @@ public class DefaultCacheAccess implements CacheCoordinator {
     }
 
     private FileLock getLock() {
+        Thread currentThread = Thread.currentThread();
+        if (sharedOwners.containsKey(currentThread)) {
+            // The file lock cannot be released while a shared action is running
+            return fileLock;
+        }
         lock.lock();
         try {
-            if (Thread.currentThread() != owner) {
+            if (currentThread != owner) {
                 throw new IllegalStateException(String.format("The %s has not been locked for this thread. File lock: %s, owner: %s", cacheDisplayName, fileLock != null, owner));
             }
         } finally {
@@ -386,6 +524,47 @@ public class DefaultCacheAccess implements CacheCoordinator {
         return fileLock;
     }
 
+    private void lockFileAccess(Lock fileAccessLock) {
+        if (!fileAccessLock.tryLock()) {
+            long waitStart = System.nanoTime();
+            fileAccessLock.lock();
+            fileAccessWaits.recordWait(System.nanoTime() - waitStart);
+        }
+    }
+
+    private void logLockWaitStatistics() {
+        if (ownershipWaits.getWaitCount() == 0 && fileAccessWaits.getWaitCount() == 0) {
+            return;
+        }
+        LOG.info("Lock waits for {}: Ownership{{}} FileAccess{{}}", cacheDisplayName, ownershipWaits, fileAccessWaits);
+        for (Map.Entry<String, LockWaitStatistics> entry : indexedCacheWaits.entrySet()) {
+            if (entry.getValue().getWaitCount() > 0) {
+                LOG.info("Lock waits for {} of {}: {}", entry.getKey(), cacheDisplayName, entry.getValue());
+            }
+        }
+    }
+
+    /**
+     * Returns the time that threads have spent waiting to start an action on this cache.
+     */
+    public LockWaitStatistics getOwnershipWaitStatistics() {
+        return ownershipWaits;
+    }
+
+    /**
+     * Returns the time that threads have spent waiting to read or update the files of this cache.
+     */
+    public LockWaitStatistics getFileAccessWaitStatistics() {
+        return fileAccessWaits;
+    }
+
+    /**
+     * Returns the time that threads have spent waiting to read from each of the indexed caches contained in this cache, keyed by cache name.
+     */
+    public Map<String, LockWaitStatistics> getIndexedCacheWaitStatistics() {
+        return indexedCacheWaits;
+    }
+
     private class UnitOfWorkFileAccess extends AbstractFileAccess {
         @Override
         public String toString() {
@@ -393,15 +572,33 @@ public class DefaultCacheAccess implements CacheCoordinator {
         }
 
         public <T> T readFile(Factory<? extends T> action) throws LockTimeoutException {
-            return getLock().readFile(action);
+            FileLock fileLock = getLock();
+            lockFileAccess(fileAccessLock.readLock());
+            try {
+                return fileLock.readFile(action);
+            } finally {
+                fileAccessLock.readLock().unlock();
+            }
         }
 
         public void updateFile(Runnable action) throws LockTimeoutException {
-            getLock().updateFile(action);
+            FileLock fileLock = getLock();
+            lockFileAccess(fileAccessLock.writeLock());
+            try {
+                fileLock.updateFile(action);
+            } finally {
+                fileAccessLock.writeLock().unlock();
+            }
         }
 
         public void writeFile(Runnable action) throws LockTimeoutException {
-            getLock().writeFile(action);
+            FileLock fileLock = getLock();
+            lockFileAccess(fileAccessLock.writeLock());
+            try {
+                fileLock.writeFile(action);
+            } finally {
+                fileAccessLock.writeLock().unlock();
+            }
         }
     }
 
@@ -415,7 +612,7 @@ public class DefaultCacheAccess implements CacheCoordinator {
                         //the lock may have been closed
                         return;
                     }
-                    if (owner != null) {
+                    if (owner != null || !sharedOwners.isEmpty()) {
                         contended = true;
                         return;
                     }
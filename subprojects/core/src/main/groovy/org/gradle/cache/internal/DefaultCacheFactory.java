@@ -186,5 +186,13 @@ public class DefaultCacheFactory implements CacheFactory, Closeable {
         public void useCache(String operationDisplayName, Runnable action) {
             reference.cache.useCache(operationDisplayName, action);
         }
+
+        public <T> T useCacheShared(String operationDisplayName, Factory<? extends T> action) {
+            return reference.cache.useCacheShared(operationDisplayName, action);
+        }
+
+        public void useCacheShared(String operationDisplayName, Runnable action) {
+            reference.cache.useCacheShared(operationDisplayName, action);
+        }
     }
 }
@@ -16,21 +16,37 @@
 package org.gradle.cache.internal;
 
 import org.gradle.cache.PersistentIndexedCache;
-import org.gradle.cache.internal.btree.BTreePersistentIndexedCache;
 import org.gradle.internal.Factory;
 
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
 public class DefaultMultiProcessSafePersistentIndexedCache<K, V> implements MultiProcessSafePersistentIndexedCache<K, V> {
     private final FileAccess fileAccess;
-    private final Factory<BTreePersistentIndexedCache<K, V>> factory;
-    private BTreePersistentIndexedCache<K, V> cache;
+    private final Factory<? extends FileBackedPersistentIndexedCache<K, V>> factory;
+    // Serialises reads from a cache that does not support concurrent reads. Updates are serialised with reads by the file access
+    private final Lock readLock = new ReentrantLock();
+    private final LockWaitStatistics readLockWaits;
+    private volatile FileBackedPersistentIndexedCache<K, V> cache;
+
+    public DefaultMultiProcessSafePersistentIndexedCache(Factory<? extends FileBackedPersistentIndexedCache<K, V>> factory, FileAccess fileAccess) {
+        this(factory, fileAccess, new LockWaitStatistics());
+    }
 
-    public DefaultMultiProcessSafePersistentIndexedCache(Factory<BTreePersistentIndexedCache<K, V>> factory, FileAccess fileAccess) {
+    public DefaultMultiProcessSafePersistentIndexedCache(Factory<? extends FileBackedPersistentIndexedCache<K, V>> factory, FileAccess fileAccess, LockWaitStatistics readLockWaits) {
         this.factory = factory;
         this.fileAccess = fileAccess;
+        this.readLockWaits = readLockWaits;
     }
 
     public V get(final K key) {
-        final PersistentIndexedCache<K, V> cache = getCache();
+        final FileBackedPersistentIndexedCache<K, V> cache = getCache();
+        boolean serialiseReads = !cache.supportsConcurrentReads();
+        if (serialiseReads && !readLock.tryLock()) {
+            long waitStart = System.nanoTime();
+            readLock.lock();
+            readLockWaits.recordWait(System.nanoTime() - waitStart);
+        }
         try {
             return fileAccess.readFile(new Factory<V>() {
                 public V create() {
@@ -39,6 +55,10 @@ public class DefaultMultiProcessSafePersistentIndexedCache<K, V> implements Mult
             });
         } catch (FileIntegrityViolationException e) {
             return null;
+        } finally {
+            if (serialiseReads) {
+                readLock.unlock();
+            }
         }
     }
 
@@ -65,9 +85,18 @@ public class DefaultMultiProcessSafePersistentIndexedCache<K, V> implements Mult
     }
 
     public void onStartWork(String operationDisplayName, FileLock.State currentCacheState) {
+        // Another process may have changed the file while it was not locked
+        FileBackedPersistentIndexedCache<K, V> cache = this.cache;
+        if (cache instanceof UnitOfWorkParticipant) {
+            ((UnitOfWorkParticipant) cache).onStartWork(operationDisplayName, currentCacheState);
+        }
     }
 
     public void onEndWork(FileLock.State currentCacheState) {
+        FileBackedPersistentIndexedCache<K, V> cache = this.cache;
+        if (cache instanceof UnitOfWorkParticipant) {
+            ((UnitOfWorkParticipant) cache).onEndWork(currentCacheState);
+        }
     }
 
     public void close() {
@@ -84,16 +113,22 @@ public class DefaultMultiProcessSafePersistentIndexedCache<K, V> implements Mult
         }
     }
 
-    private PersistentIndexedCache<K, V> getCache() {
-        if (cache == null) {
-            // Use writeFile because the cache can internally recover from datafile
-            // corruption, so we don't care at this level if it's corrupt
-            fileAccess.writeFile(new Runnable() {
-                public void run() {
-                    cache = factory.create();
-                }
-            });
+    private FileBackedPersistentIndexedCache<K, V> getCache() {
+        FileBackedPersistentIndexedCache<K, V> cache = this.cache;
+        if (cache != null) {
+            return cache;
+        }
+        synchronized (this) {
+            if (this.cache == null) {
+                // Use writeFile because the cache can internally recover from datafile
+                // corruption, so we don't care at this level if it's corrupt
+                fileAccess.writeFile(new Runnable() {
+                    public void run() {
+                        DefaultMultiProcessSafePersistentIndexedCache.this.cache = factory.create();
+                    }
+                });
+            }
+            return this.cache;
         }
-        return cache;
     }
 }
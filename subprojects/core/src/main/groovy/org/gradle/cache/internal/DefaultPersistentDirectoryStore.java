@@ -106,6 +106,14 @@ public class DefaultPersistentDirectoryStore implements ReferencablePersistentCa
         cacheAccess.useCache(operationDisplayName, action);
     }
 
+    public <T> T useCacheShared(String operationDisplayName, Factory<? extends T> action) {
+        return cacheAccess.useCacheShared(operationDisplayName, action);
+    }
+
+    public void useCacheShared(String operationDisplayName, Runnable action) {
+        cacheAccess.useCacheShared(operationDisplayName, action);
+    }
+
     public <T> T longRunningOperation(String operationDisplayName, Factory<? extends T> action) {
         return cacheAccess.longRunningOperation(operationDisplayName, action);
     }
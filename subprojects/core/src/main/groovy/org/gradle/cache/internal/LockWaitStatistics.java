@@ -0,0 +1,70 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.cache.internal;
+
+import com.google.common.util.concurrent.AtomicLongMap;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Records the time that threads spend waiting to access a cache, in total and per thread.
+ */
+public class LockWaitStatistics {
+    private final AtomicLong waitCount = new AtomicLong();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+    private final AtomicLongMap<String> waitNanosByThread = AtomicLongMap.create();
+
+    public void recordWait(long waitNanos) {
+        waitCount.incrementAndGet();
+        waitNanosByThread.addAndGet(Thread.currentThread().getName(), waitNanos);
+        long max = maxWaitNanos.get();
+        while (waitNanos > max && !maxWaitNanos.compareAndSet(max, waitNanos)) {
+            max = maxWaitNanos.get();
+        }
+    }
+
+    public long getWaitCount() {
+        return waitCount.get();
+    }
+
+    public long getTotalWaitTime(TimeUnit unit) {
+        return unit.convert(waitNanosByThread.sum(), TimeUnit.NANOSECONDS);
+    }
+
+    public long getMaxWaitTime(TimeUnit unit) {
+        return unit.convert(maxWaitNanos.get(), TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Returns the total time that each thread has spent waiting, keyed by thread name.
+     */
+    public Map<String, Long> getWaitTimeByThread(TimeUnit unit) {
+        Map<String, Long> result = new TreeMap<String, Long>();
+        for (Map.Entry<String, Long> entry : waitNanosByThread.asMap().entrySet()) {
+            result.put(entry.getKey(), unit.convert(entry.getValue(), TimeUnit.NANOSECONDS));
+        }
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("Waits{%s} TotalWait{%sms} MaxWait{%sms} WaitByThread%s", getWaitCount(), getTotalWaitTime(TimeUnit.MILLISECONDS), getMaxWaitTime(TimeUnit.MILLISECONDS), getWaitTimeByThread(TimeUnit.MILLISECONDS));
+    }
+}
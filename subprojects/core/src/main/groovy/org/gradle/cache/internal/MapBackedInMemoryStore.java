@@ -54,6 +54,16 @@ public class MapBackedInMemoryStore implements PersistentStore {
         }
     }
 
+    @Override
+    public <T> T useCacheShared(String operationDisplayName, Factory<? extends T> action) {
+        return useCache(operationDisplayName, action);
+    }
+
+    @Override
+    public void useCacheShared(String operationDisplayName, Runnable action) {
+        useCache(operationDisplayName, action);
+    }
+
     @Override
     public <T> T longRunningOperation(String operationDisplayName, Factory<? extends T> action) {
         return action.create();
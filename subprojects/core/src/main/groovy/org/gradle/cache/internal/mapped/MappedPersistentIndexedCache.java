@@ -0,0 +1,676 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.cache.internal.mapped;
+
+import com.google.common.hash.Hashing;
+import org.gradle.api.UncheckedIOException;
+import org.gradle.cache.internal.FileBackedPersistentIndexedCache;
+import org.gradle.cache.internal.FileLock;
+import org.gradle.cache.internal.UnitOfWorkParticipant;
+import org.gradle.internal.UncheckedException;
+import org.gradle.internal.serialize.Serializer;
+import org.gradle.internal.serialize.kryo.KryoBackedDecoder;
+import org.gradle.internal.serialize.kryo.KryoBackedEncoder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.reflect.Method;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.zip.CRC32;
+
+/**
+ * A persistent indexed cache that keeps an open addressing hash table and an append-only log of records in a single memory-mapped file. Lookups
+ * probe the table and compare the serialized key with the record in place, so only the value of a matching record is deserialized. Any number of
+ * threads can read concurrently, while writes are exclusive.
+ *
+ * <p>File layout:</p>
+ * <ul>
+ * <li>Header: magic, version, table capacity, entry count, used slot count, end of data, size of live data and generation.</li>
+ * <li>Table: one slot per entry, holding the hash of the serialized key and the offset of the latest record for that key. An offset of 0 marks an
+ * empty slot, and -1 a removed entry.</li>
+ * <li>Data: the records, each made up of the key length, value length, a CRC32 checksum of the key and value, the key and the value.</li>
+ * </ul>
+ *
+ * <p>A record is written before the slot that refers to it, and the header is updated last. When the file is opened, every record that the table
+ * refers to is checked against its checksum, and a slot that refers to a record that was only partly written before a crash is removed. Lookups then
+ * only check that a record lies within the data written so far. Compaction writes the live records to a separate file, which is then copied over
+ * the start of the cache file. A crash while the separate file is written leaves the cache file intact, and a crash while it is copied is recovered
+ * by copying it again when the cache is next opened.</p>
+ *
+ * <p>Other processes may map the same file while they hold the cache lock. The file is updated in place and is not truncated while it can be
+ * mapped, so that these mappings stay valid. The generation is incremented whenever the table is rebuilt or the contents are discarded, and the file is
+ * remapped when the cache lock is taken again and the generation or length of the file has changed.</p>
+ */
+public class MappedPersistentIndexedCache<K, V> implements FileBackedPersistentIndexedCache<K, V>, UnitOfWorkParticipant {
+    private static final Logger LOGGER = LoggerFactory.getLogger(MappedPersistentIndexedCache.class);
+
+    private static final int MAGIC = 0x474d4850;
+    private static final int VERSION = 2;
+    private static final int CAPACITY_OFFSET = 8;
+    private static final int ENTRIES_OFFSET = 12;
+    private static final int USED_SLOTS_OFFSET = 16;
+    private static final int DATA_END_OFFSET = 24;
+    private static final int LIVE_DATA_OFFSET = 32;
+    private static final int GENERATION_OFFSET = 40;
+    private static final int HEADER_SIZE = 48;
+    private static final int SLOT_SIZE = 16;
+    private static final long EMPTY = 0;
+    private static final long REMOVED = -1;
+    private static final int RECORD_HEADER_SIZE = 12;
+    private static final int INITIAL_CAPACITY = 1024;
+    private static final int INITIAL_DATA_SIZE = 64 * 1024;
+    private static final int COPY_BUFFER_SIZE = 64 * 1024;
+
+    private final File cacheFile;
+    private final File compactionFile;
+    private final Serializer<K> keySerializer;
+    private final Serializer<V> valueSerializer;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private RandomAccessFile file;
+    private MappedByteBuffer buffer;
+    private int capacity;
+    private int entries;
+    private int usedSlots;
+    private long dataEnd;
+    private long liveData;
+    private long generation;
+
+    public MappedPersistentIndexedCache(File cacheFile, Serializer<K> keySerializer, Serializer<V> valueSerializer) {
+        this.cacheFile = cacheFile;
+        this.compactionFile = new File(cacheFile.getParentFile(), cacheFile.getName() + ".compact");
+        this.keySerializer = keySerializer;
+        this.valueSerializer = valueSerializer;
+        try {
+            open();
+        } catch (IOException e) {
+            throw new UncheckedIOException(String.format("Could not open %s.", this), e);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return String.format("cache %s (%s)", cacheFile.getName(), cacheFile);
+    }
+
+    public V get(K key) {
+        byte[] keyBytes = serialize(keySerializer, key);
+        long keyHash = hash(keyBytes);
+        lock.readLock().lock();
+        try {
+            int slot = findSlot(keyHash, keyBytes);
+            if (slot < 0) {
+                return null;
+            }
+            long offset = buffer.getLong(slotOffset(slot) + 8);
+            byte[] valueBytes = readValue((int) offset);
+            return valueSerializer.read(new KryoBackedDecoder(new ByteArrayInputStream(valueBytes)));
+        } catch (Exception e) {
+            throw UncheckedException.throwAsUncheckedException(e);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public void put(K key, V value) {
+        byte[] keyBytes = serialize(keySerializer, key);
+        byte[] valueBytes = serialize(valueSerializer, value);
+        long keyHash = hash(keyBytes);
+        lock.writeLock().lock();
+        try {
+            int recordSize = RECORD_HEADER_SIZE + keyBytes.length + valueBytes.length;
+            ensureCapacity(recordSize);
+            int offset = (int) dataEnd;
+            writeRecord(buffer, offset, keyBytes, valueBytes);
+            dataEnd += recordSize;
+            liveData += recordSize;
+
+            int slot = findSlot(keyHash, keyBytes);
+            if (slot >= 0) {
+                liveData -= recordSize(buffer.getLong(slotOffset(slot) + 8));
+            } else {
+                slot = insertionSlot(keyHash);
+                if (buffer.getLong(slotOffset(slot) + 8) == EMPTY) {
+                    usedSlots++;
+                }
+                entries++;
+            }
+            writeSlot(buffer, slot, keyHash, offset);
+            writeHeader();
+        } catch (IOException e) {
+            throw new UncheckedIOException(String.format("Could not write to %s.", this), e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(K key) {
+        byte[] keyBytes = serialize(keySerializer, key);
+        long keyHash = hash(keyBytes);
+        lock.writeLock().lock();
+        try {
+            int slot = findSlot(keyHash, keyBytes);
+            if (slot < 0) {
+                return;
+            }
+            liveData -= recordSize(buffer.getLong(slotOffset(slot) + 8));
+            buffer.putLong(slotOffset(slot) + 8, REMOVED);
+            entries--;
+            writeHeader();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public boolean supportsConcurrentReads() {
+        return true;
+    }
+
+    public void close() {
+        lock.writeLock().lock();
+        try {
+            LOGGER.debug("Closing {}", this);
+            if (buffer != null) {
+                buffer.force();
+                unmap(buffer);
+                buffer = null;
+            }
+            if (file != null) {
+                file.close();
+                file = null;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Picks up the changes that another process has made to the file while this process did not hold the cache lock.
+     */
+    public void onStartWork(String operationDisplayName, FileLock.State currentCacheState) {
+        lock.writeLock().lock();
+        try {
+            if (file != null) {
+                refresh();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(String.format("Could not read %s.", this), e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Writes the changes made by this process to the file before the cache lock is released.
+     */
+    public void onEndWork(FileLock.State currentCacheState) {
+        lock.writeLock().lock();
+        try {
+            if (buffer != null) {
+                buffer.force();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    int getEntryCount() {
+        return entries;
+    }
+
+    long getFileSize() {
+        return dataEnd;
+    }
+
+    private void open() throws IOException {
+        if (!cacheFile.getParentFile().isDirectory() && !cacheFile.getParentFile().mkdirs()) {
+            throw new IOException(String.format("Could not create directory %s.", cacheFile.getParentFile()));
+        }
+        file = new RandomAccessFile(cacheFile, "rw");
+        if (compactionFile.exists()) {
+            if (isCompleteCompactionFile()) {
+                LOGGER.debug("Completing the compaction of {}.", this);
+                copyCompactionFile();
+            } else if (!compactionFile.delete()) {
+                throw new IOException(String.format("Could not delete %s.", compactionFile));
+            }
+        }
+        long length = file.length();
+        if (length >= HEADER_SIZE && length <= Integer.MAX_VALUE) {
+            map(length);
+            if (readHeader(length)) {
+                verifyRecords();
+                return;
+            }
+            LOGGER.warn(String.format("%s is corrupt. Discarding.", this));
+        }
+        initialize(INITIAL_CAPACITY, INITIAL_DATA_SIZE);
+    }
+
+    private boolean readHeader(long length) {
+        if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+            return false;
+        }
+        capacity = buffer.getInt(CAPACITY_OFFSET);
+        entries = buffer.getInt(ENTRIES_OFFSET);
+        usedSlots = buffer.getInt(USED_SLOTS_OFFSET);
+        dataEnd = buffer.getLong(DATA_END_OFFSET);
+        liveData = buffer.getLong(LIVE_DATA_OFFSET);
+        generation = buffer.getLong(GENERATION_OFFSET);
+        return capacity > 0 && Integer.bitCount(capacity) == 1 && dataEnd >= dataStart(capacity) && dataEnd <= length
+            && usedSlots >= 0 && usedSlots < capacity && entries >= 0 && entries <= usedSlots && liveData >= 0;
+    }
+
+    /**
+     * Reopens the file when another process has compacted or discarded it, or when it has been replaced, and otherwise remaps the file when another
+     * process has grown it. Then reads the header, which another process may have updated.
+     */
+    private void refresh() throws IOException {
+        long length = file.length();
+        if (length < HEADER_SIZE || length > Integer.MAX_VALUE || length != cacheFile.length() || buffer.getLong(GENERATION_OFFSET) != generation) {
+            LOGGER.debug("{} has been rewritten by another process. Reopening.", this);
+            unmap(buffer);
+            buffer = null;
+            file.close();
+            open();
+            return;
+        }
+        if (length != buffer.capacity()) {
+            map(length);
+        }
+        if (!readHeader(length)) {
+            LOGGER.warn(String.format("%s is corrupt. Discarding.", this));
+            initialize(INITIAL_CAPACITY, INITIAL_DATA_SIZE);
+        }
+    }
+
+    /**
+     * Removes the slots that refer to records that do not match their checksum, and recounts the entries, used slots and live data from the table.
+     */
+    private void verifyRecords() {
+        int validEntries = 0;
+        int occupiedSlots = 0;
+        long validData = 0;
+        for (int slot = 0; slot < capacity; slot++) {
+            long offset = buffer.getLong(slotOffset(slot) + 8);
+            if (offset == EMPTY) {
+                continue;
+            }
+            occupiedSlots++;
+            if (offset == REMOVED) {
+                continue;
+            }
+            if (hasValidChecksum(offset)) {
+                validEntries++;
+                validData += recordSize(offset);
+            } else {
+                buffer.putLong(slotOffset(slot) + 8, REMOVED);
+            }
+        }
+        if (validEntries != entries || occupiedSlots != usedSlots || validData != liveData) {
+            LOGGER.debug("Recovered {} of {} entries of {}.", validEntries, entries, this);
+            entries = validEntries;
+            usedSlots = occupiedSlots;
+            liveData = validData;
+            writeHeader();
+        }
+    }
+
+    /**
+     * Discards the contents of the file, and starts a new generation. The file is not truncated, as another process may have mapped it.
+     */
+    private void initialize(int newCapacity, long dataSize) throws IOException {
+        long length = file.length();
+        if (length > Integer.MAX_VALUE) {
+            // No process can have mapped a file of this size
+            file.setLength(0);
+            length = 0;
+        }
+        long size = Math.max(dataStart(newCapacity) + dataSize, length);
+        if (buffer == null || buffer.capacity() < size) {
+            map(size);
+        }
+        long previousGeneration = length >= HEADER_SIZE ? buffer.getLong(GENERATION_OFFSET) : generation;
+        buffer.putInt(0, 0);
+        for (int offset = CAPACITY_OFFSET; offset < dataStart(newCapacity); offset += 8) {
+            buffer.putLong(offset, 0);
+        }
+        capacity = newCapacity;
+        entries = 0;
+        usedSlots = 0;
+        dataEnd = dataStart(newCapacity);
+        liveData = 0;
+        generation = previousGeneration + 1;
+        writeHeader();
+        buffer.putInt(4, VERSION);
+        buffer.putInt(0, MAGIC);
+    }
+
+    private void writeHeader() {
+        buffer.putInt(CAPACITY_OFFSET, capacity);
+        buffer.putInt(ENTRIES_OFFSET, entries);
+        buffer.putInt(USED_SLOTS_OFFSET, usedSlots);
+        buffer.putLong(LIVE_DATA_OFFSET, liveData);
+        buffer.putLong(DATA_END_OFFSET, dataEnd);
+        buffer.putLong(GENERATION_OFFSET, generation);
+    }
+
+    /**
+     * Makes room for another slot and a record of the given size, compacting the file when more than half of the slots are in use or when more than
+     * half of the data is garbage, and growing the file when the record does not fit.
+     */
+    private void ensureCapacity(int recordSize) throws IOException {
+        if (usedSlots + 1 > capacity / 2) {
+            compact(entries + 1 > capacity / 4 ? capacity * 2 : capacity, recordSize);
+        } else if (dataEnd + recordSize > buffer.capacity() && liveData < (dataEnd - dataStart(capacity)) / 2) {
+            compact(capacity, recordSize);
+        }
+        if (dataEnd + recordSize > buffer.capacity()) {
+            grow(dataEnd + recordSize);
+        }
+    }
+
+    private void grow(long requiredSize) throws IOException {
+        long size = Math.max(requiredSize, Math.min((long) buffer.capacity() * 2, Integer.MAX_VALUE));
+        if (size > Integer.MAX_VALUE) {
+            LOGGER.warn(String.format("%s is too large. Discarding.", this));
+            initialize(capacity, INITIAL_DATA_SIZE);
+            return;
+        }
+        map(size);
+    }
+
+    /**
+     * Maps the given number of bytes of the file, growing it when it is smaller, and releases the previous mapping.
+     */
+    private void map(long size) throws IOException {
+        MappedByteBuffer previous = buffer;
+        buffer = file.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+        if (previous != null) {
+            unmap(previous);
+        }
+    }
+
+    /**
+     * Copies the live records to the compaction file with the given table capacity and the next generation, and then copies the compaction file over
+     * the cache file.
+     */
+    private void compact(int newCapacity, int extraSpace) throws IOException {
+        long newDataEnd = dataStart(newCapacity);
+        long size = newDataEnd + liveData + Math.max(extraSpace, INITIAL_DATA_SIZE);
+        if (size > Integer.MAX_VALUE) {
+            LOGGER.warn(String.format("%s is too large. Discarding.", this));
+            initialize(capacity, INITIAL_DATA_SIZE);
+            return;
+        }
+
+        int newEntries = 0;
+        RandomAccessFile newFile = new RandomAccessFile(compactionFile, "rw");
+        MappedByteBuffer newBuffer = null;
+        try {
+            newFile.setLength(0);
+            newBuffer = newFile.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+            for (int slot = 0; slot < capacity; slot++) {
+                int slotOffset = slotOffset(slot);
+                long offset = buffer.getLong(slotOffset + 8);
+                if (offset == EMPTY || offset == REMOVED || !isWithinData(offset)) {
+                    continue;
+                }
+                int recordSize = (int) recordSize(offset);
+                for (int i = 0; i < recordSize; i++) {
+                    newBuffer.put((int) newDataEnd + i, buffer.get((int) offset + i));
+                }
+                long keyHash = buffer.getLong(slotOffset);
+                int newSlot = (int) (spread(keyHash) & (newCapacity - 1));
+                while (newBuffer.getLong(HEADER_SIZE + newSlot * SLOT_SIZE + 8) != EMPTY) {
+                    newSlot = (newSlot + 1) & (newCapacity - 1);
+                }
+                newBuffer.putLong(HEADER_SIZE + newSlot * SLOT_SIZE, keyHash);
+                newBuffer.putLong(HEADER_SIZE + newSlot * SLOT_SIZE + 8, newDataEnd);
+                newDataEnd += recordSize;
+                newEntries++;
+            }
+            newBuffer.putInt(4, VERSION);
+            newBuffer.putInt(CAPACITY_OFFSET, newCapacity);
+            newBuffer.putInt(ENTRIES_OFFSET, newEntries);
+            newBuffer.putInt(USED_SLOTS_OFFSET, newEntries);
+            newBuffer.putLong(LIVE_DATA_OFFSET, newDataEnd - dataStart(newCapacity));
+            newBuffer.putLong(DATA_END_OFFSET, newDataEnd);
+            newBuffer.putLong(GENERATION_OFFSET, generation + 1);
+            newBuffer.force();
+            // The magic is written once everything else is on disk, and marks the compaction file as complete
+            newBuffer.putInt(0, MAGIC);
+            newBuffer.force();
+        } finally {
+            if (newBuffer != null) {
+                unmap(newBuffer);
+            }
+            newFile.close();
+        }
+
+        copyCompactionFile();
+        if (!readHeader(buffer.capacity())) {
+            throw new IOException(String.format("Could not read compacted file %s.", cacheFile));
+        }
+    }
+
+    private boolean isCompleteCompactionFile() throws IOException {
+        RandomAccessFile compacted = new RandomAccessFile(compactionFile, "r");
+        try {
+            return compacted.length() >= HEADER_SIZE && compacted.readInt() == MAGIC && compacted.readInt() == VERSION;
+        } finally {
+            compacted.close();
+        }
+    }
+
+    /**
+     * Copies the complete compaction file over the start of the cache file, and then deletes it. The cache file keeps any bytes past the end of the
+     * compaction file, as they lie past the end of the data.
+     */
+    private void copyCompactionFile() throws IOException {
+        RandomAccessFile compacted = new RandomAccessFile(compactionFile, "r");
+        try {
+            long size = compacted.length();
+            if (buffer == null || buffer.capacity() < size) {
+                map(Math.max(size, buffer == null ? 0 : buffer.capacity()));
+            }
+            byte[] bytes = new byte[COPY_BUFFER_SIZE];
+            int position = 0;
+            int count;
+            while ((count = compacted.read(bytes)) > 0) {
+                for (int i = 0; i < count; i++) {
+                    buffer.put(position + i, bytes[i]);
+                }
+                position += count;
+            }
+            buffer.force();
+        } finally {
+            compacted.close();
+        }
+        if (!compactionFile.delete()) {
+            throw new IOException(String.format("Could not delete %s.", compactionFile));
+        }
+    }
+
+    private int findSlot(long keyHash, byte[] keyBytes) {
+        int slot = (int) (spread(keyHash) & (capacity - 1));
+        for (int probes = 0; probes < capacity; probes++) {
+            int slotOffset = slotOffset(slot);
+            long offset = buffer.getLong(slotOffset + 8);
+            if (offset == EMPTY) {
+                return -1;
+            }
+            if (offset != REMOVED && buffer.getLong(slotOffset) == keyHash && recordHasKey(offset, keyBytes)) {
+                return slot;
+            }
+            slot = (slot + 1) & (capacity - 1);
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the first removed or empty slot in the probe sequence of the given hash. Must only be called when the key is not in the table.
+     */
+    private int insertionSlot(long keyHash) {
+        int slot = (int) (spread(keyHash) & (capacity - 1));
+        while (true) {
+            long offset = buffer.getLong(slotOffset(slot) + 8);
+            if (offset == EMPTY || offset == REMOVED) {
+                return slot;
+            }
+            slot = (slot + 1) & (capacity - 1);
+        }
+    }
+
+    private boolean recordHasKey(long offset, byte[] keyBytes) {
+        if (!isWithinData(offset)) {
+            return false;
+        }
+        int position = (int) offset;
+        if (buffer.getInt(position) != keyBytes.length) {
+            return false;
+        }
+        position += RECORD_HEADER_SIZE;
+        for (int i = 0; i < keyBytes.length; i++) {
+            if (buffer.get(position + i) != keyBytes[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Checks that the record at the given offset lies within the data written so far.
+     */
+    private boolean isWithinData(long offset) {
+        if (offset < dataStart(capacity) || offset + RECORD_HEADER_SIZE > dataEnd) {
+            return false;
+        }
+        int position = (int) offset;
+        int keyLength = buffer.getInt(position);
+        int valueLength = buffer.getInt(position + 4);
+        return keyLength >= 0 && valueLength >= 0 && offset + RECORD_HEADER_SIZE + keyLength + valueLength <= dataEnd;
+    }
+
+    /**
+     * Checks that the record at the given offset lies within the data written so far and matches its checksum.
+     */
+    private boolean hasValidChecksum(long offset) {
+        if (!isWithinData(offset)) {
+            return false;
+        }
+        int position = (int) offset;
+        int keyLength = buffer.getInt(position);
+        int valueLength = buffer.getInt(position + 4);
+        CRC32 checksum = new CRC32();
+        int start = position + RECORD_HEADER_SIZE;
+        for (int i = 0; i < keyLength + valueLength; i++) {
+            checksum.update(buffer.get(start + i));
+        }
+        return (int) checksum.getValue() == buffer.getInt(position + 8);
+    }
+
+    private long recordSize(long offset) {
+        int position = (int) offset;
+        return RECORD_HEADER_SIZE + buffer.getInt(position) + buffer.getInt(position + 4);
+    }
+
+    private byte[] readValue(int offset) {
+        int keyLength = buffer.getInt(offset);
+        byte[] valueBytes = new byte[buffer.getInt(offset + 4)];
+        int start = offset + RECORD_HEADER_SIZE + keyLength;
+        for (int i = 0; i < valueBytes.length; i++) {
+            valueBytes[i] = buffer.get(start + i);
+        }
+        return valueBytes;
+    }
+
+    private static void writeRecord(MappedByteBuffer buffer, int offset, byte[] keyBytes, byte[] valueBytes) {
+        CRC32 checksum = new CRC32();
+        checksum.update(keyBytes);
+        checksum.update(valueBytes);
+        buffer.putInt(offset, keyBytes.length);
+        buffer.putInt(offset + 4, valueBytes.length);
+        buffer.putInt(offset + 8, (int) checksum.getValue());
+        int position = offset + RECORD_HEADER_SIZE;
+        for (byte b : keyBytes) {
+            buffer.put(position++, b);
+        }
+        for (byte b : valueBytes) {
+            buffer.put(position++, b);
+        }
+    }
+
+    private static void writeSlot(MappedByteBuffer buffer, int slot, long keyHash, long offset) {
+        buffer.putLong(slotOffset(slot), keyHash);
+        buffer.putLong(slotOffset(slot) + 8, offset);
+    }
+
+    private static int slotOffset(int slot) {
+        return HEADER_SIZE + slot * SLOT_SIZE;
+    }
+
+    private static long dataStart(int capacity) {
+        return HEADER_SIZE + (long) capacity * SLOT_SIZE;
+    }
+
+    private static long hash(byte[] bytes) {
+        return Hashing.murmur3_128().hashBytes(bytes).asLong();
+    }
+
+    /**
+     * Releases the given mapping now, rather than once it has been garbage collected, so that the file is not kept mapped. This relies on JVM internals
+     * and is skipped when they are not available. Must only be called when the mapping is no longer used.
+     */
+    private static void unmap(MappedByteBuffer buffer) {
+        try {
+            Method cleanerMethod = buffer.getClass().getMethod("cleaner");
+            cleanerMethod.setAccessible(true);
+            Object cleaner = cleanerMethod.invoke(buffer);
+            if (cleaner != null) {
+                cleaner.getClass().getMethod("clean").invoke(cleaner);
+            }
+        } catch (Exception e) {
+            LOGGER.debug("Could not release mapped buffer. It will be released once it has been garbage collected.", e);
+        }
+    }
+
+    private static long spread(long hash) {
+        return hash ^ (hash >>> 32);
+    }
+
+    private static <T> byte[] serialize(Serializer<T> serializer, T value) {
+        try {
+            ByteArrayOutputStream outStr = new ByteArrayOutputStream();
+            KryoBackedEncoder encoder = new KryoBackedEncoder(outStr);
+            serializer.write(encoder, value);
+            encoder.flush();
+            return outStr.toByteArray();
+        } catch (Exception e) {
+            throw UncheckedException.throwAsUncheckedException(e);
+        }
+    }
+}
@@ -0,0 +1,131 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.configuration;
+
+import org.gradle.BuildAdapter;
+import org.gradle.api.Project;
+import org.gradle.api.ProjectEvaluationListener;
+import org.gradle.api.ProjectState;
+import org.gradle.api.internal.DocumentationRegistry;
+import org.gradle.api.internal.initialization.ClassLoaderScope;
+import org.gradle.api.internal.project.ProjectInternal;
+import org.gradle.api.invocation.Gradle;
+import org.gradle.groovy.scripts.ScriptSource;
+import org.gradle.groovy.scripts.internal.BuildScriptDataSerializer;
+import org.gradle.groovy.scripts.internal.FileCacheBackedScriptClassCompiler;
+import org.gradle.internal.Actions;
+import org.gradle.internal.concurrent.ExecutorFactory;
+import org.gradle.internal.concurrent.Stoppable;
+import org.gradle.internal.concurrent.StoppableExecutor;
+import org.gradle.model.dsl.internal.transform.ClosureCreationInterceptingVerifier;
+import org.gradle.plugin.use.internal.PluginRequestsSerializer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.regex.Pattern;
+
+/**
+ * Compiles the build scripts of the projects of a build on a pool of threads, ahead of the evaluation of the projects.
+ *
+ * <p>The first pass of each build script is compiled once the projects have been loaded. The second pass of a build script is compiled once
+ * the parent of the project has been evaluated, as it is compiled against the build script classpath of the parent. Build scripts that
+ * contain a {@code buildscript} block are compiled against their own classpath, so their second pass is compiled when the project is
+ * evaluated, as usual.</p>
+ */
+public class BuildScriptPrecompiler extends BuildAdapter implements ProjectEvaluationListener, Stoppable {
+    public static final String PRECOMPILE_TOGGLE = "org.gradle.scripts.precompile";
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(BuildScriptPrecompiler.class);
+    private static final Pattern CLASSPATH_BLOCK = Pattern.compile("\\bbuildscript\\b");
+
+    private final FileCacheBackedScriptClassCompiler scriptCompiler;
+    private final DocumentationRegistry documentationRegistry;
+    private final StoppableExecutor executor;
+    private volatile boolean projectsEvaluated;
+
+    public BuildScriptPrecompiler(FileCacheBackedScriptClassCompiler scriptCompiler, DocumentationRegistry documentationRegistry, ExecutorFactory executorFactory, int maxWorkers) {
+        this.scriptCompiler = scriptCompiler;
+        this.documentationRegistry = documentationRegistry;
+        this.executor = executorFactory.create("Build script compilation", maxWorkers);
+    }
+
+    @Override
+    public void projectsLoaded(Gradle gradle) {
+        if (gradle.getStartParameter().isConfigureOnDemand()) {
+            projectsEvaluated = true;
+            return;
+        }
+        for (Project project : gradle.getRootProject().getAllprojects()) {
+            ProjectInternal projectInternal = (ProjectInternal) project;
+            precompile(projectInternal, projectInternal.getBaseClassLoaderScope(), false);
+        }
+        precompile((ProjectInternal) gradle.getRootProject());
+    }
+
+    @Override
+    public void projectsEvaluated(Gradle gradle) {
+        projectsEvaluated = true;
+    }
+
+    public void beforeEvaluate(Project project) {
+    }
+
+    public void afterEvaluate(Project project, ProjectState state) {
+        if (projectsEvaluated || state.getFailure() != null) {
+            return;
+        }
+        for (Project child : project.getChildProjects().values()) {
+            precompile((ProjectInternal) child);
+        }
+    }
+
+    private void precompile(ProjectInternal project) {
+        precompile(project, project.getClassLoaderScope().getParent(), true);
+    }
+
+    private void precompile(final ProjectInternal project, ClassLoaderScope scope, final boolean body) {
+        final ScriptSource source = project.getBuildScriptSource();
+        if (!scope.isLocked() || !source.getResource().getExists()) {
+            return;
+        }
+        final ClassLoader classLoader = scope.getExportClassLoader();
+        executor.execute(new Runnable() {
+            public void run() {
+                if (projectsEvaluated) {
+                    return;
+                }
+                try {
+                    ScriptTarget scriptTarget = new ProjectScriptTarget(project);
+                    if (!body) {
+                        scriptCompiler.precompile(source, classLoader, DefaultScriptPluginFactory.createInitialPassOperation(scriptTarget, source, documentationRegistry, new PluginRequestsSerializer()),
+                            scriptTarget.getScriptClass(), Actions.doNothing());
+                    } else if (!CLASSPATH_BLOCK.matcher(source.getResource().getText()).find()) {
+                        scriptCompiler.precompile(source, classLoader, DefaultScriptPluginFactory.createBuildScriptOperation(scriptTarget, source, new BuildScriptDataSerializer()),
+                            scriptTarget.getScriptClass(), ClosureCreationInterceptingVerifier.INSTANCE);
+                    }
+                } catch (Exception e) {
+                    LOGGER.debug("Could not precompile " + source.getDisplayName() + ".", e);
+                }
+            }
+        });
+    }
+
+    public void stop() {
+        projectsEvaluated = true;
+        executor.stop();
+    }
+}
@@ -17,6 +17,8 @@ package org.gradle.configuration;
 
 import org.gradle.StartParameter;
 import org.gradle.api.internal.GradleInternal;
+import org.gradle.execution.CachingProjectConfigurer;
+import org.gradle.execution.ParallelProjectConfigurer;
 import org.gradle.execution.ProjectConfigurer;
 import org.gradle.util.SingleMessageLogger;
 
@@ -32,6 +34,12 @@ public class DefaultBuildConfigurer implements BuildConfigurer {
         if (gradle.getStartParameter().isConfigureOnDemand()) {
             projectConfigurer.configure(gradle.getRootProject());
         } else {
+            if (Boolean.getBoolean(ParallelProjectConfigurer.PARALLEL_CONFIGURATION_TOGGLE)) {
+                SingleMessageLogger.incubatingFeatureUsed("Parallel configuration");
+            }
+            if (Boolean.getBoolean(CachingProjectConfigurer.CONFIGURATION_CACHE_TOGGLE)) {
+                SingleMessageLogger.incubatingFeatureUsed("Configuration cache");
+            }
             projectConfigurer.configureHierarchy(gradle.getRootProject());
         }
     }
@@ -80,6 +80,25 @@ public class DefaultScriptPluginFactory implements ScriptPluginFactory {
         return new ScriptPluginImpl(scriptSource, (ScriptHandlerInternal) scriptHandler, targetScope, baseScope, topLevelScript);
     }
 
+    /**
+     * Creates the operation for the first pass over a script, which extracts the plugin requests and compiles only the classpath block.
+     */
+    static CompileOperation<PluginRequests> createInitialPassOperation(ScriptTarget scriptTarget, ScriptSource scriptSource, DocumentationRegistry documentationRegistry,
+                                                                       PluginRequestsSerializer pluginRequestsSerializer) {
+        String onPluginBlockError = scriptTarget.getSupportsPluginsBlock() ? null : "Only Project build scripts can contain plugins {} blocks";
+        InitialPassStatementTransformer initialPassStatementTransformer = new InitialPassStatementTransformer(scriptTarget.getClasspathBlockName(), onPluginBlockError, scriptSource, documentationRegistry);
+        SubsetScriptTransformer initialTransformer = new SubsetScriptTransformer(initialPassStatementTransformer);
+        return new FactoryBackedCompileOperation<PluginRequests>("cp_" + scriptTarget.getId(), initialTransformer, initialPassStatementTransformer, pluginRequestsSerializer);
+    }
+
+    /**
+     * Creates the operation for the second pass over a script, which compiles everything except the classpath block and plugin requests.
+     */
+    static CompileOperation<BuildScriptData> createBuildScriptOperation(ScriptTarget scriptTarget, ScriptSource scriptSource, BuildScriptDataSerializer buildScriptDataSerializer) {
+        BuildScriptTransformer buildScriptTransformer = new BuildScriptTransformer(scriptTarget.getClasspathBlockName(), scriptSource);
+        return new FactoryBackedCompileOperation<BuildScriptData>(scriptTarget.getId(), buildScriptTransformer, buildScriptTransformer, buildScriptDataSerializer);
+    }
+
     private class ScriptPluginImpl implements ScriptPlugin {
         private final ScriptSource scriptSource;
         private final ClassLoaderScope targetScope;
@@ -122,12 +141,7 @@ public class DefaultScriptPluginFactory implements ScriptPluginFactory {
             // Pass 1, extract plugin requests and execute buildscript {}, ignoring (i.e. not even compiling) anything else
 
             Class<? extends BasicScript> scriptType = scriptTarget.getScriptClass();
-            boolean supportsPluginsBlock = scriptTarget.getSupportsPluginsBlock();
-            String onPluginBlockError = supportsPluginsBlock ? null : "Only Project build scripts can contain plugins {} blocks";
-            String classpathClosureName = scriptTarget.getClasspathBlockName();
-            InitialPassStatementTransformer initialPassStatementTransformer = new InitialPassStatementTransformer(classpathClosureName, onPluginBlockError, scriptSource, documentationRegistry);
-            SubsetScriptTransformer initialTransformer = new SubsetScriptTransformer(initialPassStatementTransformer);
-            CompileOperation<PluginRequests> initialOperation = new FactoryBackedCompileOperation<PluginRequests>("cp_" + scriptTarget.getId(), initialTransformer, initialPassStatementTransformer, pluginRequestsSerializer);
+            CompileOperation<PluginRequests> initialOperation = createInitialPassOperation(scriptTarget, scriptSource, documentationRegistry, pluginRequestsSerializer);
 
             ScriptRunner<? extends BasicScript, PluginRequests> initialRunner = compiler.compile(scriptType, initialOperation, baseScope.getExportClassLoader(), Actions.doNothing());
             initialRunner.run(target, services);
@@ -138,9 +152,7 @@ public class DefaultScriptPluginFactory implements ScriptPluginFactory {
 
             // Pass 2, compile everything except buildscript {} and plugin requests, then run
 
-            BuildScriptTransformer buildScriptTransformer = new BuildScriptTransformer(classpathClosureName, scriptSource);
-            String operationId = scriptTarget.getId();
-            CompileOperation<BuildScriptData> operation = new FactoryBackedCompileOperation<BuildScriptData>(operationId, buildScriptTransformer, buildScriptTransformer, buildScriptDataSerializer);
+            CompileOperation<BuildScriptData> operation = createBuildScriptOperation(scriptTarget, scriptSource, buildScriptDataSerializer);
 
             final ScriptRunner<? extends BasicScript, BuildScriptData> runner = compiler.compile(scriptType, operation, targetScope.getLocalClassLoader(), ClosureCreationInterceptingVerifier.INSTANCE);
             if (scriptTarget.getSupportsMethodInheritance() && runner.getHasMethods()) {
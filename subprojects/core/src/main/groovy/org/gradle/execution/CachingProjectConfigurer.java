@@ -0,0 +1,458 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.execution;
+
+import org.gradle.StartParameter;
+import org.gradle.TaskExecutionRequest;
+import org.gradle.api.Project;
+import org.gradle.api.Task;
+import org.gradle.api.execution.TaskExecutionGraph;
+import org.gradle.api.execution.TaskExecutionGraphListener;
+import org.gradle.api.execution.TaskExecutionListener;
+import org.gradle.api.internal.GradleInternal;
+import org.gradle.api.internal.project.AbstractProject;
+import org.gradle.api.internal.project.ProjectInternal;
+import org.gradle.api.tasks.TaskState;
+import org.gradle.cache.CacheRepository;
+import org.gradle.cache.PersistentCache;
+import org.gradle.cache.internal.FileLockManager;
+import org.gradle.groovy.scripts.Script;
+import org.gradle.groovy.scripts.ScriptExecutionListener;
+import org.gradle.groovy.scripts.ScriptSource;
+import org.gradle.internal.Factory;
+import org.gradle.internal.UncheckedException;
+import org.gradle.internal.classloader.ClassLoaderVisitor;
+import org.gradle.internal.hash.HashUtil;
+import org.gradle.internal.serialize.kryo.KryoBackedDecoder;
+import org.gradle.internal.serialize.kryo.KryoBackedEncoder;
+import org.gradle.util.Clock;
+import org.gradle.util.GradleVersion;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import static org.gradle.cache.internal.filelock.LockOptionsBuilder.mode;
+
+/**
+ * Configures only those projects that a previous build with the same inputs needed, when none of the files that the previous build read
+ * during configuration have changed.
+ *
+ * <p>A build that cannot use a previous build records its inputs once its task graph has been populated. The recorded inputs are the
+ * scripts that were executed, the build script and {@code gradle.properties} file of each project, the {@code gradle.properties} file in the
+ * Gradle user home directory and the build script classpath of each project. The entry is keyed by the Gradle version, the build location,
+ * the requested and excluded tasks, the project and system properties given on the command-line, the init scripts and the set of projects in
+ * the build. The recorded projects are the root project, the projects that contain the tasks of the task graph and their parents, the
+ * projects that accessed other projects while they were being configured, and the projects whose build script refers to other projects.
+ * All projects are recorded when a task accessed other projects while it was being executed, for example to report on them. The entry is
+ * stored once the build has completed. A build whose build script classpath contains a directory is not recorded, as the contents of the
+ * directory are not tracked.</p>
+ *
+ * <p>A later build with the same key and unchanged inputs configures only the recorded projects when the build is configured. Other projects
+ * are still configured when they are referenced, for example by a project dependency, and all projects are configured when the hierarchy is
+ * requested again, for example to build a tooling model. Environment variables and other files that are read by build scripts or plugins are
+ * not recorded, nor are changes that a plugin makes to other projects.</p>
+ */
+public class CachingProjectConfigurer implements ProjectConfigurer, ScriptExecutionListener, TaskExecutionGraphListener, TaskExecutionListener, Closeable {
+    public static final String CONFIGURATION_CACHE_TOGGLE = "org.gradle.configuration.cache";
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(CachingProjectConfigurer.class);
+    private static final long MISSING = -1;
+
+    private final ProjectConfigurer delegate;
+    private final CacheRepository cacheRepository;
+    private final Set<File> scripts = Collections.synchronizedSet(new LinkedHashSet<File>());
+    private volatile String uncacheableReason;
+    private boolean initialised;
+    private GradleInternal gradle;
+    private PersistentCache cache;
+    private File entryFile;
+    private Entry replaying;
+    private boolean replayed;
+    private boolean recording;
+    private Entry recorded;
+
+    public CachingProjectConfigurer(ProjectConfigurer delegate, CacheRepository cacheRepository) {
+        this.delegate = delegate;
+        this.cacheRepository = cacheRepository;
+    }
+
+    public void configure(ProjectInternal project) {
+        delegate.configure(project);
+    }
+
+    public void configureHierarchy(ProjectInternal project) {
+        if (!initialised) {
+            initialised = true;
+            start(project.getGradle());
+        }
+        if (replaying == null || replayed) {
+            delegate.configureHierarchy(project);
+            return;
+        }
+        replayed = true;
+
+        Clock clock = new Clock();
+        List<ProjectInternal> configured = new ArrayList<ProjectInternal>();
+        if (replaying.projects.contains(project.getPath())) {
+            configured.add(project);
+        }
+        for (Project subproject : project.getSubprojects()) {
+            if (replaying.projects.contains(subproject.getPath())) {
+                configured.add((ProjectInternal) subproject);
+            }
+        }
+        for (ProjectInternal p : configured) {
+            delegate.configure(p);
+        }
+
+        Set<String> classPath = classPathOf(configured);
+        classPath.removeAll(replaying.classPath);
+        if (!classPath.isEmpty()) {
+            LOGGER.info("Configuring all projects, as the build script classpath contains {}, which the previous build did not use.", classPath.iterator().next());
+            replaying = null;
+            recording = uncacheableReason == null;
+            delegate.configureHierarchy(gradle.getRootProject());
+            return;
+        }
+        LOGGER.info("Configured {} of {} projects using the configuration of a previous build, taking {}.",
+            configured.size(), project.getSubprojects().size() + 1, clock.getTime());
+    }
+
+    private void start(GradleInternal gradle) {
+        this.gradle = gradle;
+        if (gradle.getStartParameter().isConfigureOnDemand()) {
+            return;
+        }
+        cache = cacheRepository
+            .cache(gradle, "configurationCache")
+            .withDisplayName("configuration cache")
+            .withLockOptions(mode(FileLockManager.LockMode.None))
+            .open();
+        entryFile = new File(cache.getBaseDir(), HashUtil.createHash(createKey(gradle), "MD5").asHexString() + ".bin");
+
+        Entry entry = cache.useCache("Loading configuration cache entry", new Factory<Entry>() {
+            public Entry create() {
+                return read(entryFile);
+            }
+        });
+        if (entry == null) {
+            LOGGER.info("Configuring all projects, as no previous build with the same settings has been recorded.");
+        } else {
+            String changed = findChangedInput(entry);
+            if (changed == null) {
+                replaying = entry;
+                return;
+            }
+            LOGGER.info("Configuring all projects, as {} has changed since the previous build.", changed);
+        }
+        recording = uncacheableReason == null;
+    }
+
+    private static String createKey(GradleInternal gradle) {
+        StartParameter startParameter = gradle.getStartParameter();
+        StringBuilder key = new StringBuilder();
+        key.append(GradleVersion.current().getVersion()).append('\n');
+        key.append(gradle.getRootProject().getProjectDir()).append('\n');
+        key.append(startParameter.getCurrentDir()).append('\n');
+        key.append(startParameter.getBuildFile()).append('\n');
+        key.append(startParameter.getSettingsFile()).append('\n');
+        for (TaskExecutionRequest request : startParameter.getTaskRequests()) {
+            key.append(request.getProjectPath()).append(' ').append(request.getArgs()).append('\n');
+        }
+        key.append(new TreeSet<String>(startParameter.getExcludedTaskNames())).append('\n');
+        key.append(new TreeMap<String, String>(startParameter.getProjectProperties())).append('\n');
+        key.append(new TreeMap<String, String>(startParameter.getSystemPropertiesArgs())).append('\n');
+        key.append(startParameter.getAllInitScripts()).append('\n');
+        key.append(startParameter.isOffline()).append(' ').append(startParameter.isRefreshDependencies()).append('\n');
+        Set<String> projects = new TreeSet<String>();
+        for (Project project : gradle.getRootProject().getAllprojects()) {
+            projects.add(project.getPath());
+        }
+        key.append(projects);
+        return key.toString();
+    }
+
+    private static String findChangedInput(Entry entry) {
+        for (InputFile input : entry.files) {
+            File file = new File(input.path);
+            if (!file.exists()) {
+                if (input.length != MISSING) {
+                    return file.getPath();
+                }
+                continue;
+            }
+            if (input.length == MISSING) {
+                return file.getPath();
+            }
+            if (file.length() == input.length && file.lastModified() == input.lastModified) {
+                continue;
+            }
+            if (input.hash == null || file.isDirectory() || !input.hash.equals(HashUtil.createHash(file, "MD5").asHexString())) {
+                return file.getPath();
+            }
+        }
+        return null;
+    }
+
+    public void scriptClassLoaded(ScriptSource source, Class<? extends Script> scriptClass) {
+        File file = source.getResource().getFile();
+        if (file == null) {
+            uncacheableReason = source.getDisplayName();
+        } else {
+            scripts.add(file);
+        }
+    }
+
+    public void beforeExecute(Task task) {
+        AbstractProject.beforeTaskExecution(task.getProject());
+    }
+
+    public void afterExecute(Task task, TaskState state) {
+        AbstractProject.afterTaskExecution();
+    }
+
+    public void graphPopulated(TaskExecutionGraph graph) {
+        if (!recording) {
+            return;
+        }
+        recording = false;
+        if (uncacheableReason != null) {
+            LOGGER.info("Not recording the configuration of this build, as {} is not a file.", uncacheableReason);
+            return;
+        }
+
+        ProjectInternal rootProject = gradle.getRootProject();
+        Set<ProjectInternal> allProjects = new LinkedHashSet<ProjectInternal>();
+        for (Project project : rootProject.getAllprojects()) {
+            allProjects.add((ProjectInternal) project);
+        }
+
+        final Entry entry = new Entry();
+        entry.projects.add(rootProject.getPath());
+        for (ProjectInternal project : allProjects) {
+            // The build script is also checked, as references made through the Gradle object, such as gradle.rootProject, are not recorded
+            if (project.hasAccessedOtherProjects() || ParallelProjectConfigurer.findCrossProjectReference(project) != null) {
+                entry.projects.add(project.getPath());
+            }
+        }
+        for (Task task : graph.getAllTasks()) {
+            for (Project project = task.getProject(); project != null; project = project.getParent()) {
+                entry.projects.add(project.getPath());
+            }
+        }
+
+        Set<File> files = new LinkedHashSet<File>(scripts);
+        for (ProjectInternal project : allProjects) {
+            files.add(project.getBuildFile());
+            files.add(new File(project.getProjectDir(), Project.GRADLE_PROPERTIES));
+        }
+        files.add(new File(gradle.getGradleUserHomeDir(), Project.GRADLE_PROPERTIES));
+        for (File file : files) {
+            entry.files.add(snapshot(file, true));
+        }
+
+        entry.classPath.addAll(classPathOf(allProjects));
+        for (String url : entry.classPath) {
+            if (url.startsWith("file:")) {
+                File file = toFile(url);
+                if (file.isDirectory()) {
+                    LOGGER.info("Not recording the configuration of this build, as its build script classpath contains directory {}.", file);
+                    return;
+                }
+                entry.files.add(snapshot(file, false));
+            }
+        }
+
+        recorded = entry;
+    }
+
+    private void store() {
+        final Entry entry = recorded != null ? recorded : replaying;
+        if (entry == null) {
+            return;
+        }
+        Set<String> allProjects = new LinkedHashSet<String>();
+        boolean tasksAccessedOtherProjects = false;
+        for (Project project : gradle.getRootProject().getAllprojects()) {
+            allProjects.add(project.getPath());
+            tasksAccessedOtherProjects |= ((ProjectInternal) project).hasTasksAccessedOtherProjects();
+        }
+        if (tasksAccessedOtherProjects && entry.projects.addAll(allProjects)) {
+            LOGGER.info("Recording all projects, as a task of this build has accessed other projects.");
+        } else if (entry != recorded) {
+            return;
+        }
+
+        cache.useCache("Storing configuration cache entry", new Runnable() {
+            public void run() {
+                write(entry, entryFile);
+            }
+        });
+        LOGGER.info("Recorded the configuration of this build, which uses {} of {} projects.", entry.projects.size(), allProjects.size());
+    }
+
+    private static InputFile snapshot(File file, boolean hash) {
+        InputFile input = new InputFile();
+        input.path = file.getAbsolutePath();
+        if (file.exists()) {
+            input.length = file.length();
+            input.lastModified = file.lastModified();
+            input.hash = hash && file.isFile() ? HashUtil.createHash(file, "MD5").asHexString() : null;
+        } else {
+            input.length = MISSING;
+        }
+        return input;
+    }
+
+    private static File toFile(String url) {
+        try {
+            return new File(new URL(url).toURI());
+        } catch (Exception e) {
+            throw UncheckedException.throwAsUncheckedException(e);
+        }
+    }
+
+    private static Set<String> classPathOf(Iterable<ProjectInternal> projects) {
+        final Set<String> classPath = new LinkedHashSet<String>();
+        final Map<ClassLoader, Boolean> visited = new IdentityHashMap<ClassLoader, Boolean>();
+        ClassLoaderVisitor visitor = new ClassLoaderVisitor() {
+            @Override
+            public void visit(ClassLoader classLoader) {
+                if (visited.put(classLoader, Boolean.TRUE) == null) {
+                    super.visit(classLoader);
+                }
+            }
+
+            @Override
+            public void visitClassPath(URL[] urls) {
+                for (URL url : urls) {
+                    classPath.add(url.toString());
+                }
+            }
+        };
+        for (ProjectInternal project : projects) {
+            visitor.visit(project.getClassLoaderScope().getLocalClassLoader());
+        }
+        return classPath;
+    }
+
+    private static Entry read(File entryFile) {
+        if (!entryFile.isFile()) {
+            return null;
+        }
+        try {
+            KryoBackedDecoder decoder = new KryoBackedDecoder(new FileInputStream(entryFile));
+            try {
+                Entry entry = new Entry();
+                int files = decoder.readSmallInt();
+                for (int i = 0; i < files; i++) {
+                    InputFile input = new InputFile();
+                    input.path = decoder.readString();
+                    input.length = decoder.readLong();
+                    input.lastModified = decoder.readLong();
+                    input.hash = decoder.readNullableString();
+                    entry.files.add(input);
+                }
+                int classPath = decoder.readSmallInt();
+                for (int i = 0; i < classPath; i++) {
+                    entry.classPath.add(decoder.readString());
+                }
+                int projects = decoder.readSmallInt();
+                for (int i = 0; i < projects; i++) {
+                    entry.projects.add(decoder.readString());
+                }
+                return entry;
+            } finally {
+                decoder.close();
+            }
+        } catch (Exception e) {
+            LOGGER.debug("Could not read configuration cache entry " + entryFile + ".", e);
+            return null;
+        }
+    }
+
+    private static void write(Entry entry, File entryFile) {
+        File tmpFile = new File(entryFile.getPath() + ".tmp");
+        try {
+            KryoBackedEncoder encoder = new KryoBackedEncoder(new FileOutputStream(tmpFile));
+            try {
+                encoder.writeSmallInt(entry.files.size());
+                for (InputFile input : entry.files) {
+                    encoder.writeString(input.path);
+                    encoder.writeLong(input.length);
+                    encoder.writeLong(input.lastModified);
+                    encoder.writeNullableString(input.hash);
+                }
+                encoder.writeSmallInt(entry.classPath.size());
+                for (String url : entry.classPath) {
+                    encoder.writeString(url);
+                }
+                encoder.writeSmallInt(entry.projects.size());
+                for (String path : entry.projects) {
+                    encoder.writeString(path);
+                }
+            } finally {
+                encoder.close();
+            }
+        } catch (IOException e) {
+            throw UncheckedException.throwAsUncheckedException(e);
+        }
+        entryFile.delete();
+        if (!tmpFile.renameTo(entryFile)) {
+            LOGGER.debug("Could not write configuration cache entry {}.", entryFile);
+            tmpFile.delete();
+        }
+    }
+
+    public void close() {
+        if (cache != null) {
+            try {
+                store();
+            } finally {
+                cache.close();
+            }
+        }
+    }
+
+    private static class Entry {
+        final List<InputFile> files = new ArrayList<InputFile>();
+        final Set<String> classPath = new LinkedHashSet<String>();
+        final Set<String> projects = new LinkedHashSet<String>();
+    }
+
+    private static class InputFile {
+        String path;
+        long length;
+        long lastModified;
+        String hash;
+    }
+}
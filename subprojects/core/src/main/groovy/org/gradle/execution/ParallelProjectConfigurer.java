@@ -0,0 +1,234 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.execution;
+
+import org.gradle.api.InvalidUserCodeException;
+import org.gradle.api.Project;
+import org.gradle.api.internal.project.ProjectInternal;
+import org.gradle.initialization.BuildCancellationToken;
+import org.gradle.internal.UncheckedException;
+import org.gradle.internal.concurrent.ExecutorFactory;
+import org.gradle.internal.concurrent.StoppableExecutor;
+import org.gradle.internal.resource.Resource;
+import org.gradle.util.Clock;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Configures the subprojects of a project hierarchy in parallel, where it is safe to do so.
+ *
+ * <p>The root project is configured first. The subprojects are then configured in the usual order, except that consecutive subprojects whose
+ * build scripts do not refer to other projects are configured in parallel, each once its parent project has been configured. A subproject
+ * whose build script refers to other projects, for example using {@code allprojects}, {@code subprojects}, {@code rootProject} or
+ * {@code evaluationDependsOn}, is configured on its own after all previous projects have been configured and before any of the following projects.
+ * The subprojects are configured one at a time once a project evaluation listener has been added to the build, for example using
+ * {@code gradle.afterProject}, as the listener would be notified of the projects concurrently.</p>
+ *
+ * <p>A project that is configured in parallel is not allowed to configure or evaluate another project. This catches references to other
+ * projects that are made by plugins or by scripts that are not inspected.</p>
+ */
+public class ParallelProjectConfigurer extends TaskPathProjectEvaluator {
+    public static final String PARALLEL_CONFIGURATION_TOGGLE = "org.gradle.configuration.parallel";
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ParallelProjectConfigurer.class);
+    private static final ThreadLocal<ParallelEvaluation> CURRENT = new ThreadLocal<ParallelEvaluation>();
+    private static final Map<Pattern, String> CROSS_PROJECT_REFERENCES = new LinkedHashMap<Pattern, String>();
+
+    static {
+        CROSS_PROJECT_REFERENCES.put(Pattern.compile("\\b(allprojects|subprojects|getAllprojects|getSubprojects|childProjects)\\b"), "refers to other projects");
+        CROSS_PROJECT_REFERENCES.put(Pattern.compile("\\bevaluationDependsOn(Children)?\\b"), "depends on the evaluation of other projects");
+        CROSS_PROJECT_REFERENCES.put(Pattern.compile("\\b(project|findProject)\\s*\\([^()]*\\)\\s*[{.]"), "refers to another project");
+        CROSS_PROJECT_REFERENCES.put(Pattern.compile("\\b(rootProject|parent|getRootProject|getParent)\\b"), "refers to another project");
+        CROSS_PROJECT_REFERENCES.put(Pattern.compile("\\bconfigure\\s*\\("), "configures other objects");
+        CROSS_PROJECT_REFERENCES.put(Pattern.compile("\\b(gradle\\s*\\.|getGradle\\s*\\()"), "refers to the build");
+        CROSS_PROJECT_REFERENCES.put(Pattern.compile("\\bapply\\s*\\(?\\s*from\\s*:"), "applies other scripts");
+    }
+
+    private final ExecutorFactory executorFactory;
+    private final int maxWorkers;
+
+    public ParallelProjectConfigurer(BuildCancellationToken cancellationToken, ExecutorFactory executorFactory, int maxWorkers) {
+        super(cancellationToken);
+        this.executorFactory = executorFactory;
+        this.maxWorkers = maxWorkers;
+    }
+
+    @Override
+    public void configureHierarchy(ProjectInternal project) {
+        Clock clock = new Clock();
+        Set<ProjectInternal> configured = Collections.newSetFromMap(new ConcurrentHashMap<ProjectInternal, Boolean>());
+        Stats stats = new Stats();
+
+        configureProject(project, configured);
+        List<ProjectInternal> batch = new ArrayList<ProjectInternal>();
+        for (Project sub : project.getSubprojects()) {
+            ProjectInternal subproject = (ProjectInternal) sub;
+            String crossProjectReference = findCrossProjectReference(subproject);
+            if (crossProjectReference == null) {
+                batch.add(subproject);
+                continue;
+            }
+            LOGGER.info("Configuring {} on its own, as its build script {}.", subproject, crossProjectReference);
+            configureInParallel(batch, configured, stats);
+            batch.clear();
+            configureProject(subproject, configured);
+        }
+        configureInParallel(batch, configured, stats);
+
+        LOGGER.info("Configured {} of {} projects in parallel, taking {} of the {} spent configuring projects. Configuring these projects one at a time would have taken {}.",
+            stats.parallelProjects, configured.size(), Clock.prettyTime(stats.parallelTime), clock.getTime(), Clock.prettyTime(stats.parallelWork));
+    }
+
+    private void configureProject(ProjectInternal project, Set<ProjectInternal> configured) {
+        configure(project);
+        project.getClassLoaderScope().getExportClassLoader();
+        configured.add(project);
+    }
+
+    private void configureInParallel(List<ProjectInternal> batch, final Set<ProjectInternal> configured, Stats stats) {
+        if (batch.size() < 2 || batch.get(0).getGradle().isProjectEvaluationListenerAdded()) {
+            if (batch.size() > 1) {
+                LOGGER.info("Configuring {} projects one at a time, as a project evaluation listener has been added to the build.", batch.size());
+            }
+            for (ProjectInternal project : batch) {
+                configureProject(project, configured);
+            }
+            return;
+        }
+
+        final Map<ProjectInternal, CountDownLatch> completed = new HashMap<ProjectInternal, CountDownLatch>();
+        for (ProjectInternal project : batch) {
+            completed.put(project, new CountDownLatch(1));
+        }
+        final Map<ProjectInternal, Throwable> failures = new ConcurrentHashMap<ProjectInternal, Throwable>();
+        final AtomicLong projectTime = new AtomicLong();
+
+        Clock clock = new Clock();
+        StoppableExecutor executor = executorFactory.create("Project configuration", Math.min(maxWorkers, batch.size()));
+        try {
+            // Projects are queued in the order given, which has a project's parent ahead of the project, so waiting for the parent cannot deadlock
+            for (final ProjectInternal project : batch) {
+                executor.execute(new Runnable() {
+                    public void run() {
+                        try {
+                            CountDownLatch parentCompleted = completed.get(project.getParent());
+                            if (parentCompleted != null) {
+                                parentCompleted.await();
+                            }
+                            if (failures.isEmpty()) {
+                                Clock projectClock = new Clock();
+                                CURRENT.set(new ParallelEvaluation(project, configured));
+                                try {
+                                    configureProject(project, configured);
+                                } finally {
+                                    CURRENT.remove();
+                                    projectTime.addAndGet(projectClock.getTimeInMs());
+                                }
+                            }
+                        } catch (Throwable t) {
+                            failures.put(project, t);
+                        } finally {
+                            completed.get(project).countDown();
+                        }
+                    }
+                });
+            }
+        } finally {
+            executor.stop();
+        }
+        stats.parallelProjects += batch.size();
+        stats.parallelTime += clock.getTimeInMs();
+        stats.parallelWork += projectTime.get();
+
+        for (ProjectInternal project : batch) {
+            Throwable failure = failures.get(project);
+            if (failure != null) {
+                throw UncheckedException.throwAsUncheckedException(failure);
+            }
+        }
+    }
+
+    /**
+     * Returns a description of how the build script of the given project refers to other projects, or null when it does not.
+     */
+    public static String findCrossProjectReference(ProjectInternal project) {
+        Resource buildScript = project.getBuildScriptSource().getResource();
+        if (!buildScript.getExists()) {
+            return null;
+        }
+        String text = buildScript.getText();
+        for (Map.Entry<Pattern, String> entry : CROSS_PROJECT_REFERENCES.entrySet()) {
+            Matcher matcher = entry.getKey().matcher(text);
+            if (matcher.find()) {
+                return String.format("%s using '%s'", entry.getValue(), matcher.group());
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Fails when the current thread is configuring a project in parallel with other projects, and the given project is a different project.
+     */
+    public static void assertCanConfigure(ProjectInternal target) {
+        ParallelEvaluation current = CURRENT.get();
+        if (current != null && current.project != target) {
+            throw new InvalidUserCodeException(String.format("Cannot configure %s from %s, as projects are being configured in parallel. Either remove the reference to the other project, or set the system property '%s' to false.",
+                target, current.project, PARALLEL_CONFIGURATION_TOGGLE));
+        }
+    }
+
+    /**
+     * Fails when the current thread is configuring a project in parallel with other projects, and the given project is a different project
+     * that has not been configured yet.
+     */
+    public static void assertCanEvaluate(ProjectInternal target) {
+        ParallelEvaluation current = CURRENT.get();
+        if (current != null && current.project != target && !current.configured.contains(target)) {
+            throw new InvalidUserCodeException(String.format("Cannot evaluate %s from %s, as projects are being configured in parallel. Either remove the reference to the other project, or set the system property '%s' to false.",
+                target, current.project, PARALLEL_CONFIGURATION_TOGGLE));
+        }
+    }
+
+    private static class ParallelEvaluation {
+        final ProjectInternal project;
+        final Set<ProjectInternal> configured;
+
+        ParallelEvaluation(ProjectInternal project, Set<ProjectInternal> configured) {
+            this.project = project;
+            this.configured = configured;
+        }
+    }
+
+    private static class Stats {
+        int parallelProjects;
+        long parallelTime;
+        long parallelWork;
+    }
+}
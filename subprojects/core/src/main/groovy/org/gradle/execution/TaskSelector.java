@@ -80,7 +80,8 @@ public class TaskSelector {
         ProjectInternal targetProject = taskPath.getProject();
         if (taskPath.isQualified()) {
             configurer.configure(targetProject);
-        } else {
+        } else if (gradle.getStartParameter().isConfigureOnDemand()) {
+            // Otherwise the whole hierarchy has already been configured by the build
             configurer.configureHierarchy(targetProject);
         }
 
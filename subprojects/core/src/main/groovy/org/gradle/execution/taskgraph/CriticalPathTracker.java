@@ -0,0 +1,202 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.execution.taskgraph;
+
+import com.google.common.base.Joiner;
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import org.gradle.api.Nullable;
+import org.gradle.api.internal.changedetection.state.TaskDurationRepository;
+import org.gradle.api.logging.Logger;
+import org.gradle.api.logging.Logging;
+import org.gradle.internal.Factory;
+import org.gradle.internal.TimeProvider;
+import org.gradle.util.Clock;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Predicts, from the durations of previous executions, the longest path from each task of an execution plan to the end of the build. Tasks at the
+ * head of long chains of dependent tasks can then be started first, so that those chains do not leave the end of a parallel build running on a
+ * single worker. Also records the durations of the executed tasks, and reports the predicted and actual critical path of the build.
+ *
+ * <p>This class is not thread-safe.</p>
+ */
+class CriticalPathTracker {
+    private static final Logger LOGGER = Logging.getLogger(CriticalPathTracker.class);
+
+    private final Factory<? extends TaskDurationRepository> durationRepositoryFactory;
+    private final TimeProvider timeProvider;
+    private final Map<String, Long> previousDurations = Maps.newHashMap();
+    // The predicted duration of the longest path from each task to the end of the build, including the task itself
+    private final Map<TaskInfo, Long> remainingDurations = Maps.newHashMap();
+    private final Map<TaskInfo, Long> startTimes = Maps.newHashMap();
+    private final Map<TaskInfo, Long> finishTimes = Maps.newHashMap();
+    private TaskDurationRepository durationRepository;
+
+    CriticalPathTracker(Factory<? extends TaskDurationRepository> durationRepositoryFactory, TimeProvider timeProvider) {
+        this.durationRepositoryFactory = durationRepositoryFactory;
+        this.timeProvider = timeProvider;
+    }
+
+    /**
+     * Predicts the remaining durations of the tasks of the given plan, which must be ordered so that each task comes after the tasks it depends on.
+     */
+    public void planDetermined(List<TaskInfo> plan) {
+        clear();
+        List<String> taskPaths = Lists.newArrayListWithCapacity(plan.size());
+        for (TaskInfo taskInfo : plan) {
+            taskPaths.add(taskInfo.getTask().getPath());
+        }
+        previousDurations.putAll(getDurationRepository().getPreviousDurations(taskPaths));
+
+        // Visit the dependents of each task before the task itself
+        for (int i = plan.size() - 1; i >= 0; i--) {
+            TaskInfo taskInfo = plan.get(i);
+            long longestDependentPath = 0;
+            for (TaskInfo dependent : dependents(taskInfo)) {
+                Long remainingDuration = remainingDurations.get(dependent);
+                if (remainingDuration != null) {
+                    longestDependentPath = Math.max(longestDependentPath, remainingDuration);
+                }
+            }
+            remainingDurations.put(taskInfo, previousDuration(taskInfo) + longestDependentPath);
+        }
+    }
+
+    public long getRemainingDuration(TaskInfo taskInfo) {
+        Long remainingDuration = remainingDurations.get(taskInfo);
+        return remainingDuration == null ? 0 : remainingDuration;
+    }
+
+    public void taskStarted(TaskInfo taskInfo) {
+        startTimes.put(taskInfo, timeProvider.getCurrentTime());
+    }
+
+    public void taskCompleted(TaskInfo taskInfo) {
+        if (startTimes.containsKey(taskInfo)) {
+            finishTimes.put(taskInfo, timeProvider.getCurrentTime());
+        }
+    }
+
+    /**
+     * Records the durations of the executed tasks and reports the critical path.
+     */
+    public void executionFinished() {
+        if (finishTimes.isEmpty()) {
+            return;
+        }
+        Map<String, Long> durations = Maps.newHashMap();
+        for (TaskInfo taskInfo : finishTimes.keySet()) {
+            durations.put(taskInfo.getTask().getPath(), actualDuration(taskInfo));
+        }
+        getDurationRepository().recordDurations(durations);
+
+        if (LOGGER.isInfoEnabled()) {
+            LOGGER.info("Predicted critical path: {}", describe(predictedCriticalPath(), true));
+            LOGGER.info("Actual critical path: {}", describe(actualCriticalPath(), false));
+        }
+    }
+
+    public void clear() {
+        previousDurations.clear();
+        remainingDurations.clear();
+        startTimes.clear();
+        finishTimes.clear();
+    }
+
+    /**
+     * Follows the dependents with the longest predicted remaining duration, starting from the task with the longest predicted remaining duration.
+     */
+    private List<TaskInfo> predictedCriticalPath() {
+        List<TaskInfo> path = Lists.newArrayList();
+        TaskInfo current = longestRemaining(remainingDurations.keySet());
+        while (current != null) {
+            path.add(current);
+            current = longestRemaining(dependents(current));
+        }
+        return path;
+    }
+
+    @Nullable
+    private TaskInfo longestRemaining(Iterable<TaskInfo> candidates) {
+        TaskInfo longest = null;
+        for (TaskInfo candidate : candidates) {
+            if (remainingDurations.containsKey(candidate) && (longest == null || getRemainingDuration(candidate) > getRemainingDuration(longest))) {
+                longest = candidate;
+            }
+        }
+        return longest;
+    }
+
+    /**
+     * Follows the dependencies that finished last, starting from the task that finished last.
+     */
+    private List<TaskInfo> actualCriticalPath() {
+        List<TaskInfo> path = Lists.newArrayList();
+        TaskInfo current = lastFinished(finishTimes.keySet());
+        while (current != null) {
+            path.add(0, current);
+            current = lastFinished(Iterables.concat(current.getDependencySuccessors(), current.getMustSuccessors()));
+        }
+        return path;
+    }
+
+    @Nullable
+    private TaskInfo lastFinished(Iterable<TaskInfo> candidates) {
+        TaskInfo last = null;
+        for (TaskInfo candidate : candidates) {
+            if (finishTimes.containsKey(candidate) && (last == null || finishTimes.get(candidate) > finishTimes.get(last))) {
+                last = candidate;
+            }
+        }
+        return last;
+    }
+
+    private String describe(List<TaskInfo> path, boolean predicted) {
+        long total = 0;
+        List<String> tasks = Lists.newArrayListWithCapacity(path.size());
+        for (TaskInfo taskInfo : path) {
+            long duration = predicted ? previousDuration(taskInfo) : actualDuration(taskInfo);
+            total += duration;
+            tasks.add(taskInfo.getTask().getPath() + " (" + Clock.prettyTime(duration) + ")");
+        }
+        return Clock.prettyTime(total) + " " + Joiner.on(" -> ").join(tasks);
+    }
+
+    private long previousDuration(TaskInfo taskInfo) {
+        Long duration = previousDurations.get(taskInfo.getTask().getPath());
+        return duration == null ? 0 : duration;
+    }
+
+    private long actualDuration(TaskInfo taskInfo) {
+        return finishTimes.get(taskInfo) - startTimes.get(taskInfo);
+    }
+
+    private static Iterable<TaskInfo> dependents(TaskInfo taskInfo) {
+        return Iterables.concat(taskInfo.getDependencyPredecessors(), taskInfo.getMustPredecessors());
+    }
+
+    private TaskDurationRepository getDurationRepository() {
+        if (durationRepository == null) {
+            durationRepository = durationRepositoryFactory.create();
+        }
+        return durationRepository;
+    }
+}
@@ -18,8 +18,8 @@ package org.gradle.execution.taskgraph;
 
 import com.google.common.base.Function;
 import com.google.common.base.Predicate;
-import com.google.common.base.StandardSystemProperty;
 import com.google.common.collect.*;
+import com.google.common.primitives.Longs;
 import org.gradle.api.*;
 import org.gradle.api.internal.TaskInternal;
 import org.gradle.api.internal.tasks.CachingTaskDependencyResolveContext;
@@ -40,7 +40,6 @@ import org.gradle.internal.graph.DirectedGraphRenderer;
 import org.gradle.internal.graph.GraphNodeRenderer;
 import org.gradle.logging.StyledTextOutput;
 import org.gradle.util.CollectionUtils;
-import org.gradle.util.TextUtil;
 
 import java.io.File;
 import java.io.IOException;
@@ -57,16 +56,32 @@ import java.util.concurrent.locks.ReentrantLock;
 public class DefaultTaskExecutionPlan implements TaskExecutionPlan {
 
     public static final String INTRA_PROJECT_TOGGLE = "org.gradle.parallel.intra";
+    public static final String CRITICAL_PATH_TOGGLE = "org.gradle.parallel.criticalpath";
 
     private final static Logger LOGGER = Logging.getLogger(DefaultTaskExecutionPlan.class);
 
     private final Lock lock = new ReentrantLock();
     private final Condition condition = lock.newCondition();
+    private final Condition taskAvailable = lock.newCondition();
     private final Set<TaskInfo> tasksInUnknownState = new LinkedHashSet<TaskInfo>();
     private final Set<TaskInfo> entryTasks = new LinkedHashSet<TaskInfo>();
     private final TaskDependencyGraph graph = new TaskDependencyGraph();
     private final LinkedHashMap<Task, TaskInfo> executionPlan = new LinkedHashMap<Task, TaskInfo>();
-    private final List<TaskInfo> executionQueue = new LinkedList<TaskInfo>();
+    // The tasks of the plan that have not been started or skipped yet, along with their position in the plan
+    private final Map<TaskInfo, Integer> executionQueue = Maps.newHashMap();
+    // The queued tasks that are ready to run and whose dependencies are complete, in plan order or by longest predicted remaining duration
+    private final TreeSet<TaskInfo> readyTasks = new TreeSet<TaskInfo>(new Comparator<TaskInfo>() {
+        public int compare(TaskInfo left, TaskInfo right) {
+            if (criticalPathTracker != null) {
+                int result = Longs.compare(criticalPathTracker.getRemainingDuration(right), criticalPathTracker.getRemainingDuration(left));
+                if (result != 0) {
+                    return result;
+                }
+            }
+            return executionQueue.get(left).compareTo(executionQueue.get(right));
+        }
+    });
+    private int incompleteQueuedTaskCount;
     private final List<Throwable> failures = new ArrayList<Throwable>();
     private Spec<? super Task> filter = Specs.satisfyAll();
 
@@ -76,18 +91,29 @@ public class DefaultTaskExecutionPlan implements TaskExecutionPlan {
     private final Multiset<String> projectsWithRunningNonParallelizableTasks = HashMultiset.create();
     private final Set<TaskInternal> runningTasks = Sets.newIdentityHashSet();
     private final Map<Task, Set<String>> canonicalizedOutputCache = Maps.newIdentityHashMap();
+    // The canonicalized output paths of those running tasks whose output paths have been canonicalized
+    private final OutputPathTrie<TaskInternal> runningTaskOutputs = new OutputPathTrie<TaskInternal>();
     private final Map<Task, Boolean> isParallelSafeCache = Maps.newIdentityHashMap();
     private boolean tasksCancelled;
 
     private final boolean intraProjectParallelization;
+    private final CriticalPathTracker criticalPathTracker;
 
-    public DefaultTaskExecutionPlan(BuildCancellationToken cancellationToken, boolean intraProjectParallelization) {
+    DefaultTaskExecutionPlan(BuildCancellationToken cancellationToken, boolean intraProjectParallelization, @Nullable CriticalPathTracker criticalPathTracker) {
         this.cancellationToken = cancellationToken;
         this.intraProjectParallelization = intraProjectParallelization;
+        this.criticalPathTracker = criticalPathTracker;
 
         if (intraProjectParallelization) {
             LOGGER.info("intra project task parallelization is enabled");
         }
+        if (criticalPathTracker != null) {
+            LOGGER.info("critical path task prioritization is enabled");
+        }
+    }
+
+    public DefaultTaskExecutionPlan(BuildCancellationToken cancellationToken, boolean intraProjectParallelization) {
+        this(cancellationToken, intraProjectParallelization, null);
     }
 
     public DefaultTaskExecutionPlan(BuildCancellationToken cancellationToken) {
@@ -305,8 +331,66 @@ public class DefaultTaskExecutionPlan implements TaskExecutionPlan {
                 }
             }
         }
+        initializeExecutionQueue();
+    }
+
+    private void initializeExecutionQueue() {
+        readyTasks.clear();
         executionQueue.clear();
-        executionQueue.addAll(executionPlan.values());
+        for (TaskInfo taskInfo : executionPlan.values()) {
+            executionQueue.put(taskInfo, executionQueue.size());
+        }
+        if (criticalPathTracker != null) {
+            criticalPathTracker.planDetermined(Lists.newArrayList(executionPlan.values()));
+        }
+        refreshReadyTasks();
+    }
+
+    /**
+     * Recalculates the ready tasks and incomplete task count from scratch, for when the state of arbitrary tasks has changed.
+     */
+    private void refreshReadyTasks() {
+        readyTasks.clear();
+        incompleteQueuedTaskCount = 0;
+        for (TaskInfo taskInfo : executionQueue.keySet()) {
+            if (!taskInfo.isComplete()) {
+                incompleteQueuedTaskCount++;
+            }
+            maybeMarkReady(taskInfo);
+        }
+    }
+
+    private boolean maybeMarkReady(TaskInfo taskInfo) {
+        return executionQueue.containsKey(taskInfo) && taskInfo.isReady() && taskInfo.allDependenciesComplete() && readyTasks.add(taskInfo);
+    }
+
+    private int markDependentsReady(TaskInfo completedTask) {
+        int newlyReady = 0;
+        for (TaskInfo dependent : Iterables.concat(completedTask.getDependencyPredecessors(), completedTask.getMustPredecessors())) {
+            if (maybeMarkReady(dependent)) {
+                newlyReady++;
+            }
+        }
+        return newlyReady;
+    }
+
+    private void removeFromQueue(TaskInfo taskInfo) {
+        readyTasks.remove(taskInfo);
+        executionQueue.remove(taskInfo);
+        incompleteQueuedTaskCount--;
+    }
+
+    /**
+     * Wakes up to the given number of workers waiting for a task, or all workers when there is nothing left to execute.
+     */
+    private void signalWorkers(int count) {
+        if (incompleteQueuedTaskCount == 0) {
+            taskAvailable.signalAll();
+            return;
+        }
+        for (int i = Math.min(count, readyTasks.size()); i > 0; i--) {
+            taskAvailable.signal();
+        }
     }
 
     private void maybeRemoveProcessedShouldRunAfterEdge(Stack<GraphEdge> walkedShouldRunAfterEdges, TaskInfo taskNode) {
@@ -427,11 +511,17 @@ public class DefaultTaskExecutionPlan implements TaskExecutionPlan {
             graph.clear();
             entryTasks.clear();
             executionPlan.clear();
+            readyTasks.clear();
             executionQueue.clear();
+            incompleteQueuedTaskCount = 0;
+            if (criticalPathTracker != null) {
+                criticalPathTracker.clear();
+            }
             failures.clear();
             projectsWithRunningTasks.clear();
             projectsWithRunningNonParallelizableTasks.clear();
             canonicalizedOutputCache.clear();
+            runningTaskOutputs.clear();
             isParallelSafeCache.clear();
             runningTasks.clear();
         } finally {
@@ -460,34 +550,27 @@ public class DefaultTaskExecutionPlan implements TaskExecutionPlan {
                         tasksCancelled = true;
                     }
                 }
-                TaskInfo nextMatching = null;
-                boolean allTasksComplete = true;
-                Iterator<TaskInfo> iterator = executionQueue.iterator();
-                while (iterator.hasNext()) {
-                    TaskInfo taskInfo = iterator.next();
-                    allTasksComplete = allTasksComplete && taskInfo.isComplete();
-                    if (taskInfo.isReady() && taskInfo.allDependenciesComplete() && canRunWithWithCurrentlyExecutedTasks(taskInfo)) {
-                        nextMatching = taskInfo;
-                        iterator.remove();
-                        break;
-                    }
-                }
-                if (allTasksComplete) {
+                if (incompleteQueuedTaskCount == 0) {
                     return null;
                 }
+                TaskInfo nextMatching = selectNextTask();
                 if (nextMatching == null) {
                     try {
-                        condition.await();
+                        taskAvailable.await();
                     } catch (InterruptedException e) {
                         throw new RuntimeException(e);
                     }
                 } else {
+                    removeFromQueue(nextMatching);
                     if (nextMatching.allDependenciesSuccessful()) {
                         nextMatching.startExecution();
                         recordTaskStarted(nextMatching);
+                        // Hand any remaining ready tasks over to another worker
+                        signalWorkers(1);
                         return nextMatching;
                     } else {
                         nextMatching.skipExecution();
+                        signalWorkers(markDependentsReady(nextMatching));
                         condition.signalAll();
                     }
                 }
@@ -497,20 +580,50 @@ public class DefaultTaskExecutionPlan implements TaskExecutionPlan {
         }
     }
 
-    private boolean canRunWithWithCurrentlyExecutedTasks(TaskInfo taskInfo) {
-        TaskInternal task = taskInfo.getTask();
-        String projectPath = task.getProject().getPath();
+    /**
+     * Selects the first ready task that can run alongside the currently executing tasks. The lock is released while canonicalizing the output
+     * paths of tasks, so the ready tasks are scanned again whenever that happens.
+     */
+    @Nullable
+    private TaskInfo selectNextTask() {
+        while (true) {
+            TaskInternal requiresCanonicalization = null;
+            Iterator<TaskInfo> iterator = readyTasks.iterator();
+            while (iterator.hasNext()) {
+                TaskInfo taskInfo = iterator.next();
+                if (!taskInfo.isReady() || !taskInfo.allDependenciesComplete()) {
+                    // A dependency has been enforced since this task became ready. The task is marked ready again once the dependency completes
+                    iterator.remove();
+                    continue;
+                }
+                if (!canRunWithCurrentlyExecutedTasksOfProject(taskInfo.getTask())) {
+                    continue;
+                }
+                requiresCanonicalization = firstTaskWithoutCanonicalizedOutputs(taskInfo.getTask());
+                if (requiresCanonicalization != null) {
+                    break;
+                }
+                if (canRunWithOutputsOfCurrentlyExecutedTasks(taskInfo.getTask())) {
+                    return taskInfo;
+                }
+            }
+            if (requiresCanonicalization == null) {
+                return null;
+            }
+            canonicalizeOutputPathsWithoutLock(requiresCanonicalization);
+        }
+    }
 
+    private boolean canRunWithCurrentlyExecutedTasksOfProject(TaskInternal task) {
+        String projectPath = task.getProject().getPath();
         if (isParallelizable(task)) {
-            if (projectsWithRunningNonParallelizableTasks.contains(projectPath)) {
-                return false;
-            }
+            return !projectsWithRunningNonParallelizableTasks.contains(projectPath);
         } else {
-            if (projectsWithRunningTasks.contains(projectPath)) {
-                return false;
-            }
+            return !projectsWithRunningTasks.contains(projectPath);
         }
+    }
 
+    private boolean canRunWithOutputsOfCurrentlyExecutedTasks(TaskInternal task) {
         Pair<TaskInternal, String> overlap = firstTaskWithOverlappingOutput(task);
         if (overlap == null) {
             return true;
@@ -521,62 +634,78 @@ public class DefaultTaskExecutionPlan implements TaskExecutionPlan {
         return false;
     }
 
-    private Set<String> canonicalizedOutputPaths(TaskInternal task) {
-        Set<String> paths = canonicalizedOutputCache.get(task);
-        if (paths == null) {
-            paths = Sets.newHashSet(Iterables.transform(task.getOutputs().getFiles(), new Function<File, String>() {
-                @Override
-                public String apply(File file) {
-                    String path;
-                    try {
-                        path = file.getCanonicalPath();
-                    } catch (IOException e) {
-                        throw new UncheckedIOException(e);
-                    }
-                    return path;
-                }
-            }));
-            canonicalizedOutputCache.put(task, paths);
-        }
-
-        return paths;
-    }
-
+    /**
+     * Returns the given task or a running task whose output paths need to be canonicalized before the given task can be checked for
+     * overlapping outputs, or null when there is no such task. Nothing needs to be canonicalized while no tasks are running.
+     */
     @Nullable
-    private Pair<TaskInternal, String> firstTaskWithOverlappingOutput(TaskInternal candidateTask) {
+    private TaskInternal firstTaskWithoutCanonicalizedOutputs(TaskInternal candidateTask) {
         if (runningTasks.isEmpty()) {
             return null;
         }
-
-        for (String candidateTaskOutputPath : canonicalizedOutputPaths(candidateTask)) {
-            for (TaskInternal runningTask : runningTasks) {
-                for (String runningTaskOutputPath : canonicalizedOutputPaths(runningTask)) {
-                    if (pathsOverlap(candidateTaskOutputPath, runningTaskOutputPath)) {
-                        return Pair.of(runningTask, TextUtil.shorterOf(candidateTaskOutputPath, runningTaskOutputPath));
-                    }
-                }
+        if (!canonicalizedOutputCache.containsKey(candidateTask)) {
+            return candidateTask;
+        }
+        for (TaskInternal runningTask : runningTasks) {
+            if (!canonicalizedOutputCache.containsKey(runningTask)) {
+                return runningTask;
             }
         }
-
         return null;
     }
 
+    private void canonicalizeOutputPathsWithoutLock(TaskInternal task) {
+        Set<String> paths;
+        lock.unlock();
+        try {
+            paths = canonicalizedOutputPaths(task);
+        } finally {
+            lock.lock();
+        }
+        if (canonicalizedOutputCache.containsKey(task)) {
+            return;
+        }
+        canonicalizedOutputCache.put(task, paths);
+        if (runningTasks.contains(task)) {
+            addRunningTaskOutputs(task, paths);
+        }
+    }
 
-    private boolean pathsOverlap(String firstPath, String secondPath) {
-        if (firstPath.equals(secondPath)) {
-            return true;
+    private static Set<String> canonicalizedOutputPaths(TaskInternal task) {
+        return Sets.newHashSet(Iterables.transform(task.getOutputs().getFiles(), new Function<File, String>() {
+            @Override
+            public String apply(File file) {
+                String path;
+                try {
+                    path = file.getCanonicalPath();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                return path;
+            }
+        }));
+    }
+
+    private void addRunningTaskOutputs(TaskInternal task, Set<String> paths) {
+        for (String path : paths) {
+            runningTaskOutputs.add(path, task);
+        }
+    }
+
+    @Nullable
+    private Pair<TaskInternal, String> firstTaskWithOverlappingOutput(TaskInternal candidateTask) {
+        if (runningTaskOutputs.isEmpty()) {
+            return null;
         }
 
-        String shorter;
-        String longer;
-        if (firstPath.length() > secondPath.length()) {
-            shorter = secondPath;
-            longer = firstPath;
-        } else {
-            shorter = firstPath;
-            longer = secondPath;
+        for (String candidateTaskOutputPath : canonicalizedOutputCache.get(candidateTask)) {
+            Pair<TaskInternal, String> overlap = runningTaskOutputs.findOverlap(candidateTaskOutputPath);
+            if (overlap != null) {
+                return overlap;
+            }
         }
-        return longer.startsWith(shorter + StandardSystemProperty.FILE_SEPARATOR.value());
+
+        return null;
     }
 
     boolean isParallelizable(TaskInternal task) {
@@ -613,6 +742,13 @@ public class DefaultTaskExecutionPlan implements TaskExecutionPlan {
         }
         projectsWithRunningTasks.add(projectPath);
         runningTasks.add(task);
+        if (criticalPathTracker != null) {
+            criticalPathTracker.taskStarted(taskInfo);
+        }
+        Set<String> paths = canonicalizedOutputCache.get(task);
+        if (paths != null) {
+            addRunningTaskOutputs(task, paths);
+        }
     }
 
     private void recordTaskCompleted(TaskInfo taskInfo) {
@@ -622,9 +758,17 @@ public class DefaultTaskExecutionPlan implements TaskExecutionPlan {
             projectsWithRunningNonParallelizableTasks.remove(projectPath);
         }
         projectsWithRunningTasks.remove(projectPath);
-        canonicalizedOutputCache.remove(task);
+        Set<String> paths = canonicalizedOutputCache.remove(task);
+        if (paths != null) {
+            for (String path : paths) {
+                runningTaskOutputs.remove(path, task);
+            }
+        }
         isParallelSafeCache.remove(task);
         runningTasks.remove(task);
+        if (criticalPathTracker != null) {
+            criticalPathTracker.taskCompleted(taskInfo);
+        }
     }
 
     public void taskComplete(TaskInfo taskInfo) {
@@ -637,6 +781,9 @@ public class DefaultTaskExecutionPlan implements TaskExecutionPlan {
 
             taskInfo.finishExecution();
             recordTaskCompleted(taskInfo);
+            int newlyReady = markDependentsReady(taskInfo);
+            // Wake a worker even when no task has become ready, as the completed task may have been blocking a ready task from running
+            signalWorkers(Math.max(newlyReady, 1));
             condition.signalAll();
         } finally {
             lock.unlock();
@@ -662,7 +809,11 @@ public class DefaultTaskExecutionPlan implements TaskExecutionPlan {
             enforceWithDependencies(dependencyNode, enforcedTasks);
         }
         if (node.isMustNotRun() || node.isRequired()) {
+            if (node.isComplete() && executionQueue.containsKey(node)) {
+                incompleteQueuedTaskCount++;
+            }
             node.enforceRun();
+            maybeMarkReady(node);
         }
     }
 
@@ -695,6 +846,10 @@ public class DefaultTaskExecutionPlan implements TaskExecutionPlan {
                 aborted = true;
             }
         }
+        if (aborted) {
+            refreshReadyTasks();
+            taskAvailable.signalAll();
+        }
         return aborted;
     }
 
@@ -708,6 +863,9 @@ public class DefaultTaskExecutionPlan implements TaskExecutionPlan {
                     throw new RuntimeException(e);
                 }
             }
+            if (criticalPathTracker != null) {
+                criticalPathTracker.executionFinished();
+            }
             rethrowFailures();
         } finally {
             lock.unlock();
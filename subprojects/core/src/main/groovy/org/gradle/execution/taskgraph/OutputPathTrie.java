@@ -0,0 +1,170 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.execution.taskgraph;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import org.gradle.api.Nullable;
+import org.gradle.internal.Pair;
+
+import java.io.File;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A trie of canonical output paths keyed by path segment, used to find the owner of an output path that overlaps a given path in time proportional
+ * to the depth of that path. Two paths overlap when they are equal or when one is an ancestor of the other.
+ *
+ * <p>This class is not thread-safe.</p>
+ */
+class OutputPathTrie<T> {
+    private final char separator;
+    private final Node<T> root = new Node<T>(null, null);
+
+    OutputPathTrie() {
+        this(File.separatorChar);
+    }
+
+    OutputPathTrie(char separator) {
+        this.separator = separator;
+    }
+
+    public void add(String path, T owner) {
+        Node<T> node = root;
+        node.ownerCount++;
+        for (String segment : segments(path)) {
+            Node<T> child = node.children.get(segment);
+            if (child == null) {
+                child = new Node<T>(node, segment);
+                node.children.put(segment, child);
+            }
+            node = child;
+            node.ownerCount++;
+        }
+        node.owners.add(owner);
+    }
+
+    public void remove(String path, T owner) {
+        Node<T> node = find(path);
+        if (node == null || !node.owners.remove(owner)) {
+            return;
+        }
+        while (node != null) {
+            node.ownerCount--;
+            if (node.ownerCount == 0 && node.parent != null) {
+                node.parent.children.remove(node.segment);
+            }
+            node = node.parent;
+        }
+    }
+
+    public boolean isEmpty() {
+        return root.ownerCount == 0;
+    }
+
+    public void clear() {
+        root.children.clear();
+        root.owners.clear();
+        root.ownerCount = 0;
+    }
+
+    /**
+     * Returns an owner of a path that overlaps the given path, along with the shorter of the two overlapping paths, or null when no path overlaps.
+     */
+    @Nullable
+    public Pair<T, String> findOverlap(String path) {
+        List<String> segments = segments(path);
+        Node<T> node = root;
+        int index = 0;
+        while (true) {
+            if (!node.owners.isEmpty()) {
+                // A path that is the same as or an ancestor of the given path
+                return Pair.of(node.owners.get(0), node.getPath(separator));
+            }
+            if (index == segments.size()) {
+                break;
+            }
+            node = node.children.get(segments.get(index++));
+            if (node == null) {
+                return null;
+            }
+        }
+        if (node.ownerCount == 0) {
+            return null;
+        }
+        // A path that is a descendant of the given path
+        while (node.owners.isEmpty()) {
+            for (Node<T> child : node.children.values()) {
+                node = child;
+                break;
+            }
+        }
+        return Pair.of(node.owners.get(0), path);
+    }
+
+    @Nullable
+    private Node<T> find(String path) {
+        Node<T> node = root;
+        for (String segment : segments(path)) {
+            node = node.children.get(segment);
+            if (node == null) {
+                return null;
+            }
+        }
+        return node;
+    }
+
+    private List<String> segments(String path) {
+        List<String> segments = Lists.newArrayList();
+        int start = 0;
+        int length = path.length();
+        for (int i = 0; i < length; i++) {
+            if (path.charAt(i) == separator) {
+                segments.add(path.substring(start, i));
+                start = i + 1;
+            }
+        }
+        if (start < length) {
+            segments.add(path.substring(start));
+        }
+        return segments;
+    }
+
+    private static class Node<T> {
+        final Node<T> parent;
+        final String segment;
+        final Map<String, Node<T>> children = Maps.newHashMap();
+        final List<T> owners = Lists.newArrayListWithCapacity(1);
+        // The number of owners of this node and its descendants
+        int ownerCount;
+
+        Node(Node<T> parent, String segment) {
+            this.parent = parent;
+            this.segment = segment;
+        }
+
+        String getPath(char separator) {
+            if (parent == null) {
+                return "";
+            }
+            if (parent.parent == null) {
+                return segment;
+            }
+            return parent.getPath(separator) + separator + segment;
+        }
+    }
+}
@@ -16,77 +16,246 @@
 package org.gradle.groovy.scripts.internal;
 
 import groovy.lang.Script;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang.StringUtils;
 import org.codehaus.groovy.ast.ClassNode;
 import org.gradle.api.Action;
+import org.gradle.api.internal.file.TemporaryFileProvider;
 import org.gradle.api.internal.initialization.loadercache.ClassLoaderId;
 import org.gradle.cache.CacheRepository;
 import org.gradle.cache.CacheValidator;
 import org.gradle.cache.PersistentCache;
+import org.gradle.cache.internal.FileLockManager;
+import org.gradle.groovy.scripts.DelegatingScriptSource;
 import org.gradle.groovy.scripts.ScriptSource;
+import org.gradle.internal.UncheckedException;
+import org.gradle.internal.classloader.ClassLoaderVisitor;
 import org.gradle.internal.concurrent.CompositeStoppable;
 import org.gradle.internal.hash.HashUtil;
 import org.gradle.logging.ProgressLogger;
 import org.gradle.logging.ProgressLoggerFactory;
+import org.gradle.util.GFileUtils;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Opcodes;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.io.Closeable;
 import java.io.File;
+import java.io.IOException;
+import java.net.URL;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.regex.Pattern;
+
+import static org.gradle.cache.internal.filelock.LockOptionsBuilder.mode;
 
 /**
  * A {@link ScriptClassCompiler} which compiles scripts to a cache directory, and loads them from there.
+ *
+ * <p>Scripts with the same content and compile classpath share the compiled classes, which are compiled once into a cache keyed by the script
+ * content. Each script then receives a copy of these classes with its own source file name, so that stack traces refer to the script. Scripts
+ * containing a {@code model} or {@code plugins} block are compiled separately, as the compiled classes and metadata of these blocks refer to
+ * the location of the script.</p>
  */
 public class FileCacheBackedScriptClassCompiler implements ScriptClassCompiler, Closeable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(FileCacheBackedScriptClassCompiler.class);
+    private static final Pattern LOCATION_DEPENDENT_BLOCK = Pattern.compile("\\b(model|plugins)\\b");
+
     private final ScriptCompilationHandler scriptCompilationHandler;
     private final ProgressLoggerFactory progressLoggerFactory;
     private final CacheRepository cacheRepository;
     private final CacheValidator validator;
+    private final TemporaryFileProvider temporaryFileProvider;
     private final CompositeStoppable caches = new CompositeStoppable();
+    private final ConcurrentMap<String, FutureTask<File>> precompiled = new ConcurrentHashMap<String, FutureTask<File>>();
+    private File sharedCachesDir;
 
     public FileCacheBackedScriptClassCompiler(CacheRepository cacheRepository, CacheValidator validator, ScriptCompilationHandler scriptCompilationHandler,
-                                              ProgressLoggerFactory progressLoggerFactory) {
+                                              ProgressLoggerFactory progressLoggerFactory, TemporaryFileProvider temporaryFileProvider) {
         this.cacheRepository = cacheRepository;
         this.validator = validator;
         this.scriptCompilationHandler = scriptCompilationHandler;
         this.progressLoggerFactory = progressLoggerFactory;
+        this.temporaryFileProvider = temporaryFileProvider;
     }
 
     @Override
     public <T extends Script, M> CompiledScript<T, M> compile(final ScriptSource source, final ClassLoader classLoader, final ClassLoaderId classLoaderId, CompileOperation<M> operation, final Class<T> scriptBaseClass,
                                                               Action<? super ClassNode> verifier) {
+        String scriptText = source.getResource().getText();
+        String sourceHash = HashUtil.createCompactMD5(scriptText);
         Map<String, Object> properties = new HashMap<String, Object>();
         properties.put("source.filename", source.getFileName());
-        properties.put("source.hash", HashUtil.createCompactMD5(source.getResource().getText()));
+        properties.put("source.hash", sourceHash);
 
         String dslId = operation.getId();
-        String cacheName = String.format("scripts/%s/%s", source.getClassName(), dslId);
+        if (!isShareable(scriptText)) {
+            String cacheName = String.format("scripts/%s/%s", source.getClassName(), dslId);
+            PersistentCache cache = cacheRepository.cache(cacheName)
+                    .withProperties(properties)
+                    .withValidator(validator)
+                    .withDisplayName(String.format("%s class cache for %s", dslId, source.getDisplayName()))
+                    .withInitializer(new ProgressReportingInitializer(progressLoggerFactory, new CacheInitializer(source, classLoader, operation, verifier, scriptBaseClass)))
+                    .open();
+
+            // This isn't quite right. The cache will be closed at the end of the build, releasing the shared lock on the classes. Instead, the cache for a script should be
+            // closed once we no longer require the script classes. This may be earlier than the end of the current build, or it may used across multiple builds
+            caches.add(cache);
+
+            return scriptCompilationHandler.loadFromDir(source, classLoader, classesDir(cache), metadataDir(cache), operation, scriptBaseClass, classLoaderId);
+        }
+
+        String classPathHash = hashClassPath(classLoader);
+        properties.put("classpath.hash", classPathHash);
+        ScriptSource sharedSource = new SharedScriptSource(source, sourceHash);
+        String cacheName = String.format("scripts-remapped/%s/%s", source.getClassName(), dslId);
         PersistentCache cache = cacheRepository.cache(cacheName)
                 .withProperties(properties)
                 .withValidator(validator)
-                .withDisplayName(String.format("%s class cache for %s", dslId, source.getDisplayName()))
-                .withInitializer(new ProgressReportingInitializer(progressLoggerFactory, new CacheInitializer(source, classLoader, operation, verifier, scriptBaseClass)))
+                .withDisplayName(String.format("%s remapped class cache for %s", dslId, source.getDisplayName()))
+                .withInitializer(new RemappingInitializer(source, sharedSource, classPathHash, classLoader, operation, verifier, scriptBaseClass))
                 .open();
-
-        // This isn't quite right. The cache will be closed at the end of the build, releasing the shared lock on the classes. Instead, the cache for a script should be
-        // closed once we no longer require the script classes. This may be earlier than the end of the current build, or it may used across multiple builds
         caches.add(cache);
 
-        final File classesDir = classesDir(cache);
-        final File metadataDir = metadataDir(cache);
+        return scriptCompilationHandler.loadFromDir(sharedSource, classLoader, classesDir(cache), metadataDir(cache), operation, scriptBaseClass, classLoaderId);
+    }
+
+    /**
+     * Compiles the given script into the shared cache, if it can be shared and has not been compiled already. Does not load the script classes.
+     * Can be called from any thread, and compiles the script without holding any cache locks, so that several scripts can be compiled at the
+     * same time. A later call to {@link #compile} for the script with the same ClassLoader uses the compiled classes, waiting for them when they
+     * are still being compiled.
+     */
+    public void precompile(final ScriptSource source, final ClassLoader classLoader, final CompileOperation<?> operation, final Class<? extends Script> scriptBaseClass,
+                           final Action<? super ClassNode> verifier) {
+        String scriptText = source.getResource().getText();
+        if (!isShareable(scriptText)) {
+            return;
+        }
+        final ScriptSource sharedSource = new SharedScriptSource(source, HashUtil.createCompactMD5(scriptText));
+        String classPathHash = hashClassPath(classLoader);
+        String cacheName = sharedCacheName(sharedSource, operation.getId(), classPathHash);
+        if (precompiled.containsKey(cacheName)) {
+            return;
+        }
 
-        return scriptCompilationHandler.loadFromDir(source, classLoader, classesDir, metadataDir, operation, scriptBaseClass, classLoaderId);
+        if (isCompiled(cacheName)) {
+            return;
+        }
+
+        FutureTask<File> compilation = new FutureTask<File>(new Callable<File>() {
+            public File call() {
+                File stagingDir = temporaryFileProvider.createTemporaryDirectory("script", null, "scripts");
+                scriptCompilationHandler.compileToDir(sharedSource, classLoader, classesDir(stagingDir), metadataDir(stagingDir), operation, scriptBaseClass, verifier);
+                return stagingDir;
+            }
+        });
+        if (precompiled.putIfAbsent(cacheName, compilation) != null) {
+            return;
+        }
+        compilation.run();
+        caches.add(openSharedCache(cacheName, source, new SharedCacheInitializer(cacheName, sharedSource, classLoader, operation, verifier, scriptBaseClass)));
+        if (precompiled.remove(cacheName, compilation)) {
+            // Another process has compiled the script into the shared cache in the meantime
+            discard(compilation);
+        }
+    }
+
+    private static void discard(FutureTask<File> compilation) {
+        try {
+            GFileUtils.deleteQuietly(compilation.get());
+        } catch (Exception e) {
+            // Ignore, nothing was staged
+        }
     }
 
     public void close() {
         caches.stop();
     }
 
-    private File classesDir(PersistentCache cache) {
-        return new File(cache.getBaseDir(), "classes");
+    private static boolean isShareable(String scriptText) {
+        return scriptText != null && !LOCATION_DEPENDENT_BLOCK.matcher(scriptText).find();
     }
 
-    private File metadataDir(PersistentCache cache) {
-        return new File(cache.getBaseDir(), "metadata");
+    private static String sharedCacheName(ScriptSource sharedSource, String dslId, String classPathHash) {
+        return String.format("%s/%s/%s", sharedSource.getClassName(), dslId, classPathHash);
+    }
+
+    /**
+     * Returns the directory containing the shared caches. Opens this directory without a lock, as each shared cache is locked on its own.
+     */
+    private synchronized File getSharedCachesDir() {
+        if (sharedCachesDir == null) {
+            PersistentCache store = cacheRepository.store("scripts-shared")
+                    .withDisplayName("shared script class caches")
+                    .withLockOptions(mode(FileLockManager.LockMode.None))
+                    .open();
+            caches.add(store);
+            sharedCachesDir = store.getBaseDir();
+        }
+        return sharedCachesDir;
+    }
+
+    /**
+     * Returns true when the given shared cache has been initialized, without locking it. The cache is checked again when it is opened.
+     */
+    private boolean isCompiled(String cacheName) {
+        File cacheDir = new File(getSharedCachesDir(), cacheName);
+        return new File(cacheDir, "cache.properties").isFile() && classesDir(cacheDir).isDirectory() && (validator == null || validator.isValid());
+    }
+
+    private PersistentCache openSharedCache(String cacheName, ScriptSource source, Action<PersistentCache> initializer) {
+        return cacheRepository.cache(new File(getSharedCachesDir(), cacheName))
+                .withValidator(validator)
+                .withDisplayName(String.format("shared class cache for %s", source.getDisplayName()))
+                .withInitializer(initializer)
+                .open();
+    }
+
+    private static String hashClassPath(ClassLoader classLoader) {
+        final StringBuilder classPath = new StringBuilder();
+        final Map<ClassLoader, Boolean> visited = new IdentityHashMap<ClassLoader, Boolean>();
+        new ClassLoaderVisitor() {
+            @Override
+            public void visit(ClassLoader classLoader) {
+                if (visited.put(classLoader, Boolean.TRUE) == null) {
+                    super.visit(classLoader);
+                }
+            }
+
+            @Override
+            public void visitClassPath(URL[] urls) {
+                for (URL url : urls) {
+                    classPath.append(url).append('\n');
+                }
+            }
+        }.visit(classLoader);
+        return HashUtil.createCompactMD5(classPath.toString());
+    }
+
+    private static File classesDir(PersistentCache cache) {
+        return classesDir(cache.getBaseDir());
+    }
+
+    private static File metadataDir(PersistentCache cache) {
+        return metadataDir(cache.getBaseDir());
+    }
+
+    private static File classesDir(File baseDir) {
+        return new File(baseDir, "classes");
+    }
+
+    private static File metadataDir(File baseDir) {
+        return new File(baseDir, "metadata");
     }
 
     private class CacheInitializer implements Action<PersistentCache> {
@@ -112,6 +281,142 @@ public class FileCacheBackedScriptClassCompiler implements ScriptClassCompiler,
         }
     }
 
+    /**
+     * Compiles a script into the shared cache, or moves the classes that were compiled for it by {@link #precompile} into the shared cache.
+     */
+    private class SharedCacheInitializer implements Action<PersistentCache> {
+        private final String cacheName;
+        private final ScriptSource sharedSource;
+        private final ClassLoader classLoader;
+        private final CompileOperation<?> operation;
+        private final Action<? super ClassNode> verifier;
+        private final Class<? extends Script> scriptBaseClass;
+
+        SharedCacheInitializer(String cacheName, ScriptSource sharedSource, ClassLoader classLoader, CompileOperation<?> operation,
+                               Action<? super ClassNode> verifier, Class<? extends Script> scriptBaseClass) {
+            this.cacheName = cacheName;
+            this.sharedSource = sharedSource;
+            this.classLoader = classLoader;
+            this.operation = operation;
+            this.verifier = verifier;
+            this.scriptBaseClass = scriptBaseClass;
+        }
+
+        public void execute(PersistentCache cache) {
+            File stagingDir = takePrecompiled();
+            if (stagingDir != null) {
+                moveIfExists(classesDir(stagingDir), classesDir(cache));
+                moveIfExists(metadataDir(stagingDir), metadataDir(cache));
+                GFileUtils.deleteQuietly(stagingDir);
+                return;
+            }
+            new ProgressReportingInitializer(progressLoggerFactory, new Action<PersistentCache>() {
+                public void execute(PersistentCache cache) {
+                    scriptCompilationHandler.compileToDir(sharedSource, classLoader, classesDir(cache), metadataDir(cache), operation, scriptBaseClass, verifier);
+                }
+            }).execute(cache);
+        }
+
+        private void moveIfExists(File from, File to) {
+            if (from.isDirectory()) {
+                GFileUtils.moveDirectory(from, to);
+            }
+        }
+
+        private File takePrecompiled() {
+            FutureTask<File> compilation = precompiled.remove(cacheName);
+            if (compilation == null) {
+                return null;
+            }
+            // Compiles the script in this thread if no other thread has started compiling it yet
+            compilation.run();
+            try {
+                File stagingDir = compilation.get();
+                return stagingDir.isDirectory() ? stagingDir : null;
+            } catch (ExecutionException e) {
+                // Compile again, to report the failure against the script being compiled
+                LOGGER.debug("Could not precompile {}.", sharedSource.getDisplayName(), e.getCause());
+                return null;
+            } catch (InterruptedException e) {
+                throw UncheckedException.throwAsUncheckedException(e);
+            }
+        }
+    }
+
+    /**
+     * Copies the shared classes for a script into the cache for the script, replacing the source file name in the classes.
+     */
+    private class RemappingInitializer implements Action<PersistentCache> {
+        private final ScriptSource source;
+        private final ScriptSource sharedSource;
+        private final String classPathHash;
+        private final ClassLoader classLoader;
+        private final CompileOperation<?> operation;
+        private final Action<? super ClassNode> verifier;
+        private final Class<? extends Script> scriptBaseClass;
+
+        RemappingInitializer(ScriptSource source, ScriptSource sharedSource, String classPathHash, ClassLoader classLoader, CompileOperation<?> operation,
+                             Action<? super ClassNode> verifier, Class<? extends Script> scriptBaseClass) {
+            this.source = source;
+            this.sharedSource = sharedSource;
+            this.classPathHash = classPathHash;
+            this.classLoader = classLoader;
+            this.operation = operation;
+            this.verifier = verifier;
+            this.scriptBaseClass = scriptBaseClass;
+        }
+
+        public void execute(PersistentCache cache) {
+            String cacheName = sharedCacheName(sharedSource, operation.getId(), classPathHash);
+            PersistentCache sharedCache = openSharedCache(cacheName, source, new SharedCacheInitializer(cacheName, sharedSource, classLoader, operation, verifier, scriptBaseClass));
+            caches.add(sharedCache);
+            try {
+                File classesDir = classesDir(cache);
+                GFileUtils.mkdirs(classesDir);
+                File[] classFiles = classesDir(sharedCache).listFiles();
+                if (classFiles != null) {
+                    for (File classFile : classFiles) {
+                        FileUtils.writeByteArrayToFile(new File(classesDir, classFile.getName()), withSourceFile(FileUtils.readFileToByteArray(classFile), source.getFileName()));
+                    }
+                }
+                if (metadataDir(sharedCache).isDirectory()) {
+                    FileUtils.copyDirectory(metadataDir(sharedCache), metadataDir(cache));
+                }
+            } catch (IOException e) {
+                throw UncheckedException.throwAsUncheckedException(e);
+            }
+        }
+
+        private byte[] withSourceFile(byte[] classFile, final String fileName) {
+            ClassReader reader = new ClassReader(classFile);
+            ClassWriter writer = new ClassWriter(reader, 0);
+            reader.accept(new ClassVisitor(Opcodes.ASM5, writer) {
+                @Override
+                public void visitSource(String source, String debug) {
+                    super.visitSource(fileName, debug);
+                }
+            }, 0);
+            return writer.toByteArray();
+        }
+    }
+
+    /**
+     * A script source whose class name is derived from the content of the script rather than its location.
+     */
+    private static class SharedScriptSource extends DelegatingScriptSource {
+        private final String className;
+
+        SharedScriptSource(ScriptSource source, String sourceHash) {
+            super(source);
+            this.className = StringUtils.substringBeforeLast(source.getClassName(), "_") + "_" + sourceHash;
+        }
+
+        @Override
+        public String getClassName() {
+            return className;
+        }
+    }
+
     static class ProgressReportingInitializer implements Action<PersistentCache> {
         private ProgressLoggerFactory progressLoggerFactory;
         private Action<? super PersistentCache> delegate;
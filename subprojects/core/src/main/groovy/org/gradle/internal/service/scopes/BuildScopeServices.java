@@ -31,6 +31,7 @@ import org.gradle.api.internal.component.ComponentTypeRegistry;
 import org.gradle.api.internal.component.DefaultComponentTypeRegistry;
 import org.gradle.api.internal.file.FileLookup;
 import org.gradle.api.internal.file.FileResolver;
+import org.gradle.api.internal.file.TemporaryFileProvider;
 import org.gradle.api.internal.file.collections.DirectoryFileTreeFactory;
 import org.gradle.api.internal.initialization.DefaultScriptHandlerFactory;
 import org.gradle.api.internal.initialization.ScriptHandlerFactory;
@@ -48,6 +49,8 @@ import org.gradle.cache.CacheRepository;
 import org.gradle.cache.CacheValidator;
 import org.gradle.configuration.*;
 import org.gradle.configuration.project.*;
+import org.gradle.execution.CachingProjectConfigurer;
+import org.gradle.execution.ParallelProjectConfigurer;
 import org.gradle.execution.ProjectConfigurer;
 import org.gradle.execution.TaskPathProjectEvaluator;
 import org.gradle.groovy.scripts.DefaultScriptCompilerFactory;
@@ -204,7 +207,7 @@ public class BuildScopeServices extends DefaultServiceRegistry {
 
     protected FileCacheBackedScriptClassCompiler createFileCacheBackedScriptClassCompiler(
         CacheRepository cacheRepository, final StartParameter startParameter,
-        ProgressLoggerFactory progressLoggerFactory, ClassLoaderCache classLoaderCache, ImportsReader importsReader) {
+        ProgressLoggerFactory progressLoggerFactory, ClassLoaderCache classLoaderCache, ImportsReader importsReader, TemporaryFileProvider temporaryFileProvider) {
         CacheValidator scriptCacheInvalidator = new CacheValidator() {
             public boolean isValid() {
                 return !startParameter.isRecompileScripts();
@@ -214,10 +217,16 @@ public class BuildScopeServices extends DefaultServiceRegistry {
             cacheRepository,
             scriptCacheInvalidator,
             new DefaultScriptCompilationHandler(classLoaderCache, importsReader),
-            progressLoggerFactory
+            progressLoggerFactory,
+            temporaryFileProvider
         );
     }
 
+    protected BuildScriptPrecompiler createBuildScriptPrecompiler(FileCacheBackedScriptClassCompiler scriptCompiler, DocumentationRegistry documentationRegistry,
+                                                                  ExecutorFactory executorFactory, StartParameter startParameter) {
+        return new BuildScriptPrecompiler(scriptCompiler, documentationRegistry, executorFactory, startParameter.getMaxWorkerCount());
+    }
+
     protected ScriptPluginFactory createScriptObjectConfigurerFactory() {
         return new DefaultScriptPluginFactory(
             get(ScriptCompilerFactory.class),
@@ -293,8 +302,20 @@ public class BuildScopeServices extends DefaultServiceRegistry {
         );
     }
 
-    protected ProjectConfigurer createProjectConfigurer(BuildCancellationToken cancellationToken) {
-        return new TaskPathProjectEvaluator(cancellationToken);
+    protected ProjectConfigurer createProjectConfigurer(BuildCancellationToken cancellationToken, ExecutorFactory executorFactory, StartParameter startParameter,
+                                                        CacheRepository cacheRepository, ListenerManager listenerManager) {
+        ProjectConfigurer projectConfigurer;
+        if (Boolean.getBoolean(ParallelProjectConfigurer.PARALLEL_CONFIGURATION_TOGGLE)) {
+            projectConfigurer = new ParallelProjectConfigurer(cancellationToken, executorFactory, startParameter.getMaxWorkerCount());
+        } else {
+            projectConfigurer = new TaskPathProjectEvaluator(cancellationToken);
+        }
+        if (Boolean.getBoolean(CachingProjectConfigurer.CONFIGURATION_CACHE_TOGGLE)) {
+            CachingProjectConfigurer cachingProjectConfigurer = new CachingProjectConfigurer(projectConfigurer, cacheRepository);
+            listenerManager.addListener(cachingProjectConfigurer);
+            return cachingProjectConfigurer;
+        }
+        return projectConfigurer;
     }
 
     protected BuildConfigurer createBuildConfigurer(ProjectConfigurer projectConfigurer) {
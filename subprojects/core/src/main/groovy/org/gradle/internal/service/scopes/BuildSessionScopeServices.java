@@ -38,6 +38,7 @@ import org.gradle.plugin.use.internal.InjectedPluginClasspath;
 import org.gradle.process.internal.DefaultWorkerProcessFactory;
 import org.gradle.process.internal.ExecHandleFactory;
 import org.gradle.process.internal.WorkerProcessBuilder;
+import org.gradle.process.internal.WorkerProcessPool;
 import org.gradle.process.internal.child.WorkerProcessClassPathProvider;
 
 /**
@@ -65,7 +66,7 @@ public class BuildSessionScopeServices extends DefaultServiceRegistry {
     }
 
     Factory<WorkerProcessBuilder> createWorkerProcessFactory(StartParameter startParameter, MessagingServer messagingServer, ClassPathRegistry classPathRegistry,
-                                                             TemporaryFileProvider temporaryFileProvider, ExecHandleFactory execHandleFactory) {
+                                                             TemporaryFileProvider temporaryFileProvider, ExecHandleFactory execHandleFactory, WorkerProcessPool workerProcessPool) {
         return new DefaultWorkerProcessFactory(
             startParameter.getLogLevel(),
             messagingServer,
@@ -73,7 +74,8 @@ public class BuildSessionScopeServices extends DefaultServiceRegistry {
             new LongIdGenerator(),
             startParameter.getGradleUserHomeDir(),
             temporaryFileProvider,
-            execHandleFactory);
+            execHandleFactory,
+            workerProcessPool);
     }
 
     ClassPathRegistry createClassPathRegistry() {
@@ -40,6 +40,7 @@ import org.gradle.configuration.DefaultImportsReader;
 import org.gradle.configuration.ImportsReader;
 import org.gradle.initialization.*;
 import org.gradle.internal.Factory;
+import org.gradle.internal.TrueTimeProvider;
 import org.gradle.internal.classloader.ClassLoaderFactory;
 import org.gradle.internal.classloader.DefaultClassLoaderFactory;
 import org.gradle.internal.classpath.ClassPath;
@@ -71,8 +72,10 @@ import org.gradle.model.internal.manage.instance.ManagedProxyFactory;
 import org.gradle.model.internal.manage.schema.ModelSchemaStore;
 import org.gradle.model.internal.manage.schema.extract.*;
 import org.gradle.process.internal.DefaultExecActionFactory;
+import org.gradle.process.internal.WorkerProcessPool;
 
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Defines the global services shared by all services in a given process. This includes the Gradle CLI, daemon and tooling API provider.
@@ -166,6 +169,11 @@ public class GlobalScopeServices {
         return messagingServices.get(MessagingServer.class);
     }
 
+    WorkerProcessPool createWorkerProcessPool(MessagingServer messagingServer) {
+        // Depends on the messaging server, so that the pooled worker processes are stopped while they can still be asked to stop
+        return new WorkerProcessPool(Runtime.getRuntime().availableProcessors(), 100, TimeUnit.MINUTES.toMillis(10), new TrueTimeProvider());
+    }
+
     ClassGenerator createClassGenerator() {
         return new AsmBackedClassGenerator();
     }
@@ -222,18 +230,23 @@ public class GlobalScopeServices {
         return new ModelRuleExtractor(Iterables.concat(coreExtractors, extractors), managedProxyFactory, modelSchemaStore, structBindingsStore);
     }
 
-    ClassPathSnapshotter createClassPathSnapshotter(GradleBuildEnvironment environment, StringInterner stringInterner) {
+    ClassPathSnapshotter createClassPathSnapshotter(GradleBuildEnvironment environment, StringInterner stringInterner, ListenerManager listenerManager) {
         if (environment.isLongLivingProcess()) {
             final MapBackedInMemoryStore inMemoryStore = new MapBackedInMemoryStore();
             CachingFileSnapshotter fileSnapshotter = new CachingFileSnapshotter(new DefaultHasher(), inMemoryStore, stringInterner);
-            return new HashClassPathSnapshotter(fileSnapshotter, inMemoryStore);
+            HashClassPathSnapshotter classPathSnapshotter = new HashClassPathSnapshotter(fileSnapshotter, inMemoryStore);
+            listenerManager.addListener(classPathSnapshotter);
+            return classPathSnapshotter;
         } else {
             return new FileClassPathSnapshotter();
         }
     }
 
-    ClassLoaderCache createClassLoaderCache(ClassPathSnapshotter classPathSnapshotter) {
-        return new DefaultClassLoaderCache(classPathSnapshotter);
+    ClassLoaderCache createClassLoaderCache(GradleBuildEnvironment environment, ClassPathSnapshotter classPathSnapshotter, ListenerManager listenerManager) {
+        boolean sharePrefixes = environment.isLongLivingProcess() && Boolean.getBoolean(DefaultClassLoaderCache.SHARE_PREFIXES_TOGGLE);
+        DefaultClassLoaderCache classLoaderCache = new DefaultClassLoaderCache(classPathSnapshotter, sharePrefixes);
+        listenerManager.addListener(classLoaderCache);
+        return classLoaderCache;
     }
 
     protected ModelSchemaAspectExtractor createModelSchemaAspectExtractor(ServiceRegistry serviceRegistry) {
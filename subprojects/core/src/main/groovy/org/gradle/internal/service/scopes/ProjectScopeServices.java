@@ -18,6 +18,8 @@ package org.gradle.internal.service.scopes;
 
 import org.gradle.api.Action;
 import org.gradle.api.AntBuilder;
+import org.gradle.api.InvalidUserDataException;
+import org.gradle.api.UnknownProjectException;
 import org.gradle.api.component.SoftwareComponentContainer;
 import org.gradle.api.initialization.dsl.ScriptHandler;
 import org.gradle.api.internal.*;
@@ -61,6 +63,7 @@ import org.gradle.model.internal.registry.ModelRegistry;
 import org.gradle.process.internal.DefaultExecActionFactory;
 import org.gradle.tooling.provider.model.ToolingModelBuilderRegistry;
 import org.gradle.tooling.provider.model.internal.DefaultToolingModelBuilderRegistry;
+import org.gradle.util.GUtil;
 
 import java.io.File;
 
@@ -153,7 +156,15 @@ public class ProjectScopeServices extends DefaultServiceRegistry {
     protected ProjectFinder createProjectFinder() {
         return new ProjectFinder() {
             public ProjectInternal getProject(String path) {
-                return project.project(path);
+                // Does not use project(), as a dependency on another project does not count as accessing that project
+                if (!GUtil.isTrue(path)) {
+                    throw new InvalidUserDataException("A path must be specified!");
+                }
+                ProjectInternal target = project.getProjectRegistry().getProject(project.absoluteProjectPath(path));
+                if (target == null) {
+                    throw new UnknownProjectException(String.format("Project with path '%s' could not be found in %s.", path, project));
+                }
+                return target;
             }
         };
     }
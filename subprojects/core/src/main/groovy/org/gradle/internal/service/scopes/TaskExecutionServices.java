@@ -25,7 +25,10 @@ import org.gradle.api.internal.changedetection.changes.ShortCircuitTaskArtifactS
 import org.gradle.api.internal.changedetection.state.*;
 import org.gradle.api.internal.file.FileCollectionFactory;
 import org.gradle.api.internal.file.FileResolver;
+import org.gradle.api.internal.file.collections.DirectoryWalker;
 import org.gradle.api.internal.hash.DefaultHasher;
+import org.gradle.api.internal.hash.Hasher;
+import org.gradle.api.internal.hash.Murmur3Hasher;
 import org.gradle.api.internal.tasks.TaskExecuter;
 import org.gradle.api.internal.tasks.execution.*;
 import org.gradle.api.invocation.Gradle;
@@ -84,13 +87,27 @@ public class TaskExecutionServices {
         return new DefaultTaskArtifactStateCacheAccess(gradle, cacheRepository, decorator);
     }
 
-    FileSnapshotter createFileSnapshotter(TaskArtifactStateCacheAccess cacheAccess, StringInterner stringInterner) {
-        return new CachingFileSnapshotter(new DefaultHasher(), cacheAccess, stringInterner);
+    CachingFileSnapshotter createFileSnapshotter(TaskArtifactStateCacheAccess cacheAccess, StringInterner stringInterner) {
+        Hasher hasher = Boolean.getBoolean(Murmur3Hasher.FAST_HASHER_TOGGLE) ? new Murmur3Hasher() : new DefaultHasher();
+        return new CachingFileSnapshotter(hasher, cacheAccess, stringInterner);
     }
 
-    TaskArtifactStateRepository createTaskArtifactStateRepository(Instantiator instantiator, TaskArtifactStateCacheAccess cacheAccess, StartParameter startParameter, FileSnapshotter fileSnapshotter,
-                                                                  StringInterner stringInterner, FileResolver fileResolver, FileSystem fileSystem, FileCollectionFactory fileCollectionFactory) {
-        FileCollectionSnapshotter fileCollectionSnapshotter = new DefaultFileCollectionSnapshotter(fileSnapshotter, cacheAccess, stringInterner, fileResolver);
+    TaskArtifactStateRepository createTaskArtifactStateRepository(Instantiator instantiator, TaskArtifactStateCacheAccess cacheAccess, StartParameter startParameter, CachingFileSnapshotter fileSnapshotter,
+                                                                  StringInterner stringInterner, FileResolver fileResolver, FileSystem fileSystem, FileCollectionFactory fileCollectionFactory,
+                                                                  BuildOperationProcessor buildOperationProcessor) {
+        boolean parallelSnapshots = Boolean.getBoolean(ParallelFileCollectionSnapshotter.PARALLEL_SNAPSHOT_TOGGLE);
+        DirectoryWalker directoryWalker = null;
+        // The parallel snapshotter walks file trees on worker threads, which would take turns on the cache lock to use the recorded listings unless the cache is shared
+        if (Boolean.getBoolean(CachingDirectoryWalker.INCREMENTAL_DIRECTORY_SNAPSHOT_TOGGLE)
+            && (!parallelSnapshots || Boolean.getBoolean(DefaultTaskArtifactStateCacheAccess.SHARED_ACCESS_TOGGLE))) {
+            directoryWalker = new CachingDirectoryWalker(cacheAccess, fileSystem, stringInterner);
+        }
+        FileCollectionSnapshotter fileCollectionSnapshotter;
+        if (parallelSnapshots) {
+            fileCollectionSnapshotter = new ParallelFileCollectionSnapshotter(fileSnapshotter, cacheAccess, stringInterner, fileResolver, buildOperationProcessor, directoryWalker);
+        } else {
+            fileCollectionSnapshotter = new DefaultFileCollectionSnapshotter(fileSnapshotter, cacheAccess, stringInterner, fileResolver, directoryWalker);
+        }
         FileCollectionSnapshotter discoveredFileCollectionSnapshotter = new MinimalFileSetSnapshotter(fileSnapshotter, cacheAccess, stringInterner, fileResolver, fileSystem);
 
         FileCollectionSnapshotter outputFilesSnapshotter = new OutputFilesCollectionSnapshotter(fileCollectionSnapshotter, new RandomLongIdGenerator(), cacheAccess, stringInterner);
@@ -120,6 +137,10 @@ public class TaskExecutionServices {
         );
     }
 
+    TaskDurationRepository createTaskDurationRepository(TaskArtifactStateCacheAccess cacheAccess) {
+        return new CacheBackedTaskDurationRepository(cacheAccess);
+    }
+
     TaskPlanExecutor createTaskExecutorFactory(StartParameter startParameter, ExecutorFactory executorFactory) {
         return new TaskPlanExecutorFactory(startParameter.getParallelThreadCount(), executorFactory).create();
     }
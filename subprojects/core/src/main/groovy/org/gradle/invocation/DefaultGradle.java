@@ -31,6 +31,7 @@ import org.gradle.api.internal.initialization.ScriptHandlerFactory;
 import org.gradle.api.internal.plugins.DefaultObjectConfigurationAction;
 import org.gradle.api.internal.plugins.PluginManagerInternal;
 import org.gradle.api.internal.project.AbstractPluginAware;
+import org.gradle.api.internal.project.AbstractProject;
 import org.gradle.api.internal.project.ProjectInternal;
 import org.gradle.api.invocation.Gradle;
 import org.gradle.configuration.ScriptPluginFactory;
@@ -56,6 +57,7 @@ public class DefaultGradle extends AbstractPluginAware implements GradleInternal
     private final ListenerBroadcast<BuildListener> buildListenerBroadcast;
     private final ListenerBroadcast<ProjectEvaluationListener> projectEvaluationListenerBroadcast;
     private ActionBroadcast<Project> rootProjectActions = new ActionBroadcast<Project>();
+    private volatile boolean projectEvaluationListenerAdded;
 
     private final ClassLoaderScope classLoaderScope;
 
@@ -112,6 +114,7 @@ public class DefaultGradle extends AbstractPluginAware implements GradleInternal
     }
 
     public void rootProject(Action<? super Project> action) {
+        AbstractProject.onOtherProjectsAccessed();
         if (rootProjectActions != null) {
             rootProjectActions.add(action);
         } else {
@@ -151,10 +154,14 @@ public class DefaultGradle extends AbstractPluginAware implements GradleInternal
     }
 
     public void beforeProject(Closure closure) {
+        projectEvaluationListenerAdded = true;
+        AbstractProject.onOtherProjectsAccessed();
         projectEvaluationListenerBroadcast.add(new ClosureBackedMethodInvocationDispatch("beforeEvaluate", closure));
     }
 
     public void afterProject(Closure closure) {
+        projectEvaluationListenerAdded = true;
+        AbstractProject.onOtherProjectsAccessed();
         projectEvaluationListenerBroadcast.add(new ClosureBackedMethodInvocationDispatch("afterEvaluate", closure));
     }
 
@@ -171,6 +178,7 @@ public class DefaultGradle extends AbstractPluginAware implements GradleInternal
     }
 
     public void projectsEvaluated(Closure closure) {
+        AbstractProject.onOtherProjectsAccessed();
         buildListenerBroadcast.add(new ClosureBackedMethodInvocationDispatch("projectsEvaluated", closure));
     }
 
@@ -179,6 +187,12 @@ public class DefaultGradle extends AbstractPluginAware implements GradleInternal
     }
 
     public void addListener(Object listener) {
+        if (listener instanceof ProjectEvaluationListener) {
+            projectEvaluationListenerAdded = true;
+        }
+        if (listener instanceof ProjectEvaluationListener || listener instanceof BuildListener) {
+            AbstractProject.onOtherProjectsAccessed();
+        }
         getListenerManager().addListener(listener);
     }
 
@@ -190,6 +204,10 @@ public class DefaultGradle extends AbstractPluginAware implements GradleInternal
         getListenerManager().useLogger(logger);
     }
 
+    public boolean isProjectEvaluationListenerAdded() {
+        return projectEvaluationListenerAdded;
+    }
+
     public ProjectEvaluationListener getProjectEvaluationBroadcaster() {
         return projectEvaluationListenerBroadcast.getSource();
     }
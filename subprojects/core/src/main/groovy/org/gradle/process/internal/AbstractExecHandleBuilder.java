@@ -114,6 +114,10 @@ public abstract class AbstractExecHandleBuilder extends DefaultProcessForkOption
         return this;
     }
 
+    List<ExecHandleListener> getListeners() {
+        return listeners;
+    }
+
     public ExecHandle build() {
         String executable = getExecutable();
         if (StringUtils.isEmpty(executable)) {
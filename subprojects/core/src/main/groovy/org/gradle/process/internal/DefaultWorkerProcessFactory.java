@@ -17,24 +17,30 @@
 package org.gradle.process.internal;
 
 import org.gradle.api.Action;
+import org.gradle.api.Nullable;
 import org.gradle.api.internal.ClassPathRegistry;
 import org.gradle.api.internal.file.TemporaryFileProvider;
 import org.gradle.api.logging.LogLevel;
 import org.gradle.internal.Factory;
 import org.gradle.internal.classloader.ClasspathUtil;
+import org.gradle.internal.classpath.DefaultClassPath;
 import org.gradle.internal.id.IdGenerator;
 import org.gradle.messaging.remote.Address;
 import org.gradle.messaging.remote.ConnectionAcceptor;
 import org.gradle.messaging.remote.MessagingServer;
 import org.gradle.messaging.remote.ObjectConnection;
+import org.gradle.process.internal.child.ActionExecutionWorker;
 import org.gradle.process.internal.child.ApplicationClassesInIsolatedClassLoaderWorkerFactory;
 import org.gradle.process.internal.child.ApplicationClassesInSystemClassLoaderWorkerFactory;
 import org.gradle.process.internal.child.WorkerFactory;
+import org.gradle.process.internal.child.WorkerLease;
+import org.gradle.util.GUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.File;
 import java.net.URL;
+import java.util.Arrays;
 import java.util.List;
 import java.util.concurrent.TimeUnit;
 
@@ -45,16 +51,27 @@ public class DefaultWorkerProcessFactory implements Factory<WorkerProcessBuilder
     private final IdGenerator<?> idGenerator;
     private final File gradleUserHomeDir;
     private final ExecHandleFactory execHandleFactory;
+    private final WorkerProcessPool workerProcessPool;
     private final ApplicationClassesInSystemClassLoaderWorkerFactory systemClassLoaderWorkerFactory;
     private final ApplicationClassesInIsolatedClassLoaderWorkerFactory isolatedClassLoaderWorkerFactory;
 
     public DefaultWorkerProcessFactory(LogLevel workerLogLevel, MessagingServer server, ClassPathRegistry classPathRegistry, IdGenerator<?> idGenerator,
                                        File gradleUserHomeDir, TemporaryFileProvider temporaryFileProvider, ExecHandleFactory execHandleFactory) {
+        this(workerLogLevel, server, classPathRegistry, idGenerator, gradleUserHomeDir, temporaryFileProvider, execHandleFactory, null);
+    }
+
+    /**
+     * @param workerProcessPool The pool to run reusable worker processes in. When null, reusable worker processes are started like any other worker process.
+     */
+    public DefaultWorkerProcessFactory(LogLevel workerLogLevel, MessagingServer server, ClassPathRegistry classPathRegistry, IdGenerator<?> idGenerator,
+                                       File gradleUserHomeDir, TemporaryFileProvider temporaryFileProvider, ExecHandleFactory execHandleFactory,
+                                       @Nullable WorkerProcessPool workerProcessPool) {
         this.workerLogLevel = workerLogLevel;
         this.server = server;
         this.idGenerator = idGenerator;
         this.gradleUserHomeDir = gradleUserHomeDir;
         this.execHandleFactory = execHandleFactory;
+        this.workerProcessPool = workerProcessPool;
         isolatedClassLoaderWorkerFactory = new ApplicationClassesInIsolatedClassLoaderWorkerFactory(classPathRegistry);
         systemClassLoaderWorkerFactory = new ApplicationClassesInSystemClassLoaderWorkerFactory(classPathRegistry, temporaryFileProvider);
     }
@@ -104,14 +121,45 @@ public class DefaultWorkerProcessFactory implements Factory<WorkerProcessBuilder
             JavaExecHandleBuilder javaCommand = getJavaCommand();
             javaCommand.setDisplayName(displayName);
 
-            workerFactory.prepareJavaCommand(id, displayName, this, implementationClassPath, localAddress, javaCommand);
+            ExecHandle execHandle;
+            // The application classes of a pooled worker process are loaded into an isolated ClassLoader, as the system ClassLoader cannot be reloaded
+            if (isReusable() && !isLoadApplicationInSystemClassLoader() && workerProcessPool != null) {
+                execHandle = lease(id, displayName, implementationClassPath, localAddress, javaCommand);
+            } else {
+                workerFactory.prepareJavaCommand(id, displayName, this, implementationClassPath, localAddress, javaCommand);
 
-            javaCommand.args("'" + displayName + "'");
-            ExecHandle execHandle = javaCommand.build();
+                javaCommand.args("'" + displayName + "'");
+                execHandle = javaCommand.build();
+            }
 
             workerProcess.setExecHandle(execHandle);
 
             return workerProcess;
         }
+
+        private ExecHandle lease(Object id, String displayName, List<URL> implementationClassPath, Address serverAddress, final JavaExecHandleBuilder javaCommand) {
+            ActionExecutionWorker worker = new ActionExecutionWorker(getWorker(), id, displayName, serverAddress, getGradleUserHomeDir());
+            WorkerLease lease = new WorkerLease(displayName, new DefaultClassPath(getApplicationClasspath()).getAsURIs(), getSharedPackages(), implementationClassPath, GUtil.serialize(worker));
+            Object key = Arrays.asList(javaCommand.getExecutable(), javaCommand.getWorkingDir(), javaCommand.getActualEnvironment(), javaCommand.getAllJvmArgs(),
+                getLogLevel(), getGradleUserHomeDir());
+
+            return workerProcessPool.lease(key, lease, javaCommand, new Factory<PooledWorkerProcess>() {
+                public PooledWorkerProcess create() {
+                    WorkerProcessBuilder builder = DefaultWorkerProcessFactory.this.create();
+                    builder.setBaseName(getBaseName());
+                    builder.setLogLevel(getLogLevel());
+                    builder.setGradleUserHomeDir(getGradleUserHomeDir());
+                    JavaExecHandleBuilder pooledCommand = builder.getJavaCommand();
+                    pooledCommand.setExecutable(javaCommand.getExecutable());
+                    pooledCommand.setWorkingDir(javaCommand.getWorkingDir());
+                    pooledCommand.setEnvironment(javaCommand.getActualEnvironment());
+                    pooledCommand.jvmArgs(javaCommand.getAllJvmArgs());
+
+                    PooledWorkerProcess process = new PooledWorkerProcess();
+                    process.start(builder);
+                    return process;
+                }
+            });
+        }
     }
 }
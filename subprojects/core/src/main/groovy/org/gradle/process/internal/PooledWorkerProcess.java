@@ -0,0 +1,152 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.process.internal;
+
+import org.gradle.api.Nullable;
+import org.gradle.api.logging.Logger;
+import org.gradle.api.logging.Logging;
+import org.gradle.internal.concurrent.Stoppable;
+import org.gradle.messaging.remote.ObjectConnection;
+import org.gradle.process.ExecResult;
+import org.gradle.process.internal.child.ReusableWorker;
+import org.gradle.process.internal.child.WorkerLease;
+import org.gradle.process.internal.child.WorkerLeaseListener;
+import org.gradle.process.internal.child.WorkerLeaseReceiver;
+
+/**
+ * A worker process which runs the worker actions leased to it, one at a time. See {@link ReusableWorker}.
+ */
+class PooledWorkerProcess implements WorkerLeaseListener, Stoppable {
+    private static final Logger LOGGER = Logging.getLogger(PooledWorkerProcess.class);
+    private final Object lock = new Object();
+    private WorkerProcess workerProcess;
+    private WorkerLeaseReceiver receiver;
+    private ExecHandle execHandle;
+    private boolean running;
+    private boolean stopRequested;
+    private WorkerLeaseListener leaseListener;
+
+    /**
+     * Starts the worker process, using the given builder.
+     */
+    void start(WorkerProcessBuilder builder) {
+        builder.worker(new ReusableWorker());
+        builder.getJavaCommand().listener(new ExecHandleListener() {
+            public void executionStarted(ExecHandle execHandle) {
+                synchronized (lock) {
+                    PooledWorkerProcess.this.execHandle = execHandle;
+                }
+            }
+
+            public void executionFinished(ExecHandle execHandle, ExecResult execResult) {
+                onProcessStop(execResult);
+            }
+        });
+        workerProcess = builder.build();
+        synchronized (lock) {
+            running = true;
+        }
+        workerProcess.start();
+
+        ObjectConnection connection = workerProcess.getConnection();
+        receiver = connection.addOutgoing(WorkerLeaseReceiver.class);
+        connection.addIncoming(WorkerLeaseListener.class, this);
+        connection.connect();
+    }
+
+    boolean isRunning() {
+        synchronized (lock) {
+            return running;
+        }
+    }
+
+    /**
+     * Runs the given worker action in this process. The given listener is notified when the action has completed, or when this process stops before
+     * the action has completed.
+     */
+    void runLease(WorkerLease lease, WorkerLeaseListener listener) {
+        ExecHandle stoppedProcess = null;
+        synchronized (lock) {
+            if (leaseListener != null) {
+                throw new IllegalStateException(String.format("Cannot run %s as process '%s' is already running a worker action.", lease.getDisplayName(), execHandle));
+            }
+            if (running) {
+                leaseListener = listener;
+            } else {
+                stoppedProcess = execHandle;
+            }
+        }
+        if (stoppedProcess != null) {
+            listener.leaseCompleted(String.format("Process '%s' stopped before running %s.", stoppedProcess, lease.getDisplayName()));
+            return;
+        }
+        receiver.runLease(lease);
+    }
+
+    public void leaseCompleted(@Nullable String failure) {
+        WorkerLeaseListener listener;
+        synchronized (lock) {
+            listener = leaseListener;
+            leaseListener = null;
+        }
+        if (listener != null) {
+            listener.leaseCompleted(failure);
+        }
+    }
+
+    private void onProcessStop(ExecResult execResult) {
+        synchronized (lock) {
+            running = false;
+        }
+        leaseCompleted(String.format("Process '%s' finished with exit value %d.", execHandle, execResult.getExitValue()));
+    }
+
+    /**
+     * Asks the process to stop once its current worker action has completed, without waiting for it to stop.
+     */
+    void requestStop() {
+        synchronized (lock) {
+            if (!running || stopRequested) {
+                return;
+            }
+            stopRequested = true;
+        }
+        receiver.stop();
+    }
+
+    /**
+     * Asks the process to stop once its current worker action has completed, and waits for it to stop.
+     */
+    public void stop() {
+        requestStop();
+        try {
+            workerProcess.waitForStop();
+        } catch (ExecException e) {
+            LOGGER.debug(String.format("Process '%s' failed.", execHandle), e);
+        }
+    }
+
+    void abort() {
+        ExecHandle execHandle;
+        synchronized (lock) {
+            execHandle = this.execHandle;
+        }
+        if (execHandle != null) {
+            execHandle.abort();
+        }
+    }
+}
@@ -33,6 +33,10 @@ import java.util.Set;
  *
  * <p>A worker process can optionally specify an application classpath. The classes of this classpath are loaded into an isolated ClassLoader, which is made visible to the worker action ClassLoader.
  * Only the packages specified in the set of shared packages are visible to the worker action ClassLoader.</p>
+ *
+ * <p>A worker process can optionally be reusable, in which case the worker action may be run by a process taken from the {@link WorkerProcessPool}, which is returned to the pool once the worker
+ * action has completed. The application classes of a reusable worker process are loaded into an isolated ClassLoader. A worker process which loads
+ * its application classes into the system ClassLoader is never reused.</p>
  */
 public abstract class WorkerProcessBuilder {
     private final JavaExecHandleBuilder javaCommand;
@@ -41,6 +45,7 @@ public abstract class WorkerProcessBuilder {
     private Action<? super WorkerProcessContext> action;
     private LogLevel logLevel = LogLevel.LIFECYCLE;
     private boolean loadApplicationInSystemClassLoader;
+    private boolean reusable;
     private String baseName = "Gradle Worker";
     private File gradleUserHomeDir;
 
@@ -109,6 +114,14 @@ public abstract class WorkerProcessBuilder {
         this.loadApplicationInSystemClassLoader = loadApplicationInSystemClassLoader;
     }
 
+    public boolean isReusable() {
+        return reusable;
+    }
+
+    public void setReusable(boolean reusable) {
+        this.reusable = reusable;
+    }
+
     public File getGradleUserHomeDir() {
         return gradleUserHomeDir;
     }
@@ -0,0 +1,347 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.process.internal;
+
+import org.gradle.api.Nullable;
+import org.gradle.api.logging.Logger;
+import org.gradle.api.logging.Logging;
+import org.gradle.internal.Factory;
+import org.gradle.internal.TimeProvider;
+import org.gradle.internal.UncheckedException;
+import org.gradle.internal.concurrent.CompositeStoppable;
+import org.gradle.internal.concurrent.Stoppable;
+import org.gradle.internal.event.ListenerBroadcast;
+import org.gradle.process.ExecResult;
+import org.gradle.process.internal.child.WorkerLease;
+import org.gradle.process.internal.child.WorkerLeaseListener;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A pool of worker processes, which are kept running once their worker action has completed, so that they can run the worker action of a later
+ * compatible worker process instead of a new process being started. Worker processes are compatible when they use the same Java command. The pool
+ * lives as long as the process it belongs to, so that a daemon can reuse worker processes across builds.
+ *
+ * <p>The pool keeps up to a fixed number of idle worker processes for each Java command. A process is asked to stop once it has run a fixed number
+ * of worker actions, so that state leaked by the worker actions does not build up, and once it has been idle for longer than a fixed time. Idle
+ * processes are only checked for expiry when the pool is used. The processes are stopped when the pool is stopped.</p>
+ */
+public class WorkerProcessPool implements Stoppable {
+    private static final Logger LOGGER = Logging.getLogger(WorkerProcessPool.class);
+    private final int maxIdleProcesses;
+    private final int maxLeasesPerProcess;
+    private final long maxIdleTime;
+    private final TimeProvider timeProvider;
+    private final Object lock = new Object();
+    private final Map<Object, LinkedList<IdleProcess>> idleProcesses = new HashMap<Object, LinkedList<IdleProcess>>();
+    // The number of worker actions each process has been leased
+    private final Map<PooledWorkerProcess, Integer> processes = new HashMap<PooledWorkerProcess, Integer>();
+    private boolean stopped;
+
+    /**
+     * @param maxIdleProcesses The maximum number of idle worker processes kept for each Java command.
+     * @param maxLeasesPerProcess The maximum number of worker actions run by a worker process.
+     * @param maxIdleTime The time in milliseconds after which an idle worker process is stopped.
+     */
+    public WorkerProcessPool(int maxIdleProcesses, int maxLeasesPerProcess, long maxIdleTime, TimeProvider timeProvider) {
+        this.maxIdleProcesses = maxIdleProcesses;
+        this.maxLeasesPerProcess = maxLeasesPerProcess;
+        this.maxIdleTime = maxIdleTime;
+        this.timeProvider = timeProvider;
+    }
+
+    /**
+     * Creates a handle which runs the given worker action in an idle worker process with the given key when started, or in a new worker process created
+     * by the given factory when there is no such process. The listeners of the given Java command are notified as the worker action starts and completes.
+     */
+    ExecHandle lease(Object key, WorkerLease lease, JavaExecHandleBuilder javaCommand, Factory<PooledWorkerProcess> processFactory) {
+        return new LeaseExecHandle(key, lease, javaCommand, processFactory);
+    }
+
+    private PooledWorkerProcess take(Object key, Factory<PooledWorkerProcess> processFactory) {
+        List<PooledWorkerProcess> stoppedProcesses = new ArrayList<PooledWorkerProcess>();
+        List<PooledWorkerProcess> expiredProcesses;
+        PooledWorkerProcess process = null;
+        synchronized (lock) {
+            for (PooledWorkerProcess candidate : processes.keySet()) {
+                if (!candidate.isRunning()) {
+                    stoppedProcesses.add(candidate);
+                }
+            }
+            processes.keySet().removeAll(stoppedProcesses);
+            expiredProcesses = removeExpiredProcesses();
+            LinkedList<IdleProcess> idle = idleProcesses.get(key);
+            while (idle != null && !idle.isEmpty() && process == null) {
+                PooledWorkerProcess candidate = idle.removeFirst().process;
+                if (candidate.isRunning()) {
+                    process = candidate;
+                    processes.put(process, processes.get(process) + 1);
+                }
+            }
+        }
+        // Clean up the processes that stopped while they were in the pool
+        CompositeStoppable.stoppable(stoppedProcesses).stop();
+        requestStop(expiredProcesses);
+        if (process != null) {
+            return process;
+        }
+
+        process = processFactory.create();
+        synchronized (lock) {
+            if (!stopped) {
+                processes.put(process, 1);
+                return process;
+            }
+        }
+        process.stop();
+        throw new IllegalStateException("Cannot start a worker process as the worker process pool has been stopped.");
+    }
+
+    private void release(Object key, PooledWorkerProcess process) {
+        List<PooledWorkerProcess> expiredProcesses;
+        boolean idle = false;
+        synchronized (lock) {
+            expiredProcesses = removeExpiredProcesses();
+            Integer leases = processes.get(process);
+            if (!stopped && leases != null && leases < maxLeasesPerProcess) {
+                LinkedList<IdleProcess> idleForKey = idleProcesses.get(key);
+                if (idleForKey == null) {
+                    idleForKey = new LinkedList<IdleProcess>();
+                    idleProcesses.put(key, idleForKey);
+                }
+                if (idleForKey.size() < maxIdleProcesses) {
+                    idleForKey.addFirst(new IdleProcess(process, timeProvider.getCurrentTime()));
+                    idle = true;
+                }
+            }
+        }
+        requestStop(expiredProcesses);
+        if (!idle) {
+            process.requestStop();
+        }
+    }
+
+    /**
+     * Removes the processes which have been idle for too long. The most recently released processes are at the start of each list of idle processes.
+     */
+    private List<PooledWorkerProcess> removeExpiredProcesses() {
+        long expiredBefore = timeProvider.getCurrentTime() - maxIdleTime;
+        List<PooledWorkerProcess> expiredProcesses = new ArrayList<PooledWorkerProcess>();
+        for (LinkedList<IdleProcess> idle : idleProcesses.values()) {
+            Iterator<IdleProcess> iterator = idle.descendingIterator();
+            while (iterator.hasNext()) {
+                IdleProcess candidate = iterator.next();
+                if (candidate.idleSince > expiredBefore) {
+                    break;
+                }
+                iterator.remove();
+                expiredProcesses.add(candidate.process);
+            }
+        }
+        return expiredProcesses;
+    }
+
+    private static void requestStop(List<PooledWorkerProcess> processes) {
+        if (!processes.isEmpty()) {
+            LOGGER.debug("Stopping {} idle pooled worker processes.", processes.size());
+        }
+        for (PooledWorkerProcess process : processes) {
+            process.requestStop();
+        }
+    }
+
+    public void stop() {
+        List<PooledWorkerProcess> processes;
+        synchronized (lock) {
+            stopped = true;
+            processes = new ArrayList<PooledWorkerProcess>(this.processes.keySet());
+            this.processes.clear();
+            idleProcesses.clear();
+        }
+        if (!processes.isEmpty()) {
+            LOGGER.debug("Stopping {} pooled worker processes.", processes.size());
+        }
+        CompositeStoppable.stoppable(processes).stop();
+    }
+
+    /**
+     * The execution of a worker action by a pooled worker process.
+     */
+    private class LeaseExecHandle implements ExecHandle, WorkerLeaseListener {
+        private final Object key;
+        private final WorkerLease lease;
+        private final JavaExecHandleBuilder javaCommand;
+        private final Factory<PooledWorkerProcess> processFactory;
+        private final ListenerBroadcast<ExecHandleListener> broadcast = new ListenerBroadcast<ExecHandleListener>(ExecHandleListener.class);
+        private final Object lock = new Object();
+        private ExecHandleState state = ExecHandleState.INIT;
+        private PooledWorkerProcess process;
+        private ExecResult result;
+
+        LeaseExecHandle(Object key, WorkerLease lease, JavaExecHandleBuilder javaCommand, Factory<PooledWorkerProcess> processFactory) {
+            this.key = key;
+            this.lease = lease;
+            this.javaCommand = javaCommand;
+            this.processFactory = processFactory;
+            broadcast.addAll(javaCommand.getListeners());
+        }
+
+        public File getDirectory() {
+            return javaCommand.getWorkingDir();
+        }
+
+        public String getCommand() {
+            return javaCommand.getExecutable();
+        }
+
+        public List<String> getArguments() {
+            return javaCommand.getAllJvmArgs();
+        }
+
+        public Map<String, String> getEnvironment() {
+            return javaCommand.getActualEnvironment();
+        }
+
+        public ExecHandle start() {
+            synchronized (lock) {
+                if (state != ExecHandleState.INIT) {
+                    throw new IllegalStateException(String.format("Cannot start %s as it has already been started.", this));
+                }
+                state = ExecHandleState.STARTING;
+            }
+            PooledWorkerProcess process;
+            try {
+                process = take(key, processFactory);
+            } catch (Throwable t) {
+                synchronized (lock) {
+                    state = ExecHandleState.FAILED;
+                }
+                throw UncheckedException.throwAsUncheckedException(t);
+            }
+            synchronized (lock) {
+                this.process = process;
+                state = ExecHandleState.STARTED;
+            }
+            broadcast.getSource().executionStarted(this);
+            process.runLease(lease, this);
+            return this;
+        }
+
+        public ExecHandleState getState() {
+            synchronized (lock) {
+                return state;
+            }
+        }
+
+        public void abort() {
+            PooledWorkerProcess process;
+            synchronized (lock) {
+                process = this.process;
+            }
+            if (process != null) {
+                process.abort();
+            }
+        }
+
+        public ExecResult waitForFinish() {
+            synchronized (lock) {
+                while (result == null) {
+                    try {
+                        lock.wait();
+                    } catch (InterruptedException e) {
+                        throw UncheckedException.throwAsUncheckedException(e);
+                    }
+                }
+                return result;
+            }
+        }
+
+        public void leaseCompleted(@Nullable String failure) {
+            ExecResult result = new LeaseResult(failure, toString());
+            PooledWorkerProcess process;
+            synchronized (lock) {
+                process = this.process;
+                this.result = result;
+                state = failure == null ? ExecHandleState.SUCCEEDED : ExecHandleState.FAILED;
+                lock.notifyAll();
+            }
+            if (process.isRunning()) {
+                release(key, process);
+            }
+            broadcast.getSource().executionFinished(this, result);
+        }
+
+        public void addListener(ExecHandleListener listener) {
+            broadcast.add(listener);
+        }
+
+        public void removeListener(ExecHandleListener listener) {
+            broadcast.remove(listener);
+        }
+
+        @Override
+        public String toString() {
+            return lease.getDisplayName();
+        }
+    }
+
+    private static class IdleProcess {
+        private final PooledWorkerProcess process;
+        private final long idleSince;
+
+        IdleProcess(PooledWorkerProcess process, long idleSince) {
+            this.process = process;
+            this.idleSince = idleSince;
+        }
+    }
+
+    private static class LeaseResult implements ExecResult {
+        private final String failure;
+        private final String displayName;
+
+        LeaseResult(@Nullable String failure, String displayName) {
+            this.failure = failure;
+            this.displayName = displayName;
+        }
+
+        public int getExitValue() {
+            return failure == null ? 0 : 1;
+        }
+
+        public ExecResult assertNormalExitValue() throws ExecException {
+            return rethrowFailure();
+        }
+
+        public ExecResult rethrowFailure() throws ExecException {
+            if (failure != null) {
+                throw new ExecException(String.format("%s failed in a pooled worker process: %s", displayName, failure));
+            }
+            return this;
+        }
+
+        @Override
+        public String toString() {
+            return "{exitValue=" + getExitValue() + ", failure=" + failure + "}";
+        }
+    }
+}
@@ -0,0 +1,130 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.process.internal.child;
+
+import org.gradle.api.Action;
+import org.gradle.internal.UncheckedException;
+import org.gradle.internal.classloader.CachingClassLoader;
+import org.gradle.internal.classloader.DefaultClassLoaderFactory;
+import org.gradle.internal.classloader.FilteringClassLoader;
+import org.gradle.internal.classloader.MultiParentClassLoader;
+import org.gradle.internal.classloader.MutableURLClassLoader;
+import org.gradle.internal.concurrent.CompositeStoppable;
+import org.gradle.internal.io.ClassLoaderObjectInputStream;
+import org.gradle.messaging.remote.ObjectConnection;
+import org.gradle.process.internal.WorkerProcessContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.ObjectInputStream;
+import java.io.PrintWriter;
+import java.io.Serializable;
+import java.io.StringWriter;
+import java.util.Properties;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * <p>The worker action of a reusable worker process. Runs the worker actions leased to the process one at a time, until asked to stop.</p>
+ *
+ * <p>Each leased worker action is run in the same way as the worker action of a new worker process, with its own application ClassLoader and implementation
+ * ClassLoader. Both are closed once the action has completed, and the system properties are reset to their values before the action was run. The
+ * implementation ClassLoader of a leased worker action shares the worker infrastructure, such as logging and messaging, with the ClassLoader of this action.</p>
+ */
+public class ReusableWorker implements Action<WorkerProcessContext>, Serializable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ReusableWorker.class);
+    private static final String[] INFRASTRUCTURE_PACKAGES = {
+        "org.gradle.api.logging", "org.gradle.internal", "org.gradle.logging", "org.gradle.messaging", "org.gradle.process.internal", "org.slf4j", "net.rubygrapefruit"
+    };
+    private static final Object STOP = new Object();
+
+    public void execute(WorkerProcessContext workerProcessContext) {
+        final BlockingQueue<Object> leases = new LinkedBlockingQueue<Object>();
+        ObjectConnection serverConnection = workerProcessContext.getServerConnection();
+        WorkerLeaseListener listener = serverConnection.addOutgoing(WorkerLeaseListener.class);
+        serverConnection.addIncoming(WorkerLeaseReceiver.class, new WorkerLeaseReceiver() {
+            public void runLease(WorkerLease lease) {
+                leases.add(lease);
+            }
+
+            public void stop() {
+                leases.add(STOP);
+            }
+        });
+        serverConnection.connect();
+
+        try {
+            Object next;
+            while ((next = leases.take()) != STOP) {
+                WorkerLease lease = (WorkerLease) next;
+                String failure = null;
+                Properties systemProperties = (Properties) System.getProperties().clone();
+                try {
+                    runLease(lease);
+                } catch (Throwable t) {
+                    LOGGER.debug(String.format("Failed to run %s.", lease.getDisplayName()), t);
+                    failure = getStackTrace(t);
+                } finally {
+                    System.setProperties(systemProperties);
+                }
+                listener.leaseCompleted(failure);
+            }
+        } catch (InterruptedException e) {
+            throw UncheckedException.throwAsUncheckedException(e);
+        }
+    }
+
+    private void runLease(WorkerLease lease) throws Exception {
+        LOGGER.debug("Running {}.", lease.getDisplayName());
+
+        final ClassLoader applicationClassLoader = new DefaultClassLoaderFactory().createIsolatedClassLoader(lease.getApplicationClassPath());
+        FilteringClassLoader filteredApplication = new FilteringClassLoader(applicationClassLoader);
+        for (String sharedPackage : lease.getSharedPackages()) {
+            filteredApplication.allowPackage(sharedPackage);
+        }
+
+        FilteringClassLoader filteredWorker = new FilteringClassLoader(getClass().getClassLoader());
+        filteredWorker.allowClass(Action.class);
+        for (String infrastructurePackage : INFRASTRUCTURE_PACKAGES) {
+            filteredWorker.allowPackage(infrastructurePackage);
+        }
+
+        MutableURLClassLoader implementationClassLoader = new MutableURLClassLoader(new CachingClassLoader(new MultiParentClassLoader(filteredApplication, filteredWorker)));
+        try {
+            implementationClassLoader.addURLs(lease.getImplementationClassPath());
+
+            ObjectInputStream instr = new ClassLoaderObjectInputStream(new ByteArrayInputStream(lease.getSerializedWorkerAction()), implementationClassLoader);
+            @SuppressWarnings("unchecked")
+            Action<WorkerContext> action = (Action<WorkerContext>) instr.readObject();
+            action.execute(new WorkerContext() {
+                public ClassLoader getApplicationClassLoader() {
+                    return applicationClassLoader;
+                }
+            });
+        } finally {
+            // Releases the jars of the lease, on Java 7 and later
+            CompositeStoppable.stoppable(implementationClassLoader, applicationClassLoader).stop();
+        }
+    }
+
+    private static String getStackTrace(Throwable throwable) {
+        StringWriter stackTrace = new StringWriter();
+        throwable.printStackTrace(new PrintWriter(stackTrace));
+        return stackTrace.toString();
+    }
+}
@@ -0,0 +1,63 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.process.internal.child;
+
+import java.io.Serializable;
+import java.net.URI;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collection;
+
+/**
+ * The configuration of a worker action run by a {@link ReusableWorker}, in place of the configuration a worker process would receive on start-up.
+ */
+public class WorkerLease implements Serializable {
+    private final String displayName;
+    private final Collection<URI> applicationClassPath;
+    private final Collection<String> sharedPackages;
+    private final Collection<URL> implementationClassPath;
+    private final byte[] serializedWorkerAction;
+
+    public WorkerLease(String displayName, Collection<URI> applicationClassPath, Collection<String> sharedPackages, Collection<URL> implementationClassPath,
+                       byte[] serializedWorkerAction) {
+        this.displayName = displayName;
+        this.applicationClassPath = new ArrayList<URI>(applicationClassPath);
+        this.sharedPackages = new ArrayList<String>(sharedPackages);
+        this.implementationClassPath = new ArrayList<URL>(implementationClassPath);
+        this.serializedWorkerAction = serializedWorkerAction;
+    }
+
+    public String getDisplayName() {
+        return displayName;
+    }
+
+    public Collection<URI> getApplicationClassPath() {
+        return applicationClassPath;
+    }
+
+    public Collection<String> getSharedPackages() {
+        return sharedPackages;
+    }
+
+    public Collection<URL> getImplementationClassPath() {
+        return implementationClassPath;
+    }
+
+    public byte[] getSerializedWorkerAction() {
+        return serializedWorkerAction;
+    }
+}
@@ -0,0 +1,32 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.process.internal.child;
+
+/**
+ * Receives the worker actions leased to a {@link ReusableWorker}.
+ */
+public interface WorkerLeaseReceiver {
+    /**
+     * Runs the given worker action once the previous worker action leased to the worker has completed.
+     */
+    void runLease(WorkerLease lease);
+
+    /**
+     * Stops the worker once the worker actions leased to it have completed.
+     */
+    void stop();
+}
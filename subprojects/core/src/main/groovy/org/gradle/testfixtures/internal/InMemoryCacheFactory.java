@@ -105,6 +105,14 @@ public class InMemoryCacheFactory implements CacheFactory {
             action.run();
         }
 
+        public <T> T useCacheShared(String operationDisplayName, Factory<? extends T> action) {
+            return useCache(operationDisplayName, action);
+        }
+
+        public void useCacheShared(String operationDisplayName, Runnable action) {
+            useCache(operationDisplayName, action);
+        }
+
         public <T> T longRunningOperation(String operationDisplayName, Factory<? extends T> action) {
             assertNotClosed();
             return action.create();
@@ -0,0 +1,167 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.changedetection.state
+
+import org.gradle.api.file.FileVisitDetails
+import org.gradle.api.file.FileVisitor
+import org.gradle.api.internal.cache.StringInterner
+import org.gradle.api.internal.file.TestFiles
+import org.gradle.api.internal.file.collections.DirectoryFileTree
+import org.gradle.api.tasks.util.PatternSet
+import org.gradle.cache.internal.MapBackedInMemoryStore
+import org.gradle.test.fixtures.file.TestFile
+import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
+import org.junit.Rule
+import spock.lang.Specification
+
+class CachingDirectoryWalkerTest extends Specification {
+    @Rule
+    final TestNameTestDirectoryProvider tmpDir = new TestNameTestDirectoryProvider()
+    def store = new MapBackedInMemoryStore()
+    def walker = new CachingDirectoryWalker(store, TestFiles.fileSystem(), new StringInterner(), 1000)
+    def oldTimestamp = (long) (System.currentTimeMillis() / 1000 - 3600) * 1000
+    TestFile rootDir
+
+    def setup() {
+        rootDir = tmpDir.createDir("root")
+        rootDir.file("a.txt").text = "a"
+        rootDir.file("b.java").text = "b"
+        rootDir.file("sub/c.txt").text = "c"
+        rootDir.file("sub/deeper/d.txt").text = "d"
+        rootDir.file("other/e.txt").text = "e"
+        settle(rootDir)
+    }
+
+    def "visits the same elements as the default walker"() {
+        expect:
+        visit(new DirectoryFileTree(rootDir), walker).sort() == visit(new DirectoryFileTree(rootDir)).sort()
+        visit(new DirectoryFileTree(rootDir), walker).sort() == visit(new DirectoryFileTree(rootDir)).sort()
+    }
+
+    def "visits files of a directory before its subdirectories"() {
+        when:
+        def visited = visit(new DirectoryFileTree(rootDir), walker)
+
+        then:
+        visited == ["a.txt", "b.java", "other", "other/e.txt", "sub", "sub/c.txt", "sub/deeper", "sub/deeper/d.txt"]
+
+        when:
+        visited = visit(new DirectoryFileTree(rootDir).postfix(), walker)
+
+        then:
+        visited == ["a.txt", "b.java", "other/e.txt", "other", "sub/c.txt", "sub/deeper/d.txt", "sub/deeper", "sub"]
+    }
+
+    def "applies the patterns of the tree"() {
+        def patterns = new PatternSet().include("**/*.txt").exclude("other/**")
+
+        when:
+        def visited = visit(new DirectoryFileTree(rootDir, patterns), walker)
+
+        then:
+        visited.sort() == visit(new DirectoryFileTree(rootDir, patterns)).sort()
+        visited.containsAll(["a.txt", "sub/c.txt", "sub/deeper/d.txt"])
+        !visited.contains("b.java")
+        !visited.contains("other/e.txt")
+    }
+
+    def "reuses recorded listing while modification time of directory is unchanged"() {
+        given:
+        visit(new DirectoryFileTree(rootDir), walker)
+
+        when:
+        rootDir.file("sub/new.txt").text = "new"
+        rootDir.file("sub").lastModified = oldTimestamp
+
+        then:
+        !visit(new DirectoryFileTree(rootDir), walker).contains("sub/new.txt")
+    }
+
+    def "lists directory again when its modification time changes"() {
+        given:
+        visit(new DirectoryFileTree(rootDir), walker)
+
+        when:
+        rootDir.file("sub/new.txt").text = "new"
+        rootDir.file("sub/c.txt").delete()
+
+        then:
+        def visited = visit(new DirectoryFileTree(rootDir), walker)
+        visited.contains("sub/new.txt")
+        !visited.contains("sub/c.txt")
+    }
+
+    def "does not record listing of recently modified directory"() {
+        given:
+        def dir = rootDir.file("sub")
+        dir.lastModified = System.currentTimeMillis()
+        visit(new DirectoryFileTree(rootDir), walker)
+
+        when:
+        def timestamp = dir.lastModified()
+        dir.file("new.txt").text = "new"
+        dir.lastModified = timestamp
+
+        then:
+        visit(new DirectoryFileTree(rootDir), walker).contains("sub/new.txt")
+    }
+
+    def "walks directories in full when recorded listing turns out to be stale"() {
+        given:
+        def walker = new CachingDirectoryWalker(store, TestFiles.fileSystem(), new StringInterner(), 1)
+        visit(new DirectoryFileTree(rootDir), walker)
+
+        when:
+        rootDir.file("sub/new.txt").text = "new"
+        rootDir.file("sub").lastModified = oldTimestamp
+
+        then:
+        visit(new DirectoryFileTree(rootDir), walker).contains("sub/new.txt")
+        walker.unreliable
+
+        when:
+        rootDir.file("other/new.txt").text = "new"
+        rootDir.file("other").lastModified = oldTimestamp
+
+        then:
+        visit(new DirectoryFileTree(rootDir), walker).contains("other/new.txt")
+    }
+
+    private void settle(File dir) {
+        dir.eachDirRecurse { it.lastModified = oldTimestamp }
+        dir.lastModified = oldTimestamp
+    }
+
+    private static List<String> visit(DirectoryFileTree tree, CachingDirectoryWalker walker = null) {
+        def visited = []
+        def visitor = new FileVisitor() {
+            void visitDir(FileVisitDetails dirDetails) {
+                visited << dirDetails.relativePath.pathString
+            }
+
+            void visitFile(FileVisitDetails fileDetails) {
+                visited << fileDetails.relativePath.pathString
+            }
+        }
+        if (walker == null) {
+            tree.visit(visitor)
+        } else {
+            tree.visit(visitor, walker)
+        }
+        return visited
+    }
+}
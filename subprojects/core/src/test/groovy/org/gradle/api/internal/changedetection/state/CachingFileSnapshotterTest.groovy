@@ -26,7 +26,9 @@ import spock.lang.Specification
 class CachingFileSnapshotterTest extends Specification {
     @Rule
     TestNameTestDirectoryProvider tmpDir = new TestNameTestDirectoryProvider()
-    def target = Mock(Hasher)
+    def target = Mock(Hasher) {
+        getAlgorithm() >> "MD5"
+    }
     def cache = Mock(PersistentIndexedCache)
     def cacheAccess = Mock(TaskArtifactStateCacheAccess)
     def byte[] hash = "hash".bytes
@@ -65,7 +67,7 @@ class CachingFileSnapshotterTest extends Specification {
         result.hash == hash
 
         and:
-        1 * cache.get(file.getAbsolutePath()) >> new CachingFileSnapshotter.FileInfo(hash, 1024, file.lastModified())
+        1 * cache.get(file.getAbsolutePath()) >> new CachingFileSnapshotter.FileInfo(hash, 1024, file.lastModified(), "MD5")
         1 * target.hash(file) >> hash
         1 * cache.put(file.getAbsolutePath(), _) >> { String key, CachingFileSnapshotter.FileInfo fileInfo ->
             fileInfo.hash == hash
@@ -83,7 +85,7 @@ class CachingFileSnapshotterTest extends Specification {
         result.hash == hash
 
         and:
-        1 * cache.get(file.getAbsolutePath()) >> new CachingFileSnapshotter.FileInfo(hash, file.length(), 124)
+        1 * cache.get(file.getAbsolutePath()) >> new CachingFileSnapshotter.FileInfo(hash, file.length(), 124, "MD5")
         1 * target.hash(file) >> hash
         1 * cache.put(file.getAbsolutePath(), _) >> { String key, CachingFileSnapshotter.FileInfo fileInfo ->
             fileInfo.hash == hash
@@ -93,6 +95,23 @@ class CachingFileSnapshotterTest extends Specification {
         0 * _._
     }
 
+    def hashesFileWhenHashAlgorithmHasChanged() {
+        when:
+        def result = hasher.snapshot(file)
+
+        then:
+        result.hash == hash
+
+        and:
+        1 * cache.get(file.getAbsolutePath()) >> new CachingFileSnapshotter.FileInfo("other".bytes, file.length(), file.lastModified(), "OTHER")
+        1 * target.hash(file) >> hash
+        1 * cache.put(file.getAbsolutePath(), _) >> { String key, CachingFileSnapshotter.FileInfo fileInfo ->
+            fileInfo.hash == hash
+            fileInfo.algorithm == "MD5"
+        }
+        0 * _._
+    }
+
     def doesNotHashFileWhenTimestampAndLengthHaveNotChanged() {
         when:
         def result = hasher.snapshot(file)
@@ -101,7 +120,7 @@ class CachingFileSnapshotterTest extends Specification {
         result.hash == hash
 
         and:
-        1 * cache.get(file.getAbsolutePath()) >> new CachingFileSnapshotter.FileInfo(hash, file.length(), file.lastModified())
+        1 * cache.get(file.getAbsolutePath()) >> new CachingFileSnapshotter.FileInfo(hash, file.length(), file.lastModified(), "MD5")
         0 * _._
     }
 }
@@ -47,7 +47,7 @@ public class DefaultFileCollectionSnapshotterTest extends Specification {
                 getHash() >> HashUtil.sha1(file).asByteArray()
             }
         }
-        cacheAccess.useCache(_, _) >> { String name, Runnable action ->
+        cacheAccess.useCacheShared(_, _) >> { String name, Runnable action ->
             action.run()
         }
     }
@@ -48,7 +48,7 @@ class MinimalFileSetSnapshotterTest extends Specification {
         def fileInDirectory = includedDirectory.file("file") << "contents"
         def missing = tmpDir.file("missing")
 
-        cacheAccess.useCache(_, (Runnable)_) >> {
+        cacheAccess.useCacheShared(_, (Runnable)_) >> {
             it[1].run()
         }
 
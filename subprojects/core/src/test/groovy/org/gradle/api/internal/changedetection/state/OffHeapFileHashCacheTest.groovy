@@ -0,0 +1,149 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.changedetection.state
+
+import spock.lang.Specification
+
+class OffHeapFileHashCacheTest extends Specification {
+    def missing = new Object()
+    def cache = new OffHeapFileHashCache(64 * OffHeapFileHashCache.RECORD_SIZE, missing)
+
+    def "returns stored file info"() {
+        def info = fileInfo(1)
+
+        when:
+        cache.put("/some/file", info)
+        def result = cache.getIfPresent("/some/file")
+
+        then:
+        sameFileInfo(result, info)
+        cache.size() == 1
+    }
+
+    def "replaces stored file info"() {
+        def info = fileInfo(2)
+
+        when:
+        cache.put("/some/file", fileInfo(1))
+        cache.put("/some/file", info)
+
+        then:
+        sameFileInfo(cache.getIfPresent("/some/file"), info)
+        cache.size() == 1
+    }
+
+    def "returns missing marker for missing entry"() {
+        when:
+        cache.put("/some/file", missing)
+
+        then:
+        cache.getIfPresent("/some/file").is(missing)
+    }
+
+    def "returns null for unknown entry"() {
+        expect:
+        cache.getIfPresent("/some/file") == null
+    }
+
+    def "does not store hash of unsupported width"() {
+        when:
+        cache.put("/some/file", fileInfo(1))
+        cache.put("/some/file", new CachingFileSnapshotter.FileInfo(new byte[20], 1, 2, "SHA1"))
+
+        then:
+        cache.getIfPresent("/some/file") == null
+        cache.size() == 0
+    }
+
+    def "evicts entries when full"() {
+        def count = cache.maxEntries * 3
+
+        when:
+        count.times {
+            cache.put("/file" + it, fileInfo(it))
+        }
+
+        then:
+        cache.size() == cache.maxEntries
+        cache.stats().evictionCount() == count - cache.maxEntries
+
+        and:
+        count.times {
+            def result = cache.getIfPresent("/file" + it)
+            assert result == null || sameFileInfo(result, fileInfo(it))
+        }
+    }
+
+    def "keeps recently used entries when evicting"() {
+        given:
+        cache.maxEntries.times {
+            cache.put("/file" + it, fileInfo(it))
+        }
+        // The first eviction clears the referenced flag of every entry
+        cache.put("/other", fileInfo(-1))
+        def used = ["/file0", "/file1"].find { cache.getIfPresent(it) != null }
+
+        when:
+        cache.put("/another", fileInfo(-2))
+
+        then:
+        cache.getIfPresent(used) != null
+    }
+
+    def "discards all entries when invalidated"() {
+        given:
+        cache.put("/some/file", fileInfo(1))
+
+        when:
+        cache.invalidateAll()
+
+        then:
+        cache.getIfPresent("/some/file") == null
+        cache.size() == 0
+    }
+
+    def "records hits and misses"() {
+        given:
+        cache.put("/some/file", fileInfo(1))
+
+        when:
+        cache.getIfPresent("/some/file")
+        cache.getIfPresent("/some/file")
+        cache.getIfPresent("/other/file")
+
+        then:
+        cache.stats().hitCount() == 2
+        cache.stats().missCount() == 1
+    }
+
+    private static CachingFileSnapshotter.FileInfo fileInfo(int value) {
+        def hash = new byte[OffHeapFileHashCache.HASH_WIDTH]
+        hash[0] = (byte) value
+        hash[15] = (byte) (value >> 8)
+        return new CachingFileSnapshotter.FileInfo(hash, value, value * 1000L, value % 2 == 0 ? "MD5" : "MURMUR3_128")
+    }
+
+    private static boolean sameFileInfo(Object actual, CachingFileSnapshotter.FileInfo expected) {
+        assert actual instanceof CachingFileSnapshotter.FileInfo
+        def info = actual as CachingFileSnapshotter.FileInfo
+        assert info.hash == expected.hash
+        assert info.length == expected.length
+        assert info.timestamp == expected.timestamp
+        assert info.algorithm == expected.algorithm
+        return true
+    }
+}
@@ -0,0 +1,144 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.changedetection.state
+
+import org.gradle.api.file.FileCollection
+import org.gradle.api.internal.cache.StringInterner
+import org.gradle.api.internal.file.TestFiles
+import org.gradle.api.internal.file.collections.SimpleFileCollection
+import org.gradle.api.internal.hash.DefaultHasher
+import org.gradle.api.internal.hash.Hasher
+import org.gradle.cache.internal.MapBackedInMemoryStore
+import org.gradle.internal.concurrent.DefaultExecutorFactory
+import org.gradle.internal.operations.DefaultBuildOperationProcessor
+import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
+import org.junit.Rule
+import spock.lang.Specification
+
+class ParallelFileCollectionSnapshotterTest extends Specification {
+    @Rule
+    final TestNameTestDirectoryProvider tmpDir = new TestNameTestDirectoryProvider()
+    def hasher = Spy(DefaultHasher)
+    def store = new MapBackedInMemoryStore()
+    def cacheAccess = Stub(TaskArtifactStateCacheAccess) {
+        createCache(_, _, _) >> { String name, Class keyType, serializer -> store.createCache(name, keyType, serializer) }
+        useCacheShared(_, _ as Runnable) >> { String name, Runnable action -> store.useCache(name, action) }
+    }
+    def stringInterner = new StringInterner()
+    def fileSnapshotter = new CachingFileSnapshotter(hasher, cacheAccess, stringInterner)
+    def buildOperationProcessor = new DefaultBuildOperationProcessor(new DefaultExecutorFactory(), 4)
+    def serialSnapshotter = new DefaultFileCollectionSnapshotter(fileSnapshotter, cacheAccess, stringInterner, TestFiles.resolver())
+    def snapshotter = new ParallelFileCollectionSnapshotter(fileSnapshotter, cacheAccess, stringInterner, TestFiles.resolver(), buildOperationProcessor)
+
+    def cleanup() {
+        buildOperationProcessor.stop()
+    }
+
+    def "creates the same snapshot as the serial snapshotter"() {
+        given:
+        def dir1 = tmpDir.createDir("dir1")
+        def dir2 = tmpDir.createDir("dir2")
+        20.times {
+            dir1.file("sub${it % 3}/file${it}.txt").text = "content ${it}"
+            dir2.file("file${it}.txt").text = "other content ${it}"
+        }
+        def file = tmpDir.createFile("file.txt")
+        def input = files(dir1, dir2, file, dir1.file("sub0/file0.txt"))
+
+        when:
+        def parallel = snapshotter.snapshot(input)
+        def serial = new DefaultFileCollectionSnapshotter(new CachingFileSnapshotter(new DefaultHasher(), new MapBackedInMemoryStore(), stringInterner), cacheAccess, stringInterner, TestFiles.resolver()).snapshot(input)
+
+        then:
+        sameSnapshots(parallel, serial)
+    }
+
+    def "hashes only those files whose cached hash is out of date"() {
+        given:
+        def dir = tmpDir.createDir("dir")
+        def unchanged = dir.createFile("unchanged.txt")
+        def changed = dir.createFile("changed.txt")
+        def input = files(dir)
+        serialSnapshotter.snapshot(input)
+
+        when:
+        changed.text = "some new content"
+        def snapshot = snapshotter.snapshot(input)
+        def serialSnapshot = serialSnapshotter.snapshot(input)
+
+        then:
+        1 * hasher.hash(changed)
+        0 * hasher.hash(unchanged)
+
+        and:
+        sameSnapshots(snapshot, serialSnapshot)
+    }
+
+    def "records hashes in the file hash cache"() {
+        given:
+        def dir = tmpDir.createDir("dir")
+        def inputFiles = (1..5).collect { dir.file("file${it}.txt").createFile() }
+        def input = files(dir)
+
+        when:
+        snapshotter.snapshot(input)
+        serialSnapshotter.snapshot(input)
+
+        then:
+        5 * hasher.hash(_)
+        inputFiles.each {
+            assert fileSnapshotter.lookup(it, it.length(), it.lastModified()) != null
+        }
+    }
+
+    def "creates empty snapshot for empty input"() {
+        expect:
+        snapshotter.snapshot(files()).files.empty
+    }
+
+    def "propagates failure to hash a file"() {
+        given:
+        def failure = new RuntimeException("broken")
+        def hasher = Stub(Hasher) {
+            hash(_) >> { throw failure }
+        }
+        def snapshotter = new ParallelFileCollectionSnapshotter(new CachingFileSnapshotter(hasher, store, stringInterner), cacheAccess, stringInterner, TestFiles.resolver(), buildOperationProcessor)
+        def dir = tmpDir.createDir("dir")
+        dir.createFile("file.txt")
+
+        when:
+        snapshotter.snapshot(files(dir))
+
+        then:
+        def e = thrown(RuntimeException)
+        e.is(failure)
+    }
+
+    private static boolean sameSnapshots(FileCollectionSnapshot first, FileCollectionSnapshot second) {
+        def snapshots = (first as DefaultFileCollectionSnapshotter.FileCollectionSnapshotImpl).snapshots
+        def otherSnapshots = (second as DefaultFileCollectionSnapshotter.FileCollectionSnapshotImpl).snapshots
+        assert snapshots.keySet() as List == otherSnapshots.keySet() as List
+        snapshots.each { path, snapshot ->
+            assert snapshot.isUpToDate(otherSnapshots[path])
+        }
+        return true
+    }
+
+    private static FileCollection files(File... files) {
+        new SimpleFileCollection(files)
+    }
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.hash
+
+import com.google.common.hash.Hashing
+import org.gradle.api.UncheckedIOException
+import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
+import org.junit.Rule
+import spock.lang.Specification
+
+class Murmur3HasherTest extends Specification {
+    @Rule
+    TestNameTestDirectoryProvider tmpDir = new TestNameTestDirectoryProvider()
+    def hasher = new Murmur3Hasher()
+
+    def "creates 128 bit hash of file content"() {
+        def file = tmpDir.file("file.txt")
+        def content = "some content" * 1000
+        file.text = content
+
+        expect:
+        hasher.hash(file) == Hashing.murmur3_128().hashBytes(content.bytes).asBytes()
+        hasher.hash(file).length == 16
+    }
+
+    def "files with same content have same hash"() {
+        def file1 = tmpDir.file("file1.txt")
+        def file2 = tmpDir.file("file2.txt")
+        def file3 = tmpDir.file("file3.txt")
+        file1.text = "content"
+        file2.text = "content"
+        file3.text = "other content"
+
+        expect:
+        hasher.hash(file1) == hasher.hash(file2)
+        hasher.hash(file1) != hasher.hash(file3)
+    }
+
+    def "reports algorithm different to default hasher"() {
+        expect:
+        hasher.algorithm != new DefaultHasher().algorithm
+    }
+
+    def "fails when file cannot be read"() {
+        def file = tmpDir.file("missing.txt")
+
+        when:
+        hasher.hash(file)
+
+        then:
+        def e = thrown(UncheckedIOException)
+        e.message == "Failed to create MURMUR3_128 hash for file ${file.absolutePath}."
+    }
+}
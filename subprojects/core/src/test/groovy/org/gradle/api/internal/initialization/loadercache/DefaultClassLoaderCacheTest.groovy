@@ -22,6 +22,8 @@ import org.gradle.internal.classpath.DefaultClassPath
 import org.gradle.test.fixtures.file.TestFile
 import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
 import org.junit.Rule
+import org.objectweb.asm.ClassWriter
+import org.objectweb.asm.Opcodes
 import spock.lang.Specification
 
 class DefaultClassLoaderCacheTest extends Specification {
@@ -29,6 +31,7 @@ class DefaultClassLoaderCacheTest extends Specification {
     def cache = new DefaultClassLoaderCache(new FileClassPathSnapshotter())
     def id1 = new ClassLoaderId() {}
     def id2 = new ClassLoaderId() {}
+    def id3 = new ClassLoaderId() {}
 
     @Rule
     TestNameTestDirectoryProvider testDirectoryProvider = new TestNameTestDirectoryProvider()
@@ -41,6 +44,14 @@ class DefaultClassLoaderCacheTest extends Specification {
         new DefaultClassPath(paths.collect { file(it) } as Iterable<File>)
     }
 
+    ClassPath classPathWithClass(String path, String className) {
+        def writer = new ClassWriter(0)
+        writer.visit(Opcodes.V1_6, Opcodes.ACC_PUBLIC, className, null, "java/lang/Object", null)
+        writer.visitEnd()
+        file(path).createDir().file("${className}.class").bytes = writer.toByteArray()
+        classPath(path)
+    }
+
     ClassLoader classLoader(ClassPath classPath) {
         new URLClassLoader(classPath.asURLArray)
     }
@@ -165,4 +176,147 @@ class DefaultClassLoaderCacheTest extends Specification {
         then:
         cache.size() == 0
     }
+
+    def "keeps class loaders when build completes"() {
+        def root = classLoader(classPath("root"))
+        def loader = cache.get(id1, classPath("c1"), root, null)
+
+        when:
+        cache.completed()
+
+        then:
+        cache.get(id2, classPath("c1"), root, null).is(loader)
+        cache.size() == 1
+    }
+
+    def "class loader for classpath that extends another classpath uses the other class loader as parent when prefixes are shared"() {
+        def cache = new DefaultClassLoaderCache(new FileClassPathSnapshotter(), true)
+        def root = classLoader(classPath("root"))
+        def loader = cache.get(id1, classPath("c1", "c2"), root, null)
+
+        when:
+        def extended = cache.get(id1, classPath("c1", "c2", "c3"), root, null)
+
+        then:
+        extended.parent.is(loader)
+        extended.URLs as List == [file("c3").toURI().toURL()]
+        cache.size() == 2
+        cache.assertInternalIntegrity()
+    }
+
+    def "class loaders for classpaths that extend the same classpath share the class loader for that classpath"() {
+        def cache = new DefaultClassLoaderCache(new FileClassPathSnapshotter(), true)
+        def root = classLoader(classPath("root"))
+        def loader = cache.get(id1, classPath("c1", "c2"), root, null)
+
+        when:
+        def loader1 = cache.get(id2, classPath("c1", "c2", "c3"), root, null)
+        def loader2 = cache.get(id3, classPath("c1", "c2", "c4"), root, null)
+
+        then:
+        loader1.parent.is(loader)
+        loader2.parent.is(loader)
+        cache.assertInternalIntegrity()
+    }
+
+    def "does not share a class loader for the start of a classpath that has not been loaded on its own"() {
+        def cache = new DefaultClassLoaderCache(new FileClassPathSnapshotter(), true)
+        def root = classLoader(classPath("root"))
+        cache.get(id1, classPath("c1", "c2", "c3", "c4"), root, null)
+
+        when:
+        def loader1 = cache.get(id1, classPath("c1", "c2", "c5", "c4"), root, null)
+        def loader2 = cache.get(id2, classPath("c1", "c2", "c6"), root, null)
+
+        then:
+        loader1.parent.is(root)
+        loader2.parent.is(root)
+        loader1.URLs as List == ["c1", "c2", "c5", "c4"].collect { file(it).toURI().toURL() }
+    }
+
+    def "unused class loader is kept idle and reused when prefixes are shared"() {
+        def cache = new DefaultClassLoaderCache(new FileClassPathSnapshotter(), true)
+        def root = classLoader(classPath("root"))
+        def loader = cache.get(id1, classPath("c1"), root, null)
+
+        when:
+        cache.remove(id1)
+
+        then:
+        cache.size() == 0
+
+        when:
+        cache.completed()
+
+        then:
+        cache.get(id2, classPath("c1"), root, null).is(loader)
+        cache.size() == 1
+    }
+
+    def "evicts an idle class loader along with the idle class loaders that use it as a parent"() {
+        def cache = new DefaultClassLoaderCache(new FileClassPathSnapshotter(), true, 1)
+        def root = classLoader(classPath("root"))
+        def loader = cache.get(id1, classPathWithClass("c1", "C1"), root, null)
+        classPathWithClass("c2", "C2")
+        def extended = cache.get(id2, classPath("c1", "c2"), root, null)
+        loader.loadClass("C1")
+        extended.loadClass("C2")
+
+        when:
+        cache.remove(id1)
+        cache.remove(id2)
+
+        then:
+        !cache.get(id2, classPath("c1", "c2"), root, null).is(extended)
+        !cache.get(id1, classPath("c1"), root, null).is(loader)
+        cache.assertInternalIntegrity()
+    }
+
+    def "counts the classes of the class loaders that an idle class loader keeps in memory through its parent"() {
+        def cache = new DefaultClassLoaderCache(new FileClassPathSnapshotter(), true, 1)
+        def root = classLoader(classPath("root"))
+        def previousBuild = cache.get(id1, classPathWithClass("c1", "C1"), root, null)
+        def loader = cache.get(id2, classPathWithClass("c2", "C2"), previousBuild, null)
+        def other = cache.get(id3, classPathWithClass("c3", "C3"), root, null)
+        previousBuild.loadClass("C1")
+        loader.loadClass("C2")
+        other.loadClass("C3")
+
+        when:
+        cache.remove(id1)
+        cache.remove(id3)
+
+        then:
+        cache.get(id3, classPath("c3"), root, null).is(other)
+
+        when:
+        cache.remove(id3)
+        cache.remove(id2)
+
+        then:
+        !cache.get(id2, classPath("c2"), previousBuild, null).is(loader)
+    }
+
+    def "does not share class loaders by default"() {
+        def root = classLoader(classPath("root"))
+        def loader = cache.get(id1, classPath("c1"), root, null)
+
+        expect:
+        cache.get(id1, classPath("c1", "c2"), root, null).parent.is(root)
+        !cache.get(id2, classPath("c1"), root, null).is(loader)
+    }
+
+    def "filtered class loader used by several ids can be released in any order"() {
+        def root = classLoader(classPath("root"))
+        def f1 = new FilteringClassLoader.Spec(["1"], [], [], [], [], [], [])
+        cache.get(id1, classPath("c1"), root, f1)
+        cache.get(id2, classPath("c1"), root, f1)
+
+        when:
+        cache.remove(id1)
+        cache.remove(id2)
+
+        then:
+        cache.size() == 0
+    }
 }
@@ -114,4 +114,56 @@ class HashClassPathSnapshotterTest extends Specification {
         then:
         s1 == s2
     }
+
+    def "hashes classpath entry shared by classpaths once per build"() {
+        def fileSnapshotter = Spy(CachingFileSnapshotter, constructorArgs: [new DefaultHasher(), inMemoryStore, new StringInterner()])
+        def snapshotter = new HashClassPathSnapshotter(fileSnapshotter, inMemoryStore)
+        def jar = temp.file("lib.jar") << "jar"
+        temp.file("dir1/a.txt") << "a"
+        temp.file("dir2/b.txt") << "b"
+
+        when:
+        snapshotter.snapshot(new DefaultClassPath(temp.file("dir1"), jar))
+        snapshotter.snapshot(new DefaultClassPath(temp.file("dir2"), jar))
+        snapshotter.snapshot(new DefaultClassPath(temp.file("dir1")))
+
+        then:
+        1 * fileSnapshotter.snapshot(temp.file("dir1/a.txt"))
+        1 * fileSnapshotter.snapshot(temp.file("dir2/b.txt"))
+        1 * fileSnapshotter.snapshot(jar)
+
+        when:
+        snapshotter.completed()
+        snapshotter.snapshot(new DefaultClassPath(jar))
+
+        then:
+        1 * fileSnapshotter.snapshot(jar)
+    }
+
+    def "rehashes jar that has changed during build"() {
+        def jar = temp.file("lib.jar") << "jar"
+        def a = snapshotter.snapshot(new DefaultClassPath(jar))
+
+        when:
+        jar << "changed"
+        def b = snapshotter.snapshot(new DefaultClassPath(jar))
+
+        then:
+        a != b
+    }
+
+    def "reuses directory snapshot until the end of the build"() {
+        temp.file("dir/a.txt") << "a"
+        def a = snapshotter.snapshot(new DefaultClassPath(temp.file("dir")))
+        temp.file("dir/b.txt") << "b"
+
+        expect:
+        snapshotter.snapshot(new DefaultClassPath(temp.file("dir"))) == a
+
+        when:
+        snapshotter.completed()
+
+        then:
+        snapshotter.snapshot(new DefaultClassPath(temp.file("dir"))) != a
+    }
 }
@@ -374,6 +374,39 @@ class DefaultProjectTest {
         assertTrue mockReader1Called
     }
 
+    @Test
+    void recordsAccessToOtherProjectsWhileBeingConfigured() {
+        child1.projectEvaluator = [evaluate: { DefaultProject project, state ->
+            project.rootProject
+        }] as ProjectEvaluator
+        child2.projectEvaluator = [evaluate: { DefaultProject project, state ->
+            project.path
+        }] as ProjectEvaluator
+
+        child2.rootProject
+        child1.evaluate()
+        child2.evaluate()
+        assertTrue(child1.hasAccessedOtherProjects())
+        assertFalse(child2.hasAccessedOtherProjects())
+        assertFalse(project.hasAccessedOtherProjects())
+    }
+
+    @Test
+    void recordsAccessToOtherProjectsWhileTasksAreBeingExecuted() {
+        child2.rootProject
+        AbstractProject.beforeTaskExecution(child1)
+        try {
+            child1.rootProject
+        } finally {
+            AbstractProject.afterTaskExecution()
+        }
+        child1.rootProject
+        assertTrue(child1.hasTasksAccessedOtherProjects())
+        assertFalse(child1.hasAccessedOtherProjects())
+        assertFalse(child2.hasTasksAccessedOtherProjects())
+        assertFalse(project.hasTasksAccessedOtherProjects())
+    }
+
     @Test(expected = InvalidUserDataException)
     void testEvaluationDependsOnWithNullArgument() {
         project.evaluationDependsOn(null)
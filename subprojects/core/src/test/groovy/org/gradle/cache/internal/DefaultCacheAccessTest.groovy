@@ -552,4 +552,143 @@ class DefaultCacheAccessTest extends ConcurrentSpec {
         1 * lock.close()
     }
 
-}
\ No newline at end of file
+
+    def "shared actions can run concurrently and acquire the lock once"() {
+        given:
+        access.open(mode(None))
+
+        when:
+        async {
+            start {
+                access.useCacheShared("action 1") {
+                    instant.action1Started
+                    thread.blockUntil.action2Started
+                }
+            }
+            start {
+                access.useCacheShared("action 2") {
+                    instant.action2Started
+                    thread.blockUntil.action1Started
+                }
+            }
+        }
+
+        then:
+        1 * lockManager.lock(lockFile, mode(Exclusive), "<display-name>", _) >> lock
+
+        and:
+        !access.owner
+    }
+
+    def "use cache operation waits for shared actions to complete"() {
+        given:
+        lockManager.lock(lockFile, mode(Exclusive), "<display-name>", _) >> lock
+        access.open(mode(None))
+
+        when:
+        async {
+            start {
+                access.useCacheShared("shared action") {
+                    instant.sharedStarted
+                    thread.block()
+                    instant.sharedFinished
+                }
+            }
+            start {
+                thread.blockUntil.sharedStarted
+                access.useCache("exclusive action") {
+                    instant.exclusiveStarted
+                }
+            }
+        }
+
+        then:
+        instant.exclusiveStarted > instant.sharedFinished
+
+        and:
+        access.ownershipWaitStatistics.waitCount == 1
+    }
+
+    def "shared action waits for use cache operation to complete"() {
+        given:
+        lockManager.lock(lockFile, mode(Exclusive), "<display-name>", _) >> lock
+        access.open(mode(None))
+
+        when:
+        async {
+            start {
+                access.useCache("exclusive action") {
+                    instant.exclusiveStarted
+                    thread.block()
+                    instant.exclusiveFinished
+                }
+            }
+            start {
+                thread.blockUntil.exclusiveStarted
+                access.useCacheShared("shared action") {
+                    instant.sharedStarted
+                }
+            }
+        }
+
+        then:
+        instant.sharedStarted > instant.exclusiveFinished
+    }
+
+    def "nested use cache operation joins shared action"() {
+        given:
+        lockManager.lock(lockFile, mode(Exclusive), "<display-name>", _) >> lock
+        access.open(mode(None))
+
+        when:
+        access.useCacheShared("shared action") {
+            access.useCache("nested operation") {
+                assert !access.owner
+                access.fileAccess.updateFile {}
+            }
+        }
+
+        then:
+        1 * lock.updateFile(_)
+    }
+
+    def "file access is available to shared actions"() {
+        def runnable = Mock(Runnable)
+
+        when:
+        access.open(mode(None))
+        access.useCacheShared("use cache", { access.fileAccess.updateFile(runnable) })
+
+        then:
+        1 * lockManager.lock(lockFile, mode(Exclusive), "<display-name>", "use cache") >> lock
+        1 * lock.updateFile(runnable)
+    }
+
+    def "last shared action closes the lock if contended during action"() {
+        given:
+        lockManager.lock(lockFile, mode(Exclusive), "<display-name>", _) >> lock
+        access.open(mode(None))
+
+        when:
+        access.useCacheShared("shared action") {
+            access.whenContended().run()
+        }
+
+        then:
+        1 * lock.close()
+    }
+
+    def "long running operation is not supported in shared action"() {
+        given:
+        lockManager.lock(lockFile, mode(Exclusive), "<display-name>", _) >> lock
+        access.open(mode(None))
+
+        when:
+        access.useCacheShared("shared action") {
+            access.longRunningOperation("long running", Mock(Runnable))
+        }
+
+        then:
+        thrown(UnsupportedOperationException)
+    }
+}
@@ -17,12 +17,14 @@ package org.gradle.cache.internal
 
 import org.gradle.internal.Factory
 import org.gradle.cache.internal.btree.BTreePersistentIndexedCache
-import spock.lang.Specification
+import org.gradle.cache.internal.mapped.MappedPersistentIndexedCache
+import org.gradle.test.fixtures.concurrent.ConcurrentSpec
 
-class MultiProcessSafePersistentIndexedCacheTest extends Specification {
+class MultiProcessSafePersistentIndexedCacheTest extends ConcurrentSpec {
     final FileAccess fileAccess = Mock()
     final Factory<BTreePersistentIndexedCache<String, String>> factory = Mock()
-    final cache = new DefaultMultiProcessSafePersistentIndexedCache<String, String>(factory, fileAccess)
+    final readLockWaits = new LockWaitStatistics()
+    final cache = new DefaultMultiProcessSafePersistentIndexedCache<String, String>(factory, fileAccess, readLockWaits)
     final BTreePersistentIndexedCache<String, String> backingCache = Mock()
     
     def "opens cache on first access"() {
@@ -45,11 +47,41 @@ class MultiProcessSafePersistentIndexedCacheTest extends Specification {
         result == "result"
 
         and:
+        1 * backingCache.supportsConcurrentReads() >> false
         1 * fileAccess.readFile(!null) >> { Factory action -> action.create() }
         1 * backingCache.get("value") >> "result"
         0 * _._
     }
 
+    def "records time spent waiting to read from cache that does not support concurrent reads"() {
+        given:
+        cacheOpened()
+        backingCache.supportsConcurrentReads() >> false
+        fileAccess.readFile(!null) >> { Factory action -> action.create() }
+
+        when:
+        async {
+            start {
+                cache.get("first")
+            }
+            start {
+                thread.blockUntil.firstStarted
+                cache.get("second")
+            }
+        }
+
+        then:
+        1 * backingCache.get("first") >> {
+            instant.firstStarted
+            thread.block()
+            "result"
+        }
+        1 * backingCache.get("second") >> "result"
+
+        and:
+        readLockWaits.waitCount == 1
+    }
+
     def "holds write lock while putting entry into cache"() {
         given:
         cacheOpened()
@@ -128,6 +160,34 @@ class MultiProcessSafePersistentIndexedCacheTest extends Specification {
         0 * _._
     }
 
+    def "notifies cache of the start and end of work when it participates in the unit of work"() {
+        def mappedCache = Mock(MappedPersistentIndexedCache)
+        def state = Stub(FileLock.State)
+
+        given:
+        1 * fileAccess.writeFile(!null) >> { Runnable action -> action.run() }
+        1 * factory.create() >> mappedCache
+        cache.get("something")
+
+        when:
+        cache.onStartWork("operation", state)
+        cache.onEndWork(state)
+
+        then:
+        1 * mappedCache.onStartWork("operation", state)
+        1 * mappedCache.onEndWork(state)
+        0 * _._
+    }
+
+    def "does not notify cache of the start and end of work when it is not open"() {
+        when:
+        cache.onStartWork("operation", Stub(FileLock.State))
+        cache.onEndWork(Stub(FileLock.State))
+
+        then:
+        0 * _._
+    }
+
     def cacheOpened() {
         1 * fileAccess.writeFile(!null) >> { Runnable action -> action.run() }
         1 * factory.create() >> backingCache
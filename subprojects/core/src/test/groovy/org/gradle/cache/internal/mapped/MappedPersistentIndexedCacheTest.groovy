@@ -0,0 +1,301 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.cache.internal.mapped
+
+import org.gradle.internal.serialize.BaseSerializerFactory
+import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
+import org.junit.Rule
+import spock.lang.Specification
+
+class MappedPersistentIndexedCacheTest extends Specification {
+    @Rule
+    TestNameTestDirectoryProvider tmpDir = new TestNameTestDirectoryProvider()
+    def serializerFactory = new BaseSerializerFactory()
+    def cacheFile = tmpDir.file("cache.bin")
+    MappedPersistentIndexedCache<String, String> cache
+
+    def setup() {
+        cache = createCache()
+    }
+
+    def cleanup() {
+        cache.close()
+    }
+
+    def "returns null when entry does not exist"() {
+        expect:
+        cache.get("unknown") == null
+    }
+
+    def "returns added and replaced entries"() {
+        when:
+        cache.put("a", "1")
+        cache.put("b", "2")
+        cache.put("a", "3")
+
+        then:
+        cache.get("a") == "3"
+        cache.get("b") == "2"
+        cache.entryCount == 2
+    }
+
+    def "returns null for removed entry"() {
+        given:
+        cache.put("a", "1")
+        cache.put("b", "2")
+
+        when:
+        cache.remove("a")
+        cache.remove("unknown")
+
+        then:
+        cache.get("a") == null
+        cache.get("b") == "2"
+        cache.entryCount == 1
+    }
+
+    def "persists entries after reopen"() {
+        given:
+        cache.put("a", "1")
+        cache.put("b", "2")
+        cache.remove("b")
+
+        when:
+        reopen()
+
+        then:
+        cache.get("a") == "1"
+        cache.get("b") == null
+    }
+
+    def "grows and compacts file as entries are added and replaced"() {
+        when:
+        5000.times {
+            cache.put("key" + it, "value" + it)
+        }
+        100.times { round ->
+            500.times {
+                cache.put("key" + it, "value" + it + "-" + round)
+            }
+        }
+        def sizeAfterReplacing = cache.fileSize
+        reopen()
+
+        then:
+        cache.entryCount == 5000
+        500.times {
+            assert cache.get("key" + it) == "value" + it + "-99"
+        }
+        (500..<5000).each {
+            assert cache.get("key" + it) == "value" + it
+        }
+        // Without compaction, the file would hold more than 50000 records of around 35 bytes each
+        sizeAfterReplacing < 1200000
+        !new File(cacheFile.parentFile, cacheFile.name + ".compact").exists()
+    }
+
+    def "discards file with unknown header"() {
+        given:
+        cache.close()
+        cacheFile.bytes = new byte[4096]
+
+        when:
+        cache = createCache()
+
+        then:
+        cache.get("a") == null
+
+        when:
+        cache.put("a", "1")
+
+        then:
+        cache.get("a") == "1"
+    }
+
+    def "treats partially written record as missing entry"() {
+        given:
+        cache.put("a", "1")
+        cache.put("b", "2")
+        def size = cache.fileSize
+        cache.close()
+
+        when:
+        def file = new RandomAccessFile(cacheFile, "rw")
+        try {
+            // Overwrite the last byte of the value of the last record
+            file.seek(size - 1)
+            file.write(0)
+        } finally {
+            file.close()
+        }
+        cache = createCache()
+
+        then:
+        cache.entryCount == 1
+        cache.get("a") == "1"
+        cache.get("b") == null
+
+        when:
+        cache.put("b", "3")
+
+        then:
+        cache.get("b") == "3"
+    }
+
+    def "removes stale compaction file on open"() {
+        given:
+        cache.put("a", "1")
+        cache.close()
+        def compactionFile = tmpDir.file("cache.bin.compact")
+        compactionFile.text = "partial"
+
+        when:
+        cache = createCache()
+
+        then:
+        !compactionFile.exists()
+        cache.get("a") == "1"
+    }
+
+    def "completes interrupted compaction on open"() {
+        given:
+        cache.put("a", "1")
+        cache.put("b", "2")
+        cache.put("a", "3")
+        cache.put("c", "4")
+        cache.close()
+        // A complete compaction file, which was only partly copied over the cache file
+        def compactionFile = tmpDir.file("cache.bin.compact")
+        compactionFile.bytes = cacheFile.bytes
+        cacheFile.bytes = compactionFile.bytes[0..<100] as byte[]
+
+        when:
+        cache = createCache()
+
+        then:
+        !compactionFile.exists()
+        cache.entryCount == 3
+        cache.get("a") == "3"
+        cache.get("b") == "2"
+        cache.get("c") == "4"
+    }
+
+    def "picks up changes made through another instance when the cache lock is handed over, across compaction and discarding"() {
+        given:
+        def other = createCache()
+
+        when:
+        cache.put("a", "1")
+        handOver(cache, other)
+
+        then:
+        other.get("a") == "1"
+
+        when:
+        // Enough replaced entries to grow and compact the file several times
+        5000.times {
+            other.put("key" + it, "value" + it)
+        }
+        20.times { round ->
+            500.times {
+                other.put("key" + it, "value" + it + "-" + round)
+            }
+        }
+        other.remove("a")
+        handOver(other, cache)
+
+        then:
+        cache.entryCount == 5000
+        cache.get("a") == null
+        cache.get("key1") == "value1-19"
+        cache.get("key4999") == "value4999"
+
+        when:
+        cache.put("a", "2")
+        handOver(cache, other)
+
+        then:
+        other.entryCount == 5001
+        other.get("a") == "2"
+
+        when:
+        other.close()
+        def file = new RandomAccessFile(cacheFile, "rw")
+        try {
+            // Overwrite the magic, so that the file is discarded when it is next opened
+            file.writeInt(0)
+        } finally {
+            file.close()
+        }
+        other = createCache()
+        other.put("b", "3")
+        handOver(other, cache)
+
+        then:
+        cache.entryCount == 1
+        cache.get("a") == null
+        cache.get("b") == "3"
+
+        cleanup:
+        other?.close()
+    }
+
+    def "can read entries concurrently with writes"() {
+        given:
+        1000.times {
+            cache.put("key" + it, "value" + it)
+        }
+        def failures = [].asSynchronized()
+
+        when:
+        def readers = (0..<4).collect {
+            Thread.start {
+                try {
+                    20.times {
+                        1000.times {
+                            assert cache.get("key" + it) == "value" + it
+                        }
+                    }
+                } catch (Throwable t) {
+                    failures << t
+                }
+            }
+        }
+        1000.times {
+            cache.put("other" + it, "value" + it)
+        }
+        readers*.join()
+
+        then:
+        failures.empty
+        cache.entryCount == 2000
+    }
+
+    private MappedPersistentIndexedCache<String, String> createCache() {
+        return new MappedPersistentIndexedCache<String, String>(cacheFile, serializerFactory.getSerializerFor(String), serializerFactory.getSerializerFor(String))
+    }
+
+    private static void handOver(MappedPersistentIndexedCache from, MappedPersistentIndexedCache to) {
+        from.onEndWork(null)
+        to.onStartWork("access cache", null)
+    }
+
+    private void reopen() {
+        cache.close()
+        cache = createCache()
+    }
+}
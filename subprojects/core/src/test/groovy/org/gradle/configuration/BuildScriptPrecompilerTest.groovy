@@ -0,0 +1,180 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.configuration
+
+import org.gradle.StartParameter
+import org.gradle.api.ProjectState
+import org.gradle.api.internal.DocumentationRegistry
+import org.gradle.api.internal.GradleInternal
+import org.gradle.api.internal.initialization.ClassLoaderScope
+import org.gradle.api.internal.project.ProjectInternal
+import org.gradle.api.internal.project.ProjectScript
+import org.gradle.groovy.scripts.ScriptSource
+import org.gradle.groovy.scripts.internal.FileCacheBackedScriptClassCompiler
+import org.gradle.internal.concurrent.ExecutorFactory
+import org.gradle.internal.concurrent.StoppableExecutor
+import org.gradle.internal.resource.Resource
+import org.gradle.model.dsl.internal.transform.ClosureCreationInterceptingVerifier
+import spock.lang.Specification
+
+class BuildScriptPrecompilerTest extends Specification {
+    final scriptCompiler = Mock(FileCacheBackedScriptClassCompiler)
+    final executor = Stub(StoppableExecutor) {
+        execute(_) >> { Runnable action -> action.run() }
+    }
+    final executorFactory = Stub(ExecutorFactory) {
+        create(_, _) >> executor
+    }
+    final startParameter = new StartParameter()
+    final gradle = Stub(GradleInternal) {
+        getStartParameter() >> startParameter
+    }
+    final precompiler = new BuildScriptPrecompiler(scriptCompiler, Stub(DocumentationRegistry), executorFactory, 2)
+
+    def scripts = [root: "println 'root'", child: "println 'child'"]
+    def baseLoader = Stub(ClassLoader)
+    def rootLoader = Stub(ClassLoader)
+    def baseScope = scope(baseLoader)
+    def rootSource = source("root")
+    def childSource = source("child")
+    def root = project(rootSource, baseScope, baseScope)
+    def child = project(childSource, baseScope, scope(rootLoader))
+
+    def setup() {
+        root.getAllprojects() >> ([root, child] as Set)
+        root.getChildProjects() >> [child: child]
+        child.getChildProjects() >> [:]
+        gradle.getRootProject() >> root
+    }
+
+    def "compiles the first pass of each build script and the second pass of the root build script once the projects have been loaded"() {
+        when:
+        precompiler.projectsLoaded(gradle)
+
+        then:
+        1 * scriptCompiler.precompile(rootSource, baseLoader, { it.id == "cp_proj" }, ProjectScript, _)
+        1 * scriptCompiler.precompile(childSource, baseLoader, { it.id == "cp_proj" }, ProjectScript, _)
+        1 * scriptCompiler.precompile(rootSource, baseLoader, { it.id == "proj" }, ProjectScript, ClosureCreationInterceptingVerifier.INSTANCE)
+        0 * scriptCompiler._
+    }
+
+    def "compiles the second pass of a build script against the classpath of its parent once the parent has been evaluated"() {
+        given:
+        precompiler.projectsLoaded(gradle)
+
+        when:
+        precompiler.afterEvaluate(root, Stub(ProjectState))
+
+        then:
+        1 * scriptCompiler.precompile(childSource, rootLoader, { it.id == "proj" }, ProjectScript, ClosureCreationInterceptingVerifier.INSTANCE)
+        0 * scriptCompiler._
+    }
+
+    def "compiles the second pass of a build script with the same ClassLoader and operation as the evaluation of the project"() {
+        def operationIds = []
+        def classLoaders = []
+
+        when:
+        precompiler.projectsLoaded(gradle)
+        precompiler.afterEvaluate(root, Stub(ProjectState))
+
+        then:
+        _ * scriptCompiler.precompile(childSource, _, _, _, _) >> { ScriptSource source, ClassLoader classLoader, operation, scriptClass, verifier ->
+            operationIds << operation.id
+            classLoaders << classLoader
+        }
+
+        and:
+        operationIds == [DefaultScriptPluginFactory.createInitialPassOperation(new ProjectScriptTarget(child), childSource, Stub(DocumentationRegistry), null).id,
+                         DefaultScriptPluginFactory.createBuildScriptOperation(new ProjectScriptTarget(child), childSource, null).id]
+        classLoaders == [child.baseClassLoaderScope.exportClassLoader, child.classLoaderScope.parent.exportClassLoader]
+    }
+
+    def "does not compile the second pass of a build script that contains a buildscript block"() {
+        scripts.child = "buildscript { }"
+        precompiler.projectsLoaded(gradle)
+
+        when:
+        precompiler.afterEvaluate(root, Stub(ProjectState))
+
+        then:
+        0 * scriptCompiler._
+    }
+
+    def "does not compile build scripts once the projects have been evaluated"() {
+        given:
+        precompiler.projectsLoaded(gradle)
+        precompiler.projectsEvaluated(gradle)
+
+        when:
+        precompiler.afterEvaluate(root, Stub(ProjectState))
+
+        then:
+        0 * scriptCompiler._
+    }
+
+    def "does not compile build scripts when configuring projects on demand"() {
+        startParameter.configureOnDemand = true
+
+        when:
+        precompiler.projectsLoaded(gradle)
+        precompiler.afterEvaluate(root, Stub(ProjectState))
+
+        then:
+        0 * scriptCompiler._
+    }
+
+    def "ignores build scripts that cannot be compiled"() {
+        when:
+        precompiler.projectsLoaded(gradle)
+
+        then:
+        1 * scriptCompiler.precompile(rootSource, baseLoader, { it.id == "cp_proj" }, ProjectScript, _) >> { throw new RuntimeException("broken") }
+        1 * scriptCompiler.precompile(childSource, baseLoader, { it.id == "cp_proj" }, ProjectScript, _)
+        1 * scriptCompiler.precompile(rootSource, baseLoader, { it.id == "proj" }, ProjectScript, _)
+        noExceptionThrown()
+    }
+
+    private ScriptSource source(String name) {
+        def resource = Stub(Resource) {
+            getExists() >> true
+            getText() >> { scripts[name] }
+        }
+        return Stub(ScriptSource) {
+            getResource() >> resource
+            getDisplayName() >> "build file '${name}/build.gradle'"
+        }
+    }
+
+    private ClassLoaderScope scope(ClassLoader exportLoader) {
+        return Stub(ClassLoaderScope) {
+            isLocked() >> true
+            getExportClassLoader() >> exportLoader
+        }
+    }
+
+    private ProjectInternal project(ScriptSource source, ClassLoaderScope baseScope, ClassLoaderScope parentScope) {
+        def projectScope = Stub(ClassLoaderScope) {
+            getParent() >> parentScope
+        }
+        return Stub(ProjectInternal) {
+            getBuildScriptSource() >> source
+            getBaseClassLoaderScope() >> baseScope
+            getClassLoaderScope() >> projectScope
+        }
+    }
+}
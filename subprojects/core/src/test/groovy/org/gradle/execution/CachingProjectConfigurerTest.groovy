@@ -0,0 +1,259 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.execution
+
+import org.gradle.StartParameter
+import org.gradle.api.Task
+import org.gradle.api.execution.TaskExecutionGraph
+import org.gradle.api.internal.GradleInternal
+import org.gradle.api.internal.initialization.ClassLoaderScope
+import org.gradle.api.internal.project.ProjectInternal
+import org.gradle.cache.CacheBuilder
+import org.gradle.cache.CacheRepository
+import org.gradle.cache.PersistentCache
+import org.gradle.groovy.scripts.ScriptSource
+import org.gradle.internal.Factory
+import org.gradle.internal.resource.Resource
+import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
+import org.junit.Rule
+import spock.lang.Specification
+
+class CachingProjectConfigurerTest extends Specification {
+    @Rule
+    final TestNameTestDirectoryProvider tmpDir = new TestNameTestDirectoryProvider()
+    def delegate = Mock(ProjectConfigurer)
+    def persistentCache = Stub(PersistentCache) {
+        getBaseDir() >> tmpDir.createDir("cache")
+        useCache(_, _ as Factory) >> { String name, Factory factory -> factory.create() }
+        useCache(_, _ as Runnable) >> { String name, Runnable action -> action.run() }
+    }
+    def cacheBuilder = Stub(CacheBuilder) {
+        withDisplayName(_) >> { cacheBuilder }
+        withLockOptions(_) >> { cacheBuilder }
+        open() >> persistentCache
+    }
+    def cacheRepository = Stub(CacheRepository) {
+        cache(_, _) >> cacheBuilder
+    }
+    def classLoader = new URLClassLoader([] as URL[], (ClassLoader) null)
+    def gradle = Stub(GradleInternal)
+    def root = project(":", null)
+    def a = project(":a", root)
+    def b = project(":b", root)
+
+    def setup() {
+        gradle.rootProject >> root
+        gradle.startParameter >> new StartParameter()
+        gradle.gradleUserHomeDir >> tmpDir.createDir("user-home")
+        root.subprojects >> ([a, b] as LinkedHashSet)
+        root.allprojects >> ([root, a, b] as LinkedHashSet)
+    }
+
+    def "configures all projects when there is no previous build"() {
+        def configurer = new CachingProjectConfigurer(delegate, cacheRepository)
+
+        when:
+        configurer.configureHierarchy(root)
+
+        then:
+        1 * delegate.configureHierarchy(root)
+        0 * delegate._
+    }
+
+    def "configures only the projects that the previous build used"() {
+        given:
+        record(b)
+        def configurer = new CachingProjectConfigurer(delegate, cacheRepository)
+
+        when:
+        configurer.configureHierarchy(root)
+
+        then:
+        1 * delegate.configure(root)
+        1 * delegate.configure(b)
+        0 * delegate._
+    }
+
+    def "configures the projects that accessed other projects in the previous build"() {
+        given:
+        a.hasAccessedOtherProjects() >> true
+        record(b)
+        def configurer = new CachingProjectConfigurer(delegate, cacheRepository)
+
+        when:
+        configurer.configureHierarchy(root)
+
+        then:
+        1 * delegate.configure(root)
+        1 * delegate.configure(a)
+        1 * delegate.configure(b)
+        0 * delegate._
+    }
+
+    def "configures all projects when a task of the previous build accessed other projects"() {
+        given:
+        root.hasTasksAccessedOtherProjects() >> true
+        record(b)
+        def configurer = new CachingProjectConfigurer(delegate, cacheRepository)
+
+        when:
+        configurer.configureHierarchy(root)
+
+        then:
+        1 * delegate.configure(root)
+        1 * delegate.configure(a)
+        1 * delegate.configure(b)
+        0 * delegate._
+    }
+
+    def "records all projects when a task of a build that used a previous build accessed other projects"() {
+        given:
+        def tasksAccessedOtherProjects = false
+        root.hasTasksAccessedOtherProjects() >> { tasksAccessedOtherProjects }
+        record(b)
+        def replayingConfigurer = new CachingProjectConfigurer(Stub(ProjectConfigurer), cacheRepository)
+        replayingConfigurer.configureHierarchy(root)
+        tasksAccessedOtherProjects = true
+        replayingConfigurer.close()
+        def configurer = new CachingProjectConfigurer(delegate, cacheRepository)
+
+        when:
+        configurer.configureHierarchy(root)
+
+        then:
+        1 * delegate.configure(root)
+        1 * delegate.configure(a)
+        1 * delegate.configure(b)
+        0 * delegate._
+    }
+
+    def "configures all projects when the hierarchy is configured again, for example to build a tooling model"() {
+        given:
+        record(b)
+        def configurer = new CachingProjectConfigurer(delegate, cacheRepository)
+        configurer.configureHierarchy(root)
+
+        when:
+        configurer.configureHierarchy(root)
+
+        then:
+        1 * delegate.configureHierarchy(root)
+        0 * delegate._
+    }
+
+    def "configures all projects when a build script has changed since the previous build"() {
+        given:
+        record(b)
+        a.buildFile << "apply plugin: 'java'"
+        def configurer = new CachingProjectConfigurer(delegate, cacheRepository)
+
+        when:
+        configurer.configureHierarchy(root)
+
+        then:
+        1 * delegate.configureHierarchy(root)
+        0 * delegate._
+    }
+
+    def "configures all projects when a gradle.properties file has been added since the previous build"() {
+        given:
+        record(b)
+        tmpDir.file("a/gradle.properties") << "version=2"
+        def configurer = new CachingProjectConfigurer(delegate, cacheRepository)
+
+        when:
+        configurer.configureHierarchy(root)
+
+        then:
+        1 * delegate.configureHierarchy(root)
+        0 * delegate._
+    }
+
+    def "does not record the configuration when a script is not loaded from a file"() {
+        given:
+        def recordingConfigurer = new CachingProjectConfigurer(Stub(ProjectConfigurer), cacheRepository)
+        recordingConfigurer.configureHierarchy(root)
+        recordingConfigurer.scriptClassLoaded(Stub(ScriptSource) {
+            getResource() >> Stub(Resource)
+            getDisplayName() >> "script 'http://server/script.gradle'"
+        }, null)
+        recordingConfigurer.graphPopulated(graph(b))
+        def configurer = new CachingProjectConfigurer(delegate, cacheRepository)
+
+        when:
+        configurer.configureHierarchy(root)
+
+        then:
+        1 * delegate.configureHierarchy(root)
+        0 * delegate._
+    }
+
+    def "does not record the configuration when the build script classpath contains a directory"() {
+        given:
+        classLoader = new URLClassLoader([tmpDir.createDir("classes").toURI().toURL()] as URL[], (ClassLoader) null)
+        record(b)
+        def configurer = new CachingProjectConfigurer(delegate, cacheRepository)
+
+        when:
+        configurer.configureHierarchy(root)
+
+        then:
+        1 * delegate.configureHierarchy(root)
+        0 * delegate._
+    }
+
+    private void record(ProjectInternal... projects) {
+        def configurer = new CachingProjectConfigurer(Stub(ProjectConfigurer), cacheRepository)
+        configurer.configureHierarchy(root)
+        configurer.graphPopulated(graph(projects))
+        configurer.close()
+    }
+
+    private TaskExecutionGraph graph(ProjectInternal... projects) {
+        def tasks = projects.collect { project ->
+            Stub(Task) {
+                getProject() >> project
+            }
+        }
+        return Stub(TaskExecutionGraph) {
+            getAllTasks() >> tasks
+        }
+    }
+
+    private ProjectInternal project(String path, ProjectInternal parent) {
+        def projectDir = tmpDir.createDir(path == ":" ? "root" : path.substring(1))
+        def buildFile = projectDir.file("build.gradle")
+        buildFile.text = "// ${path}"
+        def source = Stub(ScriptSource) {
+            getResource() >> Stub(Resource) {
+                getExists() >> true
+                getText() >> { buildFile.text }
+            }
+        }
+        def project = Stub(ProjectInternal)
+        project.path >> path
+        project.parent >> parent
+        project.gradle >> gradle
+        project.projectDir >> projectDir
+        project.buildFile >> buildFile
+        project.buildScriptSource >> source
+        project.classLoaderScope >> Stub(ClassLoaderScope) {
+            getLocalClassLoader() >> { classLoader }
+        }
+        return project
+    }
+}
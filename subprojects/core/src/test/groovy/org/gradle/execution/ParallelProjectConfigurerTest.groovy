@@ -0,0 +1,205 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.execution
+
+import org.gradle.api.InvalidUserCodeException
+import org.gradle.api.internal.GradleInternal
+import org.gradle.api.internal.initialization.ClassLoaderScope
+import org.gradle.api.internal.project.ProjectInternal
+import org.gradle.groovy.scripts.ScriptSource
+import org.gradle.initialization.BuildCancellationToken
+import org.gradle.internal.concurrent.DefaultExecutorFactory
+import org.gradle.internal.resource.Resource
+import spock.lang.Specification
+import spock.lang.Unroll
+
+import java.util.concurrent.CopyOnWriteArrayList
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+
+class ParallelProjectConfigurerTest extends Specification {
+    def events = new CopyOnWriteArrayList<String>()
+    def configurer = new ParallelProjectConfigurer(Stub(BuildCancellationToken), new DefaultExecutorFactory(), 4)
+    def gradle = Stub(GradleInternal)
+    def root = project(":", null, null)
+
+    def "configures projects without references to other projects in parallel"() {
+        def bothStarted = new CountDownLatch(2)
+        def waitForOther = {
+            bothStarted.countDown()
+            assert bothStarted.await(5, TimeUnit.SECONDS)
+        }
+        def a = project(":a", root, "apply plugin: 'java'", waitForOther)
+        def b = project(":b", root, "dependencies { compile project(':a') }", waitForOther)
+        root.subprojects >> ([a, b] as Set)
+
+        when:
+        configurer.configureHierarchy(root)
+
+        then:
+        events.containsAll([":", ":a", ":b"])
+        events[0] == ":"
+    }
+
+    def "configures project that refers to other projects after the previous projects and before the following projects"() {
+        def a = project(":a", root, "")
+        def b = project(":b", root, "")
+        def c = project(":c", root, "evaluationDependsOn(':a')")
+        def d = project(":d", root, "")
+        def e = project(":e", root, "")
+        root.subprojects >> ([a, b, c, d, e] as LinkedHashSet)
+
+        when:
+        configurer.configureHierarchy(root)
+
+        then:
+        events.size() == 6
+        events.subList(1, 3) as Set == [":a", ":b"] as Set
+        events[3] == ":c"
+        events.subList(4, 6) as Set == [":d", ":e"] as Set
+    }
+
+    def "configures project after its parent"() {
+        def parentStarted = new CountDownLatch(1)
+        def a = project(":a", root, "", { parentStarted.countDown(); Thread.sleep(100) })
+        def child = project(":a:child", a, "", { assert events.contains(":a") })
+        def b = project(":b", root, "", { assert parentStarted.await(5, TimeUnit.SECONDS) })
+        root.subprojects >> ([a, b, child] as LinkedHashSet)
+
+        when:
+        configurer.configureHierarchy(root)
+
+        then:
+        events.size() == 4
+        events.indexOf(":a") < events.indexOf(":a:child")
+    }
+
+    def "configures projects one at a time when a project evaluation listener has been added"() {
+        def threads = new CopyOnWriteArrayList<Thread>()
+        def a = project(":a", root, "", { threads << Thread.currentThread() })
+        def b = project(":b", root, "", { threads << Thread.currentThread() })
+        root.subprojects >> ([a, b] as LinkedHashSet)
+        gradle.projectEvaluationListenerAdded >> true
+
+        when:
+        configurer.configureHierarchy(root)
+
+        then:
+        events == [":", ":a", ":b"]
+        threads == [Thread.currentThread(), Thread.currentThread()]
+    }
+
+    def "rethrows failure to configure a project"() {
+        def failure = new RuntimeException("broken")
+        def a = project(":a", root, "", { throw failure })
+        def b = project(":b", root, "")
+        root.subprojects >> ([a, b] as LinkedHashSet)
+
+        when:
+        configurer.configureHierarchy(root)
+
+        then:
+        def e = thrown(RuntimeException)
+        e.is(failure)
+    }
+
+    def "project configured in parallel cannot configure other projects"() {
+        def b
+        def a = project(":a", root, "", { ParallelProjectConfigurer.assertCanConfigure(root) })
+        b = project(":b", root, "", { ParallelProjectConfigurer.assertCanConfigure(b) })
+        root.subprojects >> ([a, b] as LinkedHashSet)
+
+        when:
+        configurer.configureHierarchy(root)
+
+        then:
+        def e = thrown(InvalidUserCodeException)
+        e.message.startsWith("Cannot configure ")
+        e.message.contains(", as projects are being configured in parallel.")
+    }
+
+    def "project configured in parallel can evaluate projects that have already been configured"() {
+        def b
+        def a = project(":a", root, "", { ParallelProjectConfigurer.assertCanEvaluate(root) })
+        b = project(":b", root, "", { ParallelProjectConfigurer.assertCanEvaluate(b) })
+        root.subprojects >> ([a, b] as LinkedHashSet)
+
+        when:
+        configurer.configureHierarchy(root)
+
+        then:
+        events.size() == 3
+    }
+
+    @Unroll
+    def "detects reference to other projects in build script #script"() {
+        expect:
+        ParallelProjectConfigurer.findCrossProjectReference(project(":a", root, script)) == reference
+
+        where:
+        script                                       | reference
+        "subprojects { apply plugin: 'java' }"      | "refers to other projects using 'subprojects'"
+        "allprojects { }"                            | "refers to other projects using 'allprojects'"
+        "evaluationDependsOn(':b')"                  | "depends on the evaluation of other projects using 'evaluationDependsOn'"
+        "project(':b') { version = 1 }"              | "refers to another project using 'project(':b') {'"
+        "def x = project(':b').sourceSets"           | "refers to another project using 'project(':b').'"
+        "rootProject { }"                            | "refers to another project using 'rootProject'"
+        "version = rootProject.version"              | "refers to another project using 'rootProject'"
+        "version = parent.version"                   | "refers to another project using 'parent'"
+        "version = project.parent.version"           | "refers to another project using 'parent'"
+        "configure(tasks) { }"                       | "configures other objects using 'configure('"
+        "gradle.taskGraph.whenReady { }"             | "refers to the build using 'gradle.'"
+        "apply from: 'other.gradle'"                 | "applies other scripts using 'apply from:'"
+        "dependencies { compile project(':b') }"     | null
+        "apply plugin: 'java'"                       | null
+    }
+
+    def "project without build script does not refer to other projects"() {
+        def source = Stub(ScriptSource) {
+            getResource() >> Stub(Resource) {
+                getExists() >> false
+            }
+        }
+        def project = Stub(ProjectInternal) {
+            getBuildScriptSource() >> source
+        }
+
+        expect:
+        ParallelProjectConfigurer.findCrossProjectReference(project) == null
+    }
+
+    private ProjectInternal project(String path, ProjectInternal parent, String script, Closure action = {}) {
+        def source = Stub(ScriptSource) {
+            getResource() >> Stub(Resource) {
+                getExists() >> true
+                getText() >> script
+            }
+        }
+        def project = Mock(ProjectInternal)
+        project.path >> path
+        project.parent >> parent
+        project.buildScriptSource >> source
+        project.classLoaderScope >> Stub(ClassLoaderScope)
+        project.gradle >> gradle
+        project.evaluate() >> {
+            action.call()
+            events << path
+            project
+        }
+        return project
+    }
+}
@@ -16,6 +16,7 @@
 
 package org.gradle.execution
 
+import org.gradle.StartParameter
 import org.gradle.api.Task
 import org.gradle.api.internal.GradleInternal
 import org.gradle.api.internal.TaskInternal
@@ -28,9 +29,11 @@ class TaskSelectorTest extends Specification {
     def projectA = TestUtil.createChildProject(rootProject, "a")
     def projectB = TestUtil.createChildProject(rootProject, "b")
     def projectBChild = TestUtil.createChildProject(projectB, "child")
+    def startParameter = new StartParameter()
     def gradle = Stub(GradleInternal) {
         getRootProject() >> rootProject
         getDefaultProject() >> projectB
+        getStartParameter() >> startParameter
     }
     def resolver = Mock(TaskNameResolver)
     def projectConfigurer = Mock(ProjectConfigurer)
@@ -93,6 +96,7 @@ class TaskSelectorTest extends Specification {
     }
 
     def "unqualified exclude filter configures all subprojects of the default project when exact match on task name not found"() {
+        startParameter.configureOnDemand = true
         def excluded = Stub(Task)
         def notExcluded = Stub(Task)
         def selectionResult = Stub(TaskSelectionResult)
@@ -114,6 +118,7 @@ class TaskSelectorTest extends Specification {
     }
 
     def "unqualified exclude filter selects tasks and filters by instance when no exact match on name found"() {
+        startParameter.configureOnDemand = true
         def excluded = Stub(Task)
         def notExcluded = Stub(Task)
         def selectionResult = Stub(TaskSelectionResult)
@@ -135,6 +140,24 @@ class TaskSelectorTest extends Specification {
         filter.isSatisfiedBy(notExcluded)
     }
 
+    def "unqualified exclude filter does not configure subprojects again when the whole hierarchy has been configured"() {
+        def excluded = Stub(Task)
+        def selectionResult = Stub(TaskSelectionResult)
+
+        when:
+        def filter = selector.getFilter("a")
+
+        then:
+        1 * projectConfigurer.configure(projectB)
+        1 * resolver.tryFindUnqualifiedTaskCheaply("a", projectB) >> false
+        1 * resolver.selectWithName("a", projectB, true) >> selectionResult
+        _ * selectionResult.collectTasks(_) >> { it[0] << excluded }
+        0 * _
+
+        and:
+        !filter.isSatisfiedBy(excluded)
+    }
+
     def task(ProjectInternal project, String name) {
         def task = Stub(TaskInternal) {
             getProject() >> project
@@ -19,12 +19,15 @@ package org.gradle.execution.taskgraph
 import org.gradle.api.DefaultTask
 import org.gradle.api.Project
 import org.gradle.api.Task
+import org.gradle.api.internal.changedetection.state.TaskDurationRepository
 import org.gradle.api.internal.project.DefaultProject
 import org.gradle.api.tasks.Delete
 import org.gradle.api.tasks.OutputDirectory
 import org.gradle.api.tasks.OutputFile
 import org.gradle.api.tasks.ParallelizableTask
 import org.gradle.initialization.BuildCancellationToken
+import org.gradle.internal.Factories
+import org.gradle.internal.TimeProvider
 import org.gradle.internal.nativeintegration.filesystem.FileSystem
 import org.gradle.test.fixtures.ConcurrentTestUtil
 import org.gradle.test.fixtures.file.TestFile
@@ -176,6 +179,74 @@ class DefaultTaskExecutionPlanParallelTaskHandlingTest extends Specification {
         requestedTasksBecomeAvailableForExecution()
     }
 
+    def "task with must run after ordering becomes available for execution when the other task completes"() {
+        given:
+        Task a = root.task("a", type: Parallel)
+        Task b = root.task("b", type: Parallel).mustRunAfter(a)
+
+        when:
+        addToGraphAndPopulate(a, b)
+        startTasks(1)
+        noMoreTasksCurrentlyAvailableForExecution()
+        completeAllStartedTasks()
+
+        then:
+        requestedTasksBecomeAvailableForExecution()
+    }
+
+    def "task that cannot run alongside a running task becomes available for execution when the running task completes"() {
+        given:
+        Task a = taskWithOutputFile("a", file("output"))
+        Task b = taskWithOutputFile("b", file("output"))
+
+        when:
+        addToGraphAndPopulate(a, b)
+        startTasks(1)
+        noMoreTasksCurrentlyAvailableForExecution()
+        completeAllStartedTasks()
+
+        then:
+        requestedTasksBecomeAvailableForExecution()
+    }
+
+    def "starts task with the longest predicted remaining duration first when critical path prioritization is enabled"() {
+        given:
+        def durations = Stub(TaskDurationRepository) {
+            getPreviousDurations(_) >> [":a": 10L, ":b": 100L, ":c": 1000L]
+        }
+        executionPlan = new DefaultTaskExecutionPlan(Stub(BuildCancellationToken), true, new CriticalPathTracker(Factories.constant(durations), Stub(TimeProvider)))
+        Task a = root.task("a", type: Parallel)
+        Task b = root.task("b", type: Parallel)
+        Task c = root.task("c", type: Parallel).dependsOn(a)
+
+        when:
+        addToGraphAndPopulate(b, c)
+        startTasks(1)
+
+        then:
+        startedTasks*.task == [a]
+    }
+
+    def "records durations of executed tasks when critical path prioritization is enabled"() {
+        given:
+        def durations = Mock(TaskDurationRepository)
+        def timeProvider = Stub(TimeProvider) {
+            getCurrentTime() >>> [100L, 150L]
+        }
+        executionPlan = new DefaultTaskExecutionPlan(Stub(BuildCancellationToken), true, new CriticalPathTracker(Factories.constant(durations), timeProvider))
+        Task a = root.task("a", type: Parallel)
+
+        when:
+        addToGraphAndPopulate(a)
+        startTasks(1)
+        completeAllStartedTasks()
+        executionPlan.awaitCompletion()
+
+        then:
+        1 * durations.getPreviousDurations([":a"]) >> [:]
+        1 * durations.recordDurations([":a": 50L])
+    }
+
     def "a parallelizable task with custom actions is not run in parallel"() {
         given:
         Task a = root.task("a", type: Parallel)
@@ -0,0 +1,122 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.execution.taskgraph
+
+import org.gradle.internal.Pair
+import spock.lang.Specification
+
+class OutputPathTrieTest extends Specification {
+    def trie = new OutputPathTrie<String>('/' as char)
+
+    def "finds no overlap when empty"() {
+        expect:
+        trie.empty
+        trie.findOverlap("/a/b") == null
+    }
+
+    def "finds overlap with the same path"() {
+        when:
+        trie.add("/a/b", "task")
+
+        then:
+        trie.findOverlap("/a/b") == Pair.of("task", "/a/b")
+    }
+
+    def "finds overlap with an ancestor path"() {
+        when:
+        trie.add("/a/b", "task")
+
+        then:
+        trie.findOverlap("/a/b/c/d") == Pair.of("task", "/a/b")
+    }
+
+    def "finds overlap with a descendant path"() {
+        when:
+        trie.add("/a/b/c/d", "task")
+
+        then:
+        trie.findOverlap("/a/b") == Pair.of("task", "/a/b")
+        trie.findOverlap("/a") == Pair.of("task", "/a")
+    }
+
+    def "paths sharing a name prefix do not overlap"() {
+        when:
+        trie.add("/a/build", "task")
+
+        then:
+        trie.findOverlap("/a/build2") == null
+        trie.findOverlap("/a/buil") == null
+        trie.findOverlap("/a/other/build") == null
+    }
+
+    def "finds no overlap once path is removed"() {
+        given:
+        trie.add("/a/b/c", "first")
+        trie.add("/a/b/d", "second")
+
+        when:
+        trie.remove("/a/b/c", "first")
+
+        then:
+        trie.findOverlap("/a/b/c") == null
+        trie.findOverlap("/a/b") == Pair.of("second", "/a/b")
+
+        when:
+        trie.remove("/a/b/d", "second")
+
+        then:
+        trie.empty
+        trie.findOverlap("/a") == null
+    }
+
+    def "keeps path while another owner still has it"() {
+        given:
+        trie.add("/a/b", "first")
+        trie.add("/a/b", "second")
+
+        when:
+        trie.remove("/a/b", "first")
+
+        then:
+        trie.findOverlap("/a/b/c") == Pair.of("second", "/a/b")
+    }
+
+    def "ignores removal of unknown path or owner"() {
+        given:
+        trie.add("/a/b", "task")
+
+        when:
+        trie.remove("/a/c", "task")
+        trie.remove("/a/b", "other")
+
+        then:
+        trie.findOverlap("/a/b") == Pair.of("task", "/a/b")
+    }
+
+    def "supports windows paths"() {
+        given:
+        def trie = new OutputPathTrie<String>('\\' as char)
+
+        when:
+        trie.add("C:\\a\\b", "task")
+
+        then:
+        trie.findOverlap("C:\\a\\b\\c") == Pair.of("task", "C:\\a\\b")
+        trie.findOverlap("C:\\a") == Pair.of("task", "C:\\a")
+        trie.findOverlap("D:\\a\\b") == null
+    }
+}
@@ -16,6 +16,7 @@
 package org.gradle.groovy.scripts.internal
 
 import org.gradle.api.Action
+import org.gradle.api.internal.file.TemporaryFileProvider
 import org.gradle.api.internal.initialization.ClassLoaderIds
 import org.gradle.cache.CacheBuilder
 import org.gradle.cache.CacheRepository
@@ -24,35 +25,48 @@ import org.gradle.cache.PersistentCache
 import org.gradle.groovy.scripts.Script
 import org.gradle.groovy.scripts.ScriptSource
 import org.gradle.groovy.scripts.Transformer
+import org.gradle.internal.hash.HashUtil
 import org.gradle.internal.resource.Resource
 import org.gradle.logging.ProgressLogger
 import org.gradle.logging.ProgressLoggerFactory
+import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
+import org.junit.Rule
+import org.objectweb.asm.ClassReader
+import org.objectweb.asm.ClassVisitor
+import org.objectweb.asm.ClassWriter
+import org.objectweb.asm.Opcodes
 import spock.lang.Specification
 
 class FileCacheBackedScriptClassCompilerTest extends Specification {
+    @Rule
+    final TestNameTestDirectoryProvider tmpDir = new TestNameTestDirectoryProvider()
     final ScriptCompilationHandler scriptCompilationHandler = Mock()
     final CacheRepository cacheRepository = Mock()
     final CacheBuilder cacheBuilder = Mock()
     final CacheValidator validator = Mock()
     final PersistentCache cache = Mock()
     final ScriptSource source = Mock()
+    final Resource resource = Mock()
     final ClassLoader classLoader = Mock()
     final Transformer transformer = Mock()
     final CompileOperation<?> operation = Mock()
     final File cacheDir = new File("base-dir")
     final File classesDir = new File(cacheDir, "classes")
     final File metadataDir = new File(cacheDir, "metadata")
-    final FileCacheBackedScriptClassCompiler compiler = new FileCacheBackedScriptClassCompiler(cacheRepository, validator, scriptCompilationHandler, Stub(ProgressLoggerFactory))
+    final TemporaryFileProvider temporaryFileProvider = Stub() {
+        createTemporaryDirectory(*_) >> { tmpDir.createDir("staging") }
+    }
+    final FileCacheBackedScriptClassCompiler compiler = new FileCacheBackedScriptClassCompiler(cacheRepository, validator, scriptCompilationHandler, Stub(ProgressLoggerFactory), temporaryFileProvider)
     final Action verifier = Stub()
     final CompiledScript compiledScript = Stub() {
         loadClass() >> Script
     }
     def classLoaderId = ClassLoaderIds.buildScript("foo", "bar")
+    def scriptText = 'this is the script'
 
     def setup() {
-        Resource resource = Mock()
         _ * source.resource >> resource
-        _ * resource.text >> 'this is the script'
+        _ * resource.text >> { scriptText }
         _ * source.className >> 'ScriptClassName'
         _ * source.fileName >> 'ScriptFileName'
         _ * operation.id >> 'TransformerId'
@@ -67,28 +81,29 @@ class FileCacheBackedScriptClassCompilerTest extends Specification {
 
         then:
         result == Script
-        1 * cacheRepository.cache("scripts/ScriptClassName/TransformerId") >> cacheBuilder
+        1 * cacheRepository.cache("scripts-remapped/ScriptClassName/TransformerId") >> cacheBuilder
         1 * cacheBuilder.withProperties(!null) >> { args ->
             assert args[0].get('source.filename') == 'ScriptFileName'
             assert args[0].containsKey('source.hash')
+            assert args[0].containsKey('classpath.hash')
             return cacheBuilder
         }
         1 * cacheBuilder.withInitializer(!null) >> cacheBuilder
         1 * cacheBuilder.withDisplayName(!null) >> cacheBuilder
         1 * cacheBuilder.withValidator(!null) >> cacheBuilder
         1 * cacheBuilder.open() >> cache
-        1 * scriptCompilationHandler.loadFromDir(source, classLoader, classesDir, metadataDir, operation, Script, classLoaderId) >> compiledScript
+        1 * scriptCompilationHandler.loadFromDir({ it.className == "ScriptClassName_" + HashUtil.createCompactMD5(scriptText) }, classLoader, classesDir, metadataDir, operation, Script, classLoaderId) >> compiledScript
         0 * scriptCompilationHandler._
     }
 
     def "passes CacheValidator to cacheBuilder"() {
         setup:
-        cacheRepository.cache("scripts/ScriptClassName/TransformerId") >> cacheBuilder
+        cacheRepository.cache("scripts-remapped/ScriptClassName/TransformerId") >> cacheBuilder
         cacheBuilder.withProperties(!null) >> cacheBuilder
         cacheBuilder.withInitializer(!null) >> cacheBuilder
         cacheBuilder.withDisplayName(!null) >> cacheBuilder
         cacheBuilder.open() >> cache
-        scriptCompilationHandler.loadFromDir(source, classLoader, classesDir, metadataDir, operation, Script, classLoaderId) >> compiledScript
+        scriptCompilationHandler.loadFromDir(_, classLoader, classesDir, metadataDir, operation, Script, classLoaderId) >> compiledScript
 
         when:
         compiler.compile(source, classLoader, classLoaderId, operation, Script, verifier)
@@ -97,10 +112,11 @@ class FileCacheBackedScriptClassCompilerTest extends Specification {
         1 * cacheBuilder.withValidator(validator) >> cacheBuilder
     }
 
-    def "compiles classes to cache directory when cache is invalid"() {
+    def "compiles script containing a model block to its own cache directory when cache is invalid"() {
         def initializer
         def classesDir = classesDir
         def metadataDir = new File(cacheDir, "metadata")
+        scriptText = 'model { }'
 
         when:
         def result = compiler.compile(source, classLoader, classLoaderId, operation, Script, verifier).loadClass()
@@ -118,6 +134,147 @@ class FileCacheBackedScriptClassCompilerTest extends Specification {
         0 * scriptCompilationHandler._
     }
 
+    def "compiles script once for scripts with the same content and copies the classes with the source file of each script"() {
+        def compiler = new FileCacheBackedScriptClassCompiler(testCacheRepository(), validator, scriptCompilationHandler, Stub(ProgressLoggerFactory), temporaryFileProvider)
+        def source1 = script("build_a1", "a/build.gradle")
+        def source2 = script("build_b2", "b/build.gradle")
+
+        when:
+        compiler.compile(source1, classLoader, classLoaderId, operation, Script, verifier)
+        compiler.compile(source2, classLoader, classLoaderId, operation, Script, verifier)
+
+        then:
+        1 * scriptCompilationHandler.compileToDir({ it.className == sharedClassName }, classLoader, _, _, operation, Script, verifier) >> { args -> writeClass(args[2], args[3], args[0].className) }
+        1 * scriptCompilationHandler.loadFromDir({ it.className == sharedClassName }, classLoader, tmpDir.file("scripts-remapped/build_a1/TransformerId/classes"), _, operation, Script, classLoaderId) >> compiledScript
+        1 * scriptCompilationHandler.loadFromDir({ it.className == sharedClassName }, classLoader, tmpDir.file("scripts-remapped/build_b2/TransformerId/classes"), _, operation, Script, classLoaderId) >> compiledScript
+        0 * scriptCompilationHandler._
+
+        and:
+        sourceFileOf(tmpDir.file("scripts-remapped/build_a1/TransformerId/classes/${sharedClassName}.class")) == "a/build.gradle"
+        sourceFileOf(tmpDir.file("scripts-remapped/build_b2/TransformerId/classes/${sharedClassName}.class")) == "b/build.gradle"
+    }
+
+    def "uses classes compiled ahead of time"() {
+        def compiler = new FileCacheBackedScriptClassCompiler(testCacheRepository(), validator, scriptCompilationHandler, Stub(ProgressLoggerFactory), temporaryFileProvider)
+        def source1 = script("build_a1", "a/build.gradle")
+        def source2 = script("build_b2", "b/build.gradle")
+
+        when:
+        compiler.precompile(source1, classLoader, operation, Script, verifier)
+        compiler.precompile(source2, classLoader, operation, Script, verifier)
+
+        then:
+        1 * scriptCompilationHandler.compileToDir({ it.className == sharedClassName }, classLoader, tmpDir.file("staging/classes"), tmpDir.file("staging/metadata"), operation, Script, verifier) >> { args -> writeClass(args[2], args[3], args[0].className) }
+        0 * scriptCompilationHandler._
+
+        when:
+        compiler.compile(source2, classLoader, classLoaderId, operation, Script, verifier)
+
+        then:
+        1 * scriptCompilationHandler.loadFromDir(_, classLoader, tmpDir.file("scripts-remapped/build_b2/TransformerId/classes"), _, operation, Script, classLoaderId) >> compiledScript
+        0 * scriptCompilationHandler._
+
+        and:
+        sourceFileOf(tmpDir.file("scripts-remapped/build_b2/TransformerId/classes/${sharedClassName}.class")) == "b/build.gradle"
+        !tmpDir.file("staging").exists()
+    }
+
+    def "does not compile script ahead of time when a previous build has compiled it"() {
+        def cacheRepository = testCacheRepository()
+        def previousBuild = new FileCacheBackedScriptClassCompiler(cacheRepository, validator, scriptCompilationHandler, Stub(ProgressLoggerFactory), temporaryFileProvider)
+        def compiler = new FileCacheBackedScriptClassCompiler(cacheRepository, validator, scriptCompilationHandler, Stub(ProgressLoggerFactory), temporaryFileProvider)
+
+        when:
+        previousBuild.compile(script("build_a1", "a/build.gradle"), classLoader, classLoaderId, operation, Script, verifier)
+
+        then:
+        1 * scriptCompilationHandler.compileToDir({ it.className == sharedClassName }, classLoader, _, _, operation, Script, verifier) >> { args -> writeClass(args[2], args[3], args[0].className) }
+
+        when:
+        compiler.precompile(script("build_b2", "b/build.gradle"), classLoader, operation, Script, verifier)
+
+        then:
+        0 * scriptCompilationHandler._
+        !tmpDir.file("staging").exists()
+    }
+
+    def "does not compile script ahead of time when it contains a model block"() {
+        def compiler = new FileCacheBackedScriptClassCompiler(testCacheRepository(), validator, scriptCompilationHandler, Stub(ProgressLoggerFactory), temporaryFileProvider)
+        scriptText = 'model { }'
+
+        when:
+        compiler.precompile(script("build_a1", "a/build.gradle"), classLoader, operation, Script, verifier)
+
+        then:
+        0 * scriptCompilationHandler._
+    }
+
+    private String getSharedClassName() {
+        return "build_" + HashUtil.createCompactMD5(scriptText)
+    }
+
+    private ScriptSource script(String className, String fileName) {
+        return Stub(ScriptSource) {
+            getResource() >> resource
+            getClassName() >> className
+            getFileName() >> fileName
+            getDisplayName() >> "build file '${fileName}'"
+        }
+    }
+
+    private static void writeClass(File classesDir, File metadataDir, String className) {
+        def writer = new ClassWriter(0)
+        writer.visit(Opcodes.V1_6, Opcodes.ACC_PUBLIC, className, null, "java/lang/Object", null)
+        writer.visitSource("original.gradle", null)
+        writer.visitEnd()
+        classesDir.mkdirs()
+        new File(classesDir, className + ".class").bytes = writer.toByteArray()
+        metadataDir.mkdirs()
+        new File(metadataDir, "metadata.bin").text = className
+    }
+
+    private static String sourceFileOf(File classFile) {
+        def sourceFile = null
+        new ClassReader(classFile.bytes).accept(new ClassVisitor(Opcodes.ASM5) {
+            @Override
+            void visitSource(String source, String debug) {
+                sourceFile = source
+            }
+        }, 0)
+        return sourceFile
+    }
+
+    /**
+     * Opens caches and stores in the test directory, running the initializer of a cache until it succeeds.
+     */
+    private CacheRepository testCacheRepository() {
+        def initialized = [] as Set
+        def open = { def key ->
+            File dir = key instanceof File ? key : tmpDir.file(key)
+            def initializer = null
+            def builder
+            builder = [
+                withProperties : { builder },
+                withValidator  : { builder },
+                withDisplayName: { builder },
+                withLockOptions: { builder },
+                withInitializer: { Action action -> initializer = action; builder },
+                open           : {
+                    def cache = [getBaseDir: { dir }] as PersistentCache
+                    if (!initialized.contains(dir)) {
+                        dir.mkdirs()
+                        initializer?.execute(cache)
+                        new File(dir, "cache.properties").text = ""
+                        initialized << dir
+                    }
+                    cache
+                }
+            ] as CacheBuilder
+            builder
+        }
+        return [cache: open, store: open] as CacheRepository
+    }
+
     def "reports compilation progress even in case of a failure"() {
         def factory = Mock(ProgressLoggerFactory)
         def delegate = Mock(Action)
@@ -58,6 +58,7 @@ class TaskExecutionServicesTest extends Specification {
         _ * parent.get(FileSystem) >> Mock(FileSystem)
         _ * parent.get(FileCollectionFactory) >> Mock(FileCollectionFactory)
         _ * parent.get(StringInterner) >> new StringInterner()
+        _ * parent.get(ExecutorFactory) >> Mock(ExecutorFactory)
         _ * cacheRepository.cache(gradle, 'taskArtifacts') >> cacheBuilder
         _ * cacheBuilder.withDisplayName(!null) >> cacheBuilder
         _ * cacheBuilder.withLockOptions(!null) >> cacheBuilder
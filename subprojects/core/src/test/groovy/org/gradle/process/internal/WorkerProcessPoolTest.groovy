@@ -0,0 +1,226 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.process.internal
+
+import org.gradle.api.internal.file.TestFiles
+import org.gradle.internal.Factory
+import org.gradle.internal.TimeProvider
+import org.gradle.process.internal.child.WorkerLease
+import org.gradle.process.internal.child.WorkerLeaseListener
+import spock.lang.Specification
+
+class WorkerProcessPoolTest extends Specification {
+    long currentTime = 0
+    def timeProvider = Stub(TimeProvider) {
+        getCurrentTime() >> { currentTime }
+    }
+    def pool = new WorkerProcessPool(1, 2, 1000, timeProvider)
+    def javaCommand = new JavaExecHandleBuilder(TestFiles.resolver())
+    def processFactory = Mock(Factory)
+    def process = Mock(PooledWorkerProcess)
+    def lease = new WorkerLease("worker 1", [], [], [], new byte[0])
+
+    def "runs worker action in new process when there is no idle process"() {
+        def listener = Mock(ExecHandleListener)
+        javaCommand.listener(listener)
+        def handle = pool.lease("key", lease, javaCommand, processFactory)
+
+        when:
+        handle.start()
+
+        then:
+        1 * processFactory.create() >> process
+        1 * listener.executionStarted(handle)
+        1 * process.runLease(lease, handle)
+        handle.state == ExecHandleState.STARTED
+    }
+
+    def "reuses process once its worker action has completed"() {
+        def first = pool.lease("key", lease, javaCommand, processFactory)
+        def second = pool.lease("key", lease, javaCommand, processFactory)
+        process.isRunning() >> true
+
+        when:
+        first.start()
+        complete(first, null)
+        second.start()
+
+        then:
+        1 * processFactory.create() >> process
+        1 * process.runLease(lease, first)
+        1 * process.runLease(lease, second)
+        first.waitForFinish().exitValue == 0
+        first.state == ExecHandleState.SUCCEEDED
+    }
+
+    def "does not reuse process for worker action with different key"() {
+        def other = Mock(PooledWorkerProcess)
+        def first = pool.lease("key", lease, javaCommand, processFactory)
+        def second = pool.lease("other", lease, javaCommand, processFactory)
+        process.isRunning() >> true
+
+        when:
+        first.start()
+        complete(first, null)
+        second.start()
+
+        then:
+        2 * processFactory.create() >>> [process, other]
+        1 * process.runLease(lease, first)
+        1 * other.runLease(lease, second)
+    }
+
+    def "does not reuse process that has stopped"() {
+        def other = Mock(PooledWorkerProcess)
+        def first = pool.lease("key", lease, javaCommand, processFactory)
+        def second = pool.lease("key", lease, javaCommand, processFactory)
+
+        when:
+        first.start()
+        complete(first, "process stopped")
+        second.start()
+
+        then:
+        2 * processFactory.create() >>> [process, other]
+        _ * process.isRunning() >> false
+        1 * process.stop()
+        1 * other.runLease(lease, second)
+    }
+
+    def "reports failure of worker action"() {
+        def listener = Mock(ExecHandleListener)
+        javaCommand.listener(listener)
+        def handle = pool.lease("key", lease, javaCommand, processFactory)
+        processFactory.create() >> process
+
+        when:
+        handle.start()
+        complete(handle, "broken")
+
+        then:
+        1 * listener.executionFinished(handle, { it.exitValue == 1 })
+        handle.state == ExecHandleState.FAILED
+
+        when:
+        handle.waitForFinish().rethrowFailure()
+
+        then:
+        def e = thrown(ExecException)
+        e.message == "worker 1 failed in a pooled worker process: broken"
+    }
+
+    def "asks process to stop when pool already has enough idle processes"() {
+        def other = Mock(PooledWorkerProcess)
+        def first = pool.lease("key", lease, javaCommand, processFactory)
+        def second = pool.lease("key", lease, javaCommand, processFactory)
+        processFactory.create() >>> [process, other]
+        process.isRunning() >> true
+        other.isRunning() >> true
+
+        when:
+        first.start()
+        second.start()
+        complete(first, null)
+        complete(second, null)
+
+        then:
+        1 * other.requestStop()
+        0 * process.requestStop()
+    }
+
+    def "asks process to stop once it has run the maximum number of worker actions"() {
+        def other = Mock(PooledWorkerProcess)
+        def first = pool.lease("key", lease, javaCommand, processFactory)
+        def second = pool.lease("key", lease, javaCommand, processFactory)
+        def third = pool.lease("key", lease, javaCommand, processFactory)
+        process.isRunning() >> true
+
+        when:
+        first.start()
+        complete(first, null)
+        second.start()
+        complete(second, null)
+        third.start()
+
+        then:
+        2 * processFactory.create() >>> [process, other]
+        1 * process.runLease(lease, first)
+        1 * process.runLease(lease, second)
+        1 * process.requestStop()
+        1 * other.runLease(lease, third)
+    }
+
+    def "asks process to stop once it has been idle for the maximum idle time"() {
+        def other = Mock(PooledWorkerProcess)
+        def first = pool.lease("key", lease, javaCommand, processFactory)
+        def second = pool.lease("key", lease, javaCommand, processFactory)
+        process.isRunning() >> true
+
+        when:
+        first.start()
+        complete(first, null)
+        currentTime = 1000
+        second.start()
+
+        then:
+        2 * processFactory.create() >>> [process, other]
+        1 * process.requestStop()
+        0 * process.runLease(lease, second)
+        1 * other.runLease(lease, second)
+    }
+
+    def "reuses process that has been idle for less than the maximum idle time"() {
+        def first = pool.lease("key", lease, javaCommand, processFactory)
+        def second = pool.lease("key", lease, javaCommand, processFactory)
+        process.isRunning() >> true
+
+        when:
+        first.start()
+        complete(first, null)
+        currentTime = 999
+        second.start()
+
+        then:
+        1 * processFactory.create() >> process
+        0 * process.requestStop()
+        1 * process.runLease(lease, second)
+    }
+
+    def "stops processes when pool is stopped"() {
+        def handle = pool.lease("key", lease, javaCommand, processFactory)
+        processFactory.create() >> process
+        process.isRunning() >> true
+
+        when:
+        handle.start()
+        complete(handle, null)
+        pool.stop()
+
+        then:
+        1 * process.stop()
+
+        when:
+        pool.lease("key", lease, javaCommand, processFactory).start()
+
+        then:
+        thrown(IllegalStateException)
+    }
+
+    private static void complete(ExecHandle handle, String failure) {
+        ((WorkerLeaseListener) handle).leaseCompleted(failure)
+    }
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.process.internal.child
+
+import org.gradle.api.Action
+import org.gradle.messaging.remote.ObjectConnection
+import org.gradle.process.internal.WorkerProcessContext
+import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
+import org.gradle.util.GUtil
+import org.gradle.util.Requires
+import org.gradle.util.TestPrecondition
+import org.junit.Rule
+import org.objectweb.asm.ClassWriter
+import org.objectweb.asm.Opcodes
+import spock.lang.Specification
+
+class ReusableWorkerTest extends Specification {
+    static final List<Class<?>> COUNTER_TYPES = []
+    static final List<Integer> COUNTS = []
+
+    @Rule
+    final TestNameTestDirectoryProvider tmpDir = new TestNameTestDirectoryProvider()
+    final listener = Mock(WorkerLeaseListener)
+    final worker = new ReusableWorker()
+
+    def setup() {
+        COUNTER_TYPES.clear()
+        COUNTS.clear()
+    }
+
+    def "runs each lease with its own application ClassLoader"() {
+        def lease = lease()
+
+        when:
+        runLeases(lease, lease)
+
+        then:
+        2 * listener.leaseCompleted(null)
+
+        and:
+        COUNTS == [1, 1]
+        !COUNTER_TYPES[0].is(COUNTER_TYPES[1])
+        !COUNTER_TYPES[0].classLoader.is(COUNTER_TYPES[1].classLoader)
+    }
+
+    @Requires(TestPrecondition.JDK7_OR_LATER)
+    def "closes the application ClassLoader of a lease once the lease has completed"() {
+        when:
+        runLeases(lease())
+
+        then:
+        1 * listener.leaseCompleted(null)
+
+        and:
+        COUNTER_TYPES[0].classLoader.getResource("Counter.class") == null
+    }
+
+    private void runLeases(WorkerLease... leases) {
+        WorkerLeaseReceiver receiver = null
+        def connection = Stub(ObjectConnection) {
+            addOutgoing(WorkerLeaseListener) >> listener
+            addIncoming(WorkerLeaseReceiver, _) >> { Class type, WorkerLeaseReceiver instance -> receiver = instance }
+            connect() >> {
+                leases.each { receiver.runLease(it) }
+                receiver.stop()
+            }
+        }
+        worker.execute(Stub(WorkerProcessContext) {
+            getServerConnection() >> connection
+        })
+    }
+
+    private WorkerLease lease() {
+        def classesDir = tmpDir.createDir("application")
+        def writer = new ClassWriter(0)
+        writer.visit(Opcodes.V1_6, Opcodes.ACC_PUBLIC, "Counter", null, "java/lang/Object", null)
+        writer.visitField(Opcodes.ACC_PUBLIC | Opcodes.ACC_STATIC, "count", "I", null, null).visitEnd()
+        writer.visitEnd()
+        classesDir.file("Counter.class").bytes = writer.toByteArray()
+        return new WorkerLease("lease", [classesDir.toURI()], [], [], GUtil.serialize(new IncrementCounter()))
+    }
+
+    static class IncrementCounter implements Action<WorkerContext>, Serializable {
+        void execute(WorkerContext context) {
+            def type = context.applicationClassLoader.loadClass("Counter")
+            def field = type.getField("count")
+            field.setInt(null, field.getInt(null) + 1)
+            COUNTER_TYPES << type
+            COUNTS << field.getInt(null)
+        }
+    }
+}
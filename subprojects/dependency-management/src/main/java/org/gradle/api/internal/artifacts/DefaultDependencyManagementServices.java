@@ -33,7 +33,9 @@ import org.gradle.api.internal.artifacts.ivyservice.ivyresolve.parser.GradlePomM
 import org.gradle.api.internal.artifacts.ivyservice.ivyresolve.strategy.ResolverStrategy;
 import org.gradle.api.internal.artifacts.ivyservice.ivyresolve.strategy.VersionSelectorScheme;
 import org.gradle.api.internal.artifacts.ivyservice.moduleconverter.ConfigurationComponentMetaDataBuilder;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.store.ResolutionResultsCache;
 import org.gradle.api.internal.artifacts.ivyservice.resolveengine.store.ResolutionResultsStoreFactory;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.store.SharedResolutionResults;
 import org.gradle.api.internal.artifacts.mvnsettings.LocalMavenRepositoryLocator;
 import org.gradle.api.internal.artifacts.query.ArtifactResolutionQueryFactory;
 import org.gradle.api.internal.artifacts.query.DefaultArtifactResolutionQueryFactory;
@@ -147,7 +149,10 @@ public class DefaultDependencyManagementServices implements DependencyManagement
                                                        GlobalDependencyResolutionRules metadataHandler,
                                                        ComponentIdentifierFactory componentIdentifierFactory,
                                                        CacheLockingManager cacheLockingManager,
+                                                       ConcurrentArtifactDownloader artifactDownloader,
                                                        ResolutionResultsStoreFactory resolutionResultsStoreFactory,
+                                                       ResolutionResultsCache resolutionResultsCache,
+                                                       SharedResolutionResults sharedResolutionResults,
                                                        StartParameter startParameter) {
             return new ErrorHandlingConfigurationResolver(
                     new ShortCircuitEmptyConfigurationResolver(
@@ -157,7 +162,10 @@ public class DefaultDependencyManagementServices implements DependencyManagement
                                             repositories,
                                             metadataHandler,
                                             cacheLockingManager,
+                                            artifactDownloader,
                                             resolutionResultsStoreFactory,
+                                            resolutionResultsCache,
+                                            sharedResolutionResults,
                                             startParameter.isBuildProjectDependencies())),
                             componentIdentifierFactory)
             );
@@ -36,7 +36,9 @@ import org.gradle.api.internal.artifacts.ivyservice.projectmodule.DefaultProject
 import org.gradle.api.internal.artifacts.ivyservice.projectmodule.ProjectDependencyResolver;
 import org.gradle.api.internal.artifacts.ivyservice.projectmodule.ProjectPublicationRegistry;
 import org.gradle.api.internal.artifacts.ivyservice.resolveengine.DefaultArtifactDependencyResolver;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.store.ResolutionResultsCache;
 import org.gradle.api.internal.artifacts.ivyservice.resolveengine.store.ResolutionResultsStoreFactory;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.store.SharedResolutionResults;
 import org.gradle.api.internal.artifacts.mvnsettings.*;
 import org.gradle.api.internal.artifacts.repositories.transport.RepositoryTransportFactory;
 import org.gradle.api.internal.file.FileLookup;
@@ -51,6 +53,7 @@ import org.gradle.api.internal.project.ProjectRegistry;
 import org.gradle.cache.CacheRepository;
 import org.gradle.initialization.ProjectAccessListener;
 import org.gradle.internal.component.external.model.ModuleComponentArtifactMetaData;
+import org.gradle.internal.concurrent.ExecutorFactory;
 import org.gradle.internal.reflect.Instantiator;
 import org.gradle.internal.resource.cached.ByUrlCachedExternalResourceIndex;
 import org.gradle.internal.resource.cached.ivy.ArtifactAtRepositoryCachedArtifactIndex;
@@ -187,7 +190,7 @@ class DependencyManagementBuildScopeServices {
     ResolveIvyFactory createResolveIvyFactory(StartParameter startParameter, ModuleVersionsCache moduleVersionsCache, ModuleMetaDataCache moduleMetaDataCache, ModuleArtifactsCache moduleArtifactsCache,
                                               ArtifactAtRepositoryCachedArtifactIndex artifactAtRepositoryCachedArtifactIndex, CacheLockingManager cacheLockingManager,
                                               BuildCommencedTimeProvider buildCommencedTimeProvider, InMemoryCachedRepositoryFactory inMemoryCachedRepositoryFactory,
-                                              VersionSelectorScheme versionSelectorScheme, VersionComparator versionComparator) {
+                                              VersionSelectorScheme versionSelectorScheme, VersionComparator versionComparator, ConcurrentRepositoryProber repositoryProber) {
         StartParameterResolutionOverride startParameterResolutionOverride = new StartParameterResolutionOverride(startParameter);
         return new ResolveIvyFactory(
             moduleVersionsCache,
@@ -199,7 +202,12 @@ class DependencyManagementBuildScopeServices {
             buildCommencedTimeProvider,
             inMemoryCachedRepositoryFactory,
             versionSelectorScheme,
-            versionComparator);
+            versionComparator,
+            Boolean.getBoolean(ConcurrentRepositoryProber.PARALLEL_PROBING_TOGGLE) ? repositoryProber : null);
+    }
+
+    ConcurrentRepositoryProber createRepositoryProber(ExecutorFactory executorFactory, CacheLockingManager cacheLockingManager, IvyContextManager ivyContextManager) {
+        return new ConcurrentRepositoryProber(executorFactory, cacheLockingManager, ivyContextManager);
     }
 
     ArtifactDependencyResolver createArtifactDependencyResolver(ResolveIvyFactory resolveIvyFactory,
@@ -207,22 +215,41 @@ class DependencyManagementBuildScopeServices {
                                                                 CacheLockingManager cacheLockingManager,
                                                                 IvyContextManager ivyContextManager,
                                                                 VersionComparator versionComparator,
-                                                                ServiceRegistry serviceRegistry) {
+                                                                ServiceRegistry serviceRegistry,
+                                                                ExecutorFactory executorFactory) {
         DefaultArtifactDependencyResolver resolver = new DefaultArtifactDependencyResolver(
             serviceRegistry,
             resolveIvyFactory,
             dependencyDescriptorFactory,
             cacheLockingManager,
             ivyContextManager,
-            versionComparator
+            versionComparator,
+            executorFactory
         );
         return new CacheLockingArtifactDependencyResolver(cacheLockingManager, resolver);
     }
 
+    ConcurrentArtifactDownloader createArtifactDownloader(ExecutorFactory executorFactory, CacheLockingManager cacheLockingManager) {
+        int maxConcurrentDownloads = 1;
+        if (Boolean.getBoolean(ConcurrentArtifactDownloader.CONCURRENT_DOWNLOAD_TOGGLE)) {
+            maxConcurrentDownloads = Integer.getInteger(ConcurrentArtifactDownloader.MAX_CONCURRENT_DOWNLOADS_PROPERTY, ConcurrentArtifactDownloader.DEFAULT_MAX_CONCURRENT_DOWNLOADS);
+        }
+        return new ConcurrentArtifactDownloader(executorFactory, cacheLockingManager, maxConcurrentDownloads);
+    }
+
     ResolutionResultsStoreFactory createResolutionResultsStoreFactory(TemporaryFileProvider temporaryFileProvider) {
         return new ResolutionResultsStoreFactory(temporaryFileProvider);
     }
 
+    ResolutionResultsCache createResolutionResultsCache(CacheLockingManager cacheLockingManager, VersionSelectorScheme versionSelectorScheme, StartParameter startParameter) {
+        boolean enabled = Boolean.getBoolean(ResolutionResultsCache.CACHE_RESULTS_TOGGLE) && !startParameter.isRefreshDependencies();
+        return new ResolutionResultsCache(cacheLockingManager, versionSelectorScheme, enabled);
+    }
+
+    SharedResolutionResults createSharedResolutionResults(VersionSelectorScheme versionSelectorScheme) {
+        return new SharedResolutionResults(versionSelectorScheme, Boolean.getBoolean(SharedResolutionResults.SHARE_RESULTS_TOGGLE));
+    }
+
     ProjectPublicationRegistry createProjectPublicationRegistry() {
         return new DefaultProjectPublicationRegistry();
     }
@@ -21,6 +21,8 @@ import org.gradle.api.internal.artifacts.ResolveContext;
 import org.gradle.api.internal.artifacts.ivyservice.resolveengine.artifact.DependencyArtifactsVisitor;
 import org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.DependencyGraphVisitor;
 import org.gradle.api.internal.artifacts.repositories.ResolutionAwareRepository;
+import org.gradle.internal.Factory;
+import org.gradle.internal.resolve.resolver.ArtifactResolver;
 
 import java.util.List;
 
@@ -42,4 +44,13 @@ public class CacheLockingArtifactDependencyResolver implements ArtifactDependenc
             }
         });
     }
+
+    @Override
+    public ArtifactResolver createArtifactResolver(final ResolveContext resolveContext, final List<? extends ResolutionAwareRepository> repositories, final GlobalDependencyResolutionRules metadataHandler) {
+        return lockingManager.useCache(String.format("create artifact resolver for %s", resolveContext), new Factory<ArtifactResolver>() {
+            public ArtifactResolver create() {
+                return resolver.createArtifactResolver(resolveContext, repositories, metadataHandler);
+            }
+        });
+    }
 }
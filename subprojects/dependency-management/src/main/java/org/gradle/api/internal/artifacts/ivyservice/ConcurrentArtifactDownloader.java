@@ -0,0 +1,132 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.artifacts.ivyservice;
+
+import org.gradle.api.artifacts.ResolvedArtifact;
+import org.gradle.api.internal.artifacts.DefaultResolvedArtifact;
+import org.gradle.internal.UncheckedException;
+import org.gradle.internal.concurrent.ExecutorFactory;
+import org.gradle.internal.concurrent.Stoppable;
+import org.gradle.internal.concurrent.StoppableExecutor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+/**
+ * Resolves the files of a batch of artifacts concurrently, so that missing artifacts are downloaded in parallel rather than one at a time.
+ *
+ * <p>Each artifact is resolved on a worker thread in exactly the same way as it would be resolved by {@link ResolvedArtifact#getFile()}. The cache
+ * lock is released only while artifacts are transferred from a remote repository, so only the transfers overlap. Failures are discarded, and are
+ * reported as usual when the file of the artifact is later requested by the caller.</p>
+ */
+public class ConcurrentArtifactDownloader implements Stoppable {
+    public static final String CONCURRENT_DOWNLOAD_TOGGLE = "org.gradle.resolution.parallelDownload";
+    public static final String MAX_CONCURRENT_DOWNLOADS_PROPERTY = "org.gradle.resolution.maxConcurrentDownloads";
+    public static final int DEFAULT_MAX_CONCURRENT_DOWNLOADS = 8;
+    private static final Logger LOGGER = LoggerFactory.getLogger(ConcurrentArtifactDownloader.class);
+
+    private final ExecutorFactory executorFactory;
+    private final CacheLockingManager cacheLockingManager;
+    private final int maxConcurrentDownloads;
+    private StoppableExecutor executor;
+
+    /**
+     * @param maxConcurrentDownloads The maximum number of artifacts to resolve at the same time. A value of 1 disables concurrent resolution.
+     */
+    public ConcurrentArtifactDownloader(ExecutorFactory executorFactory, CacheLockingManager cacheLockingManager, int maxConcurrentDownloads) {
+        this.executorFactory = executorFactory;
+        this.cacheLockingManager = cacheLockingManager;
+        this.maxConcurrentDownloads = maxConcurrentDownloads;
+    }
+
+    /**
+     * Resolves the files of those of the given artifacts that have not been resolved yet.
+     */
+    public void download(Collection<? extends ResolvedArtifact> artifacts) {
+        if (maxConcurrentDownloads <= 1) {
+            return;
+        }
+        final List<ResolvedArtifact> unresolved = new ArrayList<ResolvedArtifact>();
+        for (ResolvedArtifact artifact : artifacts) {
+            if (artifact instanceof DefaultResolvedArtifact && !((DefaultResolvedArtifact) artifact).isResolved()) {
+                unresolved.add(artifact);
+            }
+        }
+        if (unresolved.size() < 2) {
+            // Not worth handing over to another thread
+            return;
+        }
+        cacheLockingManager.longRunningOperation(String.format("Download %s artifacts", unresolved.size()), new Runnable() {
+            public void run() {
+                StoppableExecutor executor = getExecutor();
+                List<Future<?>> futures = new ArrayList<Future<?>>(unresolved.size());
+                for (ResolvedArtifact artifact : unresolved) {
+                    futures.add(executor.submit(new DownloadArtifact(artifact)));
+                }
+                waitFor(futures);
+            }
+        });
+    }
+
+    private synchronized StoppableExecutor getExecutor() {
+        if (executor == null) {
+            executor = executorFactory.create("Artifact download", maxConcurrentDownloads);
+        }
+        return executor;
+    }
+
+    private void waitFor(List<Future<?>> futures) {
+        for (Future<?> future : futures) {
+            try {
+                future.get();
+            } catch (ExecutionException e) {
+                throw UncheckedException.throwAsUncheckedException(e.getCause());
+            } catch (InterruptedException e) {
+                throw UncheckedException.throwAsUncheckedException(e);
+            }
+        }
+    }
+
+    @Override
+    public synchronized void stop() {
+        if (executor != null) {
+            executor.stop();
+            executor = null;
+        }
+    }
+
+    private static class DownloadArtifact implements Runnable {
+        private final ResolvedArtifact artifact;
+
+        DownloadArtifact(ResolvedArtifact artifact) {
+            this.artifact = artifact;
+        }
+
+        public void run() {
+            try {
+                artifact.getFile();
+            } catch (RuntimeException e) {
+                LOGGER.debug("Could not download {}. It will be resolved again when its file is requested.", artifact, e);
+            }
+        }
+    }
+}
@@ -64,6 +64,14 @@ public class DefaultCacheLockingManager implements CacheLockingManager, Closeabl
         cache.useCache(operationDisplayName, action);
     }
 
+    public <T> T useCacheShared(String operationDisplayName, Factory<? extends T> action) {
+        return cache.useCacheShared(operationDisplayName, action);
+    }
+
+    public void useCacheShared(String operationDisplayName, Runnable action) {
+        cache.useCacheShared(operationDisplayName, action);
+    }
+
     public <T> T longRunningOperation(String operationDisplayName, Factory<? extends T> action) {
         return cache.longRunningOperation(operationDisplayName, action);
     }
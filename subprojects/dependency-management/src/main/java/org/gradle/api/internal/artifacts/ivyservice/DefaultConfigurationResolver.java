@@ -16,9 +16,9 @@
 
 package org.gradle.api.internal.artifacts.ivyservice;
 
+import org.gradle.api.Nullable;
 import org.gradle.api.artifacts.ResolveException;
 import org.gradle.api.artifacts.dsl.RepositoryHandler;
-import org.gradle.api.artifacts.result.ResolvedComponentResult;
 import org.gradle.api.internal.artifacts.*;
 import org.gradle.api.internal.artifacts.configurations.ConfigurationInternal;
 import org.gradle.api.internal.artifacts.ivyservice.resolveengine.artifact.DefaultResolvedArtifactsBuilder;
@@ -35,66 +35,150 @@ import org.gradle.api.internal.artifacts.ivyservice.resolveengine.projectresult.
 import org.gradle.api.internal.artifacts.ivyservice.resolveengine.result.ResolutionResultBuilder;
 import org.gradle.api.internal.artifacts.ivyservice.resolveengine.result.ResolutionResultDependencyGraphVisitor;
 import org.gradle.api.internal.artifacts.ivyservice.resolveengine.result.StreamingResolutionResultBuilder;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.store.ResolutionResultsCache;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.store.ResolutionResultsRecorder;
 import org.gradle.api.internal.artifacts.ivyservice.resolveengine.store.ResolutionResultsStoreFactory;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.store.SharedResolutionResults;
 import org.gradle.api.internal.artifacts.ivyservice.resolveengine.store.StoreSet;
 import org.gradle.api.internal.artifacts.repositories.ResolutionAwareRepository;
-import org.gradle.api.internal.cache.BinaryStore;
-import org.gradle.api.internal.cache.Store;
+import org.gradle.api.logging.Logger;
+import org.gradle.api.logging.Logging;
 import org.gradle.internal.Factory;
 import org.gradle.internal.Transformers;
+import org.gradle.internal.resolve.resolver.ArtifactResolver;
 import org.gradle.util.CollectionUtils;
 
 import java.util.List;
 
 public class DefaultConfigurationResolver implements ConfigurationResolver {
+    private static final Logger LOGGER = Logging.getLogger(DefaultConfigurationResolver.class);
     private final ArtifactDependencyResolver resolver;
     private final RepositoryHandler repositories;
     private final GlobalDependencyResolutionRules metadataHandler;
     private final CacheLockingManager cacheLockingManager;
+    private final ConcurrentArtifactDownloader artifactDownloader;
     private final ResolutionResultsStoreFactory storeFactory;
+    private final ResolutionResultsCache resultsCache;
+    private final SharedResolutionResults sharedResults;
     private final boolean buildProjectDependencies;
 
     public DefaultConfigurationResolver(ArtifactDependencyResolver resolver, RepositoryHandler repositories,
                                         GlobalDependencyResolutionRules metadataHandler, CacheLockingManager cacheLockingManager,
-                                        ResolutionResultsStoreFactory storeFactory, boolean buildProjectDependencies) {
+                                        ConcurrentArtifactDownloader artifactDownloader, ResolutionResultsStoreFactory storeFactory,
+                                        ResolutionResultsCache resultsCache, SharedResolutionResults sharedResults, boolean buildProjectDependencies) {
         this.resolver = resolver;
         this.repositories = repositories;
         this.metadataHandler = metadataHandler;
         this.cacheLockingManager = cacheLockingManager;
+        this.artifactDownloader = artifactDownloader;
         this.storeFactory = storeFactory;
+        this.resultsCache = resultsCache;
+        this.sharedResults = sharedResults;
         this.buildProjectDependencies = buildProjectDependencies;
     }
 
     public void resolve(ConfigurationInternal configuration, ResolverResults results) throws ResolveException {
         List<ResolutionAwareRepository> resolutionAwareRepositories = CollectionUtils.collect(repositories, Transformers.cast(ResolutionAwareRepository.class));
-        StoreSet stores = storeFactory.createStoreSet();
+        DefaultResolverResults defaultResolverResults = (DefaultResolverResults) results;
+
+        List<String> graphInputs = sharedResults.isEnabled() ? sharedResults.getInputs(configuration, resolutionAwareRepositories, metadataHandler) : null;
+        if (graphInputs != null && sharedResults.share(configuration, graphInputs, storeFactory.createStoreSet(), defaultResolverResults)) {
+            return;
+        }
+
+        List<String> inputs = resultsCache.isEnabled() ? resultsCache.getInputs(configuration, resolutionAwareRepositories, metadataHandler) : null;
+        if (inputs == null) {
+            resolveGraph(configuration, resolutionAwareRepositories, null, graphInputs, defaultResolverResults);
+            return;
+        }
+
+        byte[] cachedResults = resultsCache.load(configuration, inputs);
+        if (cachedResults != null && replayGraph(configuration, resolutionAwareRepositories, cachedResults, graphInputs, defaultResolverResults)) {
+            return;
+        }
+
+        ResolutionResultsRecorder recorder = resultsCache.createRecorder(configuration);
+        resolveGraph(configuration, resolutionAwareRepositories, recorder, graphInputs, defaultResolverResults);
+        if (recorder.isCacheable()) {
+            resultsCache.store(configuration, inputs, recorder.getRecordedResults());
+        } else {
+            LOGGER.info("Resolution result of {} is not cached as {}.", configuration, recorder.getNotCacheableReason());
+        }
+    }
 
-        BinaryStore oldModelStore = stores.nextBinaryStore();
-        Store<TransientConfigurationResults> oldModelCache = stores.oldModelCache();
-        TransientConfigurationResultsBuilder oldTransientModelBuilder = new TransientConfigurationResultsBuilder(oldModelStore, oldModelCache);
-        DefaultResolvedConfigurationBuilder oldModelBuilder = new DefaultResolvedConfigurationBuilder(oldTransientModelBuilder);
+    private void resolveGraph(ConfigurationInternal configuration, List<ResolutionAwareRepository> resolutionAwareRepositories, @Nullable ResolutionResultsRecorder recorder,
+                              @Nullable List<String> graphInputs, DefaultResolverResults results) {
+        ResultBuilders builders = new ResultBuilders(configuration, graphInputs);
+
+        ResolvedConfigurationBuilder oldModelBuilder = recorder == null ? builders.oldModelBuilder : recorder.recordOldModel(builders.oldModelBuilder);
         ResolvedConfigurationDependencyGraphVisitor oldModelVisitor = new ResolvedConfigurationDependencyGraphVisitor(oldModelBuilder);
 
-        BinaryStore newModelStore = stores.nextBinaryStore();
-        Store<ResolvedComponentResult> newModelCache = stores.newModelCache();
-        ResolutionResultBuilder newModelBuilder = new StreamingResolutionResultBuilder(newModelStore, newModelCache);
+        ResolutionResultBuilder newModelBuilder = recorder == null ? builders.newModelBuilder : recorder.recordNewModel(builders.newModelBuilder);
         DependencyGraphVisitor newModelVisitor = new ResolutionResultDependencyGraphVisitor(newModelBuilder);
 
-        ResolvedLocalComponentsResultBuilder localComponentsResultBuilder = new DefaultResolvedLocalComponentsResultBuilder(buildProjectDependencies);
-        DependencyGraphVisitor projectModelVisitor = new ResolvedLocalComponentsResultGraphVisitor(localComponentsResultBuilder);
-
-        ResolvedArtifactsBuilder artifactsBuilder = new DefaultResolvedArtifactsBuilder();
+        DependencyGraphVisitor projectModelVisitor = new ResolvedLocalComponentsResultGraphVisitor(builders.localComponentsResultBuilder);
 
         DependencyGraphVisitor graphVisitor = new CompositeDependencyGraphVisitor(oldModelVisitor, newModelVisitor, projectModelVisitor);
-        DependencyArtifactsVisitor artifactsVisitor = new CompositeDependencyArtifactsVisitor(oldModelVisitor, artifactsBuilder);
+        DependencyArtifactsVisitor artifactsVisitor = new CompositeDependencyArtifactsVisitor(oldModelVisitor, builders.artifactsBuilder);
+        if (recorder != null) {
+            graphVisitor = new CompositeDependencyGraphVisitor(recorder, graphVisitor);
+            artifactsVisitor = recorder.recordArtifacts(artifactsVisitor);
+        }
 
         resolver.resolve(configuration, resolutionAwareRepositories, metadataHandler, graphVisitor, artifactsVisitor);
 
-        DefaultResolverResults defaultResolverResults = (DefaultResolverResults) results;
-        defaultResolverResults.resolved(newModelBuilder.complete(), localComponentsResultBuilder.complete());
+        builders.complete(results);
+    }
+
+    private boolean replayGraph(ConfigurationInternal configuration, List<ResolutionAwareRepository> resolutionAwareRepositories, byte[] cachedResults,
+                                @Nullable List<String> graphInputs, DefaultResolverResults results) {
+        ResultBuilders builders = new ResultBuilders(configuration, graphInputs);
+        ResolvedConfigurationDependencyGraphVisitor oldModelVisitor = new ResolvedConfigurationDependencyGraphVisitor(builders.oldModelBuilder);
+        DependencyArtifactsVisitor artifactsVisitor = new CompositeDependencyArtifactsVisitor(oldModelVisitor, builders.artifactsBuilder);
+        try {
+            ArtifactResolver artifactResolver = resolver.createArtifactResolver(configuration, resolutionAwareRepositories, metadataHandler);
+            resultsCache.createReplayer(configuration, artifactResolver).replay(cachedResults, builders.newModelBuilder, builders.oldModelBuilder, artifactsVisitor);
+        } catch (RuntimeException e) {
+            LOGGER.warn(String.format("Could not reuse cached resolution result of %s. It will be resolved again.", configuration), e);
+            return false;
+        }
+        builders.complete(results);
+        return true;
+    }
 
-        ResolvedGraphResults graphResults = oldModelBuilder.complete();
-        defaultResolverResults.retainState(graphResults, artifactsBuilder, oldTransientModelBuilder);
+    /**
+     * The builders for the results of resolving the graph of a configuration. When the graph inputs are given, the results are shared with the
+     * configurations that have the same graph inputs once complete.
+     */
+    private class ResultBuilders {
+        final StoreSet stores = storeFactory.createStoreSet();
+        final TransientConfigurationResultsBuilder oldTransientModelBuilder = new TransientConfigurationResultsBuilder(stores.nextBinaryStore(), stores.oldModelCache());
+        final DefaultResolvedConfigurationBuilder oldModelBuilder = new DefaultResolvedConfigurationBuilder(oldTransientModelBuilder);
+        final StreamingResolutionResultBuilder streamingNewModelBuilder = new StreamingResolutionResultBuilder(stores.nextBinaryStore(), stores.newModelCache());
+        final ResolvedLocalComponentsResultBuilder localComponentsResultBuilder = new DefaultResolvedLocalComponentsResultBuilder(buildProjectDependencies);
+        final ResolvedArtifactsBuilder artifactsBuilder = new DefaultResolvedArtifactsBuilder();
+        final ConfigurationInternal configuration;
+        final List<String> graphInputs;
+        final SharedResolutionResults.SharedResultBuilder sharedResultBuilder;
+        final ResolutionResultBuilder newModelBuilder;
+
+        ResultBuilders(ConfigurationInternal configuration, @Nullable List<String> graphInputs) {
+            this.configuration = configuration;
+            this.graphInputs = graphInputs;
+            sharedResultBuilder = graphInputs == null ? null : sharedResults.createBuilder(streamingNewModelBuilder);
+            newModelBuilder = graphInputs == null ? streamingNewModelBuilder : sharedResultBuilder;
+        }
+
+        void complete(DefaultResolverResults results) {
+            results.resolved(newModelBuilder.complete(), localComponentsResultBuilder.complete());
+
+            ResolvedGraphResults graphResults = oldModelBuilder.complete();
+            results.retainState(graphResults, artifactsBuilder, oldTransientModelBuilder);
+
+            if (graphInputs != null) {
+                sharedResults.add(configuration, graphInputs, sharedResultBuilder, streamingNewModelBuilder, oldTransientModelBuilder, graphResults, artifactsBuilder);
+            }
+        }
     }
 
     public void resolveArtifacts(ConfigurationInternal configuration, ResolverResults results) throws ResolveException {
@@ -107,7 +191,7 @@ public class DefaultConfigurationResolver implements ConfigurationResolver {
                 new TransientConfigurationResultsLoader(transientConfigurationResultsBuilder, graphResults, artifactResults);
 
         DefaultLenientConfiguration result = new DefaultLenientConfiguration(
-            configuration, cacheLockingManager, graphResults.getUnresolvedDependencies(), artifactResults, transientConfigurationResultsFactory);
+            configuration, cacheLockingManager, artifactDownloader, graphResults.getUnresolvedDependencies(), artifactResults, transientConfigurationResultsFactory);
         results.withResolvedConfiguration(new DefaultResolvedConfiguration(result));
     }
 }
@@ -24,15 +24,22 @@ import org.gradle.internal.resolve.result.BuildableArtifactSetResolveResult;
 import org.gradle.internal.resolve.result.BuildableModuleComponentMetaDataResolveResult;
 import org.gradle.internal.resolve.result.BuildableModuleVersionListingResolveResult;
 
+import java.util.concurrent.Semaphore;
+
 /**
- * A wrapper around a {@link ModuleComponentRepository} that handles releasing the cache lock before making remote calls.
+ * A wrapper around a {@link ModuleComponentRepository} that handles releasing the cache lock before making remote calls. Limits the number of remote calls
+ * that can be made concurrently to the repository.
  */
 public class CacheLockReleasingModuleComponentsRepository extends BaseModuleComponentRepository {
+    public static final String MAX_CONCURRENT_REQUESTS_PROPERTY = "org.gradle.resolution.maxConcurrentRequestsPerRepository";
+    private static final int DEFAULT_MAX_CONCURRENT_REQUESTS = 4;
+
     private final ModuleComponentRepositoryAccess remoteAccess;
 
     public CacheLockReleasingModuleComponentsRepository(ModuleComponentRepository repository, CacheLockingManager cacheLockingManager) {
         super(repository);
-        this.remoteAccess = new LockReleasingRepositoryAccess(repository.getName(), repository.getRemoteAccess(), cacheLockingManager);
+        int maxConcurrentRequests = Math.max(1, Integer.getInteger(MAX_CONCURRENT_REQUESTS_PROPERTY, DEFAULT_MAX_CONCURRENT_REQUESTS));
+        this.remoteAccess = new LockReleasingRepositoryAccess(repository.getName(), repository.getRemoteAccess(), cacheLockingManager, new Semaphore(maxConcurrentRequests));
     }
 
     @Override
@@ -44,20 +51,35 @@ public class CacheLockReleasingModuleComponentsRepository extends BaseModuleComp
         private final String name;
         private final ModuleComponentRepositoryAccess delegate;
         private final CacheLockingManager cacheLockingManager;
+        private final Semaphore requestPermits;
 
         @Override
         public String toString() {
             return "unlocking > " + delegate.toString();
         }
 
-        private LockReleasingRepositoryAccess(String name, ModuleComponentRepositoryAccess delegate, CacheLockingManager cacheLockingManager) {
+        private LockReleasingRepositoryAccess(String name, ModuleComponentRepositoryAccess delegate, CacheLockingManager cacheLockingManager, Semaphore requestPermits) {
             this.name = name;
             this.delegate = delegate;
             this.cacheLockingManager = cacheLockingManager;
+            this.requestPermits = requestPermits;
+        }
+
+        private void remoteCall(String operationDisplayName, final Runnable action) {
+            cacheLockingManager.longRunningOperation(operationDisplayName, new Runnable() {
+                public void run() {
+                    requestPermits.acquireUninterruptibly();
+                    try {
+                        action.run();
+                    } finally {
+                        requestPermits.release();
+                    }
+                }
+            });
         }
 
         public void listModuleVersions(final DependencyMetaData dependency, final BuildableModuleVersionListingResolveResult result) {
-            cacheLockingManager.longRunningOperation(String.format("List %s using repository %s", dependency, name), new Runnable() {
+            remoteCall(String.format("List %s using repository %s", dependency, name), new Runnable() {
                 public void run() {
                     delegate.listModuleVersions(dependency, result);
                 }
@@ -66,7 +88,7 @@ public class CacheLockReleasingModuleComponentsRepository extends BaseModuleComp
 
         public void resolveComponentMetaData(final ModuleComponentIdentifier moduleComponentIdentifier,
                                              final ComponentOverrideMetadata requestMetaData, final BuildableModuleComponentMetaDataResolveResult result) {
-            cacheLockingManager.longRunningOperation(String.format("Resolve %s using repository %s", moduleComponentIdentifier, name), new Runnable() {
+            remoteCall(String.format("Resolve %s using repository %s", moduleComponentIdentifier, name), new Runnable() {
                 public void run() {
                     delegate.resolveComponentMetaData(moduleComponentIdentifier, requestMetaData, result);
                 }
@@ -74,7 +96,7 @@ public class CacheLockReleasingModuleComponentsRepository extends BaseModuleComp
         }
 
         public void resolveModuleArtifacts(final ComponentResolveMetaData component, final ArtifactType artifactType, final BuildableArtifactSetResolveResult result) {
-            cacheLockingManager.longRunningOperation(String.format("Resolve %s for %s using repository %s", artifactType, component, name), new Runnable() {
+            remoteCall(String.format("Resolve %s for %s using repository %s", artifactType, component, name), new Runnable() {
                 public void run() {
                     delegate.resolveModuleArtifacts(component, artifactType, result);
                 }
@@ -82,7 +104,7 @@ public class CacheLockReleasingModuleComponentsRepository extends BaseModuleComp
         }
 
         public void resolveModuleArtifacts(final ComponentResolveMetaData component, final ComponentUsage componentUsage, final BuildableArtifactSetResolveResult result) {
-            cacheLockingManager.longRunningOperation(String.format("Resolve %s for %s using repository %s", componentUsage, component, name), new Runnable() {
+            remoteCall(String.format("Resolve %s for %s using repository %s", componentUsage, component, name), new Runnable() {
                 public void run() {
                     delegate.resolveModuleArtifacts(component, componentUsage, result);
                 }
@@ -91,7 +113,7 @@ public class CacheLockReleasingModuleComponentsRepository extends BaseModuleComp
 
 
         public void resolveArtifact(final ComponentArtifactMetaData artifact, final ModuleSource moduleSource, final BuildableArtifactResolveResult result) {
-            cacheLockingManager.longRunningOperation(String.format("Download %s using repository %s", artifact, name), new Runnable() {
+            remoteCall(String.format("Download %s using repository %s", artifact, name), new Runnable() {
                 public void run() {
                     delegate.resolveArtifact(artifact, moduleSource, result);
                 }
@@ -16,6 +16,7 @@
 
 package org.gradle.api.internal.artifacts.ivyservice.ivyresolve;
 
+import org.gradle.api.Nullable;
 import org.gradle.api.artifacts.component.ModuleComponentIdentifier;
 import org.gradle.internal.component.model.ComponentOverrideMetadata;
 import org.gradle.internal.resolve.result.BuildableModuleComponentMetaDataResolveResult;
@@ -26,7 +27,7 @@ class ComponentMetaDataResolveState {
     private final DefaultBuildableModuleComponentMetaDataResolveResult resolveResult = new DefaultBuildableModuleComponentMetaDataResolveResult();
     private final VersionedComponentChooser versionedComponentChooser;
     private final ComponentOverrideMetadata componentOverrideMetadata;
-    private final ModuleComponentIdentifier componentIdentifier;
+    final ModuleComponentIdentifier componentIdentifier;
     final ModuleComponentRepository repository;
 
     private boolean searchedLocally;
@@ -40,17 +41,8 @@ class ComponentMetaDataResolveState {
     }
 
     BuildableModuleComponentMetaDataResolveResult resolve() {
-        if (!searchedLocally) {
-            searchedLocally = true;
-            process(repository.getLocalAccess());
-            if (resolveResult.hasResult()) {
-                if (resolveResult.isAuthoritative()) {
-                    // Don't bother searching remotely
-                    searchedRemotely = true;
-                }
-                return resolveResult;
-            }
-            // If unknown, try a remote search
+        if (resolveLocally() != null) {
+            return resolveResult;
         }
 
         if (!searchedRemotely) {
@@ -62,6 +54,28 @@ class ComponentMetaDataResolveState {
         throw new IllegalStateException();
     }
 
+    /**
+     * Searches the local access of the repository, if not already done. Returns the result when the local search produced one, or null when
+     * the remote access needs to be searched by {@link #resolve()}.
+     */
+    @Nullable
+    BuildableModuleComponentMetaDataResolveResult resolveLocally() {
+        if (searchedLocally) {
+            return null;
+        }
+        searchedLocally = true;
+        process(repository.getLocalAccess());
+        if (resolveResult.hasResult()) {
+            if (resolveResult.isAuthoritative()) {
+                // Don't bother searching remotely
+                searchedRemotely = true;
+            }
+            return resolveResult;
+        }
+        // If unknown, try a remote search
+        return null;
+    }
+
     protected void process(ModuleComponentRepositoryAccess moduleAccess) {
         moduleAccess.resolveComponentMetaData(componentIdentifier, componentOverrideMetadata, resolveResult);
         if (resolveResult.getState() == BuildableModuleComponentMetaDataResolveResult.State.Resolved) {
@@ -78,4 +92,9 @@ class ComponentMetaDataResolveState {
     public boolean canMakeFurtherAttempts() {
         return !searchedRemotely;
     }
+
+    @Override
+    public String toString() {
+        return componentIdentifier + " in " + repository.getName();
+    }
 }
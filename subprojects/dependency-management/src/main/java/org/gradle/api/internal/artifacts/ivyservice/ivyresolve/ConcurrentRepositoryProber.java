@@ -0,0 +1,116 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.artifacts.ivyservice.ivyresolve;
+
+import org.apache.ivy.Ivy;
+import org.gradle.api.Transformer;
+import org.gradle.api.internal.artifacts.ivyservice.CacheLockingManager;
+import org.gradle.api.internal.artifacts.ivyservice.IvyContextManager;
+import org.gradle.internal.Factory;
+import org.gradle.internal.UncheckedException;
+import org.gradle.internal.concurrent.ExecutorFactory;
+import org.gradle.internal.concurrent.Stoppable;
+import org.gradle.internal.concurrent.StoppableExecutor;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+
+/**
+ * Queries several repositories at the same time.
+ *
+ * <p>Each probe runs on a worker thread, with the cache locked and the Ivy context available, in the same way as it would run on the resolving
+ * thread. The cache lock is released only while a repository is accessed remotely, so only the remote requests overlap.</p>
+ */
+public class ConcurrentRepositoryProber implements Stoppable {
+    public static final String PARALLEL_PROBING_TOGGLE = "org.gradle.resolution.parallelRepositoryProbing";
+    private static final int MAX_CONCURRENT_PROBES = 16;
+
+    private final ExecutorFactory executorFactory;
+    private final CacheLockingManager cacheLockingManager;
+    private final IvyContextManager ivyContextManager;
+    private StoppableExecutor executor;
+
+    public ConcurrentRepositoryProber(ExecutorFactory executorFactory, CacheLockingManager cacheLockingManager, IvyContextManager ivyContextManager) {
+        this.executorFactory = executorFactory;
+        this.cacheLockingManager = cacheLockingManager;
+        this.ivyContextManager = ivyContextManager;
+    }
+
+    /**
+     * Starts all of the given probes, and passes their futures, in the order of the probes, to the given collector. The collector runs on the calling
+     * thread with the cache lock released. Any probe that has not started once the collector has finished is cancelled.
+     */
+    public <T, R> R probe(String displayName, final List<? extends Callable<T>> probes, final Transformer<R, List<Future<T>>> collector) {
+        return cacheLockingManager.longRunningOperation(displayName, new Factory<R>() {
+            public R create() {
+                StoppableExecutor executor = getExecutor();
+                List<Future<T>> futures = new ArrayList<Future<T>>(probes.size());
+                try {
+                    for (Callable<T> probe : probes) {
+                        futures.add(executor.submit(new ProbeInContext<T>(probe)));
+                    }
+                    return collector.transform(futures);
+                } finally {
+                    for (Future<T> future : futures) {
+                        future.cancel(false);
+                    }
+                }
+            }
+        });
+    }
+
+    private synchronized StoppableExecutor getExecutor() {
+        if (executor == null) {
+            executor = executorFactory.create("Repository probe", MAX_CONCURRENT_PROBES);
+        }
+        return executor;
+    }
+
+    @Override
+    public synchronized void stop() {
+        if (executor != null) {
+            executor.stop();
+            executor = null;
+        }
+    }
+
+    private class ProbeInContext<T> implements Callable<T> {
+        private final Callable<T> probe;
+
+        ProbeInContext(Callable<T> probe) {
+            this.probe = probe;
+        }
+
+        public T call() {
+            return cacheLockingManager.useCache(String.format("Probe %s", probe), new Factory<T>() {
+                public T create() {
+                    return ivyContextManager.withIvy(new Transformer<T, Ivy>() {
+                        public T transform(Ivy ivy) {
+                            try {
+                                return probe.call();
+                            } catch (Exception e) {
+                                throw UncheckedException.throwAsUncheckedException(e);
+                            }
+                        }
+                    });
+                }
+            });
+        }
+    }
+}
@@ -16,9 +16,11 @@
 
 package org.gradle.api.internal.artifacts.ivyservice.ivyresolve;
 
+import org.gradle.api.Nullable;
 import org.gradle.api.Transformer;
 import org.gradle.api.artifacts.component.ComponentIdentifier;
 import org.gradle.api.artifacts.component.ModuleComponentIdentifier;
+import org.gradle.internal.UncheckedException;
 import org.gradle.internal.component.external.model.ModuleComponentResolveMetaData;
 import org.gradle.internal.component.model.ComponentOverrideMetadata;
 import org.gradle.internal.resolve.ModuleVersionResolveException;
@@ -32,6 +34,9 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 
 public class RepositoryChainComponentMetaDataResolver implements ComponentMetaDataResolver {
     private static final Logger LOGGER = LoggerFactory.getLogger(RepositoryChainComponentMetaDataResolver.class);
@@ -40,10 +45,20 @@ public class RepositoryChainComponentMetaDataResolver implements ComponentMetaDa
     private final List<String> repositoryNames = new ArrayList<String>();
     private final VersionedComponentChooser versionedComponentChooser;
     private final Transformer<ModuleComponentResolveMetaData, RepositoryChainModuleResolution> metaDataFactory;
+    private final ConcurrentRepositoryProber prober;
 
     public RepositoryChainComponentMetaDataResolver(VersionedComponentChooser componentChooser, Transformer<ModuleComponentResolveMetaData, RepositoryChainModuleResolution> metaDataFactory) {
+        this(componentChooser, metaDataFactory, null);
+    }
+
+    /**
+     * @param prober When not null, used to query all repositories that need to be searched remotely for a component at the same time.
+     */
+    public RepositoryChainComponentMetaDataResolver(VersionedComponentChooser componentChooser, Transformer<ModuleComponentResolveMetaData, RepositoryChainModuleResolution> metaDataFactory,
+                                                    @Nullable ConcurrentRepositoryProber prober) {
         this.versionedComponentChooser = componentChooser;
         this.metaDataFactory = metaDataFactory;
+        this.prober = prober;
     }
 
     public void add(ModuleComponentRepository repository) {
@@ -96,7 +111,7 @@ public class RepositoryChainComponentMetaDataResolver implements ComponentMetaDa
         LinkedList<ComponentMetaDataResolveState> missing = new LinkedList<ComponentMetaDataResolveState>();
 
         // A first pass to do local resolves only
-        RepositoryChainModuleResolution best = findBestMatch(queue, failures, missing);
+        RepositoryChainModuleResolution best = findBestMatchInPass(queue, failures, missing);
         if (best != null) {
             return best;
         }
@@ -104,9 +119,80 @@ public class RepositoryChainComponentMetaDataResolver implements ComponentMetaDa
         // Nothing found - do a second pass
         queue.addAll(missing);
         missing.clear();
+        return findBestMatchInPass(queue, failures, missing);
+    }
+
+    private RepositoryChainModuleResolution findBestMatchInPass(LinkedList<ComponentMetaDataResolveState> queue, Collection<Throwable> failures, Collection<ComponentMetaDataResolveState> missing) {
+        if (prober != null) {
+            return findBestMatchConcurrently(queue, failures, missing);
+        }
         return findBestMatch(queue, failures, missing);
     }
 
+    /**
+     * Selects the same result as {@link #findBestMatch(LinkedList, Collection, Collection)}, but searches the remote repositories at the same time.
+     * Searches locally first, in repository order, up to the first repository that can provide the component locally. Then searches remotely
+     * those repositories that could not provide a result locally, and ranks the results in repository order.
+     */
+    private RepositoryChainModuleResolution findBestMatchConcurrently(LinkedList<ComponentMetaDataResolveState> queue, final Collection<Throwable> failures,
+                                                                      final Collection<ComponentMetaDataResolveState> missing) {
+        final List<Attempt> attempts = new ArrayList<Attempt>();
+        List<Attempt> remoteAttempts = new ArrayList<Attempt>();
+        while (!queue.isEmpty()) {
+            Attempt attempt = new Attempt(queue.removeFirst());
+            attempts.add(attempt);
+            try {
+                attempt.result = attempt.request.resolveLocally();
+            } catch (Throwable t) {
+                attempt.failure = t;
+                continue;
+            }
+            if (attempt.result == null) {
+                remoteAttempts.add(attempt);
+            } else if (attempt.result.getState() == BuildableModuleComponentMetaDataResolveResult.State.Resolved && !attempt.result.getMetaData().isGenerated()) {
+                // No later repository can provide a better match
+                break;
+            }
+        }
+
+        if (remoteAttempts.size() < 2) {
+            for (Attempt attempt : remoteAttempts) {
+                attempt.resolveRemotely();
+            }
+            return selectBestMatch(attempts, failures, missing);
+        }
+
+        String displayName = String.format("Search %s repositories for %s", remoteAttempts.size(), remoteAttempts.get(0).request.componentIdentifier);
+        final List<Attempt> probes = remoteAttempts;
+        return prober.probe(displayName, probes, new Transformer<RepositoryChainModuleResolution, List<Future<BuildableModuleComponentMetaDataResolveResult>>>() {
+            public RepositoryChainModuleResolution transform(List<Future<BuildableModuleComponentMetaDataResolveResult>> results) {
+                for (int i = 0; i < probes.size(); i++) {
+                    probes.get(i).remoteResult = results.get(i);
+                }
+                return selectBestMatch(attempts, failures, missing);
+            }
+        });
+    }
+
+    private RepositoryChainModuleResolution selectBestMatch(List<Attempt> attempts, Collection<Throwable> failures, Collection<ComponentMetaDataResolveState> missing) {
+        RepositoryChainModuleResolution best = null;
+        for (Attempt attempt : attempts) {
+            attempt.awaitRemoteResult();
+            if (attempt.failure != null) {
+                failures.add(attempt.failure);
+                continue;
+            }
+            RepositoryChainModuleResolution moduleResolution = processResult(attempt.request, attempt.result, failures, missing);
+            if (moduleResolution != null) {
+                if (!moduleResolution.module.isGenerated()) {
+                    return moduleResolution;
+                }
+                best = best != null ? best : moduleResolution;
+            }
+        }
+        return best;
+    }
+
     private RepositoryChainModuleResolution findBestMatch(LinkedList<ComponentMetaDataResolveState> queue, Collection<Throwable> failures, Collection<ComponentMetaDataResolveState> missing) {
         RepositoryChainModuleResolution best = null;
         while (!queue.isEmpty()) {
@@ -118,28 +204,80 @@ public class RepositoryChainComponentMetaDataResolver implements ComponentMetaDa
                 failures.add(t);
                 continue;
             }
-            switch (metaDataResolveResult.getState()) {
-                case Failed:
-                    failures.add(metaDataResolveResult.getFailure());
-                    break;
-                case Missing:
-                    // Queue this up for checking again later
-                    if (request.canMakeFurtherAttempts()) {
-                        missing.add(request);
-                    }
-                    break;
-                case Resolved:
-                    RepositoryChainModuleResolution moduleResolution = new RepositoryChainModuleResolution(request.repository, metaDataResolveResult.getMetaData());
-                    if (!metaDataResolveResult.getMetaData().isGenerated()) {
-                        return moduleResolution;
-                    }
-                    best = best != null ? best : moduleResolution;
-                    break;
-                default:
-                    throw new IllegalStateException("Unexpected state for resolution: " + metaDataResolveResult.getState());
+            RepositoryChainModuleResolution moduleResolution = processResult(request, metaDataResolveResult, failures, missing);
+            if (moduleResolution != null) {
+                if (!moduleResolution.module.isGenerated()) {
+                    return moduleResolution;
+                }
+                best = best != null ? best : moduleResolution;
             }
         }
 
         return best;
     }
+
+    /**
+     * Returns the resolved component, if any. Records failures and repositories that should be searched again.
+     */
+    @Nullable
+    private RepositoryChainModuleResolution processResult(ComponentMetaDataResolveState request, BuildableModuleComponentMetaDataResolveResult metaDataResolveResult,
+                                                          Collection<Throwable> failures, Collection<ComponentMetaDataResolveState> missing) {
+        switch (metaDataResolveResult.getState()) {
+            case Failed:
+                failures.add(metaDataResolveResult.getFailure());
+                return null;
+            case Missing:
+                // Queue this up for checking again later
+                if (request.canMakeFurtherAttempts()) {
+                    missing.add(request);
+                }
+                return null;
+            case Resolved:
+                return new RepositoryChainModuleResolution(request.repository, metaDataResolveResult.getMetaData());
+            default:
+                throw new IllegalStateException("Unexpected state for resolution: " + metaDataResolveResult.getState());
+        }
+    }
+
+    private static class Attempt implements Callable<BuildableModuleComponentMetaDataResolveResult> {
+        private final ComponentMetaDataResolveState request;
+        private BuildableModuleComponentMetaDataResolveResult result;
+        private Throwable failure;
+        private Future<BuildableModuleComponentMetaDataResolveResult> remoteResult;
+
+        Attempt(ComponentMetaDataResolveState request) {
+            this.request = request;
+        }
+
+        public BuildableModuleComponentMetaDataResolveResult call() {
+            return request.resolve();
+        }
+
+        void resolveRemotely() {
+            try {
+                result = request.resolve();
+            } catch (Throwable t) {
+                failure = t;
+            }
+        }
+
+        void awaitRemoteResult() {
+            if (remoteResult == null) {
+                return;
+            }
+            try {
+                result = remoteResult.get();
+            } catch (ExecutionException e) {
+                failure = e.getCause();
+            } catch (InterruptedException e) {
+                throw UncheckedException.throwAsUncheckedException(e);
+            }
+            remoteResult = null;
+        }
+
+        @Override
+        public String toString() {
+            return request.toString();
+        }
+    }
 }
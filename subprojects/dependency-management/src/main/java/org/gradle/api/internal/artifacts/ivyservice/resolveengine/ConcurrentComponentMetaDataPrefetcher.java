@@ -0,0 +1,122 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.artifacts.ivyservice.resolveengine;
+
+import org.apache.ivy.Ivy;
+import org.gradle.api.Action;
+import org.gradle.api.internal.artifacts.ivyservice.CacheLockingManager;
+import org.gradle.api.internal.artifacts.ivyservice.IvyContextManager;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.ComponentMetaDataPrefetcher;
+import org.gradle.internal.UncheckedException;
+import org.gradle.internal.concurrent.ExecutorFactory;
+import org.gradle.internal.concurrent.Stoppable;
+import org.gradle.internal.concurrent.StoppableExecutor;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+/**
+ * Runs meta-data fetches concurrently on a bounded pool of threads.
+ *
+ * <p>The calling thread must hold the artifact cache lock. It releases the lock while the fetches run, and each fetch runs with the lock held, in its own
+ * Ivy context. The lock is released by each fetch while it accesses a remote repository, so only the remote requests actually run concurrently.</p>
+ */
+public class ConcurrentComponentMetaDataPrefetcher implements ComponentMetaDataPrefetcher, Stoppable {
+    public static final String CONCURRENT_PREFETCH_TOGGLE = "org.gradle.resolution.prefetchMetaData";
+    private static final int MAX_CONCURRENT_FETCHES = 16;
+
+    private final ExecutorFactory executorFactory;
+    private final CacheLockingManager cacheLockingManager;
+    private final IvyContextManager ivyContextManager;
+    private StoppableExecutor executor;
+
+    public ConcurrentComponentMetaDataPrefetcher(ExecutorFactory executorFactory, CacheLockingManager cacheLockingManager, IvyContextManager ivyContextManager) {
+        this.executorFactory = executorFactory;
+        this.cacheLockingManager = cacheLockingManager;
+        this.ivyContextManager = ivyContextManager;
+    }
+
+    @Override
+    public void prefetch(final Collection<? extends Runnable> fetches) {
+        if (fetches.size() == 1) {
+            // Not worth handing over to another thread
+            fetches.iterator().next().run();
+            return;
+        }
+        if (executor == null) {
+            executor = executorFactory.create("Dependency meta-data prefetch", MAX_CONCURRENT_FETCHES);
+        }
+        cacheLockingManager.longRunningOperation(String.format("Prefetch meta-data for %s dependencies", fetches.size()), new Runnable() {
+            public void run() {
+                List<Future<?>> futures = new ArrayList<Future<?>>(fetches.size());
+                for (Runnable fetch : fetches) {
+                    futures.add(executor.submit(new FetchInContext(fetch)));
+                }
+                waitFor(futures);
+            }
+        });
+    }
+
+    private void waitFor(List<Future<?>> futures) {
+        Throwable failure = null;
+        for (Future<?> future : futures) {
+            try {
+                future.get();
+            } catch (ExecutionException e) {
+                if (failure == null) {
+                    failure = e.getCause();
+                }
+            } catch (InterruptedException e) {
+                throw UncheckedException.throwAsUncheckedException(e);
+            }
+        }
+        if (failure != null) {
+            throw UncheckedException.throwAsUncheckedException(failure);
+        }
+    }
+
+    @Override
+    public void stop() {
+        if (executor != null) {
+            executor.stop();
+            executor = null;
+        }
+    }
+
+    private class FetchInContext implements Runnable {
+        private final Runnable fetch;
+
+        FetchInContext(Runnable fetch) {
+            this.fetch = fetch;
+        }
+
+        public void run() {
+            cacheLockingManager.useCache(String.format("Prefetch meta-data for %s", fetch), new Runnable() {
+                public void run() {
+                    ivyContextManager.withIvy(new Action<Ivy>() {
+                        public void execute(Ivy ivy) {
+                            fetch.run();
+                        }
+                    });
+                }
+            });
+        }
+    }
+}
@@ -58,14 +58,31 @@ public class DefaultArtifactSet implements ArtifactSet {
         return id;
     }
 
-    public Set<ResolvedArtifact> getArtifacts() {
-        Set<ResolvedArtifact> resolvedArtifacts = new LinkedHashSet<ResolvedArtifact>(artifacts.size());
+    public ModuleVersionIdentifier getOwnerId() {
+        return moduleVersionIdentifier;
+    }
+
+    public ModuleSource getModuleSource() {
+        return moduleSource;
+    }
+
+    /**
+     * Returns the meta-data of the artifacts in this set that are accepted by the selector of this set.
+     */
+    public Set<ComponentArtifactMetaData> getSelectedArtifacts() {
+        Set<ComponentArtifactMetaData> selectedArtifacts = new LinkedHashSet<ComponentArtifactMetaData>(artifacts.size());
         for (ComponentArtifactMetaData artifact : artifacts) {
-            IvyArtifactName artifactName = artifact.getName();
-            if (!selector.acceptArtifact(moduleVersionIdentifier.getModule(), artifactName)) {
-                continue;
+            if (selector.acceptArtifact(moduleVersionIdentifier.getModule(), artifact.getName())) {
+                selectedArtifacts.add(artifact);
             }
+        }
+        return selectedArtifacts;
+    }
 
+    public Set<ResolvedArtifact> getArtifacts() {
+        Set<ResolvedArtifact> resolvedArtifacts = new LinkedHashSet<ResolvedArtifact>(artifacts.size());
+        for (ComponentArtifactMetaData artifact : getSelectedArtifacts()) {
+            IvyArtifactName artifactName = artifact.getName();
             ResolvedArtifact resolvedArtifact = allResolvedArtifacts.get(artifact.getId());
             if (resolvedArtifact == null) {
                 Factory<File> artifactSource = new LazyArtifactSource(artifact, moduleSource, artifactResolver);
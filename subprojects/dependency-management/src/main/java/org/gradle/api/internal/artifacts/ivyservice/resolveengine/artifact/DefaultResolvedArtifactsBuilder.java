@@ -30,8 +30,9 @@ public class DefaultResolvedArtifactsBuilder implements ResolvedArtifactsBuilder
 
     }
 
+    // May be shared by the results of several configurations
     @Override
-    public ResolvedArtifactResults resolve() {
+    public synchronized ResolvedArtifactResults resolve() {
         artifactResults.resolveNow();
         return artifactResults;
     }
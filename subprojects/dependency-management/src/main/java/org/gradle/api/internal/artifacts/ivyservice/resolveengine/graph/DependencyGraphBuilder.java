@@ -17,6 +17,7 @@ package org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph;
 
 import com.google.common.base.Joiner;
 import org.gradle.api.Action;
+import org.gradle.api.Nullable;
 import org.gradle.api.artifacts.ModuleDependency;
 import org.gradle.api.artifacts.ModuleIdentifier;
 import org.gradle.api.artifacts.ModuleVersionIdentifier;
@@ -54,15 +55,27 @@ public class DependencyGraphBuilder {
     private final ResolveContextToComponentResolver moduleResolver;
     private final DependencyToComponentIdResolver idResolver;
     private final ComponentMetaDataResolver metaDataResolver;
+    private final ComponentMetaDataPrefetcher prefetcher;
 
     public DependencyGraphBuilder(DependencyToComponentIdResolver componentIdResolver, ComponentMetaDataResolver componentMetaDataResolver,
                                   ResolveContextToComponentResolver resolveContextToComponentResolver, DependencyToConfigurationResolver dependencyToConfigurationResolver,
                                   ConflictHandler conflictHandler) {
+        this(componentIdResolver, componentMetaDataResolver, resolveContextToComponentResolver, dependencyToConfigurationResolver, conflictHandler, null);
+    }
+
+    /**
+     * @param prefetcher Used to fetch the meta-data of the modules that are queued for traversal ahead of traversing them, or null to fetch meta-data as
+     * the graph is traversed.
+     */
+    public DependencyGraphBuilder(DependencyToComponentIdResolver componentIdResolver, ComponentMetaDataResolver componentMetaDataResolver,
+                                  ResolveContextToComponentResolver resolveContextToComponentResolver, DependencyToConfigurationResolver dependencyToConfigurationResolver,
+                                  ConflictHandler conflictHandler, @Nullable ComponentMetaDataPrefetcher prefetcher) {
         this.idResolver = componentIdResolver;
         this.metaDataResolver = componentMetaDataResolver;
         this.moduleResolver = resolveContextToComponentResolver;
         this.conflictHandler = conflictHandler;
         this.dependencyToConfigurationResolver = dependencyToConfigurationResolver;
+        this.prefetcher = prefetcher;
     }
 
     public void resolve(ResolveContext resolveContext, DependencyGraphVisitor modelVisitor) {
@@ -86,6 +99,9 @@ public class DependencyGraphBuilder {
         List<DependencyEdge> dependencies = new ArrayList<DependencyEdge>();
         while (resolveState.peek() != null || conflictHandler.hasConflicts()) {
             if (resolveState.peek() != null) {
+                if (prefetcher != null) {
+                    prefetchMetaData(resolveState);
+                }
                 ConfigurationNode node = resolveState.pop();
                 LOGGER.debug("Visiting configuration {}.", node);
 
@@ -154,6 +170,24 @@ public class DependencyGraphBuilder {
         }
     }
 
+    /**
+     * Fetches the meta-data for the dependencies of the configurations queued for traversal that have not been seen before, so that the meta-data
+     * for each level of the graph can be fetched concurrently. The prefetched results are used only when the traversal makes exactly the same
+     * request, so the graph and the conflict resolution are the same as without prefetching.
+     */
+    private void prefetchMetaData(ResolveState resolveState) {
+        List<MetaDataPrefetch> fetches = new ArrayList<MetaDataPrefetch>();
+        for (ConfigurationNode node : resolveState.queue) {
+            if (resolveState.prefetchedNodes.add(node)) {
+                node.collectPrefetches(fetches);
+            }
+        }
+        if (!fetches.isEmpty()) {
+            LOGGER.debug("Prefetching meta-data for {} dependencies.", fetches.size());
+            prefetcher.prefetch(fetches);
+        }
+    }
+
     /**
      * Populates the result from the graph traversal state.
      */
@@ -317,6 +351,8 @@ public class DependencyGraphBuilder {
         private final DependencyToConfigurationResolver dependencyToConfigurationResolver;
         private final Set<ConfigurationNode> queued = new HashSet<ConfigurationNode>();
         private final LinkedList<ConfigurationNode> queue = new LinkedList<ConfigurationNode>();
+        private final Map<ModuleVersionSelector, MetaDataPrefetch> prefetches = new HashMap<ModuleVersionSelector, MetaDataPrefetch>();
+        private final Set<ConfigurationNode> prefetchedNodes = new HashSet<ConfigurationNode>();
 
         public ResolveState(ComponentResolveResult rootResult, String rootConfigurationName, DependencyToComponentIdResolver idResolver,
                             ComponentMetaDataResolver metaDataResolver, DependencyToConfigurationResolver dependencyToConfigurationResolver) {
@@ -367,6 +403,18 @@ public class DependencyGraphBuilder {
             return resolveState;
         }
 
+        /**
+         * Returns the completed prefetch for the given dependency, if any.
+         */
+        @Nullable
+        public MetaDataPrefetch getPrefetch(DependencyMetaData dependencyMetaData) {
+            MetaDataPrefetch prefetch = prefetches.get(dependencyMetaData.getRequested());
+            if (prefetch != null && prefetch.dependencyMetaData == dependencyMetaData && prefetch.idResolveResult != null) {
+                return prefetch;
+            }
+            return null;
+        }
+
         public ConfigurationNode peek() {
             return queue.isEmpty() ? null : queue.getFirst();
         }
@@ -556,8 +604,14 @@ public class DependencyGraphBuilder {
                 return;
             }
 
-            DefaultBuildableComponentResolveResult result = new DefaultBuildableComponentResolveResult();
-            resolver.resolve(idResolveResult.getId(), DefaultComponentOverrideMetadata.forDependency(firstReference.dependencyMetaData), result);
+            BuildableComponentResolveResult result;
+            MetaDataPrefetch prefetch = module.resolveState.getPrefetch(firstReference.dependencyMetaData);
+            if (prefetch != null && prefetch.idResolveResult == idResolveResult && prefetch.metaDataResolveResult != null) {
+                result = prefetch.metaDataResolveResult;
+            } else {
+                result = new DefaultBuildableComponentResolveResult();
+                resolver.resolve(idResolveResult.getId(), DefaultComponentOverrideMetadata.forDependency(firstReference.dependencyMetaData), result);
+            }
             if (result.getFailure() != null) {
                 failure = result.getFailure();
                 return;
@@ -733,6 +787,40 @@ public class DependencyGraphBuilder {
             return false;
         }
 
+        /**
+         * Collects a prefetch for each dependency of this configuration whose selector has not been seen before. Uses the same exclusions as {@link
+         * #visitOutgoingDependencies(Collection)}, but does not change the state of the graph.
+         */
+        public void collectPrefetches(Collection<MetaDataPrefetch> target) {
+            if (moduleRevision.state != ModuleState.Selected) {
+                return;
+            }
+
+            List<DependencyEdge> transitiveIncoming = new ArrayList<DependencyEdge>();
+            for (DependencyEdge edge : incomingEdges) {
+                if (edge.isTransitive()) {
+                    transitiveIncoming.add(edge);
+                }
+            }
+            if (transitiveIncoming.isEmpty() && this != resolveState.root) {
+                return;
+            }
+
+            ModuleResolutionFilter resolutionFilter = getModuleResolutionFilter(transitiveIncoming);
+            for (DependencyMetaData dependency : metaData.getDependencies()) {
+                ModuleVersionSelector requested = dependency.getRequested();
+                if (resolveState.selectors.containsKey(requested) || resolveState.prefetches.containsKey(requested)) {
+                    continue;
+                }
+                if (!resolutionFilter.acceptModule(DefaultModuleIdentifier.newId(requested.getGroup(), requested.getName()))) {
+                    continue;
+                }
+                MetaDataPrefetch prefetch = new MetaDataPrefetch(dependency, resolveState.idResolver, resolveState.metaDataResolver);
+                resolveState.prefetches.put(requested, prefetch);
+                target.add(prefetch);
+            }
+        }
+
         public void addIncomingEdge(DependencyEdge dependencyEdge) {
             incomingEdges.add(dependencyEdge);
             resolveState.onMoreSelected(this);
@@ -864,8 +952,13 @@ public class DependencyGraphBuilder {
                 return null;
             }
 
-            idResolveResult = new DefaultBuildableComponentIdResolveResult();
-            resolver.resolve(dependencyMetaData, idResolveResult);
+            MetaDataPrefetch prefetch = resolveState.getPrefetch(dependencyMetaData);
+            if (prefetch != null) {
+                idResolveResult = prefetch.idResolveResult;
+            } else {
+                idResolveResult = new DefaultBuildableComponentIdResolveResult();
+                resolver.resolve(dependencyMetaData, idResolveResult);
+            }
             if (idResolveResult.getFailure() != null) {
                 failure = idResolveResult.getFailure();
                 return null;
@@ -886,6 +979,47 @@ public class DependencyGraphBuilder {
         }
     }
 
+    /**
+     * Resolves a dependency to a component and fetches the meta-data of the component, ahead of the graph traversal. Only touches its own state, so
+     * can run on any thread. The results are read once the prefetcher has completed.
+     */
+    private static class MetaDataPrefetch implements Runnable {
+        final DependencyMetaData dependencyMetaData;
+        final DependencyToComponentIdResolver idResolver;
+        final ComponentMetaDataResolver metaDataResolver;
+        BuildableComponentIdResolveResult idResolveResult;
+        BuildableComponentResolveResult metaDataResolveResult;
+
+        private MetaDataPrefetch(DependencyMetaData dependencyMetaData, DependencyToComponentIdResolver idResolver, ComponentMetaDataResolver metaDataResolver) {
+            this.dependencyMetaData = dependencyMetaData;
+            this.idResolver = idResolver;
+            this.metaDataResolver = metaDataResolver;
+        }
+
+        @Override
+        public String toString() {
+            return dependencyMetaData.toString();
+        }
+
+        public void run() {
+            try {
+                BuildableComponentIdResolveResult idResult = new DefaultBuildableComponentIdResolveResult();
+                idResolver.resolve(dependencyMetaData, idResult);
+                if (idResult.getFailure() == null && idResult.getMetaData() == null) {
+                    BuildableComponentResolveResult result = new DefaultBuildableComponentResolveResult();
+                    metaDataResolver.resolve(idResult.getId(), DefaultComponentOverrideMetadata.forDependency(dependencyMetaData), result);
+                    metaDataResolveResult = result;
+                }
+                idResolveResult = idResult;
+            } catch (RuntimeException e) {
+                // Discard the results, so that the dependency is resolved again when the graph is traversed and the failure is reported there
+                LOGGER.debug("Could not prefetch meta-data for {}.", dependencyMetaData, e);
+                idResolveResult = null;
+                metaDataResolveResult = null;
+            }
+        }
+    }
+
     private static class DirectDependencyForcingResolver implements ModuleConflictResolver {
         private final ModuleVersionResolveState root;
 
@@ -19,7 +19,8 @@ package org.gradle.api.internal.artifacts.ivyservice.resolveengine.oldresult;
 
 import org.gradle.api.internal.artifacts.DefaultResolvedDependency;
 import org.gradle.api.internal.artifacts.ResolvedConfigurationIdentifier;
-import org.gradle.api.internal.artifacts.ResolvedConfigurationIdentifierSerializer;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.store.DictionaryDecoder;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.store.DictionaryEncoder;
 import org.gradle.api.internal.cache.BinaryStore;
 import org.gradle.api.internal.cache.Store;
 import org.gradle.api.logging.Logger;
@@ -46,16 +47,35 @@ public class TransientConfigurationResultsBuilder {
     private static final byte FIRST_LVL = 3;
     private static final byte PARENT_CHILD = 4;
 
-    private final Object lock = new Object();
+    private final Object lock;
 
     private BinaryStore binaryStore;
     private Store<TransientConfigurationResults> cache;
-    private final ResolvedConfigurationIdentifierSerializer resolvedConfigurationIdentifierSerializer = new ResolvedConfigurationIdentifierSerializer();
+    private final DictionaryEncoder dictionary = new DictionaryEncoder();
     private BinaryStore.BinaryData binaryData;
+    private ResolvedConfigurationIdentifier root;
+    private final ResolvedConfigurationIdentifier replacedRoot;
 
     public TransientConfigurationResultsBuilder(BinaryStore binaryStore, Store<TransientConfigurationResults> cache) {
+        this(binaryStore, cache, new Object(), null, null, null);
+    }
+
+    private TransientConfigurationResultsBuilder(BinaryStore binaryStore, Store<TransientConfigurationResults> cache, Object lock, BinaryStore.BinaryData binaryData,
+                                                 ResolvedConfigurationIdentifier replacedRoot, ResolvedConfigurationIdentifier root) {
         this.binaryStore = binaryStore;
         this.cache = cache;
+        this.lock = lock;
+        this.binaryData = binaryData;
+        this.replacedRoot = replacedRoot;
+        this.root = root;
+    }
+
+    /**
+     * Creates a builder whose results are loaded from the same data as the results of this builder, with the given root in place of the root of
+     * the graph. Can only be used once this builder is done, when none of the other nodes of the graph depends on its root.
+     */
+    public TransientConfigurationResultsBuilder share(ResolvedConfigurationIdentifier root, Store<TransientConfigurationResults> cache) {
+        return new TransientConfigurationResultsBuilder(binaryStore, cache, lock, binaryData, this.root, root);
     }
 
     private void writeId(final byte type, final ResolvedConfigurationIdentifier... ids) {
@@ -63,7 +83,7 @@ public class TransientConfigurationResultsBuilder {
             public void write(Encoder encoder) throws IOException {
                 encoder.writeByte(type);
                 for (ResolvedConfigurationIdentifier id : ids) {
-                    resolvedConfigurationIdentifierSerializer.write(encoder, id);
+                    dictionary.writeResolvedConfigurationId(encoder, id);
                 }
             }
         });
@@ -74,6 +94,7 @@ public class TransientConfigurationResultsBuilder {
     }
 
     public void done(ResolvedConfigurationIdentifier id) {
+        root = id;
         writeId(ROOT, id);
         LOG.debug("Flushing resolved configuration data in {}. Wrote root {}.", binaryStore, id);
         binaryData = binaryStore.done();
@@ -118,6 +139,7 @@ public class TransientConfigurationResultsBuilder {
         Clock clock = new Clock();
         Map<ResolvedConfigurationIdentifier, DefaultResolvedDependency> allDependencies = new HashMap<ResolvedConfigurationIdentifier, DefaultResolvedDependency>();
         DefaultTransientConfigurationResults results = new DefaultTransientConfigurationResults();
+        DictionaryDecoder dictionary = new DictionaryDecoder();
         int valuesRead = 0;
         byte type = -1;
         try {
@@ -127,11 +149,11 @@ public class TransientConfigurationResultsBuilder {
                 valuesRead++;
                 switch (type) {
                     case NEW_DEP:
-                        id = resolvedConfigurationIdentifierSerializer.read(decoder);
+                        id = readId(decoder, dictionary);
                         allDependencies.put(id, new DefaultResolvedDependency(id.getId(), id.getConfiguration()));
                         break;
                     case ROOT:
-                        id = resolvedConfigurationIdentifierSerializer.read(decoder);
+                        id = readId(decoder, dictionary);
                         results.root = allDependencies.get(id);
                         if (results.root == null) {
                             throw new IllegalStateException(String.format("Unexpected root id %s. Seen ids: %s", id, allDependencies.keySet()));
@@ -140,7 +162,7 @@ public class TransientConfigurationResultsBuilder {
                         LOG.debug("Loaded resolved configuration results ({}) from {}", clock.getTime(), binaryStore);
                         return results;
                     case FIRST_LVL:
-                        id = resolvedConfigurationIdentifierSerializer.read(decoder);
+                        id = dictionary.readResolvedConfigurationId(decoder);
                         DefaultResolvedDependency dependency = allDependencies.get(id);
                         if (dependency == null) {
                             throw new IllegalStateException(String.format("Unexpected first level id %s. Seen ids: %s", id, allDependencies.keySet()));
@@ -148,8 +170,8 @@ public class TransientConfigurationResultsBuilder {
                         results.firstLevelDependencies.put(mapping.getModuleDependency(id), dependency);
                         break;
                     case PARENT_CHILD:
-                        ResolvedConfigurationIdentifier parentId = resolvedConfigurationIdentifierSerializer.read(decoder);
-                        ResolvedConfigurationIdentifier childId = resolvedConfigurationIdentifierSerializer.read(decoder);
+                        ResolvedConfigurationIdentifier parentId = readId(decoder, dictionary);
+                        ResolvedConfigurationIdentifier childId = readId(decoder, dictionary);
                         DefaultResolvedDependency parent = allDependencies.get(parentId);
                         DefaultResolvedDependency child = allDependencies.get(childId);
                         if (parent == null) {
@@ -169,4 +191,9 @@ public class TransientConfigurationResultsBuilder {
             throw new RuntimeException("Problems loading the resolved configuration. Read " + valuesRead + " values, last was: " + type, e);
         }
     }
+
+    private ResolvedConfigurationIdentifier readId(Decoder decoder, DictionaryDecoder dictionary) throws IOException {
+        ResolvedConfigurationIdentifier id = dictionary.readResolvedConfigurationId(decoder);
+        return replacedRoot != null && id.equals(replacedRoot) ? root : id;
+    }
 }
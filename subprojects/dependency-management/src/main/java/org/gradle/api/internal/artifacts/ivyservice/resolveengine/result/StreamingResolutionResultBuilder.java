@@ -16,12 +16,15 @@
 
 package org.gradle.api.internal.artifacts.ivyservice.resolveengine.result;
 
+import org.gradle.api.Nullable;
 import org.gradle.api.artifacts.ModuleVersionIdentifier;
 import org.gradle.api.artifacts.component.ComponentIdentifier;
 import org.gradle.api.artifacts.component.ComponentSelector;
 import org.gradle.api.artifacts.result.ResolutionResult;
 import org.gradle.api.artifacts.result.ResolvedComponentResult;
-import org.gradle.api.internal.artifacts.ModuleVersionIdentifierSerializer;
+import org.gradle.api.artifacts.result.ComponentSelectionReason;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.store.DictionaryDecoder;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.store.DictionaryEncoder;
 import org.gradle.internal.resolve.ModuleVersionResolveException;
 import org.gradle.api.internal.artifacts.result.DefaultResolutionResult;
 import org.gradle.api.internal.cache.BinaryStore;
@@ -29,6 +32,7 @@ import org.gradle.api.internal.cache.Store;
 import org.gradle.api.logging.Logger;
 import org.gradle.api.logging.Logging;
 import org.gradle.internal.Factory;
+import org.gradle.internal.component.external.model.DefaultModuleComponentIdentifier;
 import org.gradle.internal.serialize.Decoder;
 import org.gradle.internal.serialize.Encoder;
 import org.gradle.util.Clock;
@@ -45,13 +49,20 @@ public class StreamingResolutionResultBuilder implements ResolutionResultBuilder
     private final static byte DEPENDENCY = 3;
     private final static byte DONE = 4;
 
+    private final static byte SUCCESSFUL = 0;
+    private final static byte FAILED = 1;
+    private final static byte MODULE_COMPONENT = 0;
+    private final static byte OTHER_COMPONENT = 1;
+
     private final Map<ComponentSelector, ModuleVersionResolveException> failures = new HashMap<ComponentSelector, ModuleVersionResolveException>();
     private final BinaryStore store;
-    private final ModuleVersionIdentifierSerializer moduleVersionIdentifierSerializer = new ModuleVersionIdentifierSerializer();
-    private final ModuleVersionSelectionSerializer moduleVersionSelectionSerializer = new ModuleVersionSelectionSerializer();
     private final Store<ResolvedComponentResult> cache;
-    private final InternalDependencyResultSerializer internalDependencyResultSerializer = new InternalDependencyResultSerializer();
+    private final DictionaryEncoder dictionary = new DictionaryEncoder();
+    private final ComponentSelectionReasonSerializer componentSelectionReasonSerializer = new ComponentSelectionReasonSerializer();
     private final ComponentIdentifierSerializer componentIdentifierSerializer = new ComponentIdentifierSerializer();
+    private final Object lock = new Object();
+    private ModuleVersionIdentifier root;
+    private BinaryStore.BinaryData data;
 
     public StreamingResolutionResultBuilder(BinaryStore store, Store<ResolvedComponentResult> cache) {
         this.store = store;
@@ -64,16 +75,26 @@ public class StreamingResolutionResultBuilder implements ResolutionResultBuilder
                 encoder.writeByte(DONE);
             }
         });
-        BinaryStore.BinaryData data = store.done();
-        RootFactory rootSource = new RootFactory(data, failures, cache);
+        data = store.done();
+        RootFactory rootSource = new RootFactory(data, failures, cache, lock, null, null);
+        return new DefaultResolutionResult(rootSource);
+    }
+
+    /**
+     * Creates a result that is read from the same data as the result of this builder, with the given root in place of the root of the graph.
+     * Can only be used once this builder is complete, when none of the other modules of the graph depends on its root.
+     */
+    public ResolutionResult share(ModuleVersionIdentifier root, ComponentIdentifier componentIdentifier, Store<ResolvedComponentResult> cache) {
+        RootFactory rootSource = new RootFactory(data, failures, cache, lock, this.root, new DefaultModuleVersionSelection(root, VersionSelectionReasons.ROOT, componentIdentifier));
         return new DefaultResolutionResult(rootSource);
     }
 
     public ResolutionResultBuilder start(final ModuleVersionIdentifier root, final ComponentIdentifier componentIdentifier) {
+        this.root = root;
         store.write(new BinaryStore.WriteAction() {
             public void write(Encoder encoder) throws IOException {
                 encoder.writeByte(ROOT);
-                moduleVersionIdentifierSerializer.write(encoder, root);
+                dictionary.writeModuleVersionId(encoder, root);
                 componentIdentifierSerializer.write(encoder, componentIdentifier);
             }
         });
@@ -87,7 +108,9 @@ public class StreamingResolutionResultBuilder implements ResolutionResultBuilder
             store.write(new BinaryStore.WriteAction() {
                 public void write(Encoder encoder) throws IOException {
                     encoder.writeByte(MODULE);
-                    moduleVersionSelectionSerializer.write(encoder, moduleVersion);
+                    dictionary.writeModuleVersionId(encoder, moduleVersion.getId());
+                    componentSelectionReasonSerializer.write(encoder, moduleVersion.getSelectionReason());
+                    writeComponentId(encoder, moduleVersion.getId(), moduleVersion.getComponentId());
                 }
             });
         }
@@ -98,10 +121,10 @@ public class StreamingResolutionResultBuilder implements ResolutionResultBuilder
             store.write(new BinaryStore.WriteAction() {
                 public void write(Encoder encoder) throws IOException {
                     encoder.writeByte(DEPENDENCY);
-                    moduleVersionIdentifierSerializer.write(encoder, from);
+                    dictionary.writeModuleVersionId(encoder, from);
                     encoder.writeSmallInt(dependencies.size());
                     for (InternalDependencyResult dependency : dependencies) {
-                        internalDependencyResultSerializer.write(encoder, dependency);
+                        writeDependency(encoder, dependency);
                         if (dependency.getFailure() != null) {
                             //by keying the failures only be 'requested' we lose some precision
                             //at edge case we'll lose info about a different exception if we have different failure for the same requested version
@@ -113,24 +136,53 @@ public class StreamingResolutionResultBuilder implements ResolutionResultBuilder
         }
     }
 
+    private void writeComponentId(Encoder encoder, ModuleVersionIdentifier id, ComponentIdentifier componentId) throws IOException {
+        // The component id of a module is made of the same group, name and version as its module version id
+        if (componentId.equals(new DefaultModuleComponentIdentifier(id.getGroup(), id.getName(), id.getVersion()))) {
+            encoder.writeByte(MODULE_COMPONENT);
+        } else {
+            encoder.writeByte(OTHER_COMPONENT);
+            componentIdentifierSerializer.write(encoder, componentId);
+        }
+    }
+
+    private void writeDependency(Encoder encoder, InternalDependencyResult dependency) throws IOException {
+        dictionary.writeComponentSelector(encoder, dependency.getRequested());
+        if (dependency.getFailure() == null) {
+            encoder.writeByte(SUCCESSFUL);
+            dictionary.writeModuleVersionId(encoder, dependency.getSelected());
+        } else {
+            encoder.writeByte(FAILED);
+            componentSelectionReasonSerializer.write(encoder, dependency.getReason());
+        }
+    }
+
     private static class RootFactory implements Factory<ResolvedComponentResult> {
 
         private final static Logger LOG = Logging.getLogger(RootFactory.class);
-        private final ModuleVersionSelectionSerializer moduleVersionSelectionSerializer = new ModuleVersionSelectionSerializer();
+        private final ComponentSelectionReasonSerializer componentSelectionReasonSerializer = new ComponentSelectionReasonSerializer();
 
         private final BinaryStore.BinaryData data;
         private final Map<ComponentSelector, ModuleVersionResolveException> failures;
         private final Store<ResolvedComponentResult> cache;
-        private final Object lock = new Object();
-        private final ModuleVersionIdentifierSerializer moduleVersionIdentifierSerializer = new ModuleVersionIdentifierSerializer();
-        private final InternalDependencyResultSerializer internalDependencyResultSerializer = new InternalDependencyResultSerializer();
+        private final Object lock;
+        private final ModuleVersionIdentifier replacedRoot;
+        private final ModuleVersionSelection newRoot;
         private final ComponentIdentifierSerializer componentIdentifierSerializer = new ComponentIdentifierSerializer();
 
+        /**
+         * @param lock The lock for reading the data, shared by all results read from the same data.
+         * @param replacedRoot The root of the graph written to the data, or null when it is not replaced.
+         * @param newRoot The root to use in place of the root written to the data, or null when it is not replaced.
+         */
         public RootFactory(BinaryStore.BinaryData data, Map<ComponentSelector, ModuleVersionResolveException> failures,
-                           Store<ResolvedComponentResult> cache) {
+                           Store<ResolvedComponentResult> cache, Object lock, @Nullable ModuleVersionIdentifier replacedRoot, @Nullable ModuleVersionSelection newRoot) {
             this.data = data;
             this.failures = failures;
             this.cache = cache;
+            this.lock = lock;
+            this.replacedRoot = replacedRoot;
+            this.newRoot = newRoot;
         }
 
         public ResolvedComponentResult create() {
@@ -161,25 +213,35 @@ public class StreamingResolutionResultBuilder implements ResolutionResultBuilder
             Clock clock = new Clock();
             try {
                 DefaultResolutionResultBuilder builder = new DefaultResolutionResultBuilder();
+                DictionaryDecoder dictionary = new DictionaryDecoder();
                 while (true) {
                     type = decoder.readByte();
                     valuesRead++;
                     switch (type) {
                         case ROOT:
-                            ModuleVersionIdentifier id = moduleVersionIdentifierSerializer.read(decoder);
+                            ModuleVersionIdentifier id = dictionary.readModuleVersionId(decoder);
                             ComponentIdentifier componentIdentifier = componentIdentifierSerializer.read(decoder);
-                            builder.start(id, componentIdentifier);
+                            if (newRoot != null) {
+                                builder.start(newRoot.getId(), newRoot.getComponentId());
+                            } else {
+                                builder.start(id, componentIdentifier);
+                            }
                             break;
                         case MODULE:
-                            ModuleVersionSelection sel = moduleVersionSelectionSerializer.read(decoder);
-                            builder.resolvedModuleVersion(sel);
+                            ModuleVersionSelection sel = readModuleVersionSelection(decoder, dictionary);
+                            if (newRoot == null || !sel.getId().equals(replacedRoot)) {
+                                builder.resolvedModuleVersion(sel);
+                            }
                             break;
                         case DEPENDENCY:
-                            id = moduleVersionIdentifierSerializer.read(decoder);
+                            id = dictionary.readModuleVersionId(decoder);
+                            if (newRoot != null && id.equals(replacedRoot)) {
+                                id = newRoot.getId();
+                            }
                             int size = decoder.readSmallInt();
                             List<InternalDependencyResult> deps = new LinkedList<InternalDependencyResult>();
                             for (int i = 0; i < size; i++) {
-                                deps.add(internalDependencyResultSerializer.read(decoder, failures));
+                                deps.add(readDependency(decoder, dictionary));
                             }
                             builder.resolvedConfiguration(id, deps);
                             break;
@@ -196,5 +258,34 @@ public class StreamingResolutionResultBuilder implements ResolutionResultBuilder
                         + "Read " + valuesRead + " values, last was: " + type, e);
             }
         }
+
+        private ModuleVersionSelection readModuleVersionSelection(Decoder decoder, DictionaryDecoder dictionary) throws IOException {
+            ModuleVersionIdentifier id = dictionary.readModuleVersionId(decoder);
+            ComponentSelectionReason reason = componentSelectionReasonSerializer.read(decoder);
+            byte componentType = decoder.readByte();
+            ComponentIdentifier componentId;
+            if (componentType == MODULE_COMPONENT) {
+                componentId = new DefaultModuleComponentIdentifier(id.getGroup(), id.getName(), id.getVersion());
+            } else if (componentType == OTHER_COMPONENT) {
+                componentId = componentIdentifierSerializer.read(decoder);
+            } else {
+                throw new IOException("Unknown component type read from stream: " + componentType);
+            }
+            return new DefaultModuleVersionSelection(id, reason, componentId);
+        }
+
+        private InternalDependencyResult readDependency(Decoder decoder, DictionaryDecoder dictionary) throws IOException {
+            ComponentSelector requested = dictionary.readComponentSelector(decoder);
+            byte resultByte = decoder.readByte();
+            if (resultByte == SUCCESSFUL) {
+                ModuleVersionIdentifier selected = dictionary.readModuleVersionId(decoder);
+                return new DefaultInternalDependencyResult(requested, selected, null, null);
+            } else if (resultByte == FAILED) {
+                ComponentSelectionReason reason = componentSelectionReasonSerializer.read(decoder);
+                return new DefaultInternalDependencyResult(requested, null, reason, failures.get(requested));
+            } else {
+                throw new IOException("Unknown result byte read from stream: " + resultByte);
+            }
+        }
     }
 }
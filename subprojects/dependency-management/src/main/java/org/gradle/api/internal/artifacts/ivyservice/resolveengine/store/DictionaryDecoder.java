@@ -0,0 +1,99 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.artifacts.ivyservice.resolveengine.store;
+
+import org.gradle.api.artifacts.ModuleVersionIdentifier;
+import org.gradle.api.artifacts.component.ComponentSelector;
+import org.gradle.api.internal.artifacts.DefaultModuleVersionIdentifier;
+import org.gradle.api.internal.artifacts.ResolvedConfigurationIdentifier;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.result.ComponentSelectorSerializer;
+import org.gradle.internal.component.external.model.DefaultModuleComponentSelector;
+import org.gradle.internal.serialize.Decoder;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.gradle.api.internal.artifacts.ivyservice.resolveengine.store.DictionaryEncoder.MODULE_SELECTOR;
+import static org.gradle.api.internal.artifacts.ivyservice.resolveengine.store.DictionaryEncoder.OTHER_SELECTOR;
+
+/**
+ * Reads the strings and identifiers written by a {@link DictionaryEncoder}.
+ */
+public class DictionaryDecoder {
+    private final List<String> strings = new ArrayList<String>();
+    private final List<ModuleVersionIdentifier> moduleVersions = new ArrayList<ModuleVersionIdentifier>();
+    private final List<ComponentSelector> selectors = new ArrayList<ComponentSelector>();
+    private final List<ResolvedConfigurationIdentifier> configurations = new ArrayList<ResolvedConfigurationIdentifier>();
+    private final ComponentSelectorSerializer componentSelectorSerializer = new ComponentSelectorSerializer();
+
+    public String readString(Decoder decoder) throws IOException {
+        int id = decoder.readSmallInt();
+        if (id < strings.size()) {
+            return strings.get(id);
+        }
+        String value = decoder.readString();
+        add(strings, id, value);
+        return value;
+    }
+
+    public ModuleVersionIdentifier readModuleVersionId(Decoder decoder) throws IOException {
+        int id = decoder.readSmallInt();
+        if (id < moduleVersions.size()) {
+            return moduleVersions.get(id);
+        }
+        ModuleVersionIdentifier value = DefaultModuleVersionIdentifier.newId(readString(decoder), readString(decoder), readString(decoder));
+        add(moduleVersions, id, value);
+        return value;
+    }
+
+    public ComponentSelector readComponentSelector(Decoder decoder) throws IOException {
+        int id = decoder.readSmallInt();
+        if (id < selectors.size()) {
+            return selectors.get(id);
+        }
+        byte type = decoder.readByte();
+        ComponentSelector value;
+        if (type == MODULE_SELECTOR) {
+            value = new DefaultModuleComponentSelector(readString(decoder), readString(decoder), readString(decoder));
+        } else if (type == OTHER_SELECTOR) {
+            value = componentSelectorSerializer.read(decoder);
+        } else {
+            throw new IOException("Unknown component selector type read from stream: " + type);
+        }
+        add(selectors, id, value);
+        return value;
+    }
+
+    public ResolvedConfigurationIdentifier readResolvedConfigurationId(Decoder decoder) throws IOException {
+        int id = decoder.readSmallInt();
+        if (id < configurations.size()) {
+            return configurations.get(id);
+        }
+        ModuleVersionIdentifier moduleVersion = readModuleVersionId(decoder);
+        ResolvedConfigurationIdentifier value = new ResolvedConfigurationIdentifier(moduleVersion, readString(decoder));
+        add(configurations, id, value);
+        return value;
+    }
+
+    private static <T> void add(List<T> values, int id, T value) throws IOException {
+        if (id != values.size()) {
+            throw new IOException(String.format("Unexpected id %s read from stream, expected %s.", id, values.size()));
+        }
+        values.add(value);
+    }
+}
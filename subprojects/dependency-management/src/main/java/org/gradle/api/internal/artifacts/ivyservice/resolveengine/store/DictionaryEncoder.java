@@ -0,0 +1,106 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.artifacts.ivyservice.resolveengine.store;
+
+import org.gradle.api.artifacts.ModuleVersionIdentifier;
+import org.gradle.api.artifacts.component.ComponentSelector;
+import org.gradle.api.artifacts.component.ModuleComponentSelector;
+import org.gradle.api.internal.artifacts.ResolvedConfigurationIdentifier;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.result.ComponentSelectorSerializer;
+import org.gradle.internal.component.external.model.DefaultModuleComponentSelector;
+import org.gradle.internal.serialize.Encoder;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Writes the strings and identifiers of a result to a binary store, so that each distinct value is written in full only once. The first time a
+ * value is written, it is given the next id of its kind and the id is written followed by the value. Afterwards, only the id is written.
+ *
+ * <p>The values must be read back in the same order by a {@link DictionaryDecoder}, starting from the first value written by this encoder.</p>
+ */
+public class DictionaryEncoder {
+    static final byte MODULE_SELECTOR = 1;
+    static final byte OTHER_SELECTOR = 2;
+
+    private final Map<String, Integer> strings = new HashMap<String, Integer>();
+    private final Map<ModuleVersionIdentifier, Integer> moduleVersions = new HashMap<ModuleVersionIdentifier, Integer>();
+    private final Map<ComponentSelector, Integer> selectors = new HashMap<ComponentSelector, Integer>();
+    private final Map<ResolvedConfigurationIdentifier, Integer> configurations = new HashMap<ResolvedConfigurationIdentifier, Integer>();
+    private final ComponentSelectorSerializer componentSelectorSerializer = new ComponentSelectorSerializer();
+
+    public void writeString(Encoder encoder, String value) throws IOException {
+        Integer id = strings.get(value);
+        if (id == null) {
+            id = strings.size();
+            strings.put(value, id);
+            encoder.writeSmallInt(id);
+            encoder.writeString(value);
+        } else {
+            encoder.writeSmallInt(id);
+        }
+    }
+
+    public void writeModuleVersionId(Encoder encoder, ModuleVersionIdentifier value) throws IOException {
+        Integer id = moduleVersions.get(value);
+        if (id == null) {
+            id = moduleVersions.size();
+            moduleVersions.put(value, id);
+            encoder.writeSmallInt(id);
+            writeString(encoder, value.getGroup());
+            writeString(encoder, value.getName());
+            writeString(encoder, value.getVersion());
+        } else {
+            encoder.writeSmallInt(id);
+        }
+    }
+
+    public void writeComponentSelector(Encoder encoder, ComponentSelector value) throws IOException {
+        Integer id = selectors.get(value);
+        if (id == null) {
+            id = selectors.size();
+            selectors.put(value, id);
+            encoder.writeSmallInt(id);
+            if (value instanceof DefaultModuleComponentSelector) {
+                ModuleComponentSelector selector = (ModuleComponentSelector) value;
+                encoder.writeByte(MODULE_SELECTOR);
+                writeString(encoder, selector.getGroup());
+                writeString(encoder, selector.getModule());
+                writeString(encoder, selector.getVersion());
+            } else {
+                encoder.writeByte(OTHER_SELECTOR);
+                componentSelectorSerializer.write(encoder, value);
+            }
+        } else {
+            encoder.writeSmallInt(id);
+        }
+    }
+
+    public void writeResolvedConfigurationId(Encoder encoder, ResolvedConfigurationIdentifier value) throws IOException {
+        Integer id = configurations.get(value);
+        if (id == null) {
+            id = configurations.size();
+            configurations.put(value, id);
+            encoder.writeSmallInt(id);
+            writeModuleVersionId(encoder, value.getId());
+            writeString(encoder, value.getConfiguration());
+        } else {
+            encoder.writeSmallInt(id);
+        }
+    }
+}
@@ -0,0 +1,161 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.artifacts.ivyservice.resolveengine.store;
+
+import org.gradle.api.Nullable;
+import org.gradle.api.artifacts.ClientModule;
+import org.gradle.api.artifacts.Configuration;
+import org.gradle.api.artifacts.Dependency;
+import org.gradle.api.artifacts.DependencyArtifact;
+import org.gradle.api.artifacts.ExcludeRule;
+import org.gradle.api.artifacts.ExternalModuleDependency;
+import org.gradle.api.artifacts.ModuleVersionSelector;
+import org.gradle.api.internal.artifacts.GlobalDependencyResolutionRules;
+import org.gradle.api.internal.artifacts.ModuleInternal;
+import org.gradle.api.internal.artifacts.configurations.ConfigurationInternal;
+import org.gradle.api.internal.artifacts.configurations.ResolutionStrategyInternal;
+import org.gradle.api.internal.artifacts.ivyservice.ivyresolve.ConfiguredModuleComponentRepository;
+import org.gradle.api.internal.artifacts.ivyservice.ivyresolve.strategy.VersionSelectorScheme;
+import org.gradle.api.internal.artifacts.repositories.ResolutionAwareRepository;
+import org.gradle.util.GradleVersion;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Determines the inputs of the resolution of a configuration, for those configurations whose result depends only on their inputs.
+ */
+class ResolutionInputs {
+    private final VersionSelectorScheme versionSelectorScheme;
+
+    ResolutionInputs(VersionSelectorScheme versionSelectorScheme) {
+        this.versionSelectorScheme = versionSelectorScheme;
+    }
+
+    /**
+     * Returns the reason why the result of resolving the given configuration may change even when its inputs do not change, or null when it may not.
+     */
+    @Nullable
+    String notCacheableReason(ConfigurationInternal configuration, List<? extends ResolutionAwareRepository> repositories, GlobalDependencyResolutionRules metadataHandler) {
+        for (ResolutionAwareRepository repository : repositories) {
+            // The content of a local repository, such as the local Maven repository or a flat directory, can change without a change to its declaration
+            ConfiguredModuleComponentRepository resolver = repository.createResolver();
+            if (resolver.isLocal()) {
+                return String.format("repository %s is a local repository", resolver.getName());
+            }
+        }
+        if (metadataHandler.getComponentMetadataProcessor().hasRules()) {
+            return "component meta-data rules are defined";
+        }
+        if (metadataHandler.getModuleMetadataProcessor().getModuleReplacements().hasReplacements()) {
+            return "module replacements are defined";
+        }
+        ResolutionStrategyInternal resolutionStrategy = configuration.getResolutionStrategy();
+        if (resolutionStrategy.getDependencySubstitution().hasDependencySubstitutionRules()) {
+            return "dependency substitution rules are defined";
+        }
+        if (!resolutionStrategy.getComponentSelection().getRules().isEmpty()) {
+            return "component selection rules are defined";
+        }
+        for (Dependency dependency : configuration.getAllDependencies()) {
+            if (!(dependency instanceof ExternalModuleDependency) || dependency instanceof ClientModule) {
+                return String.format("%s is not an external module dependency", display(dependency));
+            }
+            if (((ExternalModuleDependency) dependency).isChanging()) {
+                return String.format("%s is changing", display(dependency));
+            }
+            if (isDynamic(dependency.getVersion())) {
+                return String.format("%s has a dynamic version", display(dependency));
+            }
+        }
+        return null;
+    }
+
+    boolean isDynamic(@Nullable String version) {
+        return version == null || versionSelectorScheme.parseSelector(version).isDynamic();
+    }
+
+    /**
+     * Returns the inputs of resolving the given configuration, in a form that describes each input to the user.
+     */
+    List<String> collect(ConfigurationInternal configuration, List<? extends ResolutionAwareRepository> repositories) {
+        List<String> inputs = new ArrayList<String>();
+        inputs.add("Gradle version " + GradleVersion.current().getVersion());
+        inputs.add("configuration " + configuration.getPath());
+        ModuleInternal module = configuration.getModule();
+        inputs.add(String.format("module %s:%s:%s with status %s", module.getGroup(), module.getName(), module.getVersion(), module.getStatus()));
+        inputs.addAll(collectGraphInputs(configuration, repositories));
+        return inputs;
+    }
+
+    /**
+     * Returns the inputs of resolving the given configuration that do not depend on the configuration itself or on the module that owns it. Two
+     * configurations with the same graph inputs resolve to the same graph, apart from its root.
+     */
+    List<String> collectGraphInputs(ConfigurationInternal configuration, List<? extends ResolutionAwareRepository> repositories) {
+        List<String> inputs = new ArrayList<String>();
+        inputs.add(configuration.isTransitive() ? "transitive" : "not transitive");
+        Set<ExcludeRule> excludeRules = new LinkedHashSet<ExcludeRule>();
+        for (Configuration inherited : configuration.getHierarchy()) {
+            excludeRules.addAll(inherited.getExcludeRules());
+        }
+        inputs.add("configuration excludes " + excludes(excludeRules));
+        for (Dependency dependency : configuration.getAllDependencies()) {
+            ExternalModuleDependency moduleDependency = (ExternalModuleDependency) dependency;
+            StringBuilder input = new StringBuilder(display(moduleDependency));
+            input.append(" configuration ").append(moduleDependency.getConfiguration());
+            input.append(moduleDependency.isTransitive() ? "" : " (not transitive)");
+            input.append(moduleDependency.isForce() ? " (forced)" : "");
+            input.append(" excludes ").append(excludes(moduleDependency.getExcludeRules()));
+            input.append(" artifacts [");
+            for (DependencyArtifact artifact : moduleDependency.getArtifacts()) {
+                input.append(String.format(" %s:%s:%s:%s:%s", artifact.getName(), artifact.getType(), artifact.getExtension(), artifact.getClassifier(), artifact.getUrl()));
+            }
+            input.append(" ]");
+            inputs.add(input.toString());
+        }
+        for (ResolutionAwareRepository repository : repositories) {
+            inputs.add("repository " + repository.createResolver().getId());
+        }
+        ResolutionStrategyInternal resolutionStrategy = configuration.getResolutionStrategy();
+        inputs.add("conflict resolution " + resolutionStrategy.getConflictResolution().getClass().getSimpleName());
+        for (ModuleVersionSelector forcedModule : resolutionStrategy.getForcedModules()) {
+            inputs.add(String.format("forced module %s:%s:%s", forcedModule.getGroup(), forcedModule.getName(), forcedModule.getVersion()));
+        }
+        return inputs;
+    }
+
+    private static String display(Dependency dependency) {
+        return String.format("dependency %s:%s:%s", dependency.getGroup(), dependency.getName(), dependency.getVersion());
+    }
+
+    private static String excludes(Iterable<ExcludeRule> excludeRules) {
+        // Order does not matter
+        Set<String> sorted = new TreeSet<String>();
+        for (ExcludeRule excludeRule : excludeRules) {
+            sorted.add(String.format("%s:%s", excludeRule.getGroup(), excludeRule.getModule()));
+        }
+        StringBuilder result = new StringBuilder("[");
+        for (String exclude : sorted) {
+            result.append(' ').append(exclude);
+        }
+        return result.append(" ]").toString();
+    }
+}
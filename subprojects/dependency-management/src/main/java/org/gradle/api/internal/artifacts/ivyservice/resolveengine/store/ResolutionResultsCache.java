@@ -0,0 +1,187 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.artifacts.ivyservice.resolveengine.store;
+
+import org.gradle.api.Nullable;
+import org.gradle.api.artifacts.ModuleDependency;
+import org.gradle.api.internal.artifacts.GlobalDependencyResolutionRules;
+import org.gradle.api.internal.artifacts.configurations.ConfigurationInternal;
+import org.gradle.api.internal.artifacts.ivyservice.CacheLockingManager;
+import org.gradle.api.internal.artifacts.ivyservice.ivyresolve.strategy.VersionSelectorScheme;
+import org.gradle.api.internal.artifacts.repositories.ResolutionAwareRepository;
+import org.gradle.api.logging.Logger;
+import org.gradle.api.logging.Logging;
+import org.gradle.cache.PersistentIndexedCache;
+import org.gradle.internal.Factory;
+import org.gradle.internal.resolve.resolver.ArtifactResolver;
+import org.gradle.internal.serialize.Decoder;
+import org.gradle.internal.serialize.Encoder;
+import org.gradle.internal.serialize.ListSerializer;
+import org.gradle.internal.serialize.Serializer;
+
+import java.util.Collection;
+import java.util.List;
+
+import static org.gradle.internal.serialize.BaseSerializerFactory.STRING_SERIALIZER;
+
+/**
+ * A persistent cache of the results of resolving the graph of a configuration, for configurations whose results depend only on their inputs: the
+ * declared dependencies, the repositories and the resolution strategy. Results are not cached when dynamic versions, changing modules, project
+ * dependencies or rules are involved.
+ *
+ * <p>The results of a configuration are stored together with its inputs, and are only reused when the inputs have not changed. The reason why the
+ * results of a configuration were not reused is logged at info level.</p>
+ */
+public class ResolutionResultsCache {
+    public static final String CACHE_RESULTS_TOGGLE = "org.gradle.resolution.cacheResults";
+    private static final Logger LOGGER = Logging.getLogger(ResolutionResultsCache.class);
+
+    private final CacheLockingManager cacheLockingManager;
+    private final ResolutionInputs resolutionInputs;
+    private final boolean enabled;
+    private PersistentIndexedCache<String, CachedResults> cache;
+
+    /**
+     * @param enabled Whether results are cached. When false, no results are stored nor reused.
+     */
+    public ResolutionResultsCache(CacheLockingManager cacheLockingManager, VersionSelectorScheme versionSelectorScheme, boolean enabled) {
+        this.cacheLockingManager = cacheLockingManager;
+        this.resolutionInputs = new ResolutionInputs(versionSelectorScheme);
+        this.enabled = enabled;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    private synchronized PersistentIndexedCache<String, CachedResults> getCache() {
+        if (cache == null) {
+            cache = cacheLockingManager.createCache("resolution-results", STRING_SERIALIZER, new CachedResultsSerializer());
+        }
+        return cache;
+    }
+
+    /**
+     * Returns the inputs of resolving the given configuration, or null when its results cannot be cached.
+     */
+    @Nullable
+    public List<String> getInputs(ConfigurationInternal configuration, List<? extends ResolutionAwareRepository> repositories, GlobalDependencyResolutionRules metadataHandler) {
+        String reason = resolutionInputs.notCacheableReason(configuration, repositories, metadataHandler);
+        if (reason != null) {
+            LOGGER.info("Resolution result of {} is not cached as {}.", configuration, reason);
+            return null;
+        }
+        return resolutionInputs.collect(configuration, repositories);
+    }
+
+    /**
+     * Returns the results recorded for the given configuration, provided they were recorded with the same inputs.
+     */
+    @Nullable
+    public byte[] load(final ConfigurationInternal configuration, List<String> inputs) {
+        CachedResults cachedResults = cacheLockingManager.useCache(String.format("load resolution result of %s", configuration), new Factory<CachedResults>() {
+            public CachedResults create() {
+                return getCache().get(keyFor(configuration));
+            }
+        });
+        if (cachedResults == null) {
+            LOGGER.info("Resolution result of {} is not in the cache.", configuration);
+            return null;
+        }
+        String change = describeChange(cachedResults.inputs, inputs);
+        if (change != null) {
+            LOGGER.info("Cached resolution result of {} cannot be reused as {}.", configuration, change);
+            return null;
+        }
+        LOGGER.info("Reusing cached resolution result of {}.", configuration);
+        return cachedResults.results;
+    }
+
+    public void store(final ConfigurationInternal configuration, List<String> inputs, byte[] results) {
+        final CachedResults cachedResults = new CachedResults(inputs, results);
+        cacheLockingManager.useCache(String.format("store resolution result of %s", configuration), new Runnable() {
+            public void run() {
+                getCache().put(keyFor(configuration), cachedResults);
+            }
+        });
+    }
+
+    /**
+     * Creates a recorder for the results of resolving the given configuration.
+     */
+    public ResolutionResultsRecorder createRecorder(ConfigurationInternal configuration) {
+        return new ResolutionResultsRecorder(declaredDependencies(configuration), resolutionInputs);
+    }
+
+    /**
+     * Creates a replayer for the results recorded for the given configuration.
+     */
+    public ResolutionResultsReplayer createReplayer(ConfigurationInternal configuration, ArtifactResolver artifactResolver) {
+        return new ResolutionResultsReplayer(declaredDependencies(configuration), artifactResolver);
+    }
+
+    private static Collection<ModuleDependency> declaredDependencies(ConfigurationInternal configuration) {
+        return configuration.getAllDependencies().withType(ModuleDependency.class);
+    }
+
+    private static String keyFor(ConfigurationInternal configuration) {
+        // Only determines which entry is replaced: results are reused only when all of their inputs, including the module, match
+        return String.format("%s:%s%s", configuration.getModule().getGroup(), configuration.getModule().getName(), configuration.getPath());
+    }
+
+    @Nullable
+    static String describeChange(List<String> previous, List<String> current) {
+        int common = Math.min(previous.size(), current.size());
+        for (int i = 0; i < common; i++) {
+            if (!previous.get(i).equals(current.get(i))) {
+                return String.format("'%s' has changed to '%s'", previous.get(i), current.get(i));
+            }
+        }
+        if (current.size() > common) {
+            return String.format("'%s' has been added", current.get(common));
+        }
+        if (previous.size() > common) {
+            return String.format("'%s' has been removed", previous.get(common));
+        }
+        return null;
+    }
+
+    private static class CachedResults {
+        private final List<String> inputs;
+        private final byte[] results;
+
+        CachedResults(List<String> inputs, byte[] results) {
+            this.inputs = inputs;
+            this.results = results;
+        }
+    }
+
+    private static class CachedResultsSerializer implements Serializer<CachedResults> {
+        private final ListSerializer<String> inputsSerializer = new ListSerializer<String>(STRING_SERIALIZER);
+
+        public CachedResults read(Decoder decoder) throws Exception {
+            List<String> inputs = inputsSerializer.read(decoder);
+            byte[] results = decoder.readBinary();
+            return new CachedResults(inputs, results);
+        }
+
+        public void write(Encoder encoder, CachedResults value) throws Exception {
+            inputsSerializer.write(encoder, value.inputs);
+            encoder.writeBinary(value.results);
+        }
+    }
+}
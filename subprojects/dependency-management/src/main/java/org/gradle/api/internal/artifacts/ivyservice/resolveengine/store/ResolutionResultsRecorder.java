@@ -0,0 +1,374 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.artifacts.ivyservice.resolveengine.store;
+
+import org.gradle.api.Nullable;
+import org.gradle.api.artifacts.ModuleDependency;
+import org.gradle.api.artifacts.ModuleVersionIdentifier;
+import org.gradle.api.artifacts.ModuleVersionSelector;
+import org.gradle.api.artifacts.UnresolvedDependency;
+import org.gradle.api.artifacts.component.ComponentIdentifier;
+import org.gradle.api.artifacts.component.ModuleComponentIdentifier;
+import org.gradle.api.artifacts.result.ResolutionResult;
+import org.gradle.api.internal.artifacts.ModuleVersionIdentifierSerializer;
+import org.gradle.api.internal.artifacts.ResolvedConfigurationIdentifier;
+import org.gradle.api.internal.artifacts.ResolvedConfigurationIdentifierSerializer;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.artifact.ArtifactSet;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.artifact.DefaultArtifactSet;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.artifact.DependencyArtifactsVisitor;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.DependencyGraphEdge;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.DependencyGraphNode;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.DependencyGraphVisitor;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.oldresult.ResolvedConfigurationBuilder;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.oldresult.ResolvedGraphResults;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.result.ComponentIdentifierSerializer;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.result.InternalDependencyResult;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.result.InternalDependencyResultSerializer;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.result.ModuleVersionSelection;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.result.ModuleVersionSelectionSerializer;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.result.ResolutionResultBuilder;
+import org.gradle.api.internal.artifacts.metadata.ModuleVersionArtifactIdentifierSerializer;
+import org.gradle.internal.UncheckedException;
+import org.gradle.internal.component.external.model.DefaultModuleComponentArtifactIdentifier;
+import org.gradle.internal.component.external.model.ModuleComponentArtifactMetaData;
+import org.gradle.internal.component.model.ComponentArtifactMetaData;
+import org.gradle.internal.component.model.ModuleSource;
+import org.gradle.internal.serialize.DefaultSerializer;
+import org.gradle.internal.serialize.Encoder;
+import org.gradle.internal.serialize.kryo.KryoBackedEncoder;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Records the results of resolving the graph of a configuration, so that they can be replayed by a {@link ResolutionResultsReplayer} instead of
+ * resolving the graph again.
+ *
+ * <p>The recorder wraps the builders of the results and records each call made to them, in order, in a single stream. It is also added as a
+ * visitor of the graph, so that it can notice anything that makes the result depend on more than the inputs of the configuration, such as changing
+ * modules, dynamic versions or failures. When it does, it stops recording.</p>
+ */
+public class ResolutionResultsRecorder implements DependencyGraphVisitor {
+    static final byte ROOT = 1;
+    static final byte MODULE = 2;
+    static final byte DEPENDENCIES = 3;
+    static final byte NODE = 4;
+    static final byte FIRST_LEVEL_DEPENDENCY = 5;
+    static final byte GRAPH_DONE = 6;
+    static final byte ARTIFACTS = 7;
+    static final byte ARTIFACTS_DONE = 8;
+    static final byte END = 9;
+
+    private final List<ModuleDependency> declaredDependencies;
+    private final ResolutionInputs inputs;
+    private final ByteArrayOutputStream output = new ByteArrayOutputStream();
+    private final KryoBackedEncoder encoder = new KryoBackedEncoder(output);
+    private final Set<Long> recordedArtifactSets = new HashSet<Long>();
+    private final ModuleVersionIdentifierSerializer moduleVersionIdentifierSerializer = new ModuleVersionIdentifierSerializer();
+    private final ComponentIdentifierSerializer componentIdentifierSerializer = new ComponentIdentifierSerializer();
+    private final ModuleVersionSelectionSerializer moduleVersionSelectionSerializer = new ModuleVersionSelectionSerializer();
+    private final InternalDependencyResultSerializer internalDependencyResultSerializer = new InternalDependencyResultSerializer();
+    private final ResolvedConfigurationIdentifierSerializer resolvedConfigurationIdentifierSerializer = new ResolvedConfigurationIdentifierSerializer();
+    private final ModuleVersionArtifactIdentifierSerializer artifactIdentifierSerializer = new ModuleVersionArtifactIdentifierSerializer();
+    private final DefaultSerializer<ModuleSource> moduleSourceSerializer = new DefaultSerializer<ModuleSource>(ModuleSource.class.getClassLoader());
+    private DependencyGraphNode root;
+    private String notCacheableReason;
+
+    ResolutionResultsRecorder(Collection<? extends ModuleDependency> declaredDependencies, ResolutionInputs inputs) {
+        this.declaredDependencies = new ArrayList<ModuleDependency>(declaredDependencies);
+        this.inputs = inputs;
+    }
+
+    public ResolutionResultBuilder recordNewModel(ResolutionResultBuilder builder) {
+        return new RecordingResolutionResultBuilder(builder);
+    }
+
+    public ResolvedConfigurationBuilder recordOldModel(ResolvedConfigurationBuilder builder) {
+        return new RecordingResolvedConfigurationBuilder(builder);
+    }
+
+    public DependencyArtifactsVisitor recordArtifacts(DependencyArtifactsVisitor visitor) {
+        return new RecordingArtifactsVisitor(visitor);
+    }
+
+    public boolean isCacheable() {
+        return notCacheableReason == null;
+    }
+
+    @Nullable
+    public String getNotCacheableReason() {
+        return notCacheableReason;
+    }
+
+    /**
+     * Returns the recorded results. Should only be called when the results are cacheable.
+     */
+    public byte[] getRecordedResults() {
+        record(new RecordAction() {
+            public void write(Encoder encoder) throws Exception {
+                encoder.writeByte(END);
+            }
+        });
+        encoder.flush();
+        return output.toByteArray();
+    }
+
+    @Override
+    public void start(DependencyGraphNode root) {
+        this.root = root;
+    }
+
+    @Override
+    public void visitNode(DependencyGraphNode node) {
+        if (node != root) {
+            ComponentIdentifier componentId = node.getComponentId();
+            if (!(componentId instanceof ModuleComponentIdentifier)) {
+                notCacheable(String.format("%s is not an external module", componentId.getDisplayName()));
+            } else if (node.getMetaData().getComponent().isChanging()) {
+                notCacheable(String.format("%s is changing", componentId.getDisplayName()));
+            }
+        }
+        for (DependencyGraphEdge dependency : node.getOutgoingEdges()) {
+            ModuleVersionSelector requested = dependency.getRequestedModuleVersion();
+            if (dependency.getFailure() != null) {
+                notCacheable(String.format("%s could not be resolved", display(requested)));
+            } else if (inputs.isDynamic(requested.getVersion())) {
+                notCacheable(String.format("%s has a dynamic version", display(requested)));
+            }
+        }
+    }
+
+    @Override
+    public void visitEdge(DependencyGraphNode node) {
+    }
+
+    @Override
+    public void finish(DependencyGraphNode root) {
+    }
+
+    private void notCacheable(String reason) {
+        if (notCacheableReason == null) {
+            notCacheableReason = reason;
+            // The recorded results will never be used
+            output.reset();
+        }
+    }
+
+    private void record(RecordAction action) {
+        if (notCacheableReason != null) {
+            return;
+        }
+        try {
+            action.write(encoder);
+        } catch (Exception e) {
+            throw UncheckedException.throwAsUncheckedException(e);
+        }
+    }
+
+    private static String display(ModuleVersionSelector selector) {
+        return String.format("%s:%s:%s", selector.getGroup(), selector.getName(), selector.getVersion());
+    }
+
+    private interface RecordAction {
+        void write(Encoder encoder) throws Exception;
+    }
+
+    private class RecordingResolutionResultBuilder implements ResolutionResultBuilder {
+        private final ResolutionResultBuilder delegate;
+
+        RecordingResolutionResultBuilder(ResolutionResultBuilder delegate) {
+            this.delegate = delegate;
+        }
+
+        public ResolutionResultBuilder start(final ModuleVersionIdentifier root, final ComponentIdentifier componentIdentifier) {
+            record(new RecordAction() {
+                public void write(Encoder encoder) throws Exception {
+                    encoder.writeByte(ROOT);
+                    moduleVersionIdentifierSerializer.write(encoder, root);
+                    componentIdentifierSerializer.write(encoder, componentIdentifier);
+                }
+            });
+            delegate.start(root, componentIdentifier);
+            return this;
+        }
+
+        public void resolvedModuleVersion(final ModuleVersionSelection moduleVersion) {
+            record(new RecordAction() {
+                public void write(Encoder encoder) throws Exception {
+                    encoder.writeByte(MODULE);
+                    moduleVersionSelectionSerializer.write(encoder, moduleVersion);
+                }
+            });
+            delegate.resolvedModuleVersion(moduleVersion);
+        }
+
+        public void resolvedConfiguration(final ModuleVersionIdentifier id, final Collection<? extends InternalDependencyResult> dependencies) {
+            for (InternalDependencyResult dependency : dependencies) {
+                if (dependency.getFailure() != null) {
+                    notCacheable(String.format("%s could not be resolved", dependency.getRequested().getDisplayName()));
+                }
+            }
+            record(new RecordAction() {
+                public void write(Encoder encoder) throws Exception {
+                    encoder.writeByte(DEPENDENCIES);
+                    moduleVersionIdentifierSerializer.write(encoder, id);
+                    encoder.writeSmallInt(dependencies.size());
+                    for (InternalDependencyResult dependency : dependencies) {
+                        internalDependencyResultSerializer.write(encoder, dependency);
+                    }
+                }
+            });
+            delegate.resolvedConfiguration(id, dependencies);
+        }
+
+        public ResolutionResult complete() {
+            return delegate.complete();
+        }
+    }
+
+    private class RecordingResolvedConfigurationBuilder implements ResolvedConfigurationBuilder {
+        private final ResolvedConfigurationBuilder delegate;
+
+        RecordingResolvedConfigurationBuilder(ResolvedConfigurationBuilder delegate) {
+            this.delegate = delegate;
+        }
+
+        public void addFirstLevelDependency(ModuleDependency moduleDependency, final ResolvedConfigurationIdentifier dependency) {
+            final int index = indexOf(moduleDependency);
+            if (index < 0) {
+                notCacheable(String.format("%s is not declared by the configuration", dependency));
+            }
+            record(new RecordAction() {
+                public void write(Encoder encoder) throws Exception {
+                    encoder.writeByte(FIRST_LEVEL_DEPENDENCY);
+                    encoder.writeSmallInt(index);
+                    resolvedConfigurationIdentifierSerializer.write(encoder, dependency);
+                }
+            });
+            delegate.addFirstLevelDependency(moduleDependency, dependency);
+        }
+
+        private int indexOf(ModuleDependency moduleDependency) {
+            for (int i = 0; i < declaredDependencies.size(); i++) {
+                if (declaredDependencies.get(i) == moduleDependency) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        public void addUnresolvedDependency(UnresolvedDependency unresolvedDependency) {
+            notCacheable(String.format("%s could not be resolved", display(unresolvedDependency.getSelector())));
+            delegate.addUnresolvedDependency(unresolvedDependency);
+        }
+
+        public void addChild(ResolvedConfigurationIdentifier parent, ResolvedConfigurationIdentifier child, long artifactsId) {
+            // Replayed from the artifacts
+            delegate.addChild(parent, child, artifactsId);
+        }
+
+        public void newResolvedDependency(final ResolvedConfigurationIdentifier id) {
+            record(new RecordAction() {
+                public void write(Encoder encoder) throws Exception {
+                    encoder.writeByte(NODE);
+                    resolvedConfigurationIdentifierSerializer.write(encoder, id);
+                }
+            });
+            delegate.newResolvedDependency(id);
+        }
+
+        public void done(final ResolvedConfigurationIdentifier root) {
+            record(new RecordAction() {
+                public void write(Encoder encoder) throws Exception {
+                    encoder.writeByte(GRAPH_DONE);
+                    resolvedConfigurationIdentifierSerializer.write(encoder, root);
+                }
+            });
+            delegate.done(root);
+        }
+
+        public ResolvedGraphResults complete() {
+            return delegate.complete();
+        }
+    }
+
+    private class RecordingArtifactsVisitor implements DependencyArtifactsVisitor {
+        private final DependencyArtifactsVisitor delegate;
+
+        RecordingArtifactsVisitor(DependencyArtifactsVisitor delegate) {
+            this.delegate = delegate;
+        }
+
+        public void visitArtifacts(final ResolvedConfigurationIdentifier parent, final ResolvedConfigurationIdentifier child, ArtifactSet artifacts) {
+            final long id = artifacts.getId();
+            final boolean firstVisit = recordedArtifactSets.add(id);
+            final DefaultArtifactSet artifactSet = firstVisit ? asRecordable(artifacts) : null;
+            record(new RecordAction() {
+                public void write(Encoder encoder) throws Exception {
+                    encoder.writeByte(ARTIFACTS);
+                    resolvedConfigurationIdentifierSerializer.write(encoder, parent);
+                    resolvedConfigurationIdentifierSerializer.write(encoder, child);
+                    encoder.writeLong(id);
+                    encoder.writeBoolean(firstVisit);
+                    if (firstVisit) {
+                        moduleVersionIdentifierSerializer.write(encoder, artifactSet.getOwnerId());
+                        ModuleSource moduleSource = artifactSet.getModuleSource();
+                        encoder.writeBoolean(moduleSource != null);
+                        if (moduleSource != null) {
+                            moduleSourceSerializer.write(encoder, moduleSource);
+                        }
+                        Set<ComponentArtifactMetaData> selectedArtifacts = artifactSet.getSelectedArtifacts();
+                        encoder.writeSmallInt(selectedArtifacts.size());
+                        for (ComponentArtifactMetaData artifact : selectedArtifacts) {
+                            artifactIdentifierSerializer.write(encoder, ((ModuleComponentArtifactMetaData) artifact).getId());
+                        }
+                    }
+                }
+            });
+            delegate.visitArtifacts(parent, child, artifacts);
+        }
+
+        @Nullable
+        private DefaultArtifactSet asRecordable(ArtifactSet artifacts) {
+            if (!(artifacts instanceof DefaultArtifactSet)) {
+                notCacheable(String.format("artifacts %s cannot be cached", artifacts));
+                return null;
+            }
+            DefaultArtifactSet artifactSet = (DefaultArtifactSet) artifacts;
+            for (ComponentArtifactMetaData artifact : artifactSet.getSelectedArtifacts()) {
+                if (!(artifact instanceof ModuleComponentArtifactMetaData) || !(artifact.getId() instanceof DefaultModuleComponentArtifactIdentifier)) {
+                    notCacheable(String.format("artifact %s cannot be cached", artifact));
+                    return null;
+                }
+            }
+            return artifactSet;
+        }
+
+        public void finishArtifacts() {
+            record(new RecordAction() {
+                public void write(Encoder encoder) throws Exception {
+                    encoder.writeByte(ARTIFACTS_DONE);
+                }
+            });
+            delegate.finishArtifacts();
+        }
+    }
+}
@@ -0,0 +1,161 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.artifacts.ivyservice.resolveengine.store;
+
+import com.google.common.collect.Maps;
+import org.gradle.api.artifacts.ModuleDependency;
+import org.gradle.api.artifacts.ModuleVersionIdentifier;
+import org.gradle.api.artifacts.ResolvedArtifact;
+import org.gradle.api.artifacts.component.ComponentArtifactIdentifier;
+import org.gradle.api.artifacts.component.ComponentSelector;
+import org.gradle.api.internal.artifacts.ModuleVersionIdentifierSerializer;
+import org.gradle.api.internal.artifacts.ResolvedConfigurationIdentifier;
+import org.gradle.api.internal.artifacts.ResolvedConfigurationIdentifierSerializer;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.DefaultModuleResolutionFilter;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.artifact.ArtifactSet;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.artifact.DefaultArtifactSet;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.artifact.DependencyArtifactsVisitor;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.oldresult.ResolvedConfigurationBuilder;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.result.ComponentIdentifierSerializer;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.result.InternalDependencyResult;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.result.InternalDependencyResultSerializer;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.result.ModuleVersionSelectionSerializer;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.result.ResolutionResultBuilder;
+import org.gradle.api.internal.artifacts.metadata.ModuleVersionArtifactIdentifierSerializer;
+import org.gradle.internal.UncheckedException;
+import org.gradle.internal.component.external.model.DefaultModuleComponentArtifactMetaData;
+import org.gradle.internal.component.model.ComponentArtifactMetaData;
+import org.gradle.internal.component.model.ModuleSource;
+import org.gradle.internal.resolve.ModuleVersionResolveException;
+import org.gradle.internal.resolve.resolver.ArtifactResolver;
+import org.gradle.internal.serialize.Decoder;
+import org.gradle.internal.serialize.DefaultSerializer;
+import org.gradle.internal.serialize.kryo.KryoBackedDecoder;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.gradle.api.internal.artifacts.ivyservice.resolveengine.store.ResolutionResultsRecorder.*;
+
+/**
+ * Replays the results recorded by a {@link ResolutionResultsRecorder} into the builders of the results, in the same order as they were made while
+ * resolving the graph.
+ */
+public class ResolutionResultsReplayer {
+    private final List<ModuleDependency> declaredDependencies;
+    private final ArtifactResolver artifactResolver;
+    private final ModuleVersionIdentifierSerializer moduleVersionIdentifierSerializer = new ModuleVersionIdentifierSerializer();
+    private final ComponentIdentifierSerializer componentIdentifierSerializer = new ComponentIdentifierSerializer();
+    private final ModuleVersionSelectionSerializer moduleVersionSelectionSerializer = new ModuleVersionSelectionSerializer();
+    private final InternalDependencyResultSerializer internalDependencyResultSerializer = new InternalDependencyResultSerializer();
+    private final ResolvedConfigurationIdentifierSerializer resolvedConfigurationIdentifierSerializer = new ResolvedConfigurationIdentifierSerializer();
+    private final ModuleVersionArtifactIdentifierSerializer artifactIdentifierSerializer = new ModuleVersionArtifactIdentifierSerializer();
+    private final DefaultSerializer<ModuleSource> moduleSourceSerializer = new DefaultSerializer<ModuleSource>(ModuleSource.class.getClassLoader());
+
+    /**
+     * @param declaredDependencies The dependencies of the configuration, in the same order as when the results were recorded.
+     * @param artifactResolver The resolver to use for the artifacts of the replayed components.
+     */
+    public ResolutionResultsReplayer(Collection<? extends ModuleDependency> declaredDependencies, ArtifactResolver artifactResolver) {
+        this.declaredDependencies = new ArrayList<ModuleDependency>(declaredDependencies);
+        this.artifactResolver = artifactResolver;
+    }
+
+    public void replay(byte[] results, ResolutionResultBuilder newModelBuilder, ResolvedConfigurationBuilder oldModelBuilder, DependencyArtifactsVisitor artifactsVisitor) {
+        Decoder decoder = new KryoBackedDecoder(new ByteArrayInputStream(results));
+        try {
+            replay(decoder, newModelBuilder, oldModelBuilder, artifactsVisitor);
+        } catch (Exception e) {
+            throw UncheckedException.throwAsUncheckedException(e);
+        }
+    }
+
+    private void replay(Decoder decoder, ResolutionResultBuilder newModelBuilder, ResolvedConfigurationBuilder oldModelBuilder, DependencyArtifactsVisitor artifactsVisitor) throws Exception {
+        Map<ComponentSelector, ModuleVersionResolveException> noFailures = Collections.emptyMap();
+        Map<Long, ArtifactSet> artifactSets = Maps.newHashMap();
+        Map<ComponentArtifactIdentifier, ResolvedArtifact> allResolvedArtifacts = Maps.newHashMap();
+        while (true) {
+            byte type = decoder.readByte();
+            switch (type) {
+                case ROOT:
+                    newModelBuilder.start(moduleVersionIdentifierSerializer.read(decoder), componentIdentifierSerializer.read(decoder));
+                    break;
+                case MODULE:
+                    newModelBuilder.resolvedModuleVersion(moduleVersionSelectionSerializer.read(decoder));
+                    break;
+                case DEPENDENCIES:
+                    ModuleVersionIdentifier from = moduleVersionIdentifierSerializer.read(decoder);
+                    int size = decoder.readSmallInt();
+                    List<InternalDependencyResult> dependencies = new ArrayList<InternalDependencyResult>(size);
+                    for (int i = 0; i < size; i++) {
+                        dependencies.add(internalDependencyResultSerializer.read(decoder, noFailures));
+                    }
+                    newModelBuilder.resolvedConfiguration(from, dependencies);
+                    break;
+                case NODE:
+                    oldModelBuilder.newResolvedDependency(resolvedConfigurationIdentifierSerializer.read(decoder));
+                    break;
+                case FIRST_LEVEL_DEPENDENCY:
+                    ModuleDependency moduleDependency = declaredDependencies.get(decoder.readSmallInt());
+                    oldModelBuilder.addFirstLevelDependency(moduleDependency, resolvedConfigurationIdentifierSerializer.read(decoder));
+                    break;
+                case GRAPH_DONE:
+                    oldModelBuilder.done(resolvedConfigurationIdentifierSerializer.read(decoder));
+                    break;
+                case ARTIFACTS:
+                    ResolvedConfigurationIdentifier parent = resolvedConfigurationIdentifierSerializer.read(decoder);
+                    ResolvedConfigurationIdentifier child = resolvedConfigurationIdentifierSerializer.read(decoder);
+                    long id = decoder.readLong();
+                    if (decoder.readBoolean()) {
+                        artifactSets.put(id, readArtifactSet(decoder, id, allResolvedArtifacts));
+                    }
+                    ArtifactSet artifactSet = artifactSets.get(id);
+                    if (artifactSet == null) {
+                        throw new IOException("Unknown artifact set: " + id);
+                    }
+                    artifactsVisitor.visitArtifacts(parent, child, artifactSet);
+                    break;
+                case ARTIFACTS_DONE:
+                    artifactsVisitor.finishArtifacts();
+                    break;
+                case END:
+                    return;
+                default:
+                    throw new IOException("Unknown value type read from stream: " + type);
+            }
+        }
+    }
+
+    private ArtifactSet readArtifactSet(Decoder decoder, long id, Map<ComponentArtifactIdentifier, ResolvedArtifact> allResolvedArtifacts) throws Exception {
+        ModuleVersionIdentifier ownerId = moduleVersionIdentifierSerializer.read(decoder);
+        ModuleSource moduleSource = decoder.readBoolean() ? moduleSourceSerializer.read(decoder) : null;
+        int size = decoder.readSmallInt();
+        Set<ComponentArtifactMetaData> artifacts = new LinkedHashSet<ComponentArtifactMetaData>(size);
+        for (int i = 0; i < size; i++) {
+            artifacts.add(new DefaultModuleComponentArtifactMetaData(artifactIdentifierSerializer.read(decoder)));
+        }
+        // The artifacts were already selected when they were recorded
+        return new DefaultArtifactSet(ownerId, moduleSource, DefaultModuleResolutionFilter.all(), artifacts, artifactResolver, allResolvedArtifacts, id);
+    }
+}
@@ -0,0 +1,254 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.artifacts.ivyservice.resolveengine.store;
+
+import org.gradle.api.Nullable;
+import org.gradle.api.artifacts.ModuleDependency;
+import org.gradle.api.artifacts.ModuleIdentifier;
+import org.gradle.api.artifacts.ModuleVersionIdentifier;
+import org.gradle.api.artifacts.UnresolvedDependency;
+import org.gradle.api.artifacts.component.ComponentIdentifier;
+import org.gradle.api.artifacts.result.ResolutionResult;
+import org.gradle.api.internal.artifacts.DefaultModuleVersionIdentifier;
+import org.gradle.api.internal.artifacts.DefaultResolverResults;
+import org.gradle.api.internal.artifacts.GlobalDependencyResolutionRules;
+import org.gradle.api.internal.artifacts.ResolvedConfigurationIdentifier;
+import org.gradle.api.internal.artifacts.component.DefaultComponentIdentifierFactory;
+import org.gradle.api.internal.artifacts.configurations.ConfigurationInternal;
+import org.gradle.api.internal.artifacts.ivyservice.ivyresolve.strategy.VersionSelectorScheme;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.artifact.ResolvedArtifactsBuilder;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.oldresult.ResolvedGraphResults;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.oldresult.TransientConfigurationResultsBuilder;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.projectresult.DefaultResolvedLocalComponentsResultBuilder;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.result.InternalDependencyResult;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.result.ModuleVersionSelection;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.result.ResolutionResultBuilder;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.result.StreamingResolutionResultBuilder;
+import org.gradle.api.internal.artifacts.repositories.ResolutionAwareRepository;
+import org.gradle.api.logging.Logger;
+import org.gradle.api.logging.Logging;
+import org.gradle.internal.concurrent.Stoppable;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Shares the results of resolving the graph of a configuration with the other configurations of the build that have the same graph inputs, so
+ * that the graph is resolved and its results are written to the binary stores only once. A configuration that shares the results of another
+ * configuration sees the same graph, with its own root in place of the root of the other configuration.
+ *
+ * <p>Only the results of configurations whose results depend only on their inputs are shared, as for the {@link ResolutionResultsCache}. The
+ * number of configurations that shared the results of another configuration is logged at info level at the end of the build.</p>
+ */
+public class SharedResolutionResults implements Stoppable {
+    public static final String SHARE_RESULTS_TOGGLE = "org.gradle.resolution.shareResults";
+    private static final Logger LOGGER = Logging.getLogger(SharedResolutionResults.class);
+
+    private final ResolutionInputs resolutionInputs;
+    private final boolean enabled;
+    private final ConcurrentMap<List<String>, SharedResult> sharedResults = new ConcurrentHashMap<List<String>, SharedResult>();
+    private final AtomicInteger sharedCount = new AtomicInteger();
+
+    /**
+     * @param enabled Whether results are shared. When false, no results are shared.
+     */
+    public SharedResolutionResults(VersionSelectorScheme versionSelectorScheme, boolean enabled) {
+        this.resolutionInputs = new ResolutionInputs(versionSelectorScheme);
+        this.enabled = enabled;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Returns the inputs of resolving the graph of the given configuration, or null when its results cannot be shared.
+     */
+    @Nullable
+    public List<String> getInputs(ConfigurationInternal configuration, List<? extends ResolutionAwareRepository> repositories, GlobalDependencyResolutionRules metadataHandler) {
+        if (resolutionInputs.notCacheableReason(configuration, repositories, metadataHandler) != null) {
+            return null;
+        }
+        return resolutionInputs.collectGraphInputs(configuration, repositories);
+    }
+
+    /**
+     * Attaches the results of another configuration with the same graph inputs to the results of the given configuration, when there are any.
+     *
+     * @return true when results were attached.
+     */
+    public boolean share(ConfigurationInternal configuration, List<String> inputs, StoreSet stores, DefaultResolverResults results) {
+        SharedResult sharedResult = sharedResults.get(inputs);
+        if (sharedResult == null) {
+            return false;
+        }
+        ModuleVersionIdentifier root = DefaultModuleVersionIdentifier.newId(configuration.getModule());
+        if (sharedResult.modules.contains(root.getModule())) {
+            LOGGER.info("Resolution result of {} is not shared with {} as its graph contains {}.", configuration, sharedResult.configuration, root.getModule());
+            return false;
+        }
+        LOGGER.info("Sharing resolution result of {} with {}.", configuration, sharedResult.configuration);
+        sharedResult.attach(configuration, root, stores, results);
+        sharedCount.incrementAndGet();
+        return true;
+    }
+
+    /**
+     * Wraps the given builder, to collect what is needed to share the results it builds.
+     */
+    public SharedResultBuilder createBuilder(ResolutionResultBuilder builder) {
+        return new SharedResultBuilder(builder);
+    }
+
+    /**
+     * Makes the results of the given configuration available to the configurations with the same graph inputs. Should only be called once the
+     * results are complete.
+     */
+    public void add(ConfigurationInternal configuration, List<String> inputs, SharedResultBuilder builder, StreamingResolutionResultBuilder newModelBuilder,
+                    TransientConfigurationResultsBuilder oldModelBuilder, ResolvedGraphResults graphResults, ResolvedArtifactsBuilder artifactsBuilder) {
+        if (!builder.shareable || graphResults.hasError()) {
+            return;
+        }
+        List<ModuleDependency> declaredDependencies = new ArrayList<ModuleDependency>(declaredDependencies(configuration));
+        sharedResults.putIfAbsent(inputs, new SharedResult(configuration.toString(), declaredDependencies, builder.modules, newModelBuilder, oldModelBuilder, graphResults, artifactsBuilder));
+    }
+
+    public void stop() {
+        if (sharedCount.get() > 0) {
+            LOGGER.info("{} configurations shared the resolution result of another configuration instead of being resolved.", sharedCount.get());
+        }
+        sharedResults.clear();
+    }
+
+    private static Collection<ModuleDependency> declaredDependencies(ConfigurationInternal configuration) {
+        return configuration.getAllDependencies().withType(ModuleDependency.class);
+    }
+
+    /**
+     * Collects the modules of the graph other than its root, and whether the root of the graph can be replaced by the root of another configuration.
+     */
+    public static class SharedResultBuilder implements ResolutionResultBuilder {
+        private final ResolutionResultBuilder delegate;
+        private final Set<ModuleIdentifier> modules = new HashSet<ModuleIdentifier>();
+        private ModuleVersionIdentifier root;
+        private boolean shareable = true;
+
+        SharedResultBuilder(ResolutionResultBuilder delegate) {
+            this.delegate = delegate;
+        }
+
+        public ResolutionResultBuilder start(ModuleVersionIdentifier root, ComponentIdentifier componentIdentifier) {
+            this.root = root;
+            delegate.start(root, componentIdentifier);
+            return this;
+        }
+
+        public void resolvedModuleVersion(ModuleVersionSelection moduleVersion) {
+            if (!moduleVersion.getId().equals(root)) {
+                modules.add(moduleVersion.getId().getModule());
+            }
+            delegate.resolvedModuleVersion(moduleVersion);
+        }
+
+        public void resolvedConfiguration(ModuleVersionIdentifier id, Collection<? extends InternalDependencyResult> dependencies) {
+            for (InternalDependencyResult dependency : dependencies) {
+                if (dependency.getFailure() != null || root.equals(dependency.getSelected())) {
+                    shareable = false;
+                }
+            }
+            delegate.resolvedConfiguration(id, dependencies);
+        }
+
+        public ResolutionResult complete() {
+            return delegate.complete();
+        }
+    }
+
+    private static class SharedResult {
+        private final String configuration;
+        private final List<ModuleDependency> declaredDependencies;
+        private final Set<ModuleIdentifier> modules;
+        private final StreamingResolutionResultBuilder newModelBuilder;
+        private final TransientConfigurationResultsBuilder oldModelBuilder;
+        private final ResolvedGraphResults graphResults;
+        private final ResolvedArtifactsBuilder artifactsBuilder;
+
+        SharedResult(String configuration, List<ModuleDependency> declaredDependencies, Set<ModuleIdentifier> modules, StreamingResolutionResultBuilder newModelBuilder,
+                     TransientConfigurationResultsBuilder oldModelBuilder, ResolvedGraphResults graphResults, ResolvedArtifactsBuilder artifactsBuilder) {
+            this.configuration = configuration;
+            this.declaredDependencies = declaredDependencies;
+            this.modules = modules;
+            this.newModelBuilder = newModelBuilder;
+            this.oldModelBuilder = oldModelBuilder;
+            this.graphResults = graphResults;
+            this.artifactsBuilder = artifactsBuilder;
+        }
+
+        void attach(ConfigurationInternal configuration, ModuleVersionIdentifier root, StoreSet stores, DefaultResolverResults results) {
+            ComponentIdentifier componentIdentifier = new DefaultComponentIdentifierFactory().createComponentIdentifier(configuration.getModule());
+            ResolutionResult resolutionResult = newModelBuilder.share(root, componentIdentifier, stores.newModelCache());
+            // Only external modules are shared, so there are no local components
+            results.resolved(resolutionResult, new DefaultResolvedLocalComponentsResultBuilder(false).complete());
+
+            ResolvedConfigurationIdentifier rootNode = new ResolvedConfigurationIdentifier(root, configuration.getName());
+            TransientConfigurationResultsBuilder transientResultsBuilder = oldModelBuilder.share(rootNode, stores.oldModelCache());
+            List<ModuleDependency> dependencies = new ArrayList<ModuleDependency>(declaredDependencies(configuration));
+            results.retainState(new SharedGraphResults(graphResults, declaredDependencies, dependencies), artifactsBuilder, transientResultsBuilder);
+        }
+    }
+
+    /**
+     * The graph results of a configuration, with the first level dependencies mapped to the dependencies of another configuration, declared in
+     * the same order.
+     */
+    private static class SharedGraphResults implements ResolvedGraphResults {
+        private final ResolvedGraphResults delegate;
+        private final List<ModuleDependency> sharedDependencies;
+        private final List<ModuleDependency> dependencies;
+
+        SharedGraphResults(ResolvedGraphResults delegate, List<ModuleDependency> sharedDependencies, List<ModuleDependency> dependencies) {
+            this.delegate = delegate;
+            this.sharedDependencies = sharedDependencies;
+            this.dependencies = dependencies;
+        }
+
+        public boolean hasError() {
+            return false;
+        }
+
+        public Set<UnresolvedDependency> getUnresolvedDependencies() {
+            return Collections.emptySet();
+        }
+
+        public ModuleDependency getModuleDependency(ResolvedConfigurationIdentifier id) {
+            ModuleDependency sharedDependency = delegate.getModuleDependency(id);
+            for (int i = 0; i < sharedDependencies.size(); i++) {
+                if (sharedDependencies.get(i) == sharedDependency) {
+                    return dependencies.get(i);
+                }
+            }
+            throw new IllegalStateException(String.format("Unexpected first level id %s.", id));
+        }
+    }
+}
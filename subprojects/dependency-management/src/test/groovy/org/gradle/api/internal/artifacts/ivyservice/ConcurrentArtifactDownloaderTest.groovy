@@ -0,0 +1,115 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.artifacts.ivyservice
+
+import org.gradle.api.artifacts.ResolvedModuleVersion
+import org.gradle.api.artifacts.component.ComponentArtifactIdentifier
+import org.gradle.api.internal.artifacts.DefaultResolvedArtifact
+import org.gradle.internal.Factory
+import org.gradle.internal.component.model.IvyArtifactName
+import org.gradle.internal.concurrent.DefaultExecutorFactory
+import spock.lang.Specification
+
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+
+class ConcurrentArtifactDownloaderTest extends Specification {
+    def cacheLockingManager = Mock(CacheLockingManager)
+    def downloader = new ConcurrentArtifactDownloader(new DefaultExecutorFactory(), cacheLockingManager, 4)
+
+    def cleanup() {
+        downloader.stop()
+    }
+
+    def "resolves files of artifacts concurrently with cache lock released"() {
+        def started = new CountDownLatch(3)
+        def artifacts = (1..3).collect { index ->
+            artifact {
+                started.countDown()
+                // Only completes when all artifacts are being resolved at the same time
+                assert started.await(20, TimeUnit.SECONDS)
+                new File("file" + index)
+            }
+        }
+
+        when:
+        downloader.download(artifacts)
+
+        then:
+        1 * cacheLockingManager.longRunningOperation("Download 3 artifacts", _ as Runnable) >> { String name, Runnable action -> action.run() }
+
+        and:
+        artifacts.every { it.resolved }
+        artifacts*.file == [new File("file1"), new File("file2"), new File("file3")]
+    }
+
+    def "does not resolve artifacts whose file is already resolved"() {
+        def resolved = artifact { new File("resolved") }
+        resolved.file
+        def unresolved = artifact { new File("unresolved") }
+
+        when:
+        downloader.download([resolved, unresolved])
+
+        then:
+        0 * cacheLockingManager._
+
+        and:
+        !unresolved.resolved
+    }
+
+    def "ignores failure to resolve artifact"() {
+        def failure = new RuntimeException("broken")
+        def broken = artifact { throw failure }
+        def ok = artifact { new File("ok") }
+
+        when:
+        downloader.download([broken, ok])
+
+        then:
+        1 * cacheLockingManager.longRunningOperation(_, _ as Runnable) >> { String name, Runnable action -> action.run() }
+
+        and:
+        ok.resolved
+        !broken.resolved
+
+        when:
+        broken.file
+
+        then:
+        def e = thrown(RuntimeException)
+        e == failure
+    }
+
+    def "does nothing when concurrent download is disabled"() {
+        def serialDownloader = new ConcurrentArtifactDownloader(new DefaultExecutorFactory(), cacheLockingManager, 1)
+        def artifacts = (1..3).collect { index -> artifact { new File("file" + index) } }
+
+        when:
+        serialDownloader.download(artifacts)
+
+        then:
+        0 * cacheLockingManager._
+
+        and:
+        artifacts.every { !it.resolved }
+    }
+
+    private DefaultResolvedArtifact artifact(Closure<File> source) {
+        return new DefaultResolvedArtifact(Stub(ResolvedModuleVersion), Stub(IvyArtifactName), Stub(ComponentArtifactIdentifier), source as Factory<File>)
+    }
+}
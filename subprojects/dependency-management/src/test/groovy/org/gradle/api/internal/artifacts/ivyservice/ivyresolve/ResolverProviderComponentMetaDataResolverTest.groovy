@@ -22,16 +22,23 @@ import org.gradle.api.artifacts.ModuleVersionIdentifier
 import org.gradle.api.artifacts.ModuleVersionSelector
 import org.gradle.api.internal.artifacts.DefaultModuleVersionIdentifier
 import org.gradle.api.internal.artifacts.DefaultModuleVersionSelector
+import org.gradle.api.internal.artifacts.ivyservice.CacheLockingManager
+import org.gradle.api.internal.artifacts.ivyservice.IvyContextManager
 import org.gradle.api.internal.artifacts.ivyservice.IvyUtil
+import org.gradle.internal.Factory
 import org.gradle.internal.component.external.model.DefaultModuleComponentIdentifier
 import org.gradle.internal.component.external.model.ModuleComponentResolveMetaData
 import org.gradle.internal.component.external.model.MutableModuleComponentResolveMetaData
 import org.gradle.internal.component.model.ComponentOverrideMetadata
 import org.gradle.internal.component.model.DependencyMetaData
+import org.gradle.internal.concurrent.DefaultExecutorFactory
 import org.gradle.internal.resolve.ModuleVersionResolveException
 import org.gradle.internal.resolve.result.BuildableComponentResolveResult
 import spock.lang.Specification
 
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+
 class ResolverProviderComponentMetaDataResolverTest extends Specification {
     final metaData = metaData("1.2")
     final moduleComponentId = DefaultModuleComponentIdentifier.newId("group", "project", "1.0")
@@ -48,6 +55,7 @@ class ResolverProviderComponentMetaDataResolverTest extends Specification {
 
     final VersionedComponentChooser componentSelectionStrategy = Mock(VersionedComponentChooser)
     final RepositoryChainComponentMetaDataResolver resolver = new RepositoryChainComponentMetaDataResolver(componentSelectionStrategy, transformer)
+    final List<ConcurrentRepositoryProber> probers = []
 
     ModuleVersionIdentifier moduleVersionIdentifier(ModuleDescriptor moduleDescriptor) {
         def moduleRevId = moduleDescriptor.moduleRevisionId
@@ -58,6 +66,10 @@ class ResolverProviderComponentMetaDataResolverTest extends Specification {
         _ * dependency.requested >> selector
     }
 
+    def cleanup() {
+        probers*.stop()
+    }
+
     def addRepo1() {
         addModuleComponentRepository("repo1", localAccess, remoteAccess)
     }
@@ -564,6 +576,125 @@ class ResolverProviderComponentMetaDataResolverTest extends Specification {
         0 * result._
     }
 
+    def "searches remote repositories at the same time and uses the first repository that provides the component"() {
+        given:
+        def parallelResolver = parallelResolver()
+        def repo1 = addRepo1()
+        def repo2 = addRepo2()
+        parallelResolver.add(repo1)
+        parallelResolver.add(repo2)
+        def otherMetaData = metaData("1.3")
+        def repo2Searched = new CountDownLatch(1)
+
+        when:
+        parallelResolver.resolve(moduleComponentId, componentRequestMetaData, result)
+
+        then:
+        1 * localAccess.resolveComponentMetaData(moduleComponentId, componentRequestMetaData, _)
+        1 * localAccess2.resolveComponentMetaData(moduleComponentId, componentRequestMetaData, _)
+        1 * remoteAccess.resolveComponentMetaData(moduleComponentId, componentRequestMetaData, _) >> { id, meta, result ->
+            // Only completes when both repositories are searched at the same time
+            assert repo2Searched.await(20, TimeUnit.SECONDS)
+            result.resolved(metaData)
+        }
+        1 * remoteAccess2.resolveComponentMetaData(moduleComponentId, componentRequestMetaData, _) >> { id, meta, result ->
+            repo2Searched.countDown()
+            result.resolved(otherMetaData)
+        }
+        1 * transformer.transform(_) >> { RepositoryChainModuleResolution it ->
+            assert it.module == metaData
+            assert it.repository == repo1
+            metaData
+        }
+        1 * result.resolved(_) >> { ModuleComponentResolveMetaData metaData ->
+            assert metaData == this.metaData
+        }
+        and:
+        0 * localAccess._
+        0 * remoteAccess._
+        0 * localAccess2._
+        0 * remoteAccess2._
+        0 * result._
+    }
+
+    def "uses local dependency from later repository when missing remotely from earlier repository when searching repositories at the same time"() {
+        given:
+        def parallelResolver = parallelResolver()
+        def repo1 = addRepo1()
+        def repo2 = addRepo2()
+        parallelResolver.add(repo1)
+        parallelResolver.add(repo2)
+
+        when:
+        parallelResolver.resolve(moduleComponentId, componentRequestMetaData, result)
+
+        then:
+        1 * localAccess.resolveComponentMetaData(moduleComponentId, componentRequestMetaData, _)
+        1 * localAccess2.resolveComponentMetaData(moduleComponentId, componentRequestMetaData, _) >> { id, meta, result ->
+            result.resolved(metaData)
+        }
+        1 * remoteAccess.resolveComponentMetaData(moduleComponentId, componentRequestMetaData, _) >> { id, meta, result ->
+            result.missing()
+        }
+        1 * transformer.transform(_) >> { RepositoryChainModuleResolution it ->
+            assert it.module == metaData
+            assert it.repository == repo2
+            metaData
+        }
+        1 * result.resolved(_) >> { ModuleComponentResolveMetaData metaData ->
+            assert metaData == this.metaData
+        }
+        and:
+        0 * localAccess._
+        0 * remoteAccess._
+        0 * localAccess2._
+        0 * remoteAccess2._
+        0 * result._
+    }
+
+    def "rethrows failures in repository order when not available in any repository when searching repositories at the same time"() {
+        given:
+        def failure1 = new ModuleVersionResolveException(Stub(ModuleVersionSelector), "broken 1")
+        def failure2 = new ModuleVersionResolveException(Stub(ModuleVersionSelector), "broken 2")
+        def parallelResolver = parallelResolver()
+        parallelResolver.add(addRepo1())
+        parallelResolver.add(addRepo2())
+
+        when:
+        parallelResolver.resolve(moduleComponentId, componentRequestMetaData, result)
+
+        then:
+        1 * localAccess.resolveComponentMetaData(moduleComponentId, componentRequestMetaData, _)
+        1 * localAccess2.resolveComponentMetaData(moduleComponentId, componentRequestMetaData, _)
+        1 * remoteAccess.resolveComponentMetaData(moduleComponentId, componentRequestMetaData, _) >> { id, meta, result ->
+            result.failed(failure1)
+        }
+        1 * remoteAccess2.resolveComponentMetaData(moduleComponentId, componentRequestMetaData, _) >> { id, meta, result ->
+            result.failed(failure2)
+        }
+        1 * result.failed({ it.causes == [failure1, failure2] })
+
+        and:
+        0 * localAccess._
+        0 * remoteAccess._
+        0 * localAccess2._
+        0 * remoteAccess2._
+        0 * result._
+    }
+
+    def parallelResolver() {
+        def cacheLockingManager = Stub(CacheLockingManager) {
+            longRunningOperation(_, _ as Factory) >> { String name, Factory action -> action.create() }
+            useCache(_, _ as Factory) >> { String name, Factory action -> action.create() }
+        }
+        def ivyContextManager = Stub(IvyContextManager) {
+            withIvy(_ as Transformer) >> { Transformer action -> action.transform(null) }
+        }
+        def prober = new ConcurrentRepositoryProber(new DefaultExecutorFactory(), cacheLockingManager, ivyContextManager)
+        probers << prober
+        return new RepositoryChainComponentMetaDataResolver(componentSelectionStrategy, transformer, prober)
+    }
+
     def descriptor(String version) {
         def descriptor = Stub(ModuleDescriptor)
         descriptor.resolvedModuleRevisionId >> IvyUtil.createModuleRevisionId("org", "module", version)
@@ -28,10 +28,12 @@ import org.gradle.api.internal.artifacts.DefaultModuleVersionSelector
 import org.gradle.api.internal.artifacts.configurations.ConfigurationInternal
 import org.gradle.api.internal.artifacts.dsl.ModuleReplacementsData
 import org.gradle.api.internal.artifacts.ivyservice.CacheLockingManager
+import org.gradle.api.internal.artifacts.ivyservice.ConcurrentArtifactDownloader
 import org.gradle.api.internal.artifacts.ivyservice.DefaultLenientConfiguration
 import org.gradle.api.internal.artifacts.ivyservice.resolveengine.artifact.DefaultResolvedArtifactsBuilder
 import org.gradle.api.internal.artifacts.ivyservice.resolveengine.artifact.ResolvedArtifactsGraphVisitor
 import org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.CompositeDependencyArtifactsVisitor
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.ComponentMetaDataPrefetcher
 import org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.CompositeDependencyGraphVisitor
 import org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.DependencyGraphBuilder
 import org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.conflicts.DefaultConflictHandler
@@ -108,7 +110,7 @@ class DependencyGraphBuilderTest extends Specification {
         def graphResults = modelBuilder.complete()
         def artifactResults = artifactsBuilder.resolve()
 
-        new DefaultLenientConfiguration(configuration, Stub(CacheLockingManager), graphResults.getUnresolvedDependencies(),
+        new DefaultLenientConfiguration(configuration, Stub(CacheLockingManager), Stub(ConcurrentArtifactDownloader), graphResults.getUnresolvedDependencies(),
                 artifactResults, new TransientConfigurationResultsLoader(transientConfigurationResultsBuilder, graphResults, artifactResults))
     }
 
@@ -940,6 +942,110 @@ class DependencyGraphBuilderTest extends Specification {
         modules(result) == ids(forced, b)
     }
 
+    def "prefetches meta-data for each level of the graph before traversing it"() {
+        given:
+        def prefetched = []
+        builder = prefetchingBuilder { fetches ->
+            prefetched << fetches.size()
+            fetches*.run()
+        }
+        def a = revision("a")
+        def b = revision("b")
+        def c = revision("c")
+        def d = revision("d")
+        traverses root, a
+        traverses root, b
+        traverses a, c
+        traverses b, d
+        doesNotResolve d, c
+
+        when:
+        def result = resolve()
+        result.rethrowFailure()
+
+        then:
+        modules(result) == ids(a, b, c, d)
+        // Dependencies of root, then dependencies of a and b
+        prefetched == [2, 2]
+    }
+
+    def "resolves conflicts in the same way when meta-data is prefetched"() {
+        given:
+        builder = prefetchingBuilder { fetches -> fetches*.run() }
+        def selected = revision('a', '1.2')
+        def evicted = revision('a', '1.1')
+        def b = revision('b')
+        def c = revision('c')
+        def d = revision('d')
+        traverses root, selected
+        traverses selected, c
+        traverses root, b
+        traverses b, d
+        def dependency = dependsOn(d, evicted.id)
+        selectorResolvesTo(dependency, evicted.componentId, evicted.id)
+        _ * metaDataResolver.resolve(evicted.componentId, _, _) >> { ComponentIdentifier id, ComponentOverrideMetadata requestMetaData, BuildableComponentResolveResult result ->
+            result.resolved(evicted)
+        }
+
+        when:
+        def result = resolve()
+        result.rethrowFailure()
+
+        then:
+        1 * conflictResolver.select(!null) >> {
+            Collection<ComponentResolutionState> candidates = it[0]
+            assert candidates*.version == ['1.2', '1.1']
+            return candidates.find { it.version == '1.2' }
+        }
+        0 * conflictResolver._
+
+        and:
+        modules(result) == ids(selected, b, c, d)
+    }
+
+    def "does not prefetch meta-data for excluded module"() {
+        given:
+        builder = prefetchingBuilder { fetches -> fetches*.run() }
+        def a = revision("a")
+        def b = revision("b")
+        def c = revision("c")
+        traverses root, a, exclude: c
+        traverses a, b
+        doesNotResolve b, c
+
+        when:
+        def result = resolve()
+        result.rethrowFailure()
+
+        then:
+        modules(result) == ids(a, b)
+    }
+
+    def "resolves dependency while traversing graph when prefetch fails"() {
+        given:
+        builder = prefetchingBuilder { fetches -> fetches*.run() }
+        def a = revision("a")
+        def dependency = dependsOn(root, a.id)
+        2 * idResolver.resolve(dependency, _) >> { throw new RuntimeException("broken") } >> { DependencyMetaData dep, BuildableComponentIdResolveResult result ->
+            result.resolved(a.componentId, a.id)
+        }
+        1 * metaDataResolver.resolve(a.componentId, _, _) >> { ComponentIdentifier id, ComponentOverrideMetadata requestMetaData, BuildableComponentResolveResult result ->
+            result.resolved(a)
+        }
+
+        when:
+        def result = resolve()
+        result.rethrowFailure()
+
+        then:
+        modules(result) == ids(a)
+    }
+
+    def prefetchingBuilder(Closure prefetch) {
+        return new DependencyGraphBuilder(idResolver, metaDataResolver, moduleResolver, dependencyToConfigurationResolver, new DefaultConflictHandler(conflictResolver, moduleReplacements),
+            prefetch as ComponentMetaDataPrefetcher)
+    }
+
     def revision(String name, String revision = '1.0') {
         // TODO Shouldn't really be using the local component implementation here
         def id = newId("group", name, revision)
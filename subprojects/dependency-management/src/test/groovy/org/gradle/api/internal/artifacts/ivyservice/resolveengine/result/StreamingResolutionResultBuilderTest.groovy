@@ -133,6 +133,26 @@ class StreamingResolutionResultBuilderTest extends Specification {
 """
     }
 
+    def "shares graph with another root"() {
+        builder.start(newId("org", "root", "1.0"), new DefaultModuleComponentIdentifier("org", "root", "1.0"))
+        builder.resolvedModuleVersion(sel("org", "root", "1.0", VersionSelectionReasons.ROOT))
+        builder.resolvedModuleVersion(sel("org", "dep1", "2.0", REQUESTED))
+        builder.resolvedConfiguration(newId("org", "root", "1.0"),
+                [new DefaultInternalDependencyResult(DefaultModuleComponentSelector.newSelector("org", "dep1", "2.0"), newId("org", "dep1", "2.0"), REQUESTED, null)])
+
+        when:
+        def result = builder.complete()
+        def shared = builder.share(newId("org", "other", "3.0"), new DefaultModuleComponentIdentifier("org", "other", "3.0"), new DummyStore())
+
+        then:
+        printGraph(shared.root) == """org:other:3.0
+  org:dep1:2.0 [other]
+"""
+        printGraph(result.root) == """org:root:1.0
+  org:dep1:2.0 [root]
+"""
+    }
+
     private DefaultModuleVersionSelection sel(String org, String name, String ver, ComponentSelectionReason reason) {
         new DefaultModuleVersionSelection(newId(org, name, ver), reason, new DefaultModuleComponentIdentifier(org, name, ver))
     }
@@ -0,0 +1,77 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.artifacts.ivyservice.resolveengine.store
+
+import org.gradle.api.internal.artifacts.ResolvedConfigurationIdentifier
+import org.gradle.internal.component.external.model.DefaultModuleComponentSelector
+import org.gradle.internal.component.local.model.DefaultProjectComponentSelector
+import org.gradle.internal.serialize.kryo.KryoBackedDecoder
+import org.gradle.internal.serialize.kryo.KryoBackedEncoder
+import spock.lang.Specification
+
+import static org.gradle.api.internal.artifacts.DefaultModuleVersionIdentifier.newId
+
+class DictionaryEncoderTest extends Specification {
+    def output = new ByteArrayOutputStream()
+    def encoder = new KryoBackedEncoder(output)
+    def dictionary = new DictionaryEncoder()
+
+    def "reads values in the order they were written"() {
+        def moduleVersion = newId("org", "dep", "1.0")
+        def configuration = new ResolvedConfigurationIdentifier(moduleVersion, "default")
+        def moduleSelector = DefaultModuleComponentSelector.newSelector("org", "dep", "1.0")
+        def projectSelector = new DefaultProjectComponentSelector(":a")
+
+        when:
+        dictionary.writeModuleVersionId(encoder, moduleVersion)
+        dictionary.writeResolvedConfigurationId(encoder, configuration)
+        dictionary.writeComponentSelector(encoder, moduleSelector)
+        dictionary.writeComponentSelector(encoder, projectSelector)
+        dictionary.writeModuleVersionId(encoder, newId("org", "other", "1.0"))
+        dictionary.writeResolvedConfigurationId(encoder, configuration)
+        dictionary.writeComponentSelector(encoder, moduleSelector)
+        dictionary.writeString(encoder, "org")
+        encoder.flush()
+
+        def decoder = new KryoBackedDecoder(new ByteArrayInputStream(output.toByteArray()))
+        def reader = new DictionaryDecoder()
+
+        then:
+        reader.readModuleVersionId(decoder) == moduleVersion
+        reader.readResolvedConfigurationId(decoder) == configuration
+        reader.readComponentSelector(decoder) == moduleSelector
+        reader.readComponentSelector(decoder) == projectSelector
+        reader.readModuleVersionId(decoder) == newId("org", "other", "1.0")
+        reader.readResolvedConfigurationId(decoder) == configuration
+        reader.readComponentSelector(decoder) == moduleSelector
+        reader.readString(decoder) == "org"
+    }
+
+    def "writes each value in full only once"() {
+        def moduleVersion = newId("org.gradle", "some-module", "1.0.0-SNAPSHOT")
+
+        when:
+        dictionary.writeModuleVersionId(encoder, moduleVersion)
+        encoder.flush()
+        def first = output.size()
+        dictionary.writeModuleVersionId(encoder, moduleVersion)
+        encoder.flush()
+
+        then:
+        output.size() - first == 1
+    }
+}
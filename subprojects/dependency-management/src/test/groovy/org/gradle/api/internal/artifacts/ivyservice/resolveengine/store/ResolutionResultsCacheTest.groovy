@@ -0,0 +1,111 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.artifacts.ivyservice.resolveengine.store
+
+import org.gradle.api.internal.artifacts.GlobalDependencyResolutionRules
+import org.gradle.api.internal.artifacts.ModuleInternal
+import org.gradle.api.internal.artifacts.configurations.ConfigurationInternal
+import org.gradle.api.internal.artifacts.ivyservice.CacheLockingManager
+import org.gradle.api.internal.artifacts.ivyservice.ivyresolve.ConfiguredModuleComponentRepository
+import org.gradle.api.internal.artifacts.ivyservice.ivyresolve.strategy.VersionSelectorScheme
+import org.gradle.api.internal.artifacts.repositories.ResolutionAwareRepository
+import org.gradle.cache.PersistentIndexedCache
+import org.gradle.internal.Factory
+import spock.lang.Specification
+
+class ResolutionResultsCacheTest extends Specification {
+    def entries = [:]
+    def persistentCache = Stub(PersistentIndexedCache) {
+        get(_) >> { String key -> entries[key] }
+        put(_, _) >> { String key, value -> entries[key] = value }
+    }
+    def cacheLockingManager = Stub(CacheLockingManager) {
+        createCache("resolution-results", _, _) >> persistentCache
+        useCache(_, _ as Factory) >> { String name, Factory action -> action.create() }
+        useCache(_, _ as Runnable) >> { String name, Runnable action -> action.run() }
+    }
+    def configuration = Stub(ConfigurationInternal) {
+        getPath() >> ":compile"
+        getModule() >> Stub(ModuleInternal) {
+            getGroup() >> "org"
+            getName() >> "app"
+        }
+    }
+    def cache = new ResolutionResultsCache(cacheLockingManager, Stub(VersionSelectorScheme), true)
+
+    def "reuses results stored with the same inputs"() {
+        def results = [1, 2, 3] as byte[]
+
+        when:
+        cache.store(configuration, ["a", "b"], results)
+
+        then:
+        cache.load(configuration, ["a", "b"]) == results
+    }
+
+    def "does not reuse results stored with different inputs"() {
+        when:
+        cache.store(configuration, ["a", "b"], [1, 2, 3] as byte[])
+
+        then:
+        cache.load(configuration, ["a", "c"]) == null
+        cache.load(configuration, ["a"]) == null
+    }
+
+    def "does not reuse results of another configuration"() {
+        def other = Stub(ConfigurationInternal) {
+            getPath() >> ":runtime"
+            getModule() >> configuration.module
+        }
+
+        when:
+        cache.store(configuration, ["a"], [1] as byte[])
+
+        then:
+        cache.load(other, ["a"]) == null
+    }
+
+    def "does not cache results resolved from a local repository"() {
+        def remote = Stub(ResolutionAwareRepository) {
+            createResolver() >> Stub(ConfiguredModuleComponentRepository) {
+                getName() >> "remote"
+            }
+        }
+        def local = Stub(ResolutionAwareRepository) {
+            createResolver() >> Stub(ConfiguredModuleComponentRepository) {
+                getName() >> "MavenLocal"
+                isLocal() >> true
+            }
+        }
+
+        expect:
+        cache.getInputs(configuration, [remote, local], Stub(GlobalDependencyResolutionRules)) == null
+    }
+
+    def "describes change to inputs"() {
+        expect:
+        ResolutionResultsCache.describeChange(previous, current) == change
+
+        where:
+        previous   | current    | change
+        ["a", "b"] | ["a", "b"] | null
+        ["a", "b"] | ["a", "c"] | "'b' has changed to 'c'"
+        ["a"]      | ["a", "b"] | "'b' has been added"
+        ["a", "b"] | ["a"]      | "'b' has been removed"
+        []         | []         | null
+    }
+}
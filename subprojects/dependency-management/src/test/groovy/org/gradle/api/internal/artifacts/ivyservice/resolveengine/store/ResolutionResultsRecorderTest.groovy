@@ -0,0 +1,196 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.artifacts.ivyservice.resolveengine.store
+
+import org.gradle.api.artifacts.ModuleDependency
+import org.gradle.api.artifacts.ModuleVersionSelector
+import org.gradle.api.artifacts.UnresolvedDependency
+import org.gradle.api.internal.artifacts.ResolvedConfigurationIdentifier
+import org.gradle.api.internal.artifacts.ivyservice.ivyresolve.strategy.DefaultVersionComparator
+import org.gradle.api.internal.artifacts.ivyservice.ivyresolve.strategy.DefaultVersionSelectorScheme
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.DefaultModuleResolutionFilter
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.artifact.ArtifactSet
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.artifact.DefaultArtifactSet
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.artifact.DependencyArtifactsVisitor
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.DependencyGraphEdge
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.DependencyGraphNode
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.oldresult.ResolvedConfigurationBuilder
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.result.DefaultInternalDependencyResult
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.result.DummyBinaryStore
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.result.DummyStore
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.result.ModuleVersionSelection
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.result.StreamingResolutionResultBuilder
+import org.gradle.internal.component.external.model.DefaultModuleComponentArtifactMetaData
+import org.gradle.internal.component.external.model.DefaultModuleComponentIdentifier
+import org.gradle.internal.component.external.model.DefaultModuleComponentSelector
+import org.gradle.internal.component.model.ComponentArtifactMetaData
+import org.gradle.internal.component.model.ComponentResolveMetaData
+import org.gradle.internal.component.model.ConfigurationMetaData
+import org.gradle.internal.component.model.DefaultIvyArtifactName
+import org.gradle.internal.resolve.resolver.ArtifactResolver
+import spock.lang.Specification
+
+import static org.gradle.api.internal.artifacts.DefaultModuleVersionIdentifier.newId
+import static org.gradle.api.internal.artifacts.DefaultModuleVersionSelector.newSelector
+import static org.gradle.api.internal.artifacts.ivyservice.resolveengine.result.ResolutionResultPrinter.printGraph
+import static org.gradle.api.internal.artifacts.ivyservice.resolveengine.result.VersionSelectionReasons.REQUESTED
+
+class ResolutionResultsRecorderTest extends Specification {
+    def dep1 = Stub(ModuleDependency)
+    def dep2 = Stub(ModuleDependency)
+    def inputs = new ResolutionInputs(new DefaultVersionSelectorScheme(new DefaultVersionComparator()))
+    def recorder = new ResolutionResultsRecorder([dep1, dep2], inputs)
+    def artifactResolver = Stub(ArtifactResolver)
+
+    def rootId = newId("org", "root", "1.0")
+    def depId = newId("org", "dep", "2.0")
+    def rootNode = new ResolvedConfigurationIdentifier(rootId, "compile")
+    def depNode = new ResolvedConfigurationIdentifier(depId, "default")
+
+    def "replays recorded results in the order they were recorded"() {
+        def artifact = new DefaultModuleComponentArtifactMetaData(DefaultModuleComponentIdentifier.newId("org", "dep", "2.0"), new DefaultIvyArtifactName("dep", "jar", "jar"))
+        def artifactSet = artifactSet(12, artifact)
+
+        given:
+        def newModel = recorder.recordNewModel(new StreamingResolutionResultBuilder(new DummyBinaryStore(), new DummyStore()))
+        def oldModel = recorder.recordOldModel(Stub(ResolvedConfigurationBuilder))
+        def artifacts = recorder.recordArtifacts(Stub(DependencyArtifactsVisitor))
+        newModel.start(rootId, DefaultModuleComponentIdentifier.newId("org", "root", "1.0"))
+        newModel.resolvedModuleVersion(Stub(ModuleVersionSelection) {
+            getId() >> depId
+            getSelectionReason() >> REQUESTED
+            getComponentId() >> DefaultModuleComponentIdentifier.newId("org", "dep", "2.0")
+        })
+        newModel.resolvedConfiguration(rootId, [new DefaultInternalDependencyResult(DefaultModuleComponentSelector.newSelector("org", "dep", "2.0"), depId, REQUESTED, null)])
+        oldModel.newResolvedDependency(rootNode)
+        oldModel.newResolvedDependency(depNode)
+        oldModel.addFirstLevelDependency(dep2, depNode)
+        artifacts.visitArtifacts(rootNode, depNode, artifactSet)
+        artifacts.visitArtifacts(depNode, depNode, artifactSet)
+        oldModel.done(rootNode)
+        artifacts.finishArtifacts()
+
+        def replayedNewModel = new StreamingResolutionResultBuilder(new DummyBinaryStore(), new DummyStore())
+        def replayedOldModel = Mock(ResolvedConfigurationBuilder)
+        def replayedArtifacts = Mock(DependencyArtifactsVisitor)
+        def replayedArtifactSet = null
+
+        expect:
+        recorder.cacheable
+
+        when:
+        new ResolutionResultsReplayer([dep1, dep2], artifactResolver).replay(recorder.recordedResults, replayedNewModel, replayedOldModel, replayedArtifacts)
+
+        then:
+        1 * replayedOldModel.newResolvedDependency(rootNode)
+
+        then:
+        1 * replayedOldModel.newResolvedDependency(depNode)
+
+        then:
+        1 * replayedOldModel.addFirstLevelDependency(dep2, depNode)
+
+        then:
+        1 * replayedArtifacts.visitArtifacts(rootNode, depNode, _) >> { parent, child, ArtifactSet set -> replayedArtifactSet = set }
+
+        then:
+        1 * replayedArtifacts.visitArtifacts(depNode, depNode, { it.is(replayedArtifactSet) })
+
+        then:
+        1 * replayedOldModel.done(rootNode)
+
+        then:
+        1 * replayedArtifacts.finishArtifacts()
+        0 * _
+
+        and:
+        printGraph(replayedNewModel.complete().root) == """org:root:1.0
+  org:dep:2.0 [root]
+"""
+        replayedArtifactSet.id == 12
+        replayedArtifactSet.ownerId == depId
+        replayedArtifactSet.selectedArtifacts*.id == [artifact.id]
+    }
+
+    def "does not record results when graph contains a changing module"() {
+        when:
+        recorder.start(node(rootId, false))
+        recorder.visitNode(node(depId, true))
+
+        then:
+        !recorder.cacheable
+        recorder.notCacheableReason == "org:dep:2.0 is changing"
+    }
+
+    def "does not record results when a dependency has a dynamic version"() {
+        def root = node(rootId, false, edge(newSelector("org", "dep", "2.+")))
+
+        when:
+        recorder.start(root)
+        recorder.visitNode(root)
+
+        then:
+        !recorder.cacheable
+        recorder.notCacheableReason == "org:dep:2.+ has a dynamic version"
+    }
+
+    def "does not record results when a dependency cannot be resolved"() {
+        def unresolved = Stub(UnresolvedDependency) {
+            getSelector() >> newSelector("org", "dep", "2.0")
+        }
+
+        when:
+        recorder.recordOldModel(Stub(ResolvedConfigurationBuilder)).addUnresolvedDependency(unresolved)
+
+        then:
+        !recorder.cacheable
+        recorder.notCacheableReason == "org:dep:2.0 could not be resolved"
+    }
+
+    def "does not record results for first level dependency not declared by configuration"() {
+        when:
+        recorder.recordOldModel(Stub(ResolvedConfigurationBuilder)).addFirstLevelDependency(Stub(ModuleDependency), depNode)
+
+        then:
+        !recorder.cacheable
+    }
+
+    private DefaultArtifactSet artifactSet(long id, ComponentArtifactMetaData... artifacts) {
+        return new DefaultArtifactSet(depId, null, DefaultModuleResolutionFilter.all(), artifacts as Set, artifactResolver, [:], id)
+    }
+
+    private DependencyGraphNode node(def id, boolean changing, DependencyGraphEdge... edges) {
+        def component = Stub(ComponentResolveMetaData) {
+            isChanging() >> changing
+        }
+        def metaData = Stub(ConfigurationMetaData) {
+            getComponent() >> component
+        }
+        return Stub(DependencyGraphNode) {
+            toId() >> id
+            getComponentId() >> DefaultModuleComponentIdentifier.newId(id.group, id.name, id.version)
+            getMetaData() >> metaData
+            getOutgoingEdges() >> (edges as Set)
+        }
+    }
+
+    private DependencyGraphEdge edge(ModuleVersionSelector requested) {
+        return Stub(DependencyGraphEdge) {
+            getRequestedModuleVersion() >> requested
+        }
+    }
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.artifacts.ivyservice.resolveengine.store
+
+import org.gradle.api.artifacts.DependencySet
+import org.gradle.api.artifacts.ModuleDependency
+import org.gradle.api.internal.artifacts.DefaultResolverResults
+import org.gradle.api.internal.artifacts.ModuleInternal
+import org.gradle.api.internal.artifacts.configurations.ConfigurationInternal
+import org.gradle.api.internal.artifacts.ivyservice.ivyresolve.strategy.VersionSelectorScheme
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.artifact.ResolvedArtifactsBuilder
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.oldresult.ResolvedGraphResults
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.oldresult.TransientConfigurationResultsBuilder
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.result.DefaultInternalDependencyResult
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.result.DummyBinaryStore
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.result.DummyStore
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.result.ModuleVersionSelection
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.result.StreamingResolutionResultBuilder
+import org.gradle.internal.component.external.model.DefaultModuleComponentIdentifier
+import org.gradle.internal.component.external.model.DefaultModuleComponentSelector
+import spock.lang.Specification
+
+import static org.gradle.api.internal.artifacts.DefaultModuleVersionIdentifier.newId
+import static org.gradle.api.internal.artifacts.ivyservice.resolveengine.result.ResolutionResultPrinter.printGraph
+import static org.gradle.api.internal.artifacts.ivyservice.resolveengine.result.VersionSelectionReasons.REQUESTED
+
+class SharedResolutionResultsTest extends Specification {
+    def sharedResults = new SharedResolutionResults(Stub(VersionSelectorScheme), true)
+    def stores = Stub(StoreSet) {
+        newModelCache() >> new DummyStore()
+        oldModelCache() >> new DummyStore()
+    }
+    def inputs = ["dependency org:dep:2.0"]
+    def newModelBuilder = new StreamingResolutionResultBuilder(new DummyBinaryStore(), new DummyStore())
+    def oldModelBuilder = new TransientConfigurationResultsBuilder(new DummyBinaryStore(), new DummyStore())
+
+    def "shares results with configuration with same graph inputs"() {
+        def results = new DefaultResolverResults()
+
+        given:
+        add(configuration("app"), "dep")
+
+        when:
+        def shared = sharedResults.share(configuration("other"), inputs, stores, results)
+
+        then:
+        shared
+        printGraph(results.resolutionResult.root) == """org:other:1.0
+  org:dep:2.0 [other]
+"""
+    }
+
+    def "does not share results with configuration with different graph inputs"() {
+        given:
+        add(configuration("app"), "dep")
+
+        expect:
+        !sharedResults.share(configuration("other"), ["dependency org:other:2.0"], stores, new DefaultResolverResults())
+    }
+
+    def "does not share results with configuration whose module is part of the graph"() {
+        given:
+        add(configuration("app"), "other")
+
+        expect:
+        !sharedResults.share(configuration("other"), inputs, stores, new DefaultResolverResults())
+    }
+
+    def "does not share results when graph depends on its root"() {
+        given:
+        add(configuration("app"), "app")
+
+        expect:
+        !sharedResults.share(configuration("other"), inputs, stores, new DefaultResolverResults())
+    }
+
+    private void add(ConfigurationInternal configuration, String dependency) {
+        def builder = sharedResults.createBuilder(newModelBuilder)
+        def root = newId("org", configuration.module.name, "1.0")
+        def selected = newId("org", dependency, dependency == configuration.module.name ? "1.0" : "2.0")
+        builder.start(root, DefaultModuleComponentIdentifier.newId("org", root.name, "1.0"))
+        builder.resolvedModuleVersion(Stub(ModuleVersionSelection) {
+            getId() >> selected
+            getSelectionReason() >> REQUESTED
+            getComponentId() >> DefaultModuleComponentIdentifier.newId("org", selected.name, selected.version)
+        })
+        builder.resolvedConfiguration(root, [new DefaultInternalDependencyResult(DefaultModuleComponentSelector.newSelector("org", dependency, selected.version), selected, REQUESTED, null)])
+        builder.complete()
+        sharedResults.add(configuration, inputs, builder, newModelBuilder, oldModelBuilder, Stub(ResolvedGraphResults), Stub(ResolvedArtifactsBuilder))
+    }
+
+    private ConfigurationInternal configuration(String name) {
+        def dependencies = Stub(DependencySet) {
+            withType(ModuleDependency) >> Stub(DependencySet)
+        }
+        return Stub(ConfigurationInternal) {
+            getName() >> "compile"
+            getModule() >> Stub(ModuleInternal) {
+                getGroup() >> "org"
+                getName() >> name
+                getVersion() >> "1.0"
+            }
+            getAllDependencies() >> dependencies
+        }
+    }
+}
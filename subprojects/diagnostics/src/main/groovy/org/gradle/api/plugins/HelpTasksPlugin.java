@@ -56,7 +56,9 @@ public class HelpTasksPlugin implements Plugin<ProjectInternal> {
         String projectName = project.toString();
         tasks.addPlaceholderAction(ProjectInternal.HELP_TASK, Help.class, new HelpAction());
         tasks.addPlaceholderAction(ProjectInternal.PROJECTS_TASK, ProjectReportTask.class, new ProjectReportTaskAction(projectName));
-        tasks.addPlaceholderAction(ProjectInternal.TASKS_TASK, TaskReportTask.class, new TaskReportTaskAction(projectName, project.getChildProjects().isEmpty()));
+        // Uses the project registry, as looking at the child projects counts as accessing other projects
+        boolean noChildren = project.getProjectRegistry().getSubProjects(project.getPath()).isEmpty();
+        tasks.addPlaceholderAction(ProjectInternal.TASKS_TASK, TaskReportTask.class, new TaskReportTaskAction(projectName, noChildren));
         tasks.addPlaceholderAction(PROPERTIES_TASK, PropertyReportTask.class, new PropertyReportTaskAction(projectName));
         tasks.addPlaceholderAction(DEPENDENCY_INSIGHT_TASK, DependencyInsightReportTask.class, new DependencyInsightReportTaskAction(projectName));
         tasks.addPlaceholderAction(DEPENDENCIES_TASK, DependencyReportTask.class, new DependencyReportTaskAction(projectName));
@@ -0,0 +1,41 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.performance
+
+import org.gradle.performance.fixture.CrossBuildPerformanceResults
+
+/**
+ * Compares a build run with a feature enabled through the given JVM options against the same build run with baseline options.
+ */
+abstract class AbstractToggledFeaturePerformanceTest extends AbstractCrossBuildPerformanceTest {
+    private static final List<String> GRADLE_OPTS = ["-Xms2g", "-Xmx2g", "-XX:MaxPermSize=256m"]
+
+    protected CrossBuildPerformanceResults runAgainstBaseline(String testProject, List<String> tasks, List<String> buildArgs,
+                                                            String featureName, List<String> featureOpts,
+                                                            String baselineName, List<String> baselineOpts) {
+        runner.buildSpec {
+            projectName(testProject).displayName(featureName).invocation {
+                tasksToRun(tasks as String[]).args(buildArgs as String[]).gradleOpts((GRADLE_OPTS + featureOpts) as String[])
+            }
+        }
+        runner.baseline {
+            projectName(testProject).displayName(baselineName).invocation {
+                tasksToRun(tasks as String[]).args(buildArgs as String[]).gradleOpts((GRADLE_OPTS + baselineOpts) as String[])
+            }
+        }
+        runner.run()
+    }
+}
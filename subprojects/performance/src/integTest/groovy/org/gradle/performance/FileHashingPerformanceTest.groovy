@@ -0,0 +1,39 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.performance
+
+import org.junit.experimental.categories.Category
+import spock.lang.Unroll
+
+@Category(org.gradle.performance.categories.FileHashingPerformanceTest)
+class FileHashingPerformanceTest extends AbstractToggledFeaturePerformanceTest {
+
+    @Unroll("Murmur3 file hashing - #inputFiles files")
+    def "murmur3 file hashing"() {
+        given:
+        runner.testId = "murmur3 file hashing $inputFiles files"
+        runner.testGroup = "file hashing"
+        runner.buildExperimentListener = new InputFileTimestampUpdater("files")
+
+        expect:
+        runAgainstBaseline("fileHashing", ["hash${inputFiles.capitalize()}Files".toString()], [],
+            "murmur3", ["-Dorg.gradle.hashing.murmur3=true"],
+            "md5", [])
+
+        where:
+        inputFiles << ["small", "medium", "large"]
+    }
+}
@@ -0,0 +1,42 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.performance
+
+import groovy.io.FileType
+import org.gradle.performance.fixture.BuildExperimentInvocationInfo
+import org.gradle.performance.fixture.BuildExperimentListenerAdapter
+
+/**
+ * Moves the timestamps of the files in a directory of the test project forward before each build, so that the build hashes them again
+ * rather than taking their hashes from the file hash cache.
+ */
+class InputFileTimestampUpdater extends BuildExperimentListenerAdapter {
+    private final String inputDir
+    private long timestamp = System.currentTimeMillis()
+
+    InputFileTimestampUpdater(String inputDir) {
+        this.inputDir = inputDir
+    }
+
+    @Override
+    void beforeInvocation(BuildExperimentInvocationInfo invocationInfo) {
+        // Use steps larger than the timestamp resolution of the file systems the tests run on
+        timestamp += 2000
+        new File(invocationInfo.projectDir, inputDir).eachFileRecurse(FileType.FILES) { File file ->
+            file.setLastModified(timestamp)
+        }
+    }
+}
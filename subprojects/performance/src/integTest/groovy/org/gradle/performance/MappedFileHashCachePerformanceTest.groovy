@@ -0,0 +1,40 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.performance
+
+import org.gradle.performance.categories.BasicPerformanceTest
+import org.junit.experimental.categories.Category
+import spock.lang.Unroll
+
+@Category(BasicPerformanceTest)
+class MappedFileHashCachePerformanceTest extends AbstractToggledFeaturePerformanceTest {
+
+    @Unroll("Memory mapped file hash cache - #testProject")
+    def "memory mapped file hash cache"() {
+        given:
+        runner.testId = "memory mapped file hash cache $testProject"
+        runner.testGroup = "file hash cache"
+
+        expect:
+        runAgainstBaseline(testProject, ["assemble"], [],
+            "memory mapped", ["-Dorg.gradle.cache.mapped.fileHashes=true"],
+            "btree", [])
+
+        where:
+        testProject << ["multi", "largeSrc"]
+    }
+}
@@ -0,0 +1,49 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.performance
+
+import org.gradle.performance.categories.JavaPerformanceTest
+import org.junit.experimental.categories.Category
+import spock.lang.Unroll
+
+import static org.gradle.performance.measure.Duration.millis
+
+@Category(JavaPerformanceTest)
+class ParallelTaskSchedulingPerformanceTest extends AbstractCrossVersionPerformanceTest {
+    @Unroll("Up-to-date parallel build - #testProject")
+    def "up-to-date parallel build"() {
+        given:
+        runner.testId = "up-to-date parallel build $testProject"
+        runner.testProject = testProject
+        runner.tasksToRun = tasks
+        runner.args = ['--parallel', '--max-workers=8']
+        runner.maxExecutionTimeRegression = maxExecutionTimeRegression
+        runner.targetVersions = ['2.11', 'last']
+
+        when:
+        def result = runner.run()
+
+        then:
+        result.assertCurrentVersionHasNotRegressed()
+
+        where:
+        testProject     | tasks         | maxExecutionTimeRegression
+        "bigOldJava"    | ['assemble']  | millis(1000)
+        "manyProjects"  | ['assemble']  | millis(1000)
+        "wideTaskGraph" | ['wideGraph'] | millis(1000)
+    }
+}
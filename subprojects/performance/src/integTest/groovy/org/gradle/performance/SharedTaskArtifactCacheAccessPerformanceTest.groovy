@@ -0,0 +1,40 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.performance
+
+import org.gradle.performance.categories.BasicPerformanceTest
+import org.junit.experimental.categories.Category
+import spock.lang.Unroll
+
+@Category(BasicPerformanceTest)
+class SharedTaskArtifactCacheAccessPerformanceTest extends AbstractToggledFeaturePerformanceTest {
+
+    @Unroll("Shared task artifact cache access - #testProject")
+    def "shared task artifact cache access"() {
+        given:
+        runner.testId = "shared task artifact cache access $testProject"
+        runner.testGroup = "task artifact cache access"
+
+        expect:
+        runAgainstBaseline(testProject, ["assemble"], ["--parallel", "--max-workers=8"],
+            "shared access", ["-Dorg.gradle.cache.taskArtifacts.sharedAccess=true"],
+            "exclusive access", [])
+
+        where:
+        testProject << ["multi", "manyProjects"]
+    }
+}
@@ -34,12 +34,24 @@ import java.io.IOException;
 
 /**
  * Provides some convenience and unified logging.
+ *
+ * <p>Requests may be performed from multiple threads at the same time. Connections are pooled, and at most
+ * {@value #DEFAULT_MAX_CONNECTIONS_PER_HOST} connections to the same host are open at any time, unless overridden using the
+ * {@value #MAX_CONNECTIONS_PER_HOST_PROPERTY} system property.</p>
  */
 public class HttpClientHelper implements Closeable {
+    public static final String MAX_CONNECTIONS_PER_HOST_PROPERTY = "org.gradle.internal.http.maxConnectionsPerHost";
+    public static final int DEFAULT_MAX_CONNECTIONS_PER_HOST = 4;
+    private static final int MAX_CONNECTIONS = 20;
 
     private static final Logger LOGGER = LoggerFactory.getLogger(HttpClientHelper.class);
     private CloseableHttpClient client;
-    private final BasicHttpContext httpContext = new BasicHttpContext();
+    private final ThreadLocal<BasicHttpContext> httpContext = new ThreadLocal<BasicHttpContext>() {
+        @Override
+        protected BasicHttpContext initialValue() {
+            return new BasicHttpContext();
+        }
+    };
     private final HttpSettings settings;
 
     public HttpClientHelper(HttpSettings settings) {
@@ -96,10 +108,12 @@ public class HttpClientHelper implements Closeable {
     }
 
     public HttpResponse performHttpRequest(HttpRequestBase request) throws IOException {
+        // The context is not thread-safe, so use a separate context for each thread
+        BasicHttpContext context = httpContext.get();
         // Without this, HTTP Client prohibits multiple redirects to the same location within the same context
-        httpContext.removeAttribute(HttpClientContext.REDIRECT_LOCATIONS);
+        context.removeAttribute(HttpClientContext.REDIRECT_LOCATIONS);
         LOGGER.debug("Performing HTTP {}: {}", request.getMethod(), request.getURI());
-        return getClient().execute(request, httpContext);
+        return getClient().execute(request, context);
     }
 
     private HttpResponse processResponse(String source, String method, HttpResponse response) {
@@ -120,6 +134,9 @@ public class HttpClientHelper implements Closeable {
         if (client == null) {
             HttpClientBuilder builder = HttpClientBuilder.create();
             builder.setRedirectStrategy(new AlwaysRedirectRedirectStrategy());
+            int maxConnectionsPerHost = Math.max(1, Integer.getInteger(MAX_CONNECTIONS_PER_HOST_PROPERTY, DEFAULT_MAX_CONNECTIONS_PER_HOST));
+            builder.setMaxConnPerRoute(maxConnectionsPerHost);
+            builder.setMaxConnTotal(Math.max(MAX_CONNECTIONS, maxConnectionsPerHost));
             new HttpClientConfigurer(settings).configure(builder);
             this.client = builder.build();
         }
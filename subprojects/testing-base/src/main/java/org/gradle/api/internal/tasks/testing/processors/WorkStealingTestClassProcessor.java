@@ -0,0 +1,178 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.tasks.testing.processors;
+
+import org.gradle.api.Transformer;
+import org.gradle.api.internal.tasks.testing.TestClassProcessedListener;
+import org.gradle.api.internal.tasks.testing.TestClassProcessor;
+import org.gradle.api.internal.tasks.testing.TestClassRunInfo;
+import org.gradle.api.internal.tasks.testing.TestResultProcessor;
+import org.gradle.internal.UncheckedException;
+import org.gradle.internal.concurrent.ExecutorFactory;
+import org.gradle.internal.concurrent.StoppableExecutor;
+import org.gradle.messaging.actor.Actor;
+import org.gradle.messaging.actor.ActorFactory;
+
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * Manages a set of parallel TestClassProcessors. Instead of assigning test classes to the processors up front, each processor takes the
+ * next test class from a shared queue once it has processed its previous test class. Queued test classes are taken longest first, using
+ * their durations in a previous run. Test classes without a previous duration are taken first, in the order they were received.
+ */
+public class WorkStealingTestClassProcessor implements TestClassProcessor {
+    public static final String WORK_STEALING_TOGGLE = "org.gradle.test.workStealing";
+
+    private final int maxProcessors;
+    private final Transformer<TestClassProcessor, TestClassProcessedListener> factory;
+    private final ActorFactory actorFactory;
+    private final ExecutorFactory executorFactory;
+    private final Map<String, Long> previousDurations;
+    private final Object lock = new Object();
+    private final PriorityQueue<QueuedTestClass> queue = new PriorityQueue<QueuedTestClass>();
+    private long received;
+    private boolean stopping;
+    private Throwable failure;
+    private TestResultProcessor resultProcessor;
+    private Actor resultProcessorActor;
+    private StoppableExecutor executor;
+
+    /**
+     * @param factory Creates the processor for one of the parallel slots. The processor must notify the given listener each time it has
+     * processed a test class.
+     * @param previousDurations The duration of each test class in a previous run, in milliseconds, keyed by class name.
+     */
+    public WorkStealingTestClassProcessor(int maxProcessors, Transformer<TestClassProcessor, TestClassProcessedListener> factory, ActorFactory actorFactory,
+                                          ExecutorFactory executorFactory, Map<String, Long> previousDurations) {
+        this.maxProcessors = maxProcessors;
+        this.factory = factory;
+        this.actorFactory = actorFactory;
+        this.executorFactory = executorFactory;
+        this.previousDurations = previousDurations;
+    }
+
+    @Override
+    public void startProcessing(TestResultProcessor resultProcessor) {
+        resultProcessorActor = actorFactory.createActor(resultProcessor);
+        this.resultProcessor = resultProcessorActor.getProxy(TestResultProcessor.class);
+        executor = executorFactory.create("Test class dispatch", maxProcessors);
+        for (int i = 0; i < maxProcessors; i++) {
+            executor.execute(new Slot());
+        }
+    }
+
+    @Override
+    public void processTestClass(TestClassRunInfo testClass) {
+        Long duration = previousDurations.get(testClass.getTestClassName());
+        synchronized (lock) {
+            queue.add(new QueuedTestClass(testClass, duration == null ? Long.MAX_VALUE : duration, received++));
+            lock.notifyAll();
+        }
+    }
+
+    @Override
+    public void stop() {
+        synchronized (lock) {
+            stopping = true;
+            lock.notifyAll();
+        }
+        try {
+            executor.stop();
+        } finally {
+            resultProcessorActor.stop();
+        }
+        synchronized (lock) {
+            if (failure != null) {
+                throw UncheckedException.throwAsUncheckedException(failure);
+            }
+        }
+    }
+
+    /**
+     * Feeds one processor with test classes taken from the queue.
+     */
+    private class Slot implements Runnable, TestClassProcessedListener {
+        private boolean busy;
+
+        public void run() {
+            TestClassProcessor processor = null;
+            try {
+                TestClassRunInfo testClass;
+                while ((testClass = takeNext()) != null) {
+                    if (processor == null) {
+                        processor = factory.transform(this);
+                        processor.startProcessing(resultProcessor);
+                    }
+                    processor.processTestClass(testClass);
+                }
+                if (processor != null) {
+                    processor.stop();
+                }
+            } catch (Throwable t) {
+                synchronized (lock) {
+                    if (failure == null) {
+                        failure = t;
+                    }
+                }
+            }
+        }
+
+        /**
+         * Returns the next test class for this slot, or null when there are no more test classes.
+         */
+        private TestClassRunInfo takeNext() throws InterruptedException {
+            synchronized (lock) {
+                while (!(stopping && queue.isEmpty()) && (queue.isEmpty() || busy)) {
+                    lock.wait();
+                }
+                QueuedTestClass next = queue.poll();
+                if (next == null) {
+                    return null;
+                }
+                busy = true;
+                return next.testClass;
+            }
+        }
+
+        public void testClassProcessed() {
+            synchronized (lock) {
+                busy = false;
+                lock.notifyAll();
+            }
+        }
+    }
+
+    private static class QueuedTestClass implements Comparable<QueuedTestClass> {
+        private final TestClassRunInfo testClass;
+        private final long duration;
+        private final long order;
+
+        QueuedTestClass(TestClassRunInfo testClass, long duration, long order) {
+            this.testClass = testClass;
+            this.duration = duration;
+            this.order = order;
+        }
+
+        public int compareTo(QueuedTestClass other) {
+            if (duration != other.duration) {
+                return duration > other.duration ? -1 : 1;
+            }
+            return order < other.order ? -1 : order == other.order ? 0 : 1;
+        }
+    }
+}
@@ -17,13 +17,18 @@
 package org.gradle.api.internal.tasks.testing.worker;
 
 import org.gradle.api.Action;
+import org.gradle.api.Nullable;
+import org.gradle.api.internal.tasks.testing.TestClassProcessedListener;
 import org.gradle.api.internal.tasks.testing.TestClassProcessor;
 import org.gradle.api.internal.tasks.testing.TestClassRunInfo;
 import org.gradle.api.internal.tasks.testing.TestResultProcessor;
 import org.gradle.api.internal.tasks.testing.WorkerTestClassProcessorFactory;
 import org.gradle.internal.Factory;
 import org.gradle.messaging.remote.ObjectConnection;
+import org.gradle.process.ExecResult;
 import org.gradle.process.JavaForkOptions;
+import org.gradle.process.internal.ExecHandle;
+import org.gradle.process.internal.ExecHandleListener;
 import org.gradle.process.internal.WorkerProcess;
 import org.gradle.process.internal.WorkerProcessBuilder;
 
@@ -35,16 +40,29 @@ public class ForkingTestClassProcessor implements TestClassProcessor {
     private final JavaForkOptions options;
     private final Iterable<File> classPath;
     private final Action<WorkerProcessBuilder> buildConfigAction;
+    private final TestClassProcessedListener processedListener;
+    private final Object lock = new Object();
+    private int unprocessedClasses;
     private RemoteTestClassProcessor remoteProcessor;
     private WorkerProcess workerProcess;
     private TestResultProcessor resultProcessor;
 
     public ForkingTestClassProcessor(Factory<WorkerProcessBuilder> workerFactory, WorkerTestClassProcessorFactory processorFactory, JavaForkOptions options, Iterable<File> classPath, Action<WorkerProcessBuilder> buildConfigAction) {
+        this(workerFactory, processorFactory, options, classPath, buildConfigAction, null);
+    }
+
+    /**
+     * @param processedListener Notified as the worker finishes processing each test class. When the worker stops, it is notified for each test class
+     * the worker did not finish processing.
+     */
+    public ForkingTestClassProcessor(Factory<WorkerProcessBuilder> workerFactory, WorkerTestClassProcessorFactory processorFactory, JavaForkOptions options, Iterable<File> classPath, Action<WorkerProcessBuilder> buildConfigAction,
+                                     @Nullable TestClassProcessedListener processedListener) {
         this.workerFactory = workerFactory;
         this.processorFactory = processorFactory;
         this.options = options;
         this.classPath = classPath;
         this.buildConfigAction = buildConfigAction;
+        this.processedListener = processedListener;
     }
 
     @Override
@@ -58,6 +76,9 @@ public class ForkingTestClassProcessor implements TestClassProcessor {
             remoteProcessor = forkProcess();
         }
 
+        synchronized (lock) {
+            unprocessedClasses++;
+        }
         remoteProcessor.processTestClass(testClass);
     }
 
@@ -69,6 +90,14 @@ public class ForkingTestClassProcessor implements TestClassProcessor {
         builder.worker(new TestWorker(processorFactory));
         options.copyTo(builder.getJavaCommand());
         buildConfigAction.execute(builder);
+        builder.getJavaCommand().listener(new ExecHandleListener() {
+            public void executionStarted(ExecHandle execHandle) {
+            }
+
+            public void executionFinished(ExecHandle execHandle, ExecResult execResult) {
+                testClassesProcessed(true);
+            }
+        });
 
         workerProcess = builder.build();
         workerProcess.start();
@@ -76,12 +105,30 @@ public class ForkingTestClassProcessor implements TestClassProcessor {
         ObjectConnection connection = workerProcess.getConnection();
         connection.useParameterSerializer(TestEventSerializer.create());
         connection.addIncoming(TestResultProcessor.class, resultProcessor);
+        connection.addIncoming(TestClassProcessedListener.class, new TestClassProcessedListener() {
+            public void testClassProcessed() {
+                testClassesProcessed(false);
+            }
+        });
         RemoteTestClassProcessor remoteProcessor = connection.addOutgoing(RemoteTestClassProcessor.class);
         connection.connect();
         remoteProcessor.startProcessing();
         return remoteProcessor;
     }
 
+    private void testClassesProcessed(boolean workerStopped) {
+        int processed;
+        synchronized (lock) {
+            processed = workerStopped ? unprocessedClasses : Math.min(1, unprocessedClasses);
+            unprocessedClasses -= processed;
+        }
+        if (processedListener != null) {
+            for (int i = 0; i < processed; i++) {
+                processedListener.testClassProcessed();
+            }
+        }
+    }
+
     @Override
     public void stop() {
         if (remoteProcessor != null) {
@@ -0,0 +1,170 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.tasks.testing.processors
+
+import org.gradle.api.Transformer
+import org.gradle.api.internal.tasks.testing.DefaultTestClassRunInfo
+import org.gradle.api.internal.tasks.testing.TestClassProcessedListener
+import org.gradle.api.internal.tasks.testing.TestClassProcessor
+import org.gradle.api.internal.tasks.testing.TestClassRunInfo
+import org.gradle.api.internal.tasks.testing.TestResultProcessor
+import org.gradle.messaging.actor.Actor
+import org.gradle.messaging.actor.ActorFactory
+import org.gradle.test.fixtures.concurrent.ConcurrentSpec
+
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.CopyOnWriteArrayList
+
+class WorkStealingTestClassProcessorTest extends ConcurrentSpec {
+    def resultProcessor = Stub(TestResultProcessor)
+    def actorFactory = Stub(ActorFactory) {
+        createActor(_) >> Stub(Actor)
+    }
+    def received = new CopyOnWriteArrayList<String>()
+    def receivedBy = new ConcurrentHashMap<String, TestClassProcessedListener>()
+    def listeners = new CopyOnWriteArrayList<TestClassProcessedListener>()
+    def stopped = new CopyOnWriteArrayList<TestClassProcessor>()
+
+    def "takes test classes without previous duration first and then longest first"() {
+        def processor = new WorkStealingTestClassProcessor(1, processors(true), actorFactory, executorFactory, [slow: 100L, medium: 50L, fast: 10L])
+
+        when:
+        ["fast", "new", "slow", "other", "medium"].each { processor.processTestClass(test(it)) }
+        async {
+            processor.startProcessing(resultProcessor)
+            processor.stop()
+        }
+
+        then:
+        received == ["new", "other", "slow", "medium", "fast"]
+        stopped.size() == 1
+    }
+
+    def "gives a processor the next test class only once it has processed its previous test class"() {
+        def processor = new WorkStealingTestClassProcessor(1, processors(false), actorFactory, executorFactory, [:])
+
+        when:
+        async {
+            processor.startProcessing(resultProcessor)
+            3.times { processor.processTestClass(test("test${it}")) }
+            waitUntil { received.size() == 1 }
+            Thread.sleep(100)
+            assert received.size() == 1
+
+            listeners[0].testClassProcessed()
+            waitUntil { received.size() == 2 }
+            listeners[0].testClassProcessed()
+            waitUntil { received.size() == 3 }
+            listeners[0].testClassProcessed()
+            processor.stop()
+        }
+
+        then:
+        received == ["test0", "test1", "test2"]
+        listeners.size() == 1
+    }
+
+    def "gives test classes to the processors that are free"() {
+        def processor = new WorkStealingTestClassProcessor(2, processors(false), actorFactory, executorFactory, [:])
+
+        when:
+        async {
+            processor.startProcessing(resultProcessor)
+            3.times { processor.processTestClass(test("test${it}")) }
+            waitUntil { received.size() == 2 }
+            def busyListener = listeners.find { it != processedBy("test0") }
+            processedBy("test0").testClassProcessed()
+            waitUntil { received.size() == 3 }
+            assert processedBy("test2") == processedBy("test0")
+
+            busyListener.testClassProcessed()
+            processedBy("test2").testClassProcessed()
+            processor.stop()
+        }
+
+        then:
+        listeners.size() == 2
+        stopped.size() == 2
+    }
+
+    def "does not start processors when there are no test classes"() {
+        def processor = new WorkStealingTestClassProcessor(2, processors(true), actorFactory, executorFactory, [:])
+
+        when:
+        async {
+            processor.startProcessing(resultProcessor)
+            processor.stop()
+        }
+
+        then:
+        listeners.empty
+    }
+
+    def "rethrows failure of a processor"() {
+        def failure = new RuntimeException("broken")
+        def factory = { TestClassProcessedListener listener ->
+            [startProcessing: {}, processTestClass: { throw failure }, stop: {}] as TestClassProcessor
+        } as Transformer
+        def processor = new WorkStealingTestClassProcessor(1, factory, actorFactory, executorFactory, [:])
+
+        when:
+        async {
+            processor.startProcessing(resultProcessor)
+            processor.processTestClass(test("test"))
+            processor.stop()
+        }
+
+        then:
+        def e = thrown(RuntimeException)
+        e.is(failure)
+    }
+
+    private Transformer<TestClassProcessor, TestClassProcessedListener> processors(boolean processImmediately) {
+        return { TestClassProcessedListener listener ->
+            listeners << listener
+            def processor
+            processor = [
+                startProcessing: {},
+                processTestClass: { TestClassRunInfo testClass ->
+                    receivedBy[testClass.testClassName] = listener
+                    received << testClass.testClassName
+                    if (processImmediately) {
+                        listener.testClassProcessed()
+                    }
+                },
+                stop: { stopped << processor }
+            ] as TestClassProcessor
+            processor
+        } as Transformer
+    }
+
+    private TestClassProcessedListener processedBy(String testClass) {
+        return receivedBy[testClass]
+    }
+
+    private static TestClassRunInfo test(String name) {
+        return new DefaultTestClassRunInfo(name)
+    }
+
+    private static void waitUntil(Closure<Boolean> condition) {
+        long expiry = System.currentTimeMillis() + 5000
+        while (!condition.call()) {
+            assert System.currentTimeMillis() < expiry
+            Thread.sleep(10)
+        }
+    }
+}
@@ -30,16 +30,21 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.InputStream;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import static org.gradle.internal.FileUtils.hasExtension;
 
+/**
+ * Base class for test framework detectors. Test class files may be processed concurrently, from several threads.
+ */
 public abstract class AbstractTestFrameworkDetector<T extends TestClassVisitor> implements TestFrameworkDetector {
     protected static final String TEST_CASE = "junit/framework/TestCase";
     protected static final String GROOVY_TEST_CASE = "groovy/util/GroovyTestCase";
 
     private List<File> testClassDirectories;
     private final ClassFileExtractionManager classFileExtractionManager;
-    private final Map<File, Boolean> superClasses;
+    private final ConcurrentMap<File, Boolean> superClasses;
     private TestClassProcessor testClassProcessor;
     private final List<String> knownTestCaseClassNames;
 
@@ -49,7 +54,7 @@ public abstract class AbstractTestFrameworkDetector<T extends TestClassVisitor>
     protected AbstractTestFrameworkDetector(ClassFileExtractionManager classFileExtractionManager) {
         assert classFileExtractionManager != null;
         this.classFileExtractionManager = classFileExtractionManager;
-        this.superClasses = new HashMap<File, Boolean>();
+        this.superClasses = new ConcurrentHashMap<File, Boolean>();
         this.knownTestCaseClassNames = new ArrayList<String>();
         addKnownTestCaseClassNames(TEST_CASE, GROOVY_TEST_CASE);
     }
@@ -57,7 +62,7 @@ public abstract class AbstractTestFrameworkDetector<T extends TestClassVisitor>
     protected abstract T createClassVisitor();
 
     protected File getSuperTestClassFile(String superClassName) {
-        prepareClasspath();
+        List<File> testClassDirectories = prepareClasspath();
         if (StringUtils.isEmpty(superClassName)) {
             throw new IllegalArgumentException("superClassName is empty!");
         }
@@ -80,9 +85,9 @@ public abstract class AbstractTestFrameworkDetector<T extends TestClassVisitor>
         }
     }
 
-    private void prepareClasspath() {
+    private synchronized List<File> prepareClasspath() {
         if (testClassDirectories != null) {
-            return;
+            return testClassDirectories;
         }
 
         testClassDirectories = new ArrayList<File>();
@@ -99,6 +104,7 @@ public abstract class AbstractTestFrameworkDetector<T extends TestClassVisitor>
                 }
             }
         }
+        return testClassDirectories;
     }
 
     @Override
@@ -143,6 +149,7 @@ public abstract class AbstractTestFrameworkDetector<T extends TestClassVisitor>
         if (isSuperTest == null) {
             isTest = processTestClass(testClassFile, true);
 
+            // Another thread may have processed the same super class in the meantime, with the same result
             superClasses.put(testClassFile, isTest);
         } else {
             isTest = isSuperTest;
@@ -22,23 +22,51 @@ import org.gradle.api.file.FileVisitDetails;
 import org.gradle.api.internal.tasks.testing.DefaultTestClassRunInfo;
 import org.gradle.api.internal.tasks.testing.TestClassProcessor;
 import org.gradle.api.internal.tasks.testing.TestClassRunInfo;
+import org.gradle.api.internal.tasks.testing.TestResultProcessor;
+import org.gradle.internal.UncheckedException;
+import org.gradle.internal.concurrent.ExecutorFactory;
+import org.gradle.internal.concurrent.StoppableExecutor;
 
 import java.io.File;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * The default test class scanner. Depending on the availability of a test framework detector,
  * a detection or filename scan is performed to find test classes.
+ *
+ * <p>When given an executor factory and more than one thread, the class files are passed to the detector
+ * from a pool of threads. Detected test classes are handed to the test class processor, one at a time,
+ * as soon as they are found.</p>
  */
 public class DefaultTestClassScanner implements Runnable {
+    /**
+     * The number of threads to detect test classes with. Defaults to 1, which detects and hands over test classes in the order of the class files.
+     * With more threads, test classes are handed over in the order in which their detection completes, which can change from one build to the next.
+     */
+    public static final String DETECTION_THREADS_PROPERTY = "org.gradle.test.detectionThreads";
+
     private final FileTree candidateClassFiles;
     private final TestFrameworkDetector testFrameworkDetector;
     private final TestClassProcessor testClassProcessor;
+    private final ExecutorFactory executorFactory;
+    private final int maxThreads;
 
     public DefaultTestClassScanner(FileTree candidateClassFiles, TestFrameworkDetector testFrameworkDetector,
                                    TestClassProcessor testClassProcessor) {
+        this(candidateClassFiles, testFrameworkDetector, testClassProcessor, null, 1);
+    }
+
+    public DefaultTestClassScanner(FileTree candidateClassFiles, TestFrameworkDetector testFrameworkDetector,
+                                   TestClassProcessor testClassProcessor, ExecutorFactory executorFactory, int maxThreads) {
         this.candidateClassFiles = candidateClassFiles;
         this.testFrameworkDetector = testFrameworkDetector;
         this.testClassProcessor = testClassProcessor;
+        this.executorFactory = executorFactory;
+        this.maxThreads = maxThreads;
+    }
+
+    public static int getDetectionThreads() {
+        return Math.max(1, Integer.getInteger(DETECTION_THREADS_PROPERTY, 1));
     }
 
     @Override
@@ -51,12 +79,50 @@ public class DefaultTestClassScanner implements Runnable {
     }
 
     private void detectionScan() {
-        testFrameworkDetector.startDetection(testClassProcessor);
-        candidateClassFiles.visit(new ClassFileVisitor() {
-            public void visitClassFile(FileVisitDetails fileDetails) {
-                testFrameworkDetector.processTestClass(fileDetails.getFile());
-            }
-        });
+        if (executorFactory == null || maxThreads <= 1) {
+            testFrameworkDetector.startDetection(testClassProcessor);
+            candidateClassFiles.visit(new ClassFileVisitor() {
+                public void visitClassFile(FileVisitDetails fileDetails) {
+                    testFrameworkDetector.processTestClass(fileDetails.getFile());
+                }
+            });
+        } else {
+            parallelDetectionScan();
+        }
+    }
+
+    private void parallelDetectionScan() {
+        testFrameworkDetector.startDetection(new SynchronizedTestClassProcessor(testClassProcessor));
+        final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+        final StoppableExecutor executor = executorFactory.create("Test class detection", maxThreads);
+        try {
+            candidateClassFiles.visit(new ClassFileVisitor() {
+                public void visitClassFile(FileVisitDetails fileDetails) {
+                    final File classFile = fileDetails.getFile();
+                    if (failure.get() != null) {
+                        fileDetails.stopVisiting();
+                        return;
+                    }
+                    executor.execute(new Runnable() {
+                        public void run() {
+                            if (failure.get() != null) {
+                                return;
+                            }
+                            try {
+                                testFrameworkDetector.processTestClass(classFile);
+                            } catch (Throwable t) {
+                                failure.compareAndSet(null, t);
+                            }
+                        }
+                    });
+                }
+            });
+        } finally {
+            executor.stop();
+        }
+        if (failure.get() != null) {
+            throw UncheckedException.throwAsUncheckedException(failure.get());
+        }
     }
 
     private void filenameScan() {
@@ -81,4 +147,30 @@ public class DefaultTestClassScanner implements Runnable {
 
         public abstract void visitClassFile(FileVisitDetails fileDetails);
     }
+
+    /**
+     * Hands test classes detected on several threads to a processor that expects to be called from one thread at a time.
+     */
+    private static class SynchronizedTestClassProcessor implements TestClassProcessor {
+        private final TestClassProcessor delegate;
+
+        SynchronizedTestClassProcessor(TestClassProcessor delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public synchronized void startProcessing(TestResultProcessor resultProcessor) {
+            delegate.startProcessing(resultProcessor);
+        }
+
+        @Override
+        public synchronized void processTestClass(TestClassRunInfo testClass) {
+            delegate.processTestClass(testClass);
+        }
+
+        @Override
+        public synchronized void stop() {
+            delegate.stop();
+        }
+    }
 }
@@ -16,7 +16,10 @@
 
 package org.gradle.api.internal.tasks.testing.detection;
 
+import org.gradle.api.Action;
+import org.gradle.api.Transformer;
 import org.gradle.api.file.FileTree;
+import org.gradle.api.internal.tasks.testing.TestClassProcessedListener;
 import org.gradle.api.internal.tasks.testing.TestClassProcessor;
 import org.gradle.api.internal.tasks.testing.TestFramework;
 import org.gradle.api.internal.tasks.testing.TestResultProcessor;
@@ -24,34 +27,48 @@ import org.gradle.api.internal.tasks.testing.WorkerTestClassProcessorFactory;
 import org.gradle.api.internal.tasks.testing.processors.MaxNParallelTestClassProcessor;
 import org.gradle.api.internal.tasks.testing.processors.RestartEveryNTestClassProcessor;
 import org.gradle.api.internal.tasks.testing.processors.TestMainAction;
+import org.gradle.api.internal.tasks.testing.processors.WorkStealingTestClassProcessor;
 import org.gradle.api.internal.tasks.testing.worker.ForkingTestClassProcessor;
 import org.gradle.api.tasks.testing.Test;
 import org.gradle.internal.Factory;
 import org.gradle.internal.TrueTimeProvider;
+import org.gradle.internal.concurrent.ExecutorFactory;
 import org.gradle.internal.progress.OperationIdGenerator;
 import org.gradle.messaging.actor.ActorFactory;
 import org.gradle.process.internal.WorkerProcessBuilder;
 
+import java.util.Map;
+
 /**
  * The default test class scanner factory.
  */
 public class DefaultTestExecuter implements TestExecuter {
+    public static final String REUSE_FORKS_TOGGLE = "org.gradle.test.reuseForks";
     private final Factory<WorkerProcessBuilder> workerFactory;
     private final ActorFactory actorFactory;
+    private final ExecutorFactory executorFactory;
+    private final Map<String, Long> previousDurations;
 
-    public DefaultTestExecuter(Factory<WorkerProcessBuilder> workerFactory, ActorFactory actorFactory) {
+    /**
+     * @param previousDurations The duration of each test class in the previous run, keyed by class name. Used to order the test classes when
+     * they are distributed to the forks by work stealing.
+     */
+    public DefaultTestExecuter(Factory<WorkerProcessBuilder> workerFactory, ActorFactory actorFactory, ExecutorFactory executorFactory, Map<String, Long> previousDurations) {
         this.workerFactory = workerFactory;
         this.actorFactory = actorFactory;
+        this.executorFactory = executorFactory;
+        this.previousDurations = previousDurations;
     }
 
     @Override
     public void execute(final Test testTask, TestResultProcessor testResultProcessor) {
         final TestFramework testFramework = testTask.getTestFramework();
         final WorkerTestClassProcessorFactory testInstanceFactory = testFramework.getProcessorFactory();
+        final Action<WorkerProcessBuilder> workerConfigurationAction = workerConfigurationAction(testTask, testFramework);
         final Factory<TestClassProcessor> forkingProcessorFactory = new Factory<TestClassProcessor>() {
             public TestClassProcessor create() {
                 return new ForkingTestClassProcessor(workerFactory, testInstanceFactory, testTask,
-                    testTask.getClasspath(), testFramework.getWorkerConfigurationAction());
+                    testTask.getClasspath(), workerConfigurationAction);
             }
         };
         Factory<TestClassProcessor> reforkingProcessorFactory = new Factory<TestClassProcessor>() {
@@ -60,8 +77,22 @@ public class DefaultTestExecuter implements TestExecuter {
             }
         };
 
-        TestClassProcessor processor = new MaxNParallelTestClassProcessor(testTask.getMaxParallelForks(),
-            reforkingProcessorFactory, actorFactory);
+        TestClassProcessor processor;
+        if (Boolean.getBoolean(WorkStealingTestClassProcessor.WORK_STEALING_TOGGLE)) {
+            Transformer<TestClassProcessor, TestClassProcessedListener> stealingProcessorFactory = new Transformer<TestClassProcessor, TestClassProcessedListener>() {
+                public TestClassProcessor transform(final TestClassProcessedListener processedListener) {
+                    return new RestartEveryNTestClassProcessor(new Factory<TestClassProcessor>() {
+                        public TestClassProcessor create() {
+                            return new ForkingTestClassProcessor(workerFactory, testInstanceFactory, testTask,
+                                testTask.getClasspath(), workerConfigurationAction, processedListener);
+                        }
+                    }, testTask.getForkEvery());
+                }
+            };
+            processor = new WorkStealingTestClassProcessor(testTask.getMaxParallelForks(), stealingProcessorFactory, actorFactory, executorFactory, previousDurations);
+        } else {
+            processor = new MaxNParallelTestClassProcessor(testTask.getMaxParallelForks(), reforkingProcessorFactory, actorFactory);
+        }
 
         final FileTree testClassFiles = testTask.getCandidateClassFiles();
 
@@ -70,7 +101,7 @@ public class DefaultTestExecuter implements TestExecuter {
             TestFrameworkDetector testFrameworkDetector = testTask.getTestFramework().getDetector();
             testFrameworkDetector.setTestClassesDirectory(testTask.getTestClassesDir());
             testFrameworkDetector.setTestClasspath(testTask.getClasspath());
-            detector = new DefaultTestClassScanner(testClassFiles, testFrameworkDetector, processor);
+            detector = new DefaultTestClassScanner(testClassFiles, testFrameworkDetector, processor, executorFactory, DefaultTestClassScanner.getDetectionThreads());
         } else {
             detector = new DefaultTestClassScanner(testClassFiles, null, processor);
         }
@@ -79,4 +110,19 @@ public class DefaultTestExecuter implements TestExecuter {
 
         new TestMainAction(detector, processor, testResultProcessor, new TrueTimeProvider(), testTaskOperationId, testTask.getPath(), String.format("Gradle Test Run %s", testTask.getPath())).run();
     }
+
+    private static Action<WorkerProcessBuilder> workerConfigurationAction(Test testTask, TestFramework testFramework) {
+        final Action<WorkerProcessBuilder> frameworkAction = testFramework.getWorkerConfigurationAction();
+        if (!testTask.isReuseForks() || testTask.getForkEvery() > 0) {
+            return frameworkAction;
+        }
+        return new Action<WorkerProcessBuilder>() {
+            public void execute(WorkerProcessBuilder workerProcessBuilder) {
+                frameworkAction.execute(workerProcessBuilder);
+                // A worker process that loads the test classes into the system ClassLoader cannot be reused
+                workerProcessBuilder.setLoadApplicationInSystemClassLoader(false);
+                workerProcessBuilder.setReusable(true);
+            }
+        };
+    }
 }
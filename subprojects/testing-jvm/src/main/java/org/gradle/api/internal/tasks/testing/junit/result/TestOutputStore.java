@@ -16,22 +16,39 @@
 
 package org.gradle.api.internal.tasks.testing.junit.result;
 
-import com.esotericsoftware.kryo.io.Input;
-import com.esotericsoftware.kryo.io.Output;
-import com.google.common.collect.ImmutableMap;
 import org.gradle.api.UncheckedIOException;
 import org.gradle.api.tasks.testing.TestOutputEvent;
-import org.gradle.internal.io.RandomAccessFileInputStream;
-import org.gradle.internal.UncheckedException;
-import org.gradle.internal.serialize.kryo.KryoBackedDecoder;
-import org.gradle.internal.serialize.kryo.KryoBackedEncoder;
+import org.gradle.internal.concurrent.CompositeStoppable;
+import org.gradle.internal.os.OperatingSystem;
 
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.Map;
 
+/**
+ * Stores the output of the tests in two files. The outputs file contains the messages, each as a header holding the message length and
+ * destination followed by the UTF-8 encoded message. Consecutive messages for the same test are grouped into a run. The index file
+ * contains a fixed size entry for each run, holding the class id, test id, location in the outputs file and destinations of the run.
+ *
+ * <p>The writer appends the index entries to the index file in blocks as the runs complete, so its memory use does not depend on the
+ * number of tests or messages. The reader maps the outputs file into memory and reads the runs of a test directly from the mapping.</p>
+ */
 public class TestOutputStore {
+    private static final int INDEX_ENTRY_SIZE = 32;
+    private static final int INDEX_BLOCK_ENTRIES = 1024;
+    private static final int MAX_RUN_LENGTH = 1024 * 1024;
+    private static final long MAPPED_REGION_SIZE = 256 * 1024 * 1024;
+    private static final int STDOUT = 1;
+    private static final int STDERR = 2;
 
     private final File resultsDir;
     private final Charset messageStorageCharset;
@@ -49,34 +66,28 @@ public class TestOutputStore {
         return new File(resultsDir, getOutputsFile().getName() + ".idx");
     }
 
-    private static class Region {
-        long start;
-        long stop;
-
-        private Region() {
-            start = -1;
-            stop = -1;
-        }
-
-        private Region(long start, long stop) {
-            this.start = start;
-            this.stop = stop;
-        }
-    }
-
-    private static class TestCaseRegion {
-        Region stdOutRegion = new Region();
-        Region stdErrRegion = new Region();
+    private static int flag(TestOutputEvent.Destination destination) {
+        return destination == TestOutputEvent.Destination.StdOut ? STDOUT : STDERR;
     }
 
     public class Writer implements Closeable {
-        private final KryoBackedEncoder output;
-
-        private final Map<Long, Map<Long, TestCaseRegion>> index = new LinkedHashMap<Long, Map<Long, TestCaseRegion>>();
+        private final OutputStream output;
+        private final FileChannel indexChannel;
+        private final byte[] buffer = new byte[64 * 1024];
+        private final ByteBuffer indexBlock = ByteBuffer.allocate(INDEX_BLOCK_ENTRIES * INDEX_ENTRY_SIZE);
+        private int bufferPos;
+        private long writePosition;
+
+        private boolean inRun;
+        private long runClassId;
+        private long runTestId;
+        private long runStart;
+        private int runFlags;
 
         public Writer() {
             try {
-                output = new KryoBackedEncoder(new FileOutputStream(getOutputsFile()));
+                output = new FileOutputStream(getOutputsFile());
+                indexChannel = new FileOutputStream(getIndexFile()).getChannel();
             } catch (FileNotFoundException e) {
                 throw new UncheckedIOException(e);
             }
@@ -84,8 +95,17 @@ public class TestOutputStore {
 
         @Override
         public void close() {
-            output.close();
-            writeIndex();
+            try {
+                try {
+                    endRun();
+                    flushIndexBlock();
+                    flushBuffer();
+                } finally {
+                    CompositeStoppable.stoppable(output, indexChannel).stop();
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
         }
 
         public void onOutput(long classId, TestOutputEvent outputEvent) {
@@ -93,133 +113,180 @@ public class TestOutputStore {
         }
 
         public void onOutput(long classId, long testId, TestOutputEvent outputEvent) {
-            boolean stdout = outputEvent.getDestination() == TestOutputEvent.Destination.StdOut;
-            mark(classId, testId, stdout);
-
-            output.writeBoolean(stdout);
-            output.writeSmallLong(classId);
-            output.writeSmallLong(testId);
-
-            byte[] bytes;
+            String message = outputEvent.getMessage();
+            int flag = flag(outputEvent.getDestination());
             try {
-                bytes = outputEvent.getMessage().getBytes(messageStorageCharset.name());
-            } catch (UnsupportedEncodingException e) {
-                throw UncheckedException.throwAsUncheckedException(e);
+                if (inRun && (classId != runClassId || testId != runTestId || position() - runStart >= MAX_RUN_LENGTH)) {
+                    endRun();
+                }
+                if (!inRun) {
+                    inRun = true;
+                    runClassId = classId;
+                    runTestId = testId;
+                    runStart = position();
+                    runFlags = 0;
+                }
+                runFlags |= flag;
+
+                writeHeader(((long) encodedLength(message) << 1) | (flag == STDOUT ? 1 : 0));
+                writeMessage(message);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
             }
-            output.writeSmallInt(bytes.length);
-            output.writeBytes(bytes, 0, bytes.length);
         }
 
-        private void mark(long classId, long testId, boolean isStdout) {
-            if (!index.containsKey(classId)) {
-                index.put(classId, new LinkedHashMap<Long, TestCaseRegion>());
+        private void endRun() throws IOException {
+            if (!inRun) {
+                return;
             }
-
-            Map<Long, TestCaseRegion> testCaseRegions = index.get(classId);
-            if (!testCaseRegions.containsKey(testId)) {
-                TestCaseRegion region = new TestCaseRegion();
-                testCaseRegions.put(testId, region);
+            inRun = false;
+            indexBlock.putLong(runClassId);
+            indexBlock.putLong(runTestId);
+            indexBlock.putLong(runStart);
+            indexBlock.putInt((int) (position() - runStart));
+            indexBlock.putInt(runFlags);
+            if (!indexBlock.hasRemaining()) {
+                flushIndexBlock();
             }
+        }
 
-            TestCaseRegion region = testCaseRegions.get(testId);
-
-            Region streamRegion = isStdout ? region.stdOutRegion : region.stdErrRegion;
+        private long position() {
+            return writePosition + bufferPos;
+        }
 
-            int total = output.getWritePosition();
-            if (streamRegion.start < 0) {
-                streamRegion.start = total;
+        private void flushIndexBlock() throws IOException {
+            indexBlock.flip();
+            while (indexBlock.hasRemaining()) {
+                indexChannel.write(indexBlock);
             }
-            streamRegion.stop = total;
+            indexBlock.clear();
         }
 
-        private void writeIndex() {
-            Output indexOutput;
-            try {
-                indexOutput = new Output(new FileOutputStream(getIndexFile()));
-            } catch (FileNotFoundException e) {
-                throw new UncheckedIOException(e);
+        private void writeHeader(long value) throws IOException {
+            ensureSpace(10);
+            while ((value & ~0x7FL) != 0) {
+                buffer[bufferPos++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
             }
+            buffer[bufferPos++] = (byte) value;
+        }
 
-
-            try {
-                indexOutput.writeInt(index.size(), true);
-
-                for (Map.Entry<Long, Map<Long, TestCaseRegion>> classEntry : index.entrySet()) {
-                    Long classId = classEntry.getKey();
-                    Map<Long, TestCaseRegion> regions = classEntry.getValue();
-
-                    indexOutput.writeLong(classId, true);
-                    indexOutput.writeInt(regions.size(), true);
-
-                    for (Map.Entry<Long, TestCaseRegion> testCaseEntry : regions.entrySet()) {
-                        long id = testCaseEntry.getKey();
-                        TestCaseRegion region = testCaseEntry.getValue();
-                        indexOutput.writeLong(id, true);
-                        indexOutput.writeLong(region.stdOutRegion.start);
-                        indexOutput.writeLong(region.stdOutRegion.stop);
-                        indexOutput.writeLong(region.stdErrRegion.start);
-                        indexOutput.writeLong(region.stdErrRegion.stop);
-                    }
+        /**
+         * Encodes the message into the buffer the same way as {@link String#getBytes(Charset)} encodes it to UTF-8, without allocating an intermediate array.
+         */
+        private void writeMessage(String message) throws IOException {
+            int length = message.length();
+            for (int i = 0; i < length; i++) {
+                ensureSpace(4);
+                char ch = message.charAt(i);
+                if (ch < 0x80) {
+                    buffer[bufferPos++] = (byte) ch;
+                } else if (ch < 0x800) {
+                    buffer[bufferPos++] = (byte) (0xC0 | (ch >> 6));
+                    buffer[bufferPos++] = (byte) (0x80 | (ch & 0x3F));
+                } else if (Character.isHighSurrogate(ch) && i + 1 < length && Character.isLowSurrogate(message.charAt(i + 1))) {
+                    int codePoint = Character.toCodePoint(ch, message.charAt(++i));
+                    buffer[bufferPos++] = (byte) (0xF0 | (codePoint >> 18));
+                    buffer[bufferPos++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+                    buffer[bufferPos++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+                    buffer[bufferPos++] = (byte) (0x80 | (codePoint & 0x3F));
+                } else if (ch >= Character.MIN_SURROGATE && ch <= Character.MAX_SURROGATE) {
+                    buffer[bufferPos++] = '?';
+                } else {
+                    buffer[bufferPos++] = (byte) (0xE0 | (ch >> 12));
+                    buffer[bufferPos++] = (byte) (0x80 | ((ch >> 6) & 0x3F));
+                    buffer[bufferPos++] = (byte) (0x80 | (ch & 0x3F));
                 }
-            } finally {
-                indexOutput.close();
             }
         }
-    }
-
-    public Writer writer() {
-        return new Writer();
-    }
-
-    private static class Index {
-        final ImmutableMap<Long, Index> children;
-        final Region stdOut;
-        final Region stdErr;
 
-        private Index(Region stdOut, Region stdErr) {
-            this.children = ImmutableMap.of();
-            this.stdOut = stdOut;
-            this.stdErr = stdErr;
+        private void ensureSpace(int count) throws IOException {
+            if (bufferPos + count > buffer.length) {
+                flushBuffer();
+            }
         }
 
-        private Index(ImmutableMap<Long, Index> children, Region stdOut, Region stdErr) {
-            this.children = children;
-            this.stdOut = stdOut;
-            this.stdErr = stdErr;
+        private void flushBuffer() throws IOException {
+            output.write(buffer, 0, bufferPos);
+            writePosition += bufferPos;
+            bufferPos = 0;
         }
     }
 
-    private static class IndexBuilder {
-        final Region stdOut = new Region();
-        final Region stdErr = new Region();
+    /**
+     * Returns the number of bytes written by {@link Writer#writeMessage(String)} for the given message.
+     */
+    private static int encodedLength(String message) {
+        int length = message.length();
+        int encodedLength = 0;
+        for (int i = 0; i < length; i++) {
+            char ch = message.charAt(i);
+            if (ch < 0x80) {
+                encodedLength++;
+            } else if (ch < 0x800) {
+                encodedLength += 2;
+            } else if (Character.isHighSurrogate(ch) && i + 1 < length && Character.isLowSurrogate(message.charAt(i + 1))) {
+                encodedLength += 4;
+                i++;
+            } else if (ch >= Character.MIN_SURROGATE && ch <= Character.MAX_SURROGATE) {
+                encodedLength++;
+            } else {
+                encodedLength += 3;
+            }
+        }
+        return encodedLength;
+    }
 
-        private final ImmutableMap.Builder<Long, Index> children = ImmutableMap.builder();
+    public Writer writer() {
+        return new Writer();
+    }
 
-        void add(long key, Index index) {
-            if (stdOut.start < 0) {
-                stdOut.start = index.stdOut.start;
-            }
-            if (stdErr.start < 0) {
-                stdErr.start = index.stdErr.start;
-            }
-            if (index.stdOut.stop > stdOut.stop) {
-                stdOut.stop = index.stdOut.stop;
+    /**
+     * The runs of a test class, in the order they were written.
+     */
+    private static class ClassRuns {
+        private final Map<Long, RunList> tests = new LinkedHashMap<Long, RunList>();
+        private final RunList all = new RunList();
+
+        void add(long testId, long start, int length, int flags) {
+            all.add(start, length, flags);
+            RunList testRuns = tests.get(testId);
+            if (testRuns == null) {
+                testRuns = new RunList();
+                tests.put(testId, testRuns);
             }
-            if (index.stdErr.stop > stdErr.stop) {
-                stdErr.stop = index.stdErr.stop;
-            }
-
-            children.put(key, index);
+            testRuns.add(start, length, flags);
         }
+    }
 
-        Index build() {
-            return new Index(children.build(), stdOut, stdErr);
+    private static class RunList {
+        private long[] starts = new long[4];
+        private int[] lengths = new int[4];
+        private byte[] flags = new byte[4];
+        private int count;
+        private int allFlags;
+
+        void add(long start, int length, int runFlags) {
+            if (count == starts.length) {
+                starts = Arrays.copyOf(starts, count * 2);
+                lengths = Arrays.copyOf(lengths, count * 2);
+                flags = Arrays.copyOf(flags, count * 2);
+            }
+            starts[count] = start;
+            lengths[count] = length;
+            flags[count] = (byte) runFlags;
+            allFlags |= runFlags;
+            count++;
         }
     }
 
     public class Reader implements Closeable {
-        private final Index index;
-        private final RandomAccessFile dataFile;
+        private final Map<Long, ClassRuns> index;
+        private final FileChannel dataChannel;
+        private final ByteBuffer[] mappedRegions;
+        private final CharsetDecoder decoder;
+        private final CharBuffer chars = CharBuffer.allocate(8 * 1024);
+        private ByteBuffer readBuffer = ByteBuffer.allocate(0);
 
         public Reader() {
             File indexFile = getIndexFile();
@@ -230,157 +297,192 @@ public class TestOutputStore {
                     throw new IllegalStateException(String.format("Test outputs data file '%s' exists but the index file '%s' does not", outputsFile, indexFile));
                 }
 
-                Input input;
+                index = readIndex(indexFile);
                 try {
-                    input = new Input(new FileInputStream(indexFile));
-                } catch (FileNotFoundException e) {
+                    dataChannel = new RandomAccessFile(outputsFile, "r").getChannel();
+                    mappedRegions = mapRegions(dataChannel);
+                } catch (IOException e) {
                     throw new UncheckedIOException(e);
                 }
+            } else { // no outputs file
+                if (indexFile.exists()) {
+                    throw new IllegalStateException(String.format("Test outputs data file '%s' does not exist but the index file '%s' does", outputsFile, indexFile));
+                }
 
-                IndexBuilder rootBuilder = null;
+                index = null;
+                dataChannel = null;
+                mappedRegions = null;
+            }
+            decoder = messageStorageCharset.newDecoder().onMalformedInput(CodingErrorAction.REPLACE).onUnmappableCharacter(CodingErrorAction.REPLACE);
+        }
+
+        private Map<Long, ClassRuns> readIndex(File indexFile) {
+            Map<Long, ClassRuns> index = new HashMap<Long, ClassRuns>();
+            try {
+                DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(indexFile)));
                 try {
-                    int numClasses = input.readInt(true);
-                    rootBuilder = new IndexBuilder();
-
-                    for (int classCounter = 0; classCounter < numClasses; ++classCounter) {
-                        long classId = input.readLong(true);
-                        IndexBuilder classBuilder = new IndexBuilder();
-
-                        int numEntries = input.readInt(true);
-                        for (int entryCounter = 0; entryCounter < numEntries; ++entryCounter) {
-                            long testId = input.readLong(true);
-                            Region stdOut = new Region(input.readLong(), input.readLong());
-                            Region stdErr = new Region(input.readLong(), input.readLong());
-                            classBuilder.add(testId, new Index(stdOut, stdErr));
+                    long entries = indexFile.length() / INDEX_ENTRY_SIZE;
+                    for (long i = 0; i < entries; i++) {
+                        long classId = input.readLong();
+                        long testId = input.readLong();
+                        long start = input.readLong();
+                        int length = input.readInt();
+                        int flags = input.readInt();
+                        ClassRuns classRuns = index.get(classId);
+                        if (classRuns == null) {
+                            classRuns = new ClassRuns();
+                            index.put(classId, classRuns);
                         }
-
-                        rootBuilder.add(classId, classBuilder.build());
+                        classRuns.add(testId, start, length, flags);
                     }
                 } finally {
                     input.close();
                 }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return index;
+        }
 
-                index = rootBuilder.build();
-
-                try {
-                    dataFile = new RandomAccessFile(getOutputsFile(), "r");
-                } catch (FileNotFoundException e) {
-                    throw new UncheckedIOException(e);
-                }
-            } else { // no outputs file
-                if (indexFile.exists()) {
-                    throw new IllegalStateException(String.format("Test outputs data file '%s' does not exist but the index file '%s' does", outputsFile, indexFile));
-                }
-
-                index = null;
-                dataFile = null;
+        /**
+         * Maps the outputs file into memory. The file is not mapped on Windows, where a mapped file cannot be deleted until the mapping is
+         * garbage collected, and the results directory is deleted when the tests next run.
+         */
+        private ByteBuffer[] mapRegions(FileChannel channel) throws IOException {
+            if (OperatingSystem.current().isWindows()) {
+                return new ByteBuffer[0];
+            }
+            long size = channel.size();
+            ByteBuffer[] regions = new ByteBuffer[(int) ((size + MAPPED_REGION_SIZE - 1) / MAPPED_REGION_SIZE)];
+            for (int i = 0; i < regions.length; i++) {
+                long position = i * MAPPED_REGION_SIZE;
+                regions[i] = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(MAPPED_REGION_SIZE, size - position));
             }
+            return regions;
         }
 
         @Override
         public void close() throws IOException {
-            if (dataFile != null) {
-                dataFile.close();
+            if (dataChannel != null) {
+                dataChannel.close();
             }
         }
 
         public boolean hasOutput(long classId, TestOutputEvent.Destination destination) {
-            if (dataFile == null) {
+            if (dataChannel == null) {
                 return false;
             }
 
-            Index classIndex = index.children.get(classId);
-            if (classIndex == null) {
-                return false;
-            } else {
-                Region region = destination == TestOutputEvent.Destination.StdOut ? classIndex.stdOut : classIndex.stdErr;
-                return region.start >= 0;
-            }
+            ClassRuns classRuns = index.get(classId);
+            return classRuns != null && (classRuns.all.allFlags & flag(destination)) != 0;
         }
 
         public void writeAllOutput(long classId, TestOutputEvent.Destination destination, java.io.Writer writer) {
-            doRead(classId, 0, true, destination, writer);
+            ClassRuns classRuns = dataChannel == null ? null : index.get(classId);
+            if (classRuns != null) {
+                doRead(classRuns.all, destination, writer);
+            }
         }
 
         public void writeNonTestOutput(long classId, TestOutputEvent.Destination destination, java.io.Writer writer) {
-            doRead(classId, 0, false, destination, writer);
+            writeTestOutput(classId, 0, destination, writer);
         }
 
         public void writeTestOutput(long classId, long testId, TestOutputEvent.Destination destination, java.io.Writer writer) {
-            doRead(classId, testId, false, destination, writer);
+            ClassRuns classRuns = dataChannel == null ? null : index.get(classId);
+            RunList testRuns = classRuns == null ? null : classRuns.tests.get(testId);
+            if (testRuns != null) {
+                doRead(testRuns, destination, writer);
+            }
         }
 
-        private void doRead(long classId, long testId, boolean allClassOutput, TestOutputEvent.Destination destination, java.io.Writer writer) {
-            if (dataFile == null) {
+        private void doRead(RunList runs, TestOutputEvent.Destination destination, java.io.Writer writer) {
+            int flag = flag(destination);
+            if ((runs.allFlags & flag) == 0) {
                 return;
             }
-
-            Index targetIndex = index.children.get(classId);
-            if (targetIndex != null && testId != 0) {
-                targetIndex = targetIndex.children.get(testId);
+            try {
+                for (int i = 0; i < runs.count; i++) {
+                    if ((runs.flags[i] & flag) != 0) {
+                        readRun(runs.starts[i], runs.lengths[i], flag == STDOUT, writer);
+                    }
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
             }
+        }
 
-            if (targetIndex == null) {
-                return;
+        private void readRun(long start, int length, boolean stdout, java.io.Writer writer) throws IOException {
+            ByteBuffer run = run(start, length);
+            while (run.hasRemaining()) {
+                long header = readHeader(run);
+                int messageLength = (int) (header >>> 1);
+                int messageEnd = run.position() + messageLength;
+                if (((header & 1) != 0) == stdout) {
+                    int limit = run.limit();
+                    run.limit(messageEnd);
+                    decode(run, writer);
+                    run.limit(limit);
+                }
+                run.position(messageEnd);
             }
+        }
 
-            boolean stdout = destination == TestOutputEvent.Destination.StdOut;
-            Region region = stdout ? targetIndex.stdOut : targetIndex.stdErr;
-
-            if (region.start < 0) {
-                return;
+        /**
+         * Returns the given run of the outputs file, as a slice of the mapped file when the run is contained in one mapped region.
+         */
+        private ByteBuffer run(long start, int length) throws IOException {
+            int region = (int) (start / MAPPED_REGION_SIZE);
+            int offset = (int) (start % MAPPED_REGION_SIZE);
+            if (region < mappedRegions.length && offset + length <= mappedRegions[region].capacity()) {
+                ByteBuffer run = mappedRegions[region].duplicate();
+                run.limit(offset + length);
+                run.position(offset);
+                return run.slice();
             }
+            if (readBuffer.capacity() < length) {
+                readBuffer = ByteBuffer.allocate(length);
+            }
+            readBuffer.clear();
+            readBuffer.limit(length);
+            while (readBuffer.hasRemaining()) {
+                if (dataChannel.read(readBuffer, start + readBuffer.position()) < 0) {
+                    throw new EOFException();
+                }
+            }
+            readBuffer.flip();
+            return readBuffer;
+        }
 
-            boolean ignoreClassLevel = !allClassOutput && testId != 0;
-            boolean ignoreTestLevel = !allClassOutput && testId == 0;
-
-            try {
-                dataFile.seek(region.start);
-                long maxPos = region.stop - region.start;
-                KryoBackedDecoder decoder = new KryoBackedDecoder(new RandomAccessFileInputStream(dataFile));
-                while (decoder.getReadPosition() <= maxPos) {
-                    boolean readStdout = decoder.readBoolean();
-                    long readClassId = decoder.readSmallLong();
-                    long readTestId = decoder.readSmallLong();
-                    int readLength = decoder.readSmallInt();
-
-                    boolean isClassLevel = readTestId == 0;
-
-                    if (stdout != readStdout || classId != readClassId) {
-                        decoder.skipBytes(readLength);
-                        continue;
-                    }
-
-                    if (ignoreClassLevel && isClassLevel) {
-                        decoder.skipBytes(readLength);
-                        continue;
-                    }
-
-                    if (ignoreTestLevel && !isClassLevel) {
-                        decoder.skipBytes(readLength);
-                        continue;
-                    }
-
-                    if (testId == 0 || testId == readTestId) {
-                        byte[] stringBytes = new byte[readLength];
-                        decoder.readBytes(stringBytes);
-                        String message;
-                        try {
-                            message = new String(stringBytes, messageStorageCharset.name());
-                        } catch (UnsupportedEncodingException e) {
-                            // shouldn't happen
-                            throw UncheckedException.throwAsUncheckedException(e);
-                        }
-
-                        writer.write(message);
-                    } else {
-                        decoder.skipBytes(readLength);
-                    }
+        private long readHeader(ByteBuffer run) {
+            long value = 0;
+            for (int shift = 0;; shift += 7) {
+                byte b = run.get();
+                value |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
                 }
-            } catch (IOException e1) {
-                throw new UncheckedIOException(e1);
             }
         }
+
+        private void decode(ByteBuffer message, java.io.Writer writer) throws IOException {
+            decoder.reset();
+            CoderResult result;
+            do {
+                result = decoder.decode(message, chars, true);
+                writeChars(writer);
+            } while (result.isOverflow());
+            do {
+                result = decoder.flush(chars);
+                writeChars(writer);
+            } while (result.isOverflow());
+        }
+
+        private void writeChars(java.io.Writer writer) throws IOException {
+            chars.flip();
+            writer.write(chars.array(), chars.arrayOffset() + chars.position(), chars.remaining());
+            chars.clear();
+        }
     }
 
     // IMPORTANT: return must be closed when done with.
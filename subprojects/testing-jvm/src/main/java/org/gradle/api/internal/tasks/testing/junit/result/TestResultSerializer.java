@@ -28,6 +28,8 @@ import org.gradle.internal.serialize.kryo.KryoBackedEncoder;
 
 import java.io.*;
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
 
 public class TestResultSerializer {
     private static final int RESULT_VERSION = 3;
@@ -108,6 +110,24 @@ public class TestResultSerializer {
         }
     }
 
+    /**
+     * Returns the duration of each test class in the results, in milliseconds, keyed by class name. Returns an empty map when the results cannot be read.
+     */
+    public Map<String, Long> readClassDurations() {
+        final Map<String, Long> durations = new HashMap<String, Long>();
+        try {
+            read(new Action<TestClassResult>() {
+                public void execute(TestClassResult classResult) {
+                    durations.put(classResult.getClassName(), classResult.getDuration());
+                }
+            });
+        } catch (Exception e) {
+            // The durations are only used to order the test classes, so ignore results written by another version
+            return new HashMap<String, Long>();
+        }
+        return durations;
+    }
+
     public boolean isHasResults() {
         return resultsFile.exists() && resultsFile.length() > 0;
     }
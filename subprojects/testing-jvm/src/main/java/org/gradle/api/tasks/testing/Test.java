@@ -39,6 +39,7 @@ import org.gradle.api.internal.tasks.testing.junit.report.DefaultTestReport;
 import org.gradle.api.internal.tasks.testing.junit.report.TestReporter;
 import org.gradle.api.internal.tasks.testing.junit.result.*;
 import org.gradle.api.internal.tasks.testing.logging.*;
+import org.gradle.api.internal.tasks.testing.processors.WorkStealingTestClassProcessor;
 import org.gradle.api.internal.tasks.testing.results.StateTrackingTestResultProcessor;
 import org.gradle.api.internal.tasks.testing.results.TestListenerAdapter;
 import org.gradle.api.internal.tasks.testing.results.TestListenerInternal;
@@ -53,6 +54,7 @@ import org.gradle.api.tasks.testing.logging.TestLoggingContainer;
 import org.gradle.api.tasks.util.PatternFilterable;
 import org.gradle.internal.Factory;
 import org.gradle.internal.concurrent.CompositeStoppable;
+import org.gradle.internal.concurrent.ExecutorFactory;
 import org.gradle.internal.event.ListenerBroadcast;
 import org.gradle.internal.event.ListenerManager;
 import org.gradle.internal.reflect.Instantiator;
@@ -139,6 +141,7 @@ public class Test extends ConventionTask implements JavaForkOptions, PatternFilt
     private boolean scanForTestClasses = true;
     private long forkEvery;
     private int maxParallelForks = 1;
+    private boolean reuseForks = Boolean.getBoolean(DefaultTestExecuter.REUSE_FORKS_TOGGLE);
     private TestReporter testReporter;
 
     @Nested
@@ -179,6 +182,11 @@ public class Test extends ConventionTask implements JavaForkOptions, PatternFilt
         throw new UnsupportedOperationException();
     }
 
+    @Inject
+    protected ExecutorFactory getExecutorFactory() {
+        throw new UnsupportedOperationException();
+    }
+
     @Inject
     protected ClassLoaderCache getClassLoaderCache() {
         throw new UnsupportedOperationException();
@@ -538,6 +546,10 @@ public class Test extends ConventionTask implements JavaForkOptions, PatternFilt
         }
 
         File binaryResultsDir = getBinResultsDir();
+        Map<String, Long> previousDurations = Collections.emptyMap();
+        if (Boolean.getBoolean(WorkStealingTestClassProcessor.WORK_STEALING_TOGGLE)) {
+            previousDurations = new TestResultSerializer(binaryResultsDir).readClassDurations();
+        }
         getProject().delete(binaryResultsDir);
         getProject().mkdir(binaryResultsDir);
 
@@ -558,7 +570,7 @@ public class Test extends ConventionTask implements JavaForkOptions, PatternFilt
         TestResultProcessor resultProcessor = new StateTrackingTestResultProcessor(testListenerInternalBroadcaster.getSource());
 
         if (testExecuter == null) {
-            testExecuter = new DefaultTestExecuter(getProcessBuilderFactory(), getActorFactory());
+            testExecuter = new DefaultTestExecuter(getProcessBuilderFactory(), getActorFactory(), getExecutorFactory(), previousDurations);
         }
 
         try {
@@ -1059,6 +1071,34 @@ public class Test extends ConventionTask implements JavaForkOptions, PatternFilt
         this.maxParallelForks = maxParallelForks;
     }
 
+    /**
+     * Returns whether the forked test processes are taken from a pool of test processes kept by the Gradle process, and returned to the pool once they
+     * have executed their tests. This allows later test tasks, and later builds run by the same Gradle daemon, to reuse the test processes instead of
+     * starting new ones. A test process is only reused by test tasks with the same fork options. The default value is the value of the
+     * {@code org.gradle.test.reuseForks} system property, or false when it is not set.
+     *
+     * <p>A reused test process loads the test runtime classpath into a new ClassLoader for each use, and resets its system properties after each use.
+     * Set to false to execute the tests in test processes started for this task only. Test processes are never reused when {@link #getForkEvery()} is
+     * set.</p>
+     *
+     * @return Whether the forked test processes are reused.
+     */
+    @Incubating
+    public boolean isReuseForks() {
+        return reuseForks;
+    }
+
+    /**
+     * Sets whether the forked test processes are taken from a pool of test processes kept by the Gradle process, and returned to the pool once they have
+     * executed their tests.
+     *
+     * @param reuseForks Whether the forked test processes are reused.
+     */
+    @Incubating
+    public void setReuseForks(boolean reuseForks) {
+        this.reuseForks = reuseForks;
+    }
+
     /**
      * Returns the classes files to scan for test classes.
      *
@@ -27,6 +27,9 @@ import org.jmock.Sequence
 import org.gradle.api.file.FileTree
 import static org.hamcrest.Matchers.*
 import org.gradle.api.file.FileVisitDetails
+import org.gradle.api.internal.tasks.testing.DefaultTestClassRunInfo
+import org.gradle.api.internal.tasks.testing.TestClassRunInfo
+import org.gradle.internal.concurrent.DefaultExecutorFactory
 
 @RunWith(JMock.class)
 public class DefaultTestClassScannerTest {
@@ -55,4 +58,31 @@ public class DefaultTestClassScannerTest {
         
         scanner.run()
     }
+
+    @Test
+    public void passesEachClassFileToTestClassDetectorFromSeveralThreads() {
+        def detected = []
+        def processor = [processTestClass: { TestClassRunInfo testClass -> detected << testClass.testClassName }] as TestClassProcessor
+        TestClassProcessor detectionProcessor = null
+        def detector = [
+            startDetection: { TestClassProcessor testClassProcessor -> detectionProcessor = testClassProcessor },
+            processTestClass: { File file -> detectionProcessor.processTestClass(new DefaultTestClassRunInfo(file.name)); true }
+        ] as TestFrameworkDetector
+        def executorFactory = new DefaultExecutorFactory()
+        DefaultTestClassScanner scanner = new DefaultTestClassScanner(files, detector, processor, executorFactory, 4)
+
+        context.checking {
+            one(files).visit(withParam(notNullValue()))
+            will { visitor ->
+                100.times { i ->
+                    visitor.visitFile({new File("class${i}.class")} as FileVisitDetails)
+                }
+            }
+        }
+
+        scanner.run()
+        executorFactory.stop()
+
+        assert detected.sort() == (0..<100).collect { "class${it}.class".toString() }.sort()
+    }
 }
@@ -98,6 +98,44 @@ class TestOutputStoreSpec extends WorkspaceTest {
         reader.close()
     }
 
+    def "reads messages with characters outside of ASCII"() {
+        when:
+        def writer = output.writer()
+        writer.onOutput(1, 1, output(StdOut, "[h\u00e9llo]"))
+        writer.onOutput(1, 1, output(StdOut, "[\u4e16\u754c \ud83d\ude00]"))
+        writer.onOutput(1, 1, output(StdErr, "[\ud800]"))
+        writer.close()
+        def reader = output.reader()
+
+        then:
+        collectOutput(reader, 1, 1, StdOut) == "[h\u00e9llo][\u4e16\u754c \ud83d\ude00]"
+        collectOutput(reader, 1, 1, StdErr) == "[?]"
+
+        cleanup:
+        reader.close()
+    }
+
+    def "reads output of many interleaved tests"() {
+        def expected = [:].withDefault { new StringBuilder() }
+
+        when:
+        def writer = output.writer()
+        10000.times {
+            def message = "[out-${it}]".toString() * 50
+            writer.onOutput(1, it % 7, output(StdOut, message))
+            expected[it % 7] << message
+        }
+        writer.close()
+        def reader = output.reader()
+
+        then:
+        (0..6).every { collectOutput(reader, 1, it, StdOut) == expected[it].toString() }
+        collectAllOutput(reader, 1, StdOut).length() == expected.values().sum { it.length() }
+
+        cleanup:
+        reader.close()
+    }
+
     def DefaultTestOutputEvent output(TestOutputEvent.Destination destination, String msg) {
         new DefaultTestOutputEvent(destination, msg)
     }